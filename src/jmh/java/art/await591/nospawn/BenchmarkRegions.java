@@ -0,0 +1,125 @@
+package art.await591.nospawn;
+
+import org.bukkit.event.entity.CreatureSpawnEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * 基准测试共用的区域构造工具
+ *
+ * <p>区域按网格排列在同一个世界中，世界名称通过固定的UID解析，不依赖运行中的服务端。</p>
+ *
+ * @author await591
+ */
+final class BenchmarkRegions {
+    /** 基准测试使用的世界名称 */
+    static final String WORLD_NAME = "world";
+
+    /** 基准测试使用的世界UID */
+    static final UUID WORLD_ID = new UUID(0L, 1L);
+
+    /** 没有任何区域的世界UID */
+    static final UUID OTHER_WORLD_ID = new UUID(0L, 2L);
+
+    /** 相邻区域中心的间距（格） */
+    static final int SPACING = 256;
+
+    /** 区域半径/延伸距离（格） */
+    static final int SIZE = 64;
+
+    /** 静默的日志器 */
+    static final Logger SILENT = Logger.getLogger("NoSpawnBenchmark");
+
+    static {
+        SILENT.setUseParentHandlers(false);
+    }
+
+    private BenchmarkRegions() {
+    }
+
+    /**
+     * 构造按网格排列的区域
+     *
+     * @param count 区域数量
+     * @param mode 区域模式
+     * @param typeFilter 阻止的实体类型
+     * @return 区域列表
+     */
+    static List<ProtectedRegion> grid(int count, NoSpawnPlugin.RegionMode mode, EntityTypeFilter typeFilter) {
+        int side = gridSide(count);
+        List<ProtectedRegion> regions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double cx = (i % side) * SPACING;
+            double cz = (i / side) * SPACING;
+            regions.add(create("r" + i, mode, cx, 64, cz, typeFilter));
+        }
+        return regions;
+    }
+
+    /**
+     * 构造单个区域
+     *
+     * @param name 区域名称
+     * @param mode 区域模式
+     * @param cx 中心X
+     * @param cy 中心Y
+     * @param cz 中心Z
+     * @param typeFilter 阻止的实体类型
+     * @return 区域
+     */
+    static ProtectedRegion create(String name, NoSpawnPlugin.RegionMode mode, double cx, double cy, double cz,
+                                  EntityTypeFilter typeFilter) {
+        PolygonShape polygon = mode == NoSpawnPlugin.RegionMode.POLYGON ? octagon(cx, cz, SIZE) : null;
+        return new ProtectedRegion(name, WORLD_NAME, mode, cx, cy, cz,
+                SIZE, 32, SIZE, 32, SIZE, polygon, typeFilter,
+                EnumSet.of(CreatureSpawnEvent.SpawnReason.SPAWNER_EGG), 0, 60_000L);
+    }
+
+    /**
+     * 构造区域索引
+     *
+     * @param regions 区域
+     * @return 索引
+     */
+    static RegionIndex index(List<ProtectedRegion> regions) {
+        return RegionIndex.build(regions, name -> WORLD_NAME.equals(name) ? WORLD_ID : null);
+    }
+
+    /**
+     * 默认的怪物过滤表
+     *
+     * @return 过滤表
+     */
+    static EntityTypeFilter monsters() {
+        return EntityTypeFilter.compile(true, Collections.emptyList(), Collections.emptyList(), SILENT);
+    }
+
+    /**
+     * 网格的边长（区域数量的平方根向上取整）
+     *
+     * @param count 区域数量
+     * @return 边长
+     */
+    static int gridSide(int count) {
+        return Math.max(1, (int) Math.ceil(Math.sqrt(count)));
+    }
+
+    /**
+     * 构造以给定点为中心的正八边形
+     */
+    private static PolygonShape octagon(double cx, double cz, double radius) {
+        double[] xs = new double[8];
+        double[] zs = new double[8];
+        for (int i = 0; i < 8; i++) {
+            double angle = Math.PI / 4 * i + Math.PI / 8;
+            xs[i] = cx + radius * Math.cos(angle);
+            zs[i] = cz + radius * Math.sin(angle);
+        }
+        return new PolygonShape(xs, zs, 32, 96);
+    }
+}
@@ -0,0 +1,72 @@
+package art.await591.nospawn;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 边界点生成基准
+ *
+ * <p>测量 {@code RegionVisualizer.calculateBoundaryPoints3D} 在不同区域形状和标记间距下的开销。
+ * 插件与世界均为Mockito模拟对象，只提供配置、日志器和世界高度。</p>
+ *
+ * @author await591
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BoundaryPointsBenchmark {
+    @Param({"CIRCLE", "SQUARE", "POLYGON"})
+    public NoSpawnPlugin.RegionMode mode;
+
+    @Param({"1.0", "3.0", "6.0"})
+    public double markerSpacing;
+
+    private RegionVisualizer visualizer;
+    private World world;
+    private ProtectedRegion region;
+
+    @Setup
+    public void setup() throws IOException {
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("boundary-visualization.marker-spacing", markerSpacing);
+
+        File dataFolder = Files.createTempDirectory("nospawn-jmh").toFile();
+        dataFolder.deleteOnExit();
+
+        NoSpawnPlugin plugin = mock(NoSpawnPlugin.class, RETURNS_DEEP_STUBS);
+        when(plugin.getConfig()).thenReturn(config);
+        when(plugin.getLogger()).thenReturn(BenchmarkRegions.SILENT);
+        when(plugin.getDataFolder()).thenReturn(dataFolder);
+        visualizer = new RegionVisualizer(plugin);
+
+        world = mock(World.class);
+        when(world.getMinHeight()).thenReturn(-64);
+        when(world.getMaxHeight()).thenReturn(320);
+
+        region = BenchmarkRegions.create("bench", mode, 0, 64, 0, BenchmarkRegions.monsters());
+    }
+
+    @Benchmark
+    public List<Location> boundaryPoints() {
+        return visualizer.calculateBoundaryPoints3D(world, region);
+    }
+}
@@ -0,0 +1,103 @@
+package art.await591.nospawn;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 区域包含判断基准
+ *
+ * <p>对比区块网格索引查询与逐个区域线性判断的开销，并测量没有区域的世界被过滤掉的开销
+ * （对应 {@code RegionVisualizer.isInProtectedRegion} 与生成判定的第一步）。</p>
+ *
+ * @author await591
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RegionContainmentBenchmark {
+    /** 查询点数量（2的幂） */
+    private static final int POINTS = 4096;
+
+    @Param({"1", "16", "256"})
+    public int regionCount;
+
+    @Param({"CIRCLE", "SQUARE", "POLYGON"})
+    public NoSpawnPlugin.RegionMode mode;
+
+    private List<ProtectedRegion> regions;
+    private RegionIndex index;
+    private final double[] xs = new double[POINTS];
+    private final double[] ys = new double[POINTS];
+    private final double[] zs = new double[POINTS];
+    private String[] worldNames;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        regions = BenchmarkRegions.grid(regionCount, mode, BenchmarkRegions.monsters());
+        index = BenchmarkRegions.index(regions);
+
+        // 查询点均匀分布在区域网格覆盖的范围内，既有命中也有落空
+        int extent = BenchmarkRegions.gridSide(regionCount) * BenchmarkRegions.SPACING;
+        Random random = new Random(42);
+        worldNames = new String[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            xs[i] = random.nextDouble() * extent - BenchmarkRegions.SIZE;
+            ys[i] = 32 + random.nextDouble() * 64;
+            zs[i] = random.nextDouble() * extent - BenchmarkRegions.SIZE;
+            worldNames[i] = random.nextBoolean() ? "world" : "world_nether";
+        }
+    }
+
+    private int next() {
+        return cursor = (cursor + 1) & (POINTS - 1);
+    }
+
+    /**
+     * 通过区块网格索引查找包含该点的区域
+     */
+    @Benchmark
+    public ProtectedRegion indexedLookup() {
+        int i = next();
+        return index.findRegion(BenchmarkRegions.WORLD_ID, xs[i], ys[i], zs[i]);
+    }
+
+    /**
+     * 逐个区域调用 contains（建立索引前的做法）
+     */
+    @Benchmark
+    public ProtectedRegion linearScan() {
+        int i = next();
+        for (ProtectedRegion region : regions) {
+            if (region.contains(xs[i], ys[i], zs[i])) return region;
+        }
+        return null;
+    }
+
+    /**
+     * 世界过滤：按UID查询没有区域的世界
+     */
+    @Benchmark
+    public ProtectedRegion worldFilterByUid() {
+        int i = next();
+        return index.findRegion(BenchmarkRegions.OTHER_WORLD_ID, xs[i], ys[i], zs[i]);
+    }
+
+    /**
+     * 世界过滤：按名称忽略大小写比较（按UID查表之前的做法）
+     */
+    @Benchmark
+    public boolean worldFilterByName() {
+        return worldNames[next()].equalsIgnoreCase(BenchmarkRegions.WORLD_NAME);
+    }
+}
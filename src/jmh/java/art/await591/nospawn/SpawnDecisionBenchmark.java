@@ -0,0 +1,121 @@
+package art.await591.nospawn;
+
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Monster;
+import org.bukkit.event.entity.CreatureSpawnEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 生成判定基准
+ *
+ * <p>测量 {@code onMobSpawn} 的核心判定（区块索引查询 + {@link SpawnDecisionKernel}），
+ * 以及实体类型过滤在预编译序号表与按类型反射/列表查找两种做法下的开销。</p>
+ *
+ * <p>判定内核不分配内存由单元测试 {@code SpawnDecisionKernelTest} 检查；
+ * 运行中的分配量见 gc 分析器的 {@code gc.alloc.rate.norm}。</p>
+ *
+ * @author await591
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SpawnDecisionBenchmark {
+    /** 样本数量（2的幂） */
+    private static final int SAMPLES = 4096;
+
+    /** 参与判定的实体类型 */
+    private static final EntityType[] SAMPLE_TYPES = {
+            EntityType.ZOMBIE, EntityType.SKELETON, EntityType.CREEPER, EntityType.SPIDER,
+            EntityType.COW, EntityType.PIG, EntityType.SHEEP, EntityType.ENDERMAN
+    };
+
+    /** 参与判定的生成原因 */
+    private static final CreatureSpawnEvent.SpawnReason[] SAMPLE_REASONS = {
+            CreatureSpawnEvent.SpawnReason.NATURAL, CreatureSpawnEvent.SpawnReason.NATURAL,
+            CreatureSpawnEvent.SpawnReason.NATURAL, CreatureSpawnEvent.SpawnReason.SPAWNER_EGG
+    };
+
+    @Param({"1", "16", "256"})
+    public int regionCount;
+
+    @Param({"true", "false"})
+    public boolean blockAllMonsters;
+
+    private RegionIndex index;
+    private EntityTypeFilter filter;
+    private List<String> blockedNames;
+    private final SpawnDensityLimiter densityLimiter = new SpawnDensityLimiter();
+    private final double[] xs = new double[SAMPLES];
+    private final double[] ys = new double[SAMPLES];
+    private final double[] zs = new double[SAMPLES];
+    private final EntityType[] types = new EntityType[SAMPLES];
+    private final CreatureSpawnEvent.SpawnReason[] reasons = new CreatureSpawnEvent.SpawnReason[SAMPLES];
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        blockedNames = Arrays.asList("ZOMBIE", "SKELETON", "CREEPER");
+        filter = EntityTypeFilter.compile(blockAllMonsters, blockedNames, Collections.emptyList(),
+                BenchmarkRegions.SILENT);
+        index = BenchmarkRegions.index(BenchmarkRegions.grid(regionCount, NoSpawnPlugin.RegionMode.CIRCLE, filter));
+
+        int extent = BenchmarkRegions.gridSide(regionCount) * BenchmarkRegions.SPACING;
+        Random random = new Random(7);
+        for (int i = 0; i < SAMPLES; i++) {
+            xs[i] = random.nextDouble() * extent - BenchmarkRegions.SIZE;
+            ys[i] = 32 + random.nextDouble() * 64;
+            zs[i] = random.nextDouble() * extent - BenchmarkRegions.SIZE;
+            types[i] = SAMPLE_TYPES[random.nextInt(SAMPLE_TYPES.length)];
+            reasons[i] = SAMPLE_REASONS[random.nextInt(SAMPLE_REASONS.length)];
+        }
+    }
+
+    private int next() {
+        return cursor = (cursor + 1) & (SAMPLES - 1);
+    }
+
+    /**
+     * 完整的生成判定：索引查询、豁免原因、类型过滤、包含判断
+     */
+    @Benchmark
+    public int decide() {
+        int i = next();
+        return SpawnDecisionKernel.decide(index, BenchmarkRegions.WORLD_ID, xs[i], ys[i], zs[i],
+                types[i].ordinal(), reasons[i].ordinal(), densityLimiter);
+    }
+
+    /**
+     * 类型过滤：预编译的序号表
+     */
+    @Benchmark
+    public boolean typeFilterTable() {
+        return filter.isBlocked(types[next()].ordinal());
+    }
+
+    /**
+     * 类型过滤：按实体类判断怪物或在名称列表中查找（预编译之前的做法）
+     */
+    @Benchmark
+    public boolean typeFilterLegacy() {
+        EntityType type = types[next()];
+        if (blockAllMonsters) {
+            Class<? extends Entity> entityClass = type.getEntityClass();
+            return entityClass != null && Monster.class.isAssignableFrom(entityClass);
+        }
+        return blockedNames.contains(type.name());
+    }
+}
@@ -0,0 +1,462 @@
+package art.await591.nospawn;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 二进制日志格式
+ *
+ * <p>{@code logging.format: binary} 时，写入线程不生成文本，而是把每次拦截写成一条十几字节的记录
+ * （文本日志约100字节）。文件以 {@code NSLG} 和版本号开头，之后是一串以类型字节开头的块：</p>
+ * <ul>
+ *   <li>{@code SESSION}：每次打开文件时写入，包含开始时间和实体类型、生成原因的名称字典；
+ *       之后的记录只保存序号，服务端版本变化导致枚举顺序改变也能正确还原</li>
+ *   <li>{@code WORLD}：世界编号与名称，第一次用到某个世界时（以及每个同步块之后）写入</li>
+ *   <li>{@code SYNC}：绝对时间，在每个索引桶（见 {@link LogIndex}）开头写入，之后的世界重新编号，
+ *       使每个桶只需要会话块中的字典就能单独解码</li>
+ *   <li>{@code SPAWN} / {@code SPAWN_PLAYER}：距上一条记录的毫秒数、世界编号、方块坐标、
+ *       实体类型序号、生成原因序号（后者另带最近玩家的名称）</li>
+ *   <li>{@code AGGREGATE}：聚合模式的一行，窗口开始时间、世界编号、区块坐标、序号和次数</li>
+ * </ul>
+ * <p>整数均为变长编码，有符号数先做 zigzag 变换，时间为与上一条记录的差值。</p>
+ *
+ * @author await591
+ */
+public final class BinaryLog {
+    /** 文件头 */
+    private static final byte[] MAGIC = {'N', 'S', 'L', 'G'};
+
+    /** 格式版本 */
+    private static final int VERSION = 1;
+
+    /** 二进制日志文件的扩展名 */
+    static final String EXTENSION = ".nsl";
+
+    /** 块类型：会话（开始时间与名称字典） */
+    private static final int SESSION = 1;
+
+    /** 块类型：世界编号 */
+    private static final int WORLD = 2;
+
+    /** 块类型：被阻止的生成 */
+    private static final int SPAWN = 3;
+
+    /** 块类型：带最近玩家名称的被阻止的生成 */
+    private static final int SPAWN_PLAYER = 4;
+
+    /** 块类型：聚合计数 */
+    private static final int AGGREGATE = 5;
+
+    /** 块类型：同步（绝对时间，世界重新编号） */
+    private static final int SYNC = 6;
+
+    /** 字符串和字典的长度上限（用于识别损坏的文件） */
+    private static final int MAX_LENGTH = 1 << 16;
+
+    private BinaryLog() {
+    }
+
+    /**
+     * 由文本日志的文件名得到二进制日志的文件名（{@code .log} 换成 {@code .nsl}）
+     *
+     * @param textName 文本日志文件名
+     * @return 二进制日志文件名
+     */
+    static String fileName(String textName) {
+        String base = textName.endsWith(".log") ? textName.substring(0, textName.length() - 4) : textName;
+        return base + EXTENSION;
+    }
+
+    /**
+     * 写入端：把记录编码到内存缓冲区，由写入线程整块写入文件（只在写入线程中使用）
+     */
+    static final class Encoder {
+        /** 缓冲区 */
+        private byte[] buf;
+
+        /** 缓冲区中的字节数 */
+        private int size;
+
+        /** 上一条记录的时间（毫秒） */
+        private long lastTime;
+
+        /** 当前会话中已写入名称的世界数 */
+        private int definedWorlds;
+
+        Encoder(int capacity) {
+            this.buf = new byte[capacity];
+        }
+
+        /**
+         * 写入文件头（只在新文件开头写入）
+         */
+        void header() {
+            ensure(MAGIC.length + 1);
+            System.arraycopy(MAGIC, 0, buf, size, MAGIC.length);
+            size += MAGIC.length;
+            buf[size++] = VERSION;
+        }
+
+        /**
+         * 开始一个会话（每次打开文件时写入）
+         *
+         * @param time 开始时间（毫秒）
+         * @param types 实体类型名称，按序号排列
+         * @param reasons 生成原因名称，按序号排列
+         */
+        void session(long time, String[] types, String[] reasons) {
+            writeByte(SESSION);
+            writeLong(time);
+            writeDictionary(types);
+            writeDictionary(reasons);
+            lastTime = time;
+            definedWorlds = 0;
+        }
+
+        /**
+         * 写入同步块（每个索引桶开头）
+         *
+         * @param time 绝对时间（毫秒）
+         */
+        void sync(long time) {
+            writeByte(SYNC);
+            writeLong(time);
+            lastTime = time;
+            definedWorlds = 0;
+        }
+
+        /**
+         * 确保编号不超过 index 的世界都已写入名称
+         *
+         * @param index 世界编号
+         * @param worlds 世界编号表
+         */
+        void defineWorlds(int index, LogWorlds worlds) {
+            while (definedWorlds <= index) {
+                writeByte(WORLD);
+                writeVarint(definedWorlds);
+                writeString(worlds.name(definedWorlds));
+                definedWorlds++;
+            }
+        }
+
+        /**
+         * 写入一条被阻止的生成
+         */
+        void spawn(long time, int world, int x, int y, int z, int type, int reason, String player) {
+            writeByte(player != null ? SPAWN_PLAYER : SPAWN);
+            writeTime(time);
+            writeVarint(world);
+            writeZigzag(x);
+            writeZigzag(y);
+            writeZigzag(z);
+            writeVarint(type);
+            writeVarint(reason);
+            if (player != null) writeString(player);
+        }
+
+        /**
+         * 写入一行聚合计数
+         */
+        void aggregate(long time, int world, int chunkX, int chunkZ, int type, int reason, int count) {
+            writeByte(AGGREGATE);
+            writeTime(time);
+            writeVarint(world);
+            writeZigzag(chunkX);
+            writeZigzag(chunkZ);
+            writeVarint(type);
+            writeVarint(reason);
+            writeVarint(count);
+        }
+
+        /**
+         * 获取缓冲区中的字节数
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * 将缓冲区写入输出流并清空
+         *
+         * @param out 输出流
+         */
+        void writeTo(OutputStream out) throws IOException {
+            out.write(buf, 0, size);
+            size = 0;
+        }
+
+        /**
+         * 丢弃缓冲区中的内容
+         */
+        void clear() {
+            size = 0;
+        }
+
+        private void writeLong(long v) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buf[size++] = (byte) (v >>> shift);
+            }
+        }
+
+        private void writeTime(long time) {
+            long delta = time - lastTime;
+            lastTime = time;
+            long v = (delta << 1) ^ (delta >> 63);
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                buf[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[size++] = (byte) v;
+        }
+
+        private void writeDictionary(String[] names) {
+            writeVarint(names.length);
+            for (String name : names) {
+                writeString(name);
+            }
+        }
+
+        private void writeString(String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, size, bytes.length);
+            size += bytes.length;
+        }
+
+        private void writeZigzag(int v) {
+            writeVarint((v << 1) ^ (v >> 31));
+        }
+
+        private void writeVarint(int v) {
+            ensure(5);
+            while ((v & ~0x7F) != 0) {
+                buf[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[size++] = (byte) v;
+        }
+
+        private void writeByte(int v) {
+            ensure(1);
+            buf[size++] = (byte) v;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + extra));
+            }
+        }
+    }
+
+    /**
+     * 读取端：依次读出文件中的日志记录
+     */
+    static final class Decoder implements Closeable {
+        /** 输入 */
+        private final DataInputStream in;
+
+        /** 当前会话的实体类型名称 */
+        private String[] types = new String[0];
+
+        /** 当前会话的生成原因名称 */
+        private String[] reasons = new String[0];
+
+        /** 当前会话的世界名称 */
+        private final List<String> worlds = new ArrayList<>();
+
+        /** 上一条记录的时间（毫秒） */
+        private long lastTime;
+
+        /**
+         * 打开二进制日志并检查文件头
+         *
+         * @param input 输入流
+         * @throws IOException 不是二进制日志或读取失败时
+         */
+        Decoder(InputStream input) throws IOException {
+            this(new DataInputStream(new BufferedInputStream(input, 64 * 1024)));
+            byte[] magic = new byte[MAGIC.length];
+            try {
+                in.readFully(magic);
+                if (!Arrays.equals(magic, MAGIC)) throw new IOException("不是NoSpawn二进制日志");
+                int version = in.readUnsignedByte();
+                if (version != VERSION) throw new IOException("不支持的日志版本: " + version);
+            } catch (EOFException e) {
+                throw new IOException("不是NoSpawn二进制日志");
+            }
+        }
+
+        /**
+         * 从文件中间开始解码（例如一个索引桶），使用另一个解码器读到的字典
+         *
+         * @param input 输入流（从同步块开始）
+         * @param session 已读取会话块的解码器
+         */
+        Decoder(InputStream input, Decoder session) {
+            this(new DataInputStream(new BufferedInputStream(input, 64 * 1024)));
+            this.types = session.types;
+            this.reasons = session.reasons;
+        }
+
+        private Decoder(DataInputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * 只读取一个会话块的字典（不缓冲，读完后输入流正好位于会话块之后）
+         *
+         * @param input 输入流（位于会话块）
+         * @return 带有字典的解码器
+         * @throws IOException 该位置不是会话块或读取失败时
+         */
+        static Decoder session(InputStream input) throws IOException {
+            Decoder decoder = new Decoder(new DataInputStream(input));
+            try {
+                if (decoder.in.read() != SESSION) throw new IOException("日志索引与日志文件不一致（会话块位置错误）");
+                decoder.readSession();
+            } catch (EOFException e) {
+                throw new IOException("日志文件不完整（会话块被截断）");
+            }
+            return decoder;
+        }
+
+        private void readSession() throws IOException {
+            lastTime = in.readLong();
+            types = readDictionary();
+            reasons = readDictionary();
+            worlds.clear();
+        }
+
+        /**
+         * 读取下一条日志记录
+         *
+         * @param entry 用于存放记录的对象
+         * @return 读到记录时返回true，文件结束时返回false（最后一条记录不完整时也视为结束，
+         *         例如正在写入的文件或服务器崩溃时）
+         * @throws IOException 文件损坏时
+         */
+        boolean next(LogEntry entry) throws IOException {
+            while (true) {
+                int kind = in.read();
+                if (kind < 0) return false;
+                try {
+                    switch (kind) {
+                        case SESSION:
+                            readSession();
+                            break;
+                        case SYNC:
+                            lastTime = in.readLong();
+                            worlds.clear();
+                            break;
+                        case WORLD: {
+                            int index = readVarint();
+                            String name = readString();
+                            if (index != worlds.size()) throw new IOException("日志文件已损坏（世界编号不连续）");
+                            worlds.add(name);
+                            break;
+                        }
+                        case SPAWN:
+                        case SPAWN_PLAYER: {
+                            long time = readTime();
+                            String world = world(readVarint());
+                            int x = readZigzag();
+                            int y = readZigzag();
+                            int z = readZigzag();
+                            String type = name(types, readVarint());
+                            String reason = name(reasons, readVarint());
+                            String player = kind == SPAWN_PLAYER ? readString() : null;
+                            entry.spawn(time, world, x, y, z, type, reason, player);
+                            return true;
+                        }
+                        case AGGREGATE: {
+                            long time = readTime();
+                            String world = world(readVarint());
+                            int chunkX = readZigzag();
+                            int chunkZ = readZigzag();
+                            String type = name(types, readVarint());
+                            String reason = name(reasons, readVarint());
+                            entry.aggregate(time, world, chunkX, chunkZ, type, reason, readVarint());
+                            return true;
+                        }
+                        default:
+                            throw new IOException("日志文件已损坏（未知的记录类型 " + kind + "）");
+                    }
+                } catch (EOFException e) {
+                    return false;
+                }
+            }
+        }
+
+        private String world(int index) {
+            return index >= 0 && index < worlds.size() ? worlds.get(index) : "#" + index;
+        }
+
+        private static String name(String[] names, int ordinal) {
+            return ordinal >= 0 && ordinal < names.length ? names[ordinal] : String.valueOf(ordinal);
+        }
+
+        private long readTime() throws IOException {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = in.readUnsignedByte();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    lastTime += (v >>> 1) ^ -(v & 1);
+                    return lastTime;
+                }
+            }
+            throw new IOException("日志文件已损坏（时间编码过长）");
+        }
+
+        private String[] readDictionary() throws IOException {
+            int count = readVarint();
+            if (count < 0 || count > MAX_LENGTH) throw new IOException("日志文件已损坏（字典长度 " + count + "）");
+            String[] names = new String[count];
+            for (int i = 0; i < count; i++) {
+                names[i] = readString();
+            }
+            return names;
+        }
+
+        private String readString() throws IOException {
+            int length = readVarint();
+            if (length < 0 || length > MAX_LENGTH) throw new IOException("日志文件已损坏（字符串长度 " + length + "）");
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private int readZigzag() throws IOException {
+            int v = readVarint();
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        private int readVarint() throws IOException {
+            int v = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = in.readUnsignedByte();
+                v |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return v;
+            }
+            throw new IOException("日志文件已损坏（整数编码过长）");
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package art.await591.nospawn;
+
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * 配置重载器
+ *
+ * <p>在异步线程中读取并解析 config.yml，按配置节与上次应用的配置逐项比较，
+ * 最后只把变化的子系统交回全局区域线程（非 Folia 服务端即主线程）应用。
+ * 区域编译需要查询世界与出生点，也在全局区域线程上进行，但只编译发生变化的部分。</p>
+ *
+ * <p>重载由 {@code /ns reload} 触发，或在启用 {@code config-reload.watch} 时由文件监视线程在
+ * config.yml 被保存后触发。同一时间只进行一次重载，进行中又收到请求时在本次完成后再读取一次。
+ * 配置文件无法解析时保留当前配置。</p>
+ *
+ * @author await591
+ */
+public final class ConfigReloader {
+    /** 配置文件名 */
+    private static final String CONFIG_FILE = "config.yml";
+
+    /** 文件变更后等待写入完成的时间（毫秒），编辑器保存一次常触发多个修改事件 */
+    private static final long DEBOUNCE_MILLIS = 500;
+
+    /**
+     * 可以单独重新应用的子系统及其对应的配置节
+     */
+    public enum Subsystem {
+        /** 区域快照（总开关、默认区域、命名区域及其全局过滤设置） */
+        REGIONS("区域", "enabled", "block-all-monsters", "region", "regions",
+                "blocked-mobs", "excluded-spawn-reasons", "density-limit"),
+        /** 影子模式的候选区域 */
+        SHADOW("影子模式", "shadow"),
+        /** 阻止热力图 */
+        HEATMAP("热力图", "heatmap"),
+        /** 刷怪笼停用 */
+        SPAWNER("刷怪笼停用", "spawner-neutralization"),
+        /** 日志记录 */
+        LOGGING("日志", "logging"),
+        /** 虚拟墙壁与边界可视化 */
+        VISUALIZER("虚拟墙壁与边界可视化", "virtual-wall", "boundary-visualization"),
+        /** 配置文件监视 */
+        WATCH("配置文件监视", "config-reload");
+
+        /** 显示名称 */
+        private final String displayName;
+
+        /** 对应的顶层配置键 */
+        private final String[] keys;
+
+        Subsystem(String displayName, String... keys) {
+            this.displayName = displayName;
+            this.keys = keys;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        /**
+         * 取出该子系统的所有配置值（配置节展开为完整路径），用于比较两份配置
+         *
+         * @param config 配置
+         * @return 完整路径 → 值
+         */
+        Map<String, Object> fingerprint(ConfigurationSection config) {
+            Map<String, Object> values = new HashMap<>();
+            for (String key : keys) {
+                Object value = config.get(key);
+                if (value instanceof ConfigurationSection) {
+                    for (Map.Entry<String, Object> entry : ((ConfigurationSection) value).getValues(true).entrySet()) {
+                        if (entry.getValue() instanceof ConfigurationSection) continue;
+                        values.put(key + '.' + entry.getKey(), entry.getValue());
+                    }
+                } else if (value != null) {
+                    values.put(key, value);
+                }
+            }
+            return values;
+        }
+    }
+
+    /** 插件主类实例 */
+    private final NoSpawnPlugin plugin;
+
+    /** 上次应用的配置中每个子系统的配置值 */
+    private volatile Map<Subsystem, Map<String, Object>> applied = new EnumMap<>(Subsystem.class);
+
+    /** 是否有重载正在进行（访问时对本对象加锁） */
+    private boolean running;
+
+    /** 重载进行中是否又收到了请求（访问时对本对象加锁） */
+    private boolean rerun;
+
+    /** 文件监视服务，未监视时为null */
+    private WatchService watchService;
+
+    /**
+     * 构造配置重载器
+     *
+     * @param plugin 插件主类实例
+     */
+    public ConfigReloader(NoSpawnPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * 创建一个带有插件内置默认值的空配置
+     *
+     * @param plugin 插件主类实例
+     * @return 空配置
+     * @throws IOException 读取内置配置失败时抛出
+     */
+    static YamlConfiguration createConfig(NoSpawnPlugin plugin) throws IOException {
+        YamlConfiguration config = new YamlConfiguration();
+        InputStream defaults = plugin.getResource(CONFIG_FILE);
+        if (defaults != null) {
+            try (Reader reader = new InputStreamReader(defaults, StandardCharsets.UTF_8)) {
+                config.setDefaults(YamlConfiguration.loadConfiguration(reader));
+            }
+        }
+        return config;
+    }
+
+    /**
+     * 获取配置文件
+     *
+     * @param plugin 插件主类实例
+     * @return 配置文件
+     */
+    static File configFile(NoSpawnPlugin plugin) {
+        return new File(plugin.getDataFolder(), CONFIG_FILE);
+    }
+
+    /**
+     * 记录已经应用的配置，之后的重载以它为比较基准
+     *
+     * <p>在同步加载配置和 {@link ConfigSaver} 写出配置时调用，使自己写入文件引起的变更不会再被重新应用。</p>
+     *
+     * @param config 已应用的配置
+     */
+    public void markApplied(ConfigurationSection config) {
+        this.applied = fingerprints(config);
+    }
+
+    /**
+     * 在异步线程中重载配置
+     *
+     * @param sender 接收结果的命令发送者，文件监视触发时为null（结果只写入控制台）
+     */
+    public void reload(CommandSender sender) {
+        synchronized (this) {
+            if (running) {
+                rerun = true;
+                if (sender != null) {
+                    sender.sendMessage(ChatColor.YELLOW + "[NoSpawn] 上一次重载尚未完成，完成后将再读取一次配置。");
+                }
+                return;
+            }
+            running = true;
+        }
+        plugin.getServer().getAsyncScheduler().runNow(plugin, task -> runReload(sender));
+    }
+
+    /**
+     * 读取并比较配置（在异步线程中执行），再把编译与应用交给全局区域线程
+     *
+     * @param sender 接收结果的命令发送者，可为null
+     */
+    private void runReload(CommandSender sender) {
+        // 先写出游戏内命令尚未保存的修改，否则它们会被文件中的旧值覆盖
+        plugin.getConfigSaver().flush();
+
+        YamlConfiguration config;
+        try {
+            config = createConfig(plugin);
+            config.load(configFile(plugin));
+        } catch (IOException | InvalidConfigurationException e) {
+            plugin.getLogger().warning("读取 config.yml 失败，保留当前配置: " + e.getMessage());
+            if (sender != null) {
+                sender.sendMessage(ChatColor.RED + "[NoSpawn] 读取 config.yml 失败，保留当前配置: " + e.getMessage());
+            }
+            finish();
+            return;
+        }
+
+        Map<Subsystem, Map<String, Object>> fingerprints = fingerprints(config);
+        Map<Subsystem, Map<String, Object>> current = applied;
+        Set<Subsystem> changed = EnumSet.noneOf(Subsystem.class);
+        for (Subsystem subsystem : Subsystem.values()) {
+            if (!fingerprints.get(subsystem).equals(current.get(subsystem))) {
+                changed.add(subsystem);
+            }
+        }
+        if (changed.isEmpty()) {
+            if (sender != null) {
+                sender.sendMessage(ChatColor.GREEN + "[NoSpawn] 配置没有变化");
+            }
+            finish();
+            return;
+        }
+
+        if (!plugin.isEnabled()) {
+            finish();
+            return;
+        }
+        plugin.getServer().getGlobalRegionScheduler().execute(plugin, () -> {
+            // 应用失败时也要结束本次重载，否则之后的重载请求都会被当作"进行中"而排队
+            try {
+                // 编译区域要查询世界与出生点，只能在全局区域线程上进行；
+                // 区域的全局过滤设置也是候选区域的默认值，区域变化时两者都重新编译
+                RegionSnapshot regions = changed.contains(Subsystem.REGIONS) ? plugin.compileRegions(config) : null;
+                List<ProtectedRegion> shadowRegions = changed.contains(Subsystem.REGIONS)
+                        || changed.contains(Subsystem.SHADOW) ? plugin.compileShadowRegions(config) : null;
+                plugin.applySettings(config, changed, regions, shadowRegions);
+                applied = fingerprints;
+
+                StringJoiner names = new StringJoiner(", ");
+                for (Subsystem subsystem : changed) {
+                    names.add(subsystem.getDisplayName());
+                }
+                if (sender != null) {
+                    sender.sendMessage(ChatColor.GREEN + "[NoSpawn] 配置已重载: " + ChatColor.WHITE + names);
+                } else {
+                    plugin.getLogger().info("检测到 config.yml 变更，已重新应用: " + names);
+                }
+            } finally {
+                finish();
+            }
+        });
+    }
+
+    /**
+     * 结束一次重载，期间收到过请求时再读取一次
+     */
+    private void finish() {
+        synchronized (this) {
+            if (!rerun || !plugin.isEnabled()) {
+                running = false;
+                rerun = false;
+                return;
+            }
+            rerun = false;
+        }
+        plugin.getServer().getAsyncScheduler().runNow(plugin, task -> runReload(null));
+    }
+
+    /**
+     * 开始或停止监视配置文件
+     *
+     * @param watch 是否监视
+     */
+    public synchronized void setWatching(boolean watch) {
+        if (watch == (watchService != null)) return;
+        if (!watch) {
+            stopWatching();
+            return;
+        }
+        try {
+            WatchService service = FileSystems.getDefault().newWatchService();
+            plugin.getDataFolder().toPath().register(service,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            Thread thread = new Thread(() -> watch(service), "NoSpawn-ConfigWatcher");
+            thread.setDaemon(true);
+            thread.start();
+            watchService = service;
+        } catch (IOException e) {
+            plugin.getLogger().warning("无法监视配置文件，修改后请使用 /ns reload 重载: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 停止监视配置文件
+     */
+    public synchronized void stopWatching() {
+        if (watchService == null) return;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            plugin.getLogger().warning("关闭配置文件监视失败: " + e.getMessage());
+        }
+        watchService = null;
+    }
+
+    /**
+     * 文件监视线程的主循环，服务关闭后退出
+     *
+     * @param service 文件监视服务
+     */
+    private void watch(WatchService service) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean touched = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    touched = touched || CONFIG_FILE.equals(String.valueOf(event.context()));
+                }
+                if (!key.reset()) return;
+                if (!touched) continue;
+
+                // 等待写入完成，并合并这段时间内的后续事件
+                Thread.sleep(DEBOUNCE_MILLIS);
+                WatchKey more;
+                while ((more = service.poll()) != null) {
+                    more.pollEvents();
+                    more.reset();
+                }
+                if (plugin.isEnabled()) {
+                    reload(null);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // 插件关闭或停止监视
+        }
+    }
+
+    /**
+     * 取出每个子系统的配置值
+     */
+    private static Map<Subsystem, Map<String, Object>> fingerprints(ConfigurationSection config) {
+        Map<Subsystem, Map<String, Object>> fingerprints = new EnumMap<>(Subsystem.class);
+        for (Subsystem subsystem : Subsystem.values()) {
+            fingerprints.put(subsystem, subsystem.fingerprint(config));
+        }
+        return fingerprints;
+    }
+}
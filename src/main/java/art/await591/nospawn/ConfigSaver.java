@@ -0,0 +1,179 @@
+package art.await591.nospawn;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 配置保存器
+ *
+ * <p>游戏内命令修改配置时只在内存中修改并标记为待保存，停止修改一段时间后，
+ * 在异步线程中把这段时间内的所有修改合并为一次写入。写入先写到临时文件再原子替换 config.yml，
+ * 服务器在写入中途崩溃也不会留下半个文件。插件关闭时同步写出尚未保存的修改。</p>
+ *
+ * <p>修改配置、序列化配置和重载时替换整个配置对象都对同一把锁加锁，
+ * 序列化得到的是某一时刻的完整配置；耗时的磁盘写入在锁外进行。
+ * 尚未写出的修改按路径记录，重载替换配置时重新应用到新配置上，
+ * 重载读取文件之后才到达的修改不会随旧配置一起丢失。</p>
+ *
+ * @author await591
+ */
+public final class ConfigSaver {
+    /** 最后一次修改后等待的时间（毫秒），期间的后续修改合并到同一次写入 */
+    private static final long QUIET_MILLIS = 1000;
+
+    /** 插件主类实例 */
+    private final NoSpawnPlugin plugin;
+
+    /** 修改和序列化配置时持有的锁 */
+    private final Object configLock = new Object();
+
+    /** 写入文件时持有的锁，保证同一时间只有一次写入 */
+    private final Object writeLock = new Object();
+
+    /** 是否有尚未写入的修改（访问时对 configLock 加锁） */
+    private boolean dirty;
+
+    /** 尚未写入文件的修改，路径 → 新值（访问时对 configLock 加锁） */
+    private final Map<String, Object> unsaved = new LinkedHashMap<>();
+
+    /** 最后一次修改的时间（纳秒） */
+    private volatile long lastChange;
+
+    /** 等待中的写入任务（访问时对本对象加锁） */
+    private ScheduledTask pending;
+
+    /**
+     * 构造配置保存器
+     *
+     * @param plugin 插件主类实例
+     */
+    public ConfigSaver(NoSpawnPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * 修改一项配置并安排保存
+     *
+     * @param path 配置路径
+     * @param value 新值
+     */
+    public void set(String path, Object value) {
+        synchronized (configLock) {
+            plugin.getConfig().set(path, value);
+            unsaved.put(path, value);
+            dirty = true;
+        }
+        lastChange = System.nanoTime();
+        schedule(QUIET_MILLIS);
+    }
+
+    /**
+     * 在配置锁内替换插件的配置对象（重载应用新配置时调用）
+     *
+     * <p>与 {@link #set} 和序列化互斥。尚未写入文件的修改（重载读取文件之后才到达的）
+     * 先应用到新配置上，仍标记为待保存，之后的修改直接写入新配置。</p>
+     *
+     * @param loaded 新配置
+     * @param swap 替换配置的操作
+     */
+    public void replace(FileConfiguration loaded, Runnable swap) {
+        synchronized (configLock) {
+            for (Map.Entry<String, Object> change : unsaved.entrySet()) {
+                loaded.set(change.getKey(), change.getValue());
+            }
+            swap.run();
+        }
+    }
+
+    /**
+     * 立即在当前线程写出尚未保存的修改（插件关闭时调用）
+     */
+    public void flush() {
+        synchronized (this) {
+            if (pending != null) {
+                pending.cancel();
+                pending = null;
+            }
+        }
+        write();
+    }
+
+    /**
+     * 安排一次延迟写入，已有等待中的写入时不重复安排
+     *
+     * @param delayMillis 延迟（毫秒）
+     */
+    private synchronized void schedule(long delayMillis) {
+        if (pending != null || !plugin.isEnabled()) return;
+        pending = plugin.getServer().getAsyncScheduler().runDelayed(plugin, task -> onTimer(),
+                Math.max(1, delayMillis), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 延迟到期：距最后一次修改已足够久则写入，否则等到那时再检查
+     */
+    private void onTimer() {
+        synchronized (this) {
+            pending = null;
+        }
+        long quietFor = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastChange);
+        if (quietFor < QUIET_MILLIS) {
+            schedule(QUIET_MILLIS - quietFor);
+            return;
+        }
+        write();
+    }
+
+    /**
+     * 序列化当前配置并原子替换 config.yml
+     */
+    private void write() {
+        synchronized (writeLock) {
+            String yaml;
+            Map<String, Object> written;
+            synchronized (configLock) {
+                if (!dirty) return;
+                FileConfiguration config = plugin.getConfig();
+                yaml = config.saveToString();
+                dirty = false;
+                written = new LinkedHashMap<>(unsaved);
+                unsaved.clear();
+                // 以写出的内容为重载比较基准，文件监视不会把这次写入再应用一次
+                plugin.getConfigReloader().markApplied(config);
+            }
+
+            File file = ConfigReloader.configFile(plugin);
+            Path target = file.toPath();
+            Path temp = target.resolveSibling(file.getName() + ".tmp");
+            try {
+                Files.createDirectories(target.getParent());
+                Files.write(temp, yaml.getBytes(StandardCharsets.UTF_8));
+                try {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                plugin.getLogger().warning("保存 config.yml 失败，将在下次修改时重试: " + e.getMessage());
+                synchronized (configLock) {
+                    dirty = true;
+                    // 写入期间又修改过的路径以新值为准
+                    for (Map.Entry<String, Object> change : written.entrySet()) {
+                        unsaved.putIfAbsent(change.getKey(), change.getValue());
+                    }
+                }
+            }
+        }
+    }
+}
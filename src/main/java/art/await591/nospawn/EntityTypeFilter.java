@@ -0,0 +1,158 @@
+package art.await591.nospawn;
+
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Monster;
+
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * 实体类型过滤表
+ *
+ * <p>以 {@link EntityType#ordinal()} 为下标的布尔表，在加载配置时编译一次，
+ * 生成判定时只需一次数组读取即可确定该类型是否被阻止。实例不可变。</p>
+ *
+ * @author await591
+ */
+public final class EntityTypeFilter {
+    /** 所有实体类型（缓存 values() 的结果，避免重复分配） */
+    private static final EntityType[] TYPES = EntityType.values();
+
+    /** 阻止所有怪物（Monster）类型的过滤表 */
+    public static final EntityTypeFilter MONSTERS = new EntityTypeFilter(buildMonsterTable(), true);
+
+    /** 按类型序号索引：true表示阻止 */
+    private final boolean[] blocked;
+
+    /** 是否由 block-all-monsters 编译而来 */
+    private final boolean monstersOnly;
+
+    /** 是否阻止所有可生成的生物类型 */
+    private final boolean blocksAll;
+
+    private EntityTypeFilter(boolean[] blocked, boolean monstersOnly) {
+        this.blocked = blocked;
+        this.monstersOnly = monstersOnly;
+        this.blocksAll = coversAllLiving(blocked);
+    }
+
+    /**
+     * 编译实体类型过滤表
+     *
+     * @param blockAllMonsters 为true时阻止所有怪物，否则只阻止 blockedNames 中的类型
+     * @param blockedNames 要阻止的实体类型名称（blockAllMonsters为false时生效）
+     * @param allowedNames 无论如何都放行的实体类型名称
+     * @param logger 用于输出警告的日志器
+     * @return 过滤表
+     */
+    public static EntityTypeFilter compile(boolean blockAllMonsters, List<String> blockedNames,
+                                           List<String> allowedNames, Logger logger) {
+        boolean[] table;
+        if (blockAllMonsters) {
+            if (allowedNames.isEmpty()) return MONSTERS;
+            table = MONSTERS.blocked.clone();
+        } else {
+            table = new boolean[TYPES.length];
+            for (String name : blockedNames) {
+                EntityType type = parse(name, logger);
+                if (type != null) table[type.ordinal()] = true;
+            }
+        }
+        for (String name : allowedNames) {
+            EntityType type = parse(name, logger);
+            if (type != null) table[type.ordinal()] = false;
+        }
+        return new EntityTypeFilter(table, blockAllMonsters);
+    }
+
+    /**
+     * 判断实体类型是否被阻止
+     *
+     * @param typeOrdinal 实体类型序号
+     * @return 如果被阻止则返回true
+     */
+    public boolean isBlocked(int typeOrdinal) {
+        return blocked[typeOrdinal];
+    }
+
+    /**
+     * 判断实体类型是否被阻止
+     *
+     * @param type 实体类型
+     * @return 如果被阻止则返回true
+     */
+    public boolean isBlocked(EntityType type) {
+        return blocked[type.ordinal()];
+    }
+
+    /**
+     * 判断是否阻止所有可生成的生物类型（{@link EntityType#isAlive()} 且 {@link EntityType#isSpawnable()}）
+     *
+     * <p>只有这种过滤表才能确定一轮自然生成中的任何类型都会被阻止。
+     * 怪物过滤表不阻止恶魂、史莱姆、岩浆怪和动物。</p>
+     *
+     * @return 如果阻止所有生物类型则返回true
+     */
+    public boolean blocksAll() {
+        return blocksAll;
+    }
+
+    /**
+     * 获取被阻止的类型数量
+     *
+     * @return 类型数量
+     */
+    public int count() {
+        int count = 0;
+        for (boolean b : blocked) {
+            if (b) count++;
+        }
+        return count;
+    }
+
+    /**
+     * 获取过滤表的描述
+     *
+     * @return 描述字符串
+     */
+    public String describe() {
+        return (monstersOnly ? "阻止所有怪物" : "自定义阻止列表") + "（" + count() + " 种）";
+    }
+
+    /**
+     * 解析实体类型名称
+     */
+    private static EntityType parse(String name, Logger logger) {
+        try {
+            return EntityType.valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            logger.warning("未知的实体类型: " + name);
+            return null;
+        }
+    }
+
+    /**
+     * 检查过滤表是否覆盖所有可生成的生物类型
+     */
+    private static boolean coversAllLiving(boolean[] table) {
+        for (EntityType type : TYPES) {
+            if (type.isAlive() && type.isSpawnable() && !table[type.ordinal()]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 按实体类型序号预先计算是否为怪物
+     *
+     * @return 以 {@link EntityType#ordinal()} 为下标的怪物表
+     */
+    private static boolean[] buildMonsterTable() {
+        boolean[] table = new boolean[TYPES.length];
+        for (EntityType type : TYPES) {
+            Class<? extends Entity> entityClass = type.getEntityClass();
+            table[type.ordinal()] = entityClass != null && Monster.class.isAssignableFrom(entityClass);
+        }
+        return table;
+    }
+}
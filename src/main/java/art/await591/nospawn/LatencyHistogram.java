@@ -0,0 +1,194 @@
+package art.await591.nospawn;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 采样的纳秒延迟直方图
+ *
+ * <p>采用与 HdrHistogram 相同的对数-线性分桶：每个2的幂区间再等分为
+ * {@value #SUB_BUCKETS} 个子桶，相对误差不超过约6%，桶数固定，记录时无需分配。
+ * 每次调用都计数，但只有约 1/{@code sampleInterval} 的调用会读取时钟并计入直方图，
+ * 使热路径上的开销保持在一次随机数判断。</p>
+ *
+ * <p>用法：{@code long start = histogram.start(); ... histogram.stop(start);}</p>
+ *
+ * @author await591
+ */
+public final class LatencyHistogram {
+    /** 每个2的幂区间的子桶数（以位数表示） */
+    private static final int SUB_BUCKET_BITS = 4;
+
+    /** 每个2的幂区间的子桶数 */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /** 桶总数（覆盖到 Long.MAX_VALUE） */
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    /** 未采样标记 */
+    private static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+    /** 采样掩码（采样间隔-1） */
+    private final int sampleMask;
+
+    /** 各桶的计数 */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    /** 总调用次数（包括未采样的） */
+    private final LongAdder calls = new LongAdder();
+
+    /** 已采样次数 */
+    private final LongAdder samples = new LongAdder();
+
+    /** 已采样的总耗时（纳秒） */
+    private final LongAdder totalNanos = new LongAdder();
+
+    /**
+     * 构造直方图
+     *
+     * @param sampleInterval 采样间隔（向上取整为2的幂，1表示每次都记录）
+     */
+    public LatencyHistogram(int sampleInterval) {
+        this.sampleMask = LongObjectMap.tableSizeFor(Math.max(1, sampleInterval)) - 1;
+    }
+
+    /**
+     * 开始一次计时
+     *
+     * @return 起始时间，未被采样时返回标记值
+     */
+    public long start() {
+        calls.increment();
+        if ((ThreadLocalRandom.current().nextInt() & sampleMask) != 0) return NOT_SAMPLED;
+        return System.nanoTime();
+    }
+
+    /**
+     * 结束一次计时
+     *
+     * @param start {@link #start()} 的返回值
+     */
+    public void stop(long start) {
+        if (start == NOT_SAMPLED) return;
+        record(System.nanoTime() - start);
+    }
+
+    /**
+     * 直接记录一个样本
+     *
+     * @param nanos 耗时（纳秒）
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets.incrementAndGet(bucketIndex(value));
+        samples.increment();
+        totalNanos.add(value);
+    }
+
+    /**
+     * 获取总调用次数
+     *
+     * @return 调用次数
+     */
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    /**
+     * 获取已采样次数
+     *
+     * @return 采样次数
+     */
+    public long getSamples() {
+        return samples.sum();
+    }
+
+    /**
+     * 获取采样的平均耗时
+     *
+     * @return 平均耗时（纳秒），没有样本时返回0
+     */
+    public double getMeanNanos() {
+        long count = samples.sum();
+        return count == 0 ? 0 : (double) totalNanos.sum() / count;
+    }
+
+    /**
+     * 按采样结果估算所有调用的总耗时
+     *
+     * @return 估算的总耗时（纳秒）
+     */
+    public double getEstimatedTotalNanos() {
+        return getMeanNanos() * calls.sum();
+    }
+
+    /**
+     * 获取百分位数
+     *
+     * @param percentile 百分位（0-100）
+     * @return 该百分位所在桶的上界（纳秒），没有样本时返回0
+     */
+    public long getPercentile(double percentile) {
+        long total = 0;
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) return 0;
+
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= target) return bucketUpperBound(i);
+        }
+        return bucketUpperBound(BUCKET_COUNT - 1);
+    }
+
+    /**
+     * 获取采样到的最大耗时（所在桶的上界）
+     *
+     * @return 最大耗时（纳秒），没有样本时返回0
+     */
+    public long getMax() {
+        for (int i = BUCKET_COUNT - 1; i >= 0; i--) {
+            if (buckets.get(i) != 0) return bucketUpperBound(i);
+        }
+        return 0;
+    }
+
+    /**
+     * 清空所有记录
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        calls.reset();
+        samples.reset();
+        totalNanos.reset();
+    }
+
+    /**
+     * 计算值所在的桶：小于 SUB_BUCKETS 的值各占一个桶，其余按最高位分组后取接下来的 SUB_BUCKET_BITS 位
+     */
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * 计算桶所覆盖的最大值
+     */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        long upper = lower + (1L << shift) - 1;
+        return lower < 0 || upper < lower ? Long.MAX_VALUE : upper;
+    }
+}
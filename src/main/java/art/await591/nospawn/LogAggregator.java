@@ -0,0 +1,162 @@
+package art.await591.nospawn;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 日志聚合器
+ *
+ * <p>聚合模式下，被阻止的生成不逐条写入日志，而是在一个时间窗口内按
+ * （世界, 区块, 实体类型, 生成原因）累计次数，窗口结束时每个组合只输出一行，
+ * 例如 {@code ZOMBIE x412 在 world 区块 (3, -7) 的生成被阻止。原因: NATURAL}。</p>
+ *
+ * <p>计数与 {@link SpawnHeatmap} 一样保存在按区块段分片加锁的 {@link LongIntMap} 中，
+ * 键由区块坐标、实体类型序号和生成原因序号打包而成。窗口到期后由日志写入线程换出计数表，
+ * 把每个组合交给 {@link RowSink}，按日志格式写成文本或二进制记录。</p>
+ *
+ * @author await591
+ */
+public final class LogAggregator {
+    /** 打包键中生成原因序号所占的位数 */
+    private static final int REASON_BITS = 10;
+
+    /**
+     * 一个世界的计数
+     */
+    private static final class WorldCounts {
+        /** 世界编号（见 {@link LogWorlds}） */
+        final int index;
+
+        /** 分片计数表 */
+        final Stripe[] stripes = new Stripe[SpawnDensityLimiter.STRIPES];
+
+        WorldCounts(int index) {
+            this.index = index;
+            for (int i = 0; i < stripes.length; i++) {
+                stripes[i] = new Stripe();
+            }
+        }
+    }
+
+    /**
+     * 单个分片（访问时对其加锁）
+     */
+    private static final class Stripe {
+        /** 打包键 → 次数 */
+        LongIntMap counts = new LongIntMap();
+    }
+
+    /**
+     * 接收聚合计数的回调
+     */
+    @FunctionalInterface
+    interface RowSink {
+        /**
+         * 输出一个组合的次数
+         *
+         * @param time 窗口开始时间（毫秒）
+         * @param world 世界编号
+         * @param chunkX 区块X坐标
+         * @param chunkZ 区块Z坐标
+         * @param type 实体类型序号
+         * @param reason 生成原因序号
+         * @param count 次数
+         */
+        void row(long time, int world, int chunkX, int chunkZ, int type, int reason, int count);
+    }
+
+    /** 世界编号 → 计数 */
+    private final Map<Integer, WorldCounts> worlds = new ConcurrentHashMap<>();
+
+    /** 是否启用聚合 */
+    private volatile boolean enabled;
+
+    /** 窗口长度（毫秒） */
+    private volatile long windowMillis = 60_000;
+
+    /** 上次输出后是否有新的记录 */
+    private volatile boolean dirty;
+
+    /** 当前窗口的开始时间（毫秒，只在写入线程中使用） */
+    private long windowStart;
+
+    /**
+     * 更新配置
+     *
+     * @param enabled 是否启用聚合
+     * @param windowMillis 窗口长度（毫秒）
+     */
+    public void configure(boolean enabled, long windowMillis) {
+        this.windowMillis = Math.max(1000, windowMillis);
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 记录一次被阻止的生成（任意线程）
+     *
+     * @param world 世界编号
+     * @param chunkX 区块X坐标
+     * @param chunkZ 区块Z坐标
+     * @param typeOrdinal 实体类型序号
+     * @param reasonOrdinal 生成原因序号
+     */
+    public void record(int world, int chunkX, int chunkZ, int typeOrdinal, int reasonOrdinal) {
+        WorldCounts counts = worlds.get(world);
+        if (counts == null) {
+            counts = worlds.computeIfAbsent(world, WorldCounts::new);
+        }
+        Stripe stripe = counts.stripes[SpawnDensityLimiter.stripe(chunkX, chunkZ)];
+        long key = SpawnHeatmap.typeKey(chunkX, chunkZ, (typeOrdinal << REASON_BITS) | reasonOrdinal);
+        synchronized (stripe) {
+            stripe.counts.add(key, 1);
+        }
+        dirty = true;
+    }
+
+    /**
+     * 当前窗口到期（或聚合已关闭、强制输出）时输出累计的次数（只由写入线程调用）
+     *
+     * @param now 当前时间（毫秒）
+     * @param force 是否不等窗口到期立即输出（关闭时）
+     * @param sink 接收每个组合次数的回调
+     */
+    void flushIfDue(long now, boolean force, RowSink sink) {
+        long window = windowMillis;
+        if (windowStart == 0) windowStart = now - now % window;
+        boolean due = force || !enabled || now >= windowStart + window;
+        if (!due) return;
+
+        long start = windowStart;
+        windowStart = now - now % window;
+        if (!dirty) return;
+        dirty = false;
+
+        for (WorldCounts world : worlds.values()) {
+            // 换出每个分片的计数表，输出时不持有锁
+            List<long[]> rows = new ArrayList<>();
+            for (Stripe stripe : world.stripes) {
+                LongIntMap counts;
+                synchronized (stripe) {
+                    counts = stripe.counts;
+                    if (counts.size() == 0) continue;
+                    stripe.counts = new LongIntMap();
+                }
+                counts.forEach((key, count) -> rows.add(new long[]{key, count}));
+            }
+            rows.sort((a, b) -> Long.compare(b[1], a[1]));
+
+            for (long[] row : rows) {
+                long key = row[0];
+                int packed = SpawnHeatmap.typeKeyOrdinal(key);
+                sink.row(start, world.index, SpawnHeatmap.typeKeyChunkX(key), SpawnHeatmap.typeKeyChunkZ(key),
+                        packed >>> REASON_BITS, packed & ((1 << REASON_BITS) - 1), (int) row[1]);
+            }
+        }
+    }
+}
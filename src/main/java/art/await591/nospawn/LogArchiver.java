@@ -0,0 +1,316 @@
+package art.await591.nospawn;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 日志归档
+ *
+ * <p>在一个低优先级的后台线程中处理已经切换下来的日志文件：用gzip压缩（先写临时文件再改名），
+ * 然后按文件数、保存天数和总大小删除最旧的日志。日志写入线程只负责切换文件并通知这里，
+ * 不会因为压缩几个GB的文件而停下来。</p>
+ *
+ * <p>只处理日志目录中扩展名与日志文件相同的文件（{@code .log}、{@code .nsl} 及其 {@code .gz}），
+ * 正在写入的文件永远不会被压缩或删除；删除日志时一并删除它的索引（{@link LogIndex}）。</p>
+ *
+ * @author await591
+ */
+public final class LogArchiver {
+    /** 压缩文件的扩展名 */
+    static final String GZIP_EXTENSION = ".gz";
+
+    /** 压缩时使用的缓冲区大小 */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** 插件主类实例 */
+    private final NoSpawnPlugin plugin;
+
+    /** 后台线程 */
+    private final ExecutorService executor;
+
+    /** 是否正在关闭（用于中止进行中的压缩） */
+    private volatile boolean stopping;
+
+    /** 正在写入的日志文件 */
+    private volatile File active;
+
+    /** 日志目录 */
+    private volatile File directory;
+
+    /** 文本日志的扩展名（如 .log），没有扩展名时为null */
+    private volatile String textExtension;
+
+    /** 是否压缩切换下来的文件 */
+    private volatile boolean compress = true;
+
+    /** 最多保留的文件数（不含正在写入的文件），0表示不限 */
+    private volatile int maxFiles;
+
+    /** 最长保留时间（毫秒），0表示不限 */
+    private volatile long maxAgeMillis;
+
+    /** 所有日志的总大小上限（字节），0表示不限 */
+    private volatile long maxTotalBytes;
+
+    /**
+     * 构造日志归档器
+     *
+     * @param plugin 插件主类实例
+     */
+    public LogArchiver(NoSpawnPlugin plugin) {
+        this.plugin = plugin;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "NoSpawn-LogArchiver");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * 更新配置
+     *
+     * @param directory 日志目录
+     * @param textExtension 文本日志的扩展名，没有扩展名时为null
+     * @param compress 是否压缩切换下来的文件
+     * @param maxFiles 最多保留的文件数，0表示不限
+     * @param maxAgeMillis 最长保留时间（毫秒），0表示不限
+     * @param maxTotalBytes 总大小上限（字节），0表示不限
+     */
+    public void configure(File directory, String textExtension, boolean compress,
+                          int maxFiles, long maxAgeMillis, long maxTotalBytes) {
+        this.directory = directory;
+        this.textExtension = textExtension;
+        this.compress = compress;
+        this.maxFiles = Math.max(0, maxFiles);
+        this.maxAgeMillis = Math.max(0, maxAgeMillis);
+        this.maxTotalBytes = Math.max(0, maxTotalBytes);
+    }
+
+    /**
+     * 设置正在写入的日志文件（由写入线程在打开文件时调用）
+     *
+     * @param file 日志文件
+     */
+    void setActive(File file) {
+        this.active = file;
+    }
+
+    /**
+     * 处理一个刚切换下来的日志文件：压缩后执行保留策略
+     *
+     * @param file 日志文件
+     */
+    void rotated(File file) {
+        submit(() -> {
+            if (compress) compress(file);
+            enforceRetention();
+        });
+    }
+
+    /**
+     * 压缩今天之前遗留的未压缩日志（例如服务器崩溃时未处理的文件）并执行保留策略
+     */
+    public void sweep() {
+        submit(() -> {
+            deleteIncompleteArchives();
+            if (compress) {
+                long today = LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                for (File file : listLogs()) {
+                    if (stopping) return;
+                    if (!file.getName().endsWith(GZIP_EXTENSION) && file.lastModified() < today) {
+                        compress(file);
+                    }
+                }
+            }
+            enforceRetention();
+        });
+    }
+
+    /**
+     * 停止后台线程，中止进行中的压缩（未压缩完的文件保留原样，下次启动时再处理）
+     */
+    public void shutdown() {
+        stopping = true;
+        executor.shutdown();
+        try {
+            executor.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void submit(Runnable task) {
+        if (stopping) return;
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                plugin.getLogger().warning("处理旧日志时出错: " + e);
+            }
+        });
+    }
+
+    /**
+     * 获取同一名称下一个未被占用的编号文件（name.log → name.1.log、name.2.log...）
+     *
+     * @param file 日志文件
+     * @return 编号文件（它和对应的 .gz 文件都不存在）
+     */
+    static File segmentFile(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        for (int i = 1; ; i++) {
+            File segment = new File(file.getParentFile(), base + "." + i + extension);
+            if (!segment.exists() && !new File(segment.getPath() + GZIP_EXTENSION).exists()) {
+                return segment;
+            }
+        }
+    }
+
+    /**
+     * 用gzip压缩一个日志文件，成功后删除原文件
+     *
+     * @param file 日志文件
+     */
+    private void compress(File file) {
+        if (!file.isFile() || file.equals(active)) return;
+        File source = file;
+        File target = new File(source.getPath() + GZIP_EXTENSION);
+        if (target.exists()) {
+            // 同名的压缩文件已存在（例如同一天的文件被再次写入），改用下一个编号
+            File segment = segmentFile(source);
+            if (!source.renameTo(segment)) {
+                plugin.getLogger().warning("无法重命名日志文件 " + source.getName() + "，跳过压缩。");
+                return;
+            }
+            LogIndex.sidecar(source).renameTo(LogIndex.sidecar(segment));
+            source = segment;
+            target = new File(source.getPath() + GZIP_EXTENSION);
+        }
+
+        File temp = new File(target.getPath() + ".tmp");
+        byte[] buffer = new byte[BUFFER_SIZE];
+        boolean completed = false;
+        try (InputStream in = new FileInputStream(source);
+             OutputStream out = new GZIPOutputStream(new FileOutputStream(temp), BUFFER_SIZE)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                if (stopping) break;
+                out.write(buffer, 0, read);
+            }
+            completed = !stopping;
+        } catch (IOException e) {
+            plugin.getLogger().warning("压缩日志文件 " + source.getName() + " 失败: " + e.getMessage());
+        }
+
+        if (!completed || !temp.renameTo(target)) {
+            temp.delete();
+            return;
+        }
+        target.setLastModified(source.lastModified());
+        if (!source.delete()) {
+            plugin.getLogger().warning("无法删除已压缩的日志文件 " + source.getName());
+        }
+    }
+
+    /**
+     * 删除上次关闭时未压缩完的临时文件
+     */
+    private void deleteIncompleteArchives() {
+        File dir = directory;
+        File[] files = dir != null ? dir.listFiles() : null;
+        if (files == null) return;
+        for (File file : files) {
+            if (file.getName().endsWith(GZIP_EXTENSION + ".tmp")) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * 按文件数、保存天数和总大小删除最旧的日志
+     */
+    private void enforceRetention() {
+        int maxFiles = this.maxFiles;
+        long maxAge = this.maxAgeMillis;
+        long maxTotal = this.maxTotalBytes;
+        if (maxFiles == 0 && maxAge == 0 && maxTotal == 0) return;
+
+        File current = active;
+        List<File> files = listLogs();
+        files.sort(Comparator.comparingLong(File::lastModified).reversed());
+
+        long now = System.currentTimeMillis();
+        long total = current != null ? current.length() : 0;
+        int kept = 0;
+        int deleted = 0;
+        long freed = 0;
+        for (File file : files) {
+            long length = file.length();
+            boolean expired = (maxFiles > 0 && kept >= maxFiles)
+                    || (maxAge > 0 && now - file.lastModified() > maxAge)
+                    || (maxTotal > 0 && total + length > maxTotal);
+            if (!expired) {
+                kept++;
+                total += length;
+            } else if (file.delete()) {
+                LogIndex.sidecar(file).delete();
+                deleted++;
+                freed += length;
+            }
+        }
+        if (deleted > 0) {
+            plugin.getLogger().info("已删除 " + deleted + " 个旧日志文件，释放 " + (freed >> 20) + " MB。");
+        }
+    }
+
+    /**
+     * 列出日志目录中除正在写入的文件以外的日志文件
+     *
+     * @return 日志文件
+     */
+    private List<File> listLogs() {
+        List<File> logs = new ArrayList<>();
+        File dir = directory;
+        File[] files = dir != null ? dir.listFiles() : null;
+        if (files == null) return logs;
+        File current = active;
+        for (File file : files) {
+            if (file.isFile() && !file.equals(current) && isLog(file.getName(), textExtension)) {
+                logs.add(file);
+            }
+        }
+        return logs;
+    }
+
+    /**
+     * 检查文件名是否为日志文件（或其压缩文件）
+     *
+     * @param name 文件名
+     * @param textExtension 文本日志的扩展名，没有扩展名时为null
+     * @return 是日志文件时返回true
+     */
+    static boolean isLog(String name, String textExtension) {
+        if (name.endsWith(GZIP_EXTENSION)) {
+            name = name.substring(0, name.length() - GZIP_EXTENSION.length());
+        }
+        String extension = textExtension;
+        return name.endsWith(BinaryLog.EXTENSION) || (extension != null && name.endsWith(extension));
+    }
+}
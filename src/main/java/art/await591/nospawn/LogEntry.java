@@ -0,0 +1,193 @@
+package art.await591.nospawn;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * 一条待输出的日志（可复用）
+ *
+ * <p>写入线程和日志导出共用的中间形式：由队列槽位、聚合计数或二进制日志记录填入，
+ * 再交给 {@link LogTemplate} 生成文本。只使用名称字符串，不依赖服务端的枚举，
+ * 因此也能在服务器之外（{@link LogExporter#main}）使用。</p>
+ *
+ * @author await591
+ */
+public final class LogEntry implements LogTemplate.Source {
+    /** 日志条目中的时间格式 */
+    static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    /** 记录时间（毫秒），聚合日志为窗口开始时间 */
+    long time;
+
+    /** 世界名称 */
+    String world;
+
+    /** 方块X坐标，聚合日志为区块中心 */
+    int x;
+
+    /** 方块Y坐标，聚合日志没有 */
+    int y;
+
+    /** 方块Z坐标，聚合日志为区块中心 */
+    int z;
+
+    /** 实体类型名称 */
+    String type;
+
+    /** 生成原因名称 */
+    String reason;
+
+    /** 最近的玩家名称，没有则为null */
+    String player;
+
+    /** 次数（单条日志为1） */
+    int count;
+
+    /** 是否为聚合日志 */
+    boolean aggregate;
+
+    /** 缓存的时间文本所在的秒 */
+    private long cachedSecond = Long.MIN_VALUE;
+
+    /** 缓存的时间文本 */
+    private String cachedTime;
+
+    /**
+     * 填入一条被阻止的生成
+     */
+    void spawn(long time, String world, int x, int y, int z, String type, String reason, String player) {
+        this.time = time;
+        this.world = world;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.type = type;
+        this.reason = reason;
+        this.player = player;
+        this.count = 1;
+        this.aggregate = false;
+    }
+
+    /**
+     * 填入一行聚合计数
+     */
+    void aggregate(long time, String world, int chunkX, int chunkZ, String type, String reason, int count) {
+        this.time = time;
+        this.world = world;
+        this.x = (chunkX << 4) + 8;
+        this.y = 0;
+        this.z = (chunkZ << 4) + 8;
+        this.type = type;
+        this.reason = reason;
+        this.player = null;
+        this.count = count;
+        this.aggregate = true;
+    }
+
+    /**
+     * 复制一份（搜索结果需要保留条目，而写入和导出时的条目会被复用）
+     *
+     * @return 新的日志条目
+     */
+    LogEntry copy() {
+        LogEntry copy = new LogEntry();
+        copy.time = time;
+        copy.world = world;
+        copy.x = x;
+        copy.y = y;
+        copy.z = z;
+        copy.type = type;
+        copy.reason = reason;
+        copy.player = player;
+        copy.count = count;
+        copy.aggregate = aggregate;
+        return copy;
+    }
+
+    /**
+     * 获取时间文本（同一秒内复用上次的结果）
+     *
+     * @return HH:mm:ss
+     */
+    String formatTime() {
+        long second = Math.floorDiv(time, 1000);
+        if (second != cachedSecond) {
+            cachedSecond = second;
+            cachedTime = TIME_FORMAT.format(Instant.ofEpochMilli(time));
+        }
+        return cachedTime;
+    }
+
+    @Override
+    public void append(StringBuilder out, LogTemplate.Placeholder placeholder) {
+        switch (placeholder) {
+            case TIME:
+                out.append(formatTime());
+                break;
+            case WORLD:
+                out.append(world);
+                break;
+            case X:
+                out.append(x);
+                break;
+            case Y:
+                if (aggregate) {
+                    out.append('~');
+                } else {
+                    out.append(y);
+                }
+                break;
+            case Z:
+                out.append(z);
+                break;
+            case ENTITY:
+                out.append(type);
+                break;
+            case REASON:
+                out.append(reason);
+                break;
+            case CONTEXT:
+                if (!aggregate) appendContext(out, reason, player);
+                break;
+            case COUNT:
+                out.append(count);
+                break;
+            case CHUNK_X:
+                out.append(x >> 4);
+                break;
+            case CHUNK_Z:
+                out.append(z >> 4);
+                break;
+        }
+    }
+
+    /**
+     * 追加生成来源的上下文信息
+     *
+     * @param out 输出
+     * @param reason 生成原因名称
+     * @param player 最近的玩家名称，没有则为null
+     */
+    static void appendContext(StringBuilder out, String reason, String player) {
+        switch (reason) {
+            case "SPAWNER":
+                out.append(" [来源: 刷怪笼]");
+                break;
+            case "SPAWNER_EGG":
+                out.append(" [来源: 刷怪蛋]");
+                if (player != null) {
+                    out.append(" (最近玩家: ").append(player).append(')');
+                }
+                break;
+            case "BREEDING":
+                out.append(" [来源: 繁殖]");
+                break;
+            case "CUSTOM":
+                out.append(" [来源: 自定义/插件]");
+                break;
+            default:
+                break;
+        }
+    }
+}
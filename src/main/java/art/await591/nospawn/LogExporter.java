@@ -0,0 +1,156 @@
+package art.await591.nospawn;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 二进制日志导出工具
+ *
+ * <p>把 {@link BinaryLog} 格式的日志（也可以是 {@link LogArchiver} 压缩后的 {@code .nsl.gz}）
+ * 转换为文本（按日志格式逐行输出）或 CSV。
+ * 游戏内通过 {@code /ns log export} 在异步线程中调用；也可以在服务器之外单独运行：</p>
+ * <pre>
+ * java -cp NoSpawn.jar art.await591.nospawn.LogExporter &lt;输入.nsl|.nsl.gz&gt; [输出文件] [--csv]
+ * </pre>
+ *
+ * @author await591
+ */
+public final class LogExporter {
+    /** CSV中的时间格式 */
+    private static final DateTimeFormatter CSV_TIME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private LogExporter() {
+    }
+
+    /**
+     * 导出一个二进制日志文件
+     *
+     * @param input 二进制日志文件（.gz 时先解压）
+     * @param out 输出
+     * @param csv 是否导出为CSV（否则按日志格式输出文本）
+     * @param entryFormat 单条日志格式
+     * @param aggregateFormat 聚合日志格式
+     * @return 导出的记录数
+     * @throws IOException 读取或写入失败、文件损坏时（已导出的内容保留在输出中）
+     */
+    static long export(File input, Writer out, boolean csv, LogTemplate entryFormat, LogTemplate aggregateFormat)
+            throws IOException {
+        LogEntry entry = new LogEntry();
+        StringBuilder line = new StringBuilder(256);
+        long count = 0;
+        if (csv) {
+            out.write("time,world,x,y,z,chunk_x,chunk_z,entity_type,spawn_reason,count,player\n");
+        }
+        try (InputStream in = open(input); BinaryLog.Decoder decoder = new BinaryLog.Decoder(in)) {
+            while (decoder.next(entry)) {
+                line.setLength(0);
+                if (csv) {
+                    appendCsv(line, entry);
+                } else {
+                    (entry.aggregate ? aggregateFormat : entryFormat).render(line, entry);
+                }
+                line.append('\n');
+                out.append(line);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 打开日志文件，压缩文件自动解压
+     */
+    private static InputStream open(File input) throws IOException {
+        InputStream in = new FileInputStream(input);
+        if (!input.getName().endsWith(LogArchiver.GZIP_EXTENSION)) return in;
+        try {
+            return new GZIPInputStream(in, 64 * 1024);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 追加一行CSV
+     */
+    private static void appendCsv(StringBuilder out, LogEntry entry) {
+        out.append(CSV_TIME_FORMAT.format(Instant.ofEpochMilli(entry.time))).append(',')
+                .append(entry.world).append(',')
+                .append(entry.x).append(',');
+        if (!entry.aggregate) out.append(entry.y);
+        out.append(',').append(entry.z).append(',')
+                .append(entry.x >> 4).append(',')
+                .append(entry.z >> 4).append(',')
+                .append(entry.type).append(',')
+                .append(entry.reason).append(',')
+                .append(entry.count).append(',');
+        if (entry.player != null) out.append(entry.player);
+    }
+
+    /**
+     * 由输入文件名得到默认的输出文件
+     *
+     * @param input 二进制日志文件
+     * @param directory 输出目录
+     * @param csv 是否导出为CSV
+     * @return 输出文件
+     */
+    static File outputFile(File input, File directory, boolean csv) {
+        String name = input.getName();
+        if (name.endsWith(LogArchiver.GZIP_EXTENSION)) {
+            name = name.substring(0, name.length() - LogArchiver.GZIP_EXTENSION.length());
+        }
+        if (name.endsWith(BinaryLog.EXTENSION)) {
+            name = name.substring(0, name.length() - BinaryLog.EXTENSION.length());
+        }
+        return new File(directory, name + (csv ? ".csv" : ".txt"));
+    }
+
+    /**
+     * 在服务器之外导出二进制日志（使用默认的日志格式）
+     *
+     * @param args 输入文件、可选的输出文件和 --csv
+     */
+    public static void main(String[] args) {
+        boolean csv = false;
+        File input = null;
+        File output = null;
+        for (String arg : args) {
+            if (arg.equalsIgnoreCase("--csv")) {
+                csv = true;
+            } else if (input == null) {
+                input = new File(arg);
+            } else if (output == null) {
+                output = new File(arg);
+            }
+        }
+        if (input == null) {
+            System.err.println("用法: java -cp NoSpawn.jar art.await591.nospawn.LogExporter <输入.nsl> [输出文件] [--csv]");
+            System.exit(2);
+            return;
+        }
+        if (output == null) {
+            output = outputFile(input, input.getAbsoluteFile().getParentFile(), csv);
+        }
+
+        try (Writer out = Files.newBufferedWriter(output.toPath(), StandardCharsets.UTF_8)) {
+            long count = export(input, out, csv, LogTemplate.compile(LogTemplate.DEFAULT_ENTRY_FORMAT),
+                    LogTemplate.compile(LogTemplate.DEFAULT_AGGREGATE_FORMAT));
+            System.out.println("已导出 " + count + " 条记录到 " + output.getPath());
+        } catch (IOException e) {
+            System.err.println("导出失败: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
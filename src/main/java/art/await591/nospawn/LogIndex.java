@@ -0,0 +1,417 @@
+package art.await591.nospawn;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 日志的旁路索引
+ *
+ * <p>每个日志文件旁有一个 {@code .idx} 文件（压缩后仍对应原文件名，例如 {@code 2024-01-01.log.gz}
+ * 的索引为 {@code 2024-01-01.log.idx}）。写入线程把日志按 {@value #BUCKET_MILLIS} 毫秒分桶，
+ * 每个桶结束时追加一条索引：桶在日志文件中的字节范围、时间范围、记录数，以及桶内出现过的
+ * 实体类型和（世界, 区块），即按桶组织的类型与区块倒排表。</p>
+ *
+ * <p>搜索时先读索引，只定位时间、类型和区块都可能匹配的桶，再直接跳到这些字节范围读取日志，
+ * 不需要从头扫描整个文件。二进制日志在每个桶开头写一个同步块（绝对时间），
+ * 索引另外记录每次打开文件时会话块的位置，因此每个桶都能单独解码。</p>
+ *
+ * @author await591
+ */
+public final class LogIndex {
+    /** 每个桶的时间跨度（毫秒） */
+    static final long BUCKET_MILLIS = 60_000;
+
+    /** 索引文件的扩展名 */
+    static final String EXTENSION = ".idx";
+
+    /** 文件头 */
+    private static final byte[] MAGIC = {'N', 'S', 'L', 'I'};
+
+    /** 格式版本 */
+    private static final int VERSION = 1;
+
+    /** 条目类型：会话（打开日志文件） */
+    private static final int SESSION = 1;
+
+    /** 条目类型：桶 */
+    private static final int BUCKET = 2;
+
+    private LogIndex() {
+    }
+
+    /**
+     * 获取日志文件对应的索引文件
+     *
+     * @param log 日志文件（可以是 .gz）
+     * @return 索引文件
+     */
+    static File sidecar(File log) {
+        String name = log.getName();
+        if (name.endsWith(LogArchiver.GZIP_EXTENSION)) {
+            name = name.substring(0, name.length() - LogArchiver.GZIP_EXTENSION.length());
+        }
+        return new File(log.getParentFile(), name + EXTENSION);
+    }
+
+    /**
+     * 一个桶的索引
+     */
+    static final class Bucket {
+        /** 桶在日志文件中的起始字节 */
+        long offset;
+
+        /** 桶在日志文件中的结束字节 */
+        long end;
+
+        /** 所属会话块的位置（二进制日志） */
+        long session;
+
+        /** 最早的记录时间（毫秒） */
+        long firstTime;
+
+        /** 最晚的记录时间（毫秒） */
+        long lastTime;
+
+        /** 记录数 */
+        int count;
+
+        /** 出现过的世界名称 */
+        String[] worlds;
+
+        /** 出现过的实体类型名称 */
+        String[] types;
+
+        /** 出现过的区块：每个元素为 {@link SpawnHeatmap#typeKey}（世界为 worlds 中的下标） */
+        long[] chunks;
+
+        /**
+         * 检查桶内是否可能有匹配的记录
+         *
+         * @param query 搜索条件
+         * @return 可能有匹配时返回true
+         */
+        boolean matches(LogSearch.Query query) {
+            if (lastTime < query.from || firstTime > query.to) return false;
+            if (query.type != null && !Arrays.asList(types).contains(query.type)) return false;
+            if (query.world == null) return true;
+            int world = Arrays.asList(worlds).indexOf(query.world);
+            if (world < 0) return false;
+            for (long key : chunks) {
+                if (SpawnHeatmap.typeKeyOrdinal(key) == world
+                        && query.containsChunk(SpawnHeatmap.typeKeyChunkX(key), SpawnHeatmap.typeKeyChunkZ(key))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 读取到的索引
+     */
+    static final class Contents {
+        /** 按位置排列的桶 */
+        final List<Bucket> buckets = new ArrayList<>();
+
+        /** 按位置排列的会话块位置 */
+        final List<Long> sessions = new ArrayList<>();
+
+        /**
+         * 获取最后一个索引桶之后的位置（其后的日志尚未建立索引）
+         */
+        long indexedEnd() {
+            return buckets.isEmpty() ? 0 : buckets.get(buckets.size() - 1).end;
+        }
+
+        /**
+         * 获取不晚于某位置的最后一个会话块位置
+         *
+         * @return 会话块位置，没有时返回-1
+         */
+        long sessionBefore(long offset) {
+            long result = -1;
+            for (long session : sessions) {
+                if (session <= offset) result = session;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 写入端：累计当前桶的内容（只在写入线程中使用）
+     */
+    static final class Builder {
+        /** 实体类型名称，按序号排列 */
+        private final String[] typeNames;
+
+        /** 日志的世界编号表 */
+        private final LogWorlds worlds;
+
+        /** 出现过的（区块, 世界编号） */
+        private final LongIntMap chunks = new LongIntMap();
+
+        /** 出现过的实体类型序号 */
+        private long[] types;
+
+        /** 当前桶是否已开始 */
+        private boolean open;
+
+        /** 当前桶的起始字节 */
+        private long offset;
+
+        /** 当前会话块的位置 */
+        private long session;
+
+        /** 当前桶的开始时间（毫秒） */
+        private long start;
+
+        /** 最早的记录时间 */
+        private long firstTime;
+
+        /** 最晚的记录时间 */
+        private long lastTime;
+
+        /** 记录数 */
+        private int count;
+
+        Builder(String[] typeNames, LogWorlds worlds) {
+            this.typeNames = typeNames;
+            this.worlds = worlds;
+            this.types = new long[(typeNames.length + 63) >>> 6];
+        }
+
+        /**
+         * 当前桶是否已开始
+         */
+        boolean isOpen() {
+            return open;
+        }
+
+        /**
+         * 当前桶在该时间是否已到期
+         */
+        boolean isDue(long time) {
+            return open && (time >= start + BUCKET_MILLIS || time < start);
+        }
+
+        /**
+         * 开始一个新桶
+         *
+         * @param offset 桶在日志文件中的起始字节
+         * @param session 当前会话块的位置
+         * @param time 第一条记录的时间（毫秒）
+         */
+        void begin(long offset, long session, long time) {
+            this.open = true;
+            this.offset = offset;
+            this.session = session;
+            this.start = time - Math.floorMod(time, BUCKET_MILLIS);
+            this.firstTime = time;
+            this.lastTime = time;
+            this.count = 0;
+            this.chunks.clear();
+            Arrays.fill(types, 0);
+        }
+
+        /**
+         * 记录一条日志
+         */
+        void add(long time, int world, int chunkX, int chunkZ, int type) {
+            firstTime = Math.min(firstTime, time);
+            lastTime = Math.max(lastTime, time);
+            count++;
+            chunks.add(SpawnHeatmap.typeKey(chunkX, chunkZ, world), 1);
+            if (type >= 0 && type < typeNames.length) {
+                types[type >>> 6] |= 1L << type;
+            }
+        }
+
+        /**
+         * 放弃当前桶（日志文件写入失败时，桶的字节范围已不可信）
+         */
+        void discard() {
+            open = false;
+        }
+
+        /**
+         * 结束当前桶，追加到索引文件
+         *
+         * @param end 桶在日志文件中的结束字节
+         * @param index 索引文件
+         */
+        void finish(long end, File index) throws IOException {
+            open = false;
+            if (count == 0) return;
+
+            // 世界编号换成桶内的下标，名称随桶一起保存
+            Map<Integer, Integer> localWorlds = new HashMap<>();
+            List<String> worldNames = new ArrayList<>();
+            long[] keys = new long[chunks.size()];
+            int[] n = {0};
+            chunks.forEach((key, value) -> {
+                int world = SpawnHeatmap.typeKeyOrdinal(key);
+                Integer local = localWorlds.get(world);
+                if (local == null) {
+                    local = worldNames.size();
+                    localWorlds.put(world, local);
+                    worldNames.add(worlds.name(world));
+                }
+                keys[n[0]++] = SpawnHeatmap.typeKey(SpawnHeatmap.typeKeyChunkX(key), SpawnHeatmap.typeKeyChunkZ(key), local);
+            });
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + keys.length * 6);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(BUCKET);
+            writeVarlong(out, offset);
+            writeVarlong(out, end - offset);
+            writeVarlong(out, session);
+            out.writeLong(firstTime);
+            writeVarlong(out, lastTime - firstTime);
+            writeVarlong(out, count);
+            writeVarlong(out, worldNames.size());
+            for (String name : worldNames) {
+                out.writeUTF(name);
+            }
+            int typeCount = 0;
+            for (long bits : types) {
+                typeCount += Long.bitCount(bits);
+            }
+            writeVarlong(out, typeCount);
+            for (int i = 0; i < typeNames.length; i++) {
+                if ((types[i >>> 6] & (1L << i)) != 0) out.writeUTF(typeNames[i]);
+            }
+            writeVarlong(out, keys.length);
+            for (long key : keys) {
+                writeVarlong(out, SpawnHeatmap.typeKeyOrdinal(key));
+                writeZigzag(out, SpawnHeatmap.typeKeyChunkX(key));
+                writeZigzag(out, SpawnHeatmap.typeKeyChunkZ(key));
+            }
+            append(index, bytes.toByteArray());
+        }
+    }
+
+    /**
+     * 在索引文件中记录一个会话块的位置
+     *
+     * @param index 索引文件
+     * @param offset 会话块在日志文件中的位置
+     */
+    static void appendSession(File index, long offset) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(SESSION);
+        writeVarlong(out, offset);
+        append(index, bytes.toByteArray());
+    }
+
+    /**
+     * 追加一条条目，新文件先写文件头
+     */
+    private static void append(File index, byte[] entry) throws IOException {
+        boolean empty = index.length() == 0;
+        try (OutputStream out = new FileOutputStream(index, true)) {
+            if (empty) {
+                out.write(MAGIC);
+                out.write(VERSION);
+            }
+            out.write(entry);
+        }
+    }
+
+    /**
+     * 读取索引文件
+     *
+     * @param index 索引文件
+     * @return 索引内容（最后一条条目不完整时忽略它）
+     * @throws IOException 不是索引文件或读取失败时
+     */
+    static Contents read(File index) throws IOException {
+        Contents contents = new Contents();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(index)))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC) || in.readUnsignedByte() != VERSION) {
+                throw new IOException("不是NoSpawn日志索引: " + index.getName());
+            }
+            while (true) {
+                int kind = in.read();
+                if (kind < 0) break;
+                if (kind == SESSION) {
+                    contents.sessions.add(readVarlong(in));
+                    continue;
+                }
+                if (kind != BUCKET) throw new IOException("日志索引已损坏: " + index.getName());
+                Bucket bucket = new Bucket();
+                bucket.offset = readVarlong(in);
+                bucket.end = bucket.offset + readVarlong(in);
+                bucket.session = readVarlong(in);
+                bucket.firstTime = in.readLong();
+                bucket.lastTime = bucket.firstTime + readVarlong(in);
+                bucket.count = (int) readVarlong(in);
+                bucket.worlds = new String[readLength(in)];
+                for (int i = 0; i < bucket.worlds.length; i++) {
+                    bucket.worlds[i] = in.readUTF();
+                }
+                bucket.types = new String[readLength(in)];
+                for (int i = 0; i < bucket.types.length; i++) {
+                    bucket.types[i] = in.readUTF();
+                }
+                bucket.chunks = new long[readLength(in)];
+                for (int i = 0; i < bucket.chunks.length; i++) {
+                    int world = (int) readVarlong(in);
+                    bucket.chunks[i] = SpawnHeatmap.typeKey(readZigzag(in), readZigzag(in), world);
+                }
+                contents.buckets.add(bucket);
+            }
+        } catch (EOFException e) {
+            // 写入时被中断，忽略最后一条不完整的条目
+        }
+        return contents;
+    }
+
+    private static void writeVarlong(DataOutputStream out, long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    private static void writeZigzag(DataOutputStream out, int v) throws IOException {
+        writeVarlong(out, ((v << 1) ^ (v >> 31)) & 0xFFFFFFFFL);
+    }
+
+    private static long readVarlong(DataInputStream in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("日志索引已损坏（整数编码过长）");
+    }
+
+    private static int readLength(DataInputStream in) throws IOException {
+        long length = readVarlong(in);
+        if (length > 1 << 22) throw new IOException("日志索引已损坏（长度 " + length + "）");
+        return (int) length;
+    }
+
+    private static int readZigzag(DataInputStream in) throws IOException {
+        int v = (int) readVarlong(in);
+        return (v >>> 1) ^ -(v & 1);
+    }
+}
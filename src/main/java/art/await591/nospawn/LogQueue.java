@@ -0,0 +1,314 @@
+package art.await591.nospawn;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 有界无锁日志队列
+ *
+ * <p>固定容量的环形缓冲区，槽位在构造时全部预分配，入队只把原始字段（时间、世界编号、坐标、
+ * 枚举序号）复制进槽位，不为每条日志分配任务对象、链表节点或字符串；文本由写入线程生成。多个线程可以同时入队，由日志写入线程出队。</p>
+ *
+ * <p>每个槽位带一个序号：序号等于入队位置时槽位空闲，等于位置+1时已写好可读，
+ * 读完后设为位置+容量，交还给下一轮的入队者（Vyukov 有界队列）。入队和出队各用一次CAS
+ * 争夺位置，队列满时按 {@link OverflowPolicy} 处理，并分别计数丢弃的日志。</p>
+ *
+ * @author await591
+ */
+public final class LogQueue {
+    /** 丢弃最旧日志时最多尝试的次数，仍失败则丢弃新日志 */
+    private static final int EVICT_ATTEMPTS = 4;
+
+    /**
+     * 队列满时的处理方式
+     */
+    public enum OverflowPolicy {
+        /** 丢弃新的日志 */
+        DROP_NEWEST,
+        /** 丢弃队列中最旧的日志，为新日志腾出位置 */
+        DROP_OLDEST,
+        /** 队列超过3/4容量后按比例采样，满时丢弃新的日志 */
+        SAMPLE;
+
+        /**
+         * 从字符串解析处理方式
+         *
+         * @param name 名称
+         * @return 处理方式，解析失败时返回null
+         */
+        public static OverflowPolicy fromString(String name) {
+            try {
+                return valueOf(name.toUpperCase().replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 预分配的槽位
+     */
+    static final class Slot {
+        /** 记录时间（毫秒） */
+        long time;
+
+        /** 世界编号（见 {@link LogWorlds}） */
+        int world;
+
+        /** 方块X坐标 */
+        int x;
+
+        /** 方块Y坐标 */
+        int y;
+
+        /** 方块Z坐标 */
+        int z;
+
+        /** 实体类型序号 */
+        int type;
+
+        /** 生成原因序号 */
+        int reason;
+
+        /** 最近的玩家名称（刷怪蛋生成时），没有则为null */
+        String player;
+    }
+
+    /**
+     * 出队时处理槽位的回调（槽位在回调返回后即被复用，不能保留引用）
+     */
+    @FunctionalInterface
+    interface Reader {
+        /**
+         * 处理一条日志
+         *
+         * @param slot 槽位
+         */
+        void read(Slot slot);
+    }
+
+    /** 预分配的槽位 */
+    private final Slot[] slots;
+
+    /** 每个槽位的序号 */
+    private final AtomicLongArray sequences;
+
+    /** 容量掩码（容量-1） */
+    private final int mask;
+
+    /** 下一个入队位置 */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** 下一个出队位置 */
+    private final AtomicLong head = new AtomicLong();
+
+    /** 采样计数 */
+    private final AtomicLong sampleCounter = new AtomicLong();
+
+    /** 因队列满丢弃的新日志数 */
+    private final LongAdder droppedNewest = new LongAdder();
+
+    /** 为新日志腾出位置而丢弃的旧日志数 */
+    private final LongAdder droppedOldest = new LongAdder();
+
+    /** 采样时跳过的日志数 */
+    private final LongAdder sampledOut = new LongAdder();
+
+    /** 队列满时的处理方式 */
+    private volatile OverflowPolicy policy;
+
+    /** 采样比例：每多少条保留一条 */
+    private volatile int sampleRate;
+
+    /**
+     * 构造日志队列
+     *
+     * @param capacity 容量（向上取整为2的幂）
+     * @param policy 队列满时的处理方式
+     * @param sampleRate 采样比例
+     */
+    public LogQueue(int capacity, OverflowPolicy policy, int sampleRate) {
+        int size = Integer.highestOneBit(Math.max(2, Math.min(1 << 24, capacity) * 2 - 1));
+        this.slots = new Slot[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        configure(policy, sampleRate);
+    }
+
+    /**
+     * 更改队列满时的处理方式
+     *
+     * @param policy 处理方式
+     * @param sampleRate 采样比例
+     */
+    public void configure(OverflowPolicy policy, int sampleRate) {
+        this.policy = policy;
+        this.sampleRate = Math.max(1, sampleRate);
+    }
+
+    /**
+     * 入队一条日志（任意线程）
+     *
+     * @param time 记录时间（毫秒）
+     * @param world 世界编号
+     * @param x 方块X坐标
+     * @param y 方块Y坐标
+     * @param z 方块Z坐标
+     * @param type 实体类型序号
+     * @param reason 生成原因序号
+     * @param player 最近的玩家名称，没有则为null
+     * @return 如果日志进入队列则返回true
+     */
+    public boolean offer(long time, int world, int x, int y, int z, int type, int reason, String player) {
+        OverflowPolicy current = policy;
+        if (current == OverflowPolicy.SAMPLE && size() >= (slots.length >> 2) * 3
+                && sampleCounter.getAndIncrement() % sampleRate != 0) {
+            sampledOut.increment();
+            return false;
+        }
+
+        int evictions = 0;
+        while (true) {
+            long pos = tail.get();
+            int i = (int) pos & mask;
+            long seq = sequences.get(i);
+            if (seq == pos) {
+                if (!tail.compareAndSet(pos, pos + 1)) continue;
+                Slot slot = slots[i];
+                slot.time = time;
+                slot.world = world;
+                slot.x = x;
+                slot.y = y;
+                slot.z = z;
+                slot.type = type;
+                slot.reason = reason;
+                slot.player = player;
+                sequences.set(i, pos + 1);
+                return true;
+            }
+            if (seq > pos) continue; // 其他入队者已占用该位置，重新读取
+
+            // 队列已满
+            if (current == OverflowPolicy.DROP_OLDEST && evictions++ < EVICT_ATTEMPTS) {
+                evictOldest();
+                continue;
+            }
+            droppedNewest.increment();
+            return false;
+        }
+    }
+
+    /**
+     * 出队最多 max 条日志，依次交给 reader（只由写入线程调用）
+     *
+     * @param reader 处理每条日志的回调
+     * @param max 最多出队的条数
+     * @return 出队的条数
+     */
+    public int drain(Reader reader, int max) {
+        int count = 0;
+        while (count < max) {
+            long pos = head.get();
+            int i = (int) pos & mask;
+            if (sequences.get(i) != pos + 1) break; // 空，或入队者还没写完
+            if (!head.compareAndSet(pos, pos + 1)) continue; // 被丢弃最旧日志的入队者抢先
+            Slot slot = slots[i];
+            reader.read(slot);
+            slot.player = null;
+            sequences.set(i, pos + slots.length);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 丢弃队首的日志，把槽位交还给入队者
+     */
+    private void evictOldest() {
+        long pos = head.get();
+        int i = (int) pos & mask;
+        if (sequences.get(i) != pos + 1 || !head.compareAndSet(pos, pos + 1)) return;
+        slots[i].player = null;
+        sequences.set(i, pos + slots.length);
+        droppedOldest.increment();
+    }
+
+    /**
+     * 检查队列是否为空
+     *
+     * @return 如果没有可读的日志则返回true
+     */
+    public boolean isEmpty() {
+        long pos = head.get();
+        return sequences.get((int) pos & mask) != pos + 1;
+    }
+
+    /**
+     * 获取队列中的日志数（近似值）
+     *
+     * @return 日志数
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(slots.length, size));
+    }
+
+    /**
+     * 获取队列容量
+     *
+     * @return 预分配的槽位数量
+     */
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * 获取队列满时的处理方式
+     *
+     * @return 溢出处理方式
+     */
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * 获取因队列满丢弃的新日志数
+     *
+     * @return 丢弃数
+     */
+    public long getDroppedNewest() {
+        return droppedNewest.sum();
+    }
+
+    /**
+     * 获取为新日志腾出位置而丢弃的旧日志数
+     *
+     * @return 丢弃数
+     */
+    public long getDroppedOldest() {
+        return droppedOldest.sum();
+    }
+
+    /**
+     * 获取采样时跳过的日志数
+     *
+     * @return 跳过数
+     */
+    public long getSampledOut() {
+        return sampledOut.sum();
+    }
+
+    /**
+     * 获取丢弃的日志总数
+     *
+     * @return 丢弃的新日志、旧日志和采样跳过的日志之和
+     */
+    public long getDropped() {
+        return getDroppedNewest() + getDroppedOldest() + getSampledOut();
+    }
+}
@@ -0,0 +1,542 @@
+package art.await591.nospawn;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 日志搜索
+ *
+ * <p>按时间范围、实体类型和区域（世界 + 中心 + 半径）搜索日志目录中的文本和二进制日志（包括压缩后的文件）。
+ * 先读每个文件的 {@link LogIndex}，只读取可能匹配的桶所在的字节范围；索引之后尚未建立索引的部分
+ * （正在写入的桶、服务器崩溃前的最后一段）按顺序扫描。文本日志按日志格式生成的正则表达式取回各字段，
+ * 格式修改前写入的行无法识别，只计数不返回。</p>
+ *
+ * <p>不依赖服务端，在异步线程中调用。</p>
+ *
+ * @author await591
+ */
+public final class LogSearch {
+    /** 读取时使用的缓冲区大小 */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private LogSearch() {
+    }
+
+    /**
+     * 搜索条件
+     */
+    static final class Query {
+        /** 开始时间（毫秒，含） */
+        final long from;
+
+        /** 结束时间（毫秒，含） */
+        final long to;
+
+        /** 实体类型名称，不限时为null */
+        final String type;
+
+        /** 世界名称，不限区域时为null */
+        final String world;
+
+        /** 区域中心的方块X坐标 */
+        final int centerX;
+
+        /** 区域中心的方块Z坐标 */
+        final int centerZ;
+
+        /** 区域半径（方块） */
+        final int radius;
+
+        /**
+         * 构造搜索条件
+         *
+         * @param from 开始时间（毫秒）
+         * @param to 结束时间（毫秒）
+         * @param type 实体类型名称，不限时为null
+         * @param world 世界名称，不限区域时为null
+         * @param centerX 区域中心的方块X坐标
+         * @param centerZ 区域中心的方块Z坐标
+         * @param radius 区域半径（方块）
+         */
+        Query(long from, long to, String type, String world, int centerX, int centerZ, int radius) {
+            this.from = from;
+            this.to = to;
+            this.type = type;
+            this.world = world;
+            this.centerX = centerX;
+            this.centerZ = centerZ;
+            this.radius = radius;
+        }
+
+        /**
+         * 检查区块是否与区域相交
+         *
+         * @param chunkX 区块X坐标
+         * @param chunkZ 区块Z坐标
+         * @return 区块中离中心最近的方块在半径内时返回true
+         */
+        boolean containsChunk(int chunkX, int chunkZ) {
+            long minX = (long) chunkX << 4;
+            long minZ = (long) chunkZ << 4;
+            long dx = Math.max(0, Math.max(minX - centerX, centerX - (minX + 15)));
+            long dz = Math.max(0, Math.max(minZ - centerZ, centerZ - (minZ + 15)));
+            return dx * dx + dz * dz <= (long) radius * radius;
+        }
+
+        /**
+         * 检查一条日志是否匹配
+         *
+         * @param entry 日志条目
+         * @return 匹配时返回true
+         */
+        boolean matches(LogEntry entry) {
+            if (entry.time < from || entry.time > to) return false;
+            if (type != null && !type.equals(entry.type)) return false;
+            if (world == null) return true;
+            if (!world.equals(entry.world)) return false;
+            if (entry.aggregate) return containsChunk(entry.x >> 4, entry.z >> 4);
+            long dx = entry.x - centerX;
+            long dz = entry.z - centerZ;
+            return dx * dx + dz * dz <= (long) radius * radius;
+        }
+    }
+
+    /**
+     * 搜索结果
+     */
+    static final class Result {
+        /** 匹配的日志，按文件和写入顺序排列 */
+        final List<LogEntry> entries = new ArrayList<>();
+
+        /** 匹配数超过上限，后面的结果未返回 */
+        boolean truncated;
+
+        /** 搜索过的文件数 */
+        int files;
+
+        /** 没有索引、整个扫描的文件数 */
+        int unindexed;
+
+        /** 读取的桶数 */
+        int bucketsRead;
+
+        /** 索引中的桶总数 */
+        int bucketsTotal;
+
+        /** 无法按当前日志格式识别的文本行数 */
+        int unparsed;
+    }
+
+    /**
+     * 搜索日志目录
+     *
+     * @param directory 日志目录
+     * @param textExtension 文本日志的扩展名，没有扩展名时为null
+     * @param entryFormat 单条日志格式（用于识别文本日志）
+     * @param aggregateFormat 聚合日志格式（用于识别文本日志）
+     * @param query 搜索条件
+     * @param limit 最多返回的结果数
+     * @return 搜索结果
+     * @throws IOException 读取失败时
+     */
+    static Result search(File directory, String textExtension, LogTemplate entryFormat, LogTemplate aggregateFormat,
+                         Query query, int limit) throws IOException {
+        Result result = new Result();
+        File[] files = directory.listFiles();
+        if (files == null) return result;
+
+        List<File> logs = new ArrayList<>();
+        for (File file : files) {
+            // 最后修改时间早于开始时间的文件中不会有匹配的日志
+            if (file.isFile() && LogArchiver.isLog(file.getName(), textExtension) && file.lastModified() >= query.from) {
+                logs.add(file);
+            }
+        }
+        logs.sort(Comparator.comparingLong(File::lastModified));
+
+        Searcher searcher = new Searcher(query, limit, result,
+                entryFormat.toPattern(), aggregateFormat.toPattern());
+        for (File log : logs) {
+            if (result.truncated) break;
+            result.files++;
+            searcher.search(log);
+        }
+        return result;
+    }
+
+    /**
+     * 搜索单个文件
+     */
+    private static final class Searcher {
+        private final Query query;
+        private final int limit;
+        private final Result result;
+        private final Pattern entryPattern;
+        private final Pattern aggregatePattern;
+
+        /** 解码用的日志条目（复用同一个实例） */
+        private final LogEntry entry = new LogEntry();
+
+        Searcher(Query query, int limit, Result result, Pattern entryPattern, Pattern aggregatePattern) {
+            this.query = query;
+            this.limit = limit;
+            this.result = result;
+            this.entryPattern = entryPattern;
+            this.aggregatePattern = aggregatePattern;
+        }
+
+        void search(File log) throws IOException {
+            boolean compressed = log.getName().endsWith(LogArchiver.GZIP_EXTENSION);
+            File indexFile = LogIndex.sidecar(log);
+            boolean binary = indexFile.getName().endsWith(BinaryLog.EXTENSION + LogIndex.EXTENSION);
+            boolean indexed = indexFile.isFile();
+            LogIndex.Contents index = indexed ? LogIndex.read(indexFile) : new LogIndex.Contents();
+            if (index.buckets.isEmpty()) {
+                // 没有索引（旧版本写入的文件）或有索引但还没有结束的桶：整个文件按顺序扫描。
+                // 二进制日志带有完整的时间；文本日志只有时分秒，以文件的最后修改日期为日期
+                if (!indexed) result.unindexed++;
+                try (InputStream in = open(log)) {
+                    if (binary) {
+                        try (BinaryLog.Decoder decoder = new BinaryLog.Decoder(in)) {
+                            decode(decoder);
+                        }
+                    } else {
+                        scanText(in, log.lastModified());
+                    }
+                }
+                return;
+            }
+
+            try (LogReader reader = new LogReader(log)) {
+                BinaryLog.Decoder session = null;
+                long sessionOffset = -1;
+                for (LogIndex.Bucket bucket : index.buckets) {
+                    if (result.truncated) return;
+                    result.bucketsTotal++;
+                    if (!bucket.matches(query)) continue;
+                    result.bucketsRead++;
+                    if (binary && bucket.session != sessionOffset) {
+                        reader.skipTo(bucket.session);
+                        session = BinaryLog.Decoder.session(reader);
+                        sessionOffset = bucket.session;
+                    }
+                    reader.skipTo(bucket.offset);
+                    byte[] bytes = reader.read(bucket.end - bucket.offset);
+                    if (binary) {
+                        decode(new BinaryLog.Decoder(new ByteArrayInputStream(bytes), session));
+                    } else {
+                        scanText(bytes, bytes.length, bucket.firstTime);
+                    }
+                }
+
+                // 索引之后的部分（压缩文件已完整切换，写入时的最后一个桶一定已结束）
+                if (compressed || result.truncated) return;
+                long start = index.indexedEnd();
+                if (log.length() <= start) return;
+                reader.skipTo(start);
+                if (binary) {
+                    long tailSession = index.sessionBefore(start);
+                    if (tailSession < 0) return;
+                    if (tailSession != sessionOffset) {
+                        reader.skipTo(tailSession);
+                        session = BinaryLog.Decoder.session(reader);
+                        reader.skipTo(start);
+                    }
+                    decode(new BinaryLog.Decoder(reader, session));
+                } else {
+                    byte[] bytes = reader.read(log.length() - start);
+                    scanText(bytes, bytes.length, log.lastModified());
+                }
+            }
+        }
+
+        /**
+         * 解码二进制日志记录并收集匹配的结果
+         */
+        private void decode(BinaryLog.Decoder decoder) throws IOException {
+            while (!result.truncated && decoder.next(entry)) {
+                collect();
+            }
+        }
+
+        /**
+         * 按行识别文本日志并收集匹配的结果
+         *
+         * @param bytes 文本（UTF-8）
+         * @param length 有效长度
+         * @param day 用于确定日期的时间（毫秒），行中只有时分秒
+         */
+        private void scanText(byte[] bytes, int length, long day) {
+            LocalDate date = LocalDate.ofInstant(Instant.ofEpochMilli(day), ZoneId.systemDefault());
+            int start = 0;
+            for (int i = 0; i <= length && !result.truncated; i++) {
+                if (i < length && bytes[i] != '\n') continue;
+                int end = i > start && bytes[i - 1] == '\r' ? i - 1 : i;
+                if (end > start) {
+                    scanLine(new String(bytes, start, end - start, StandardCharsets.UTF_8), date, day);
+                }
+                start = i + 1;
+            }
+        }
+
+        /**
+         * 逐行读取整个文本日志并收集匹配的结果（不把整个文件读入内存）
+         *
+         * @param in 文本（UTF-8）
+         * @param day 用于确定日期的时间（毫秒），行中只有时分秒
+         */
+        private void scanText(InputStream in, long day) throws IOException {
+            LocalDate date = LocalDate.ofInstant(Instant.ofEpochMilli(day), ZoneId.systemDefault());
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE);
+            String line;
+            while (!result.truncated && (line = reader.readLine()) != null) {
+                if (!line.isEmpty()) scanLine(line, date, day);
+            }
+        }
+
+        /**
+         * 识别一行文本，匹配时加入结果，无法识别时计数
+         */
+        private void scanLine(String line, LocalDate date, long day) {
+            if (parseLine(line, date, day)) {
+                collect();
+            } else {
+                result.unparsed++;
+            }
+        }
+
+        /**
+         * 按日志格式识别一行文本，填入 entry
+         *
+         * @return 识别成功时返回true
+         */
+        private boolean parseLine(String line, LocalDate date, long day) {
+            Matcher matcher = entryPattern.matcher(line);
+            boolean aggregate = false;
+            if (!matcher.matches()) {
+                matcher = aggregatePattern.matcher(line);
+                if (!matcher.matches()) return false;
+                aggregate = true;
+            }
+            String text = group(matcher, LogTemplate.Placeholder.TIME);
+            long time = day;
+            if (text != null) {
+                try {
+                    time = LocalDateTime.of(date, LocalTime.parse(text))
+                            .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                } catch (DateTimeParseException e) {
+                    return false;
+                }
+            }
+            String world = group(matcher, LogTemplate.Placeholder.WORLD);
+            String type = group(matcher, LogTemplate.Placeholder.ENTITY);
+            String reason = group(matcher, LogTemplate.Placeholder.REASON);
+            if (aggregate) {
+                Integer chunkX = number(matcher, LogTemplate.Placeholder.CHUNK_X);
+                Integer chunkZ = number(matcher, LogTemplate.Placeholder.CHUNK_Z);
+                if (chunkX == null || chunkZ == null) {
+                    Integer x = number(matcher, LogTemplate.Placeholder.X);
+                    Integer z = number(matcher, LogTemplate.Placeholder.Z);
+                    chunkX = x != null ? x >> 4 : null;
+                    chunkZ = z != null ? z >> 4 : null;
+                }
+                Integer count = number(matcher, LogTemplate.Placeholder.COUNT);
+                if (chunkX == null || chunkZ == null) {
+                    // 没有坐标，不能按区域过滤
+                    if (query.world != null) return false;
+                    chunkX = 0;
+                    chunkZ = 0;
+                }
+                entry.aggregate(time, world, chunkX, chunkZ, type, reason, count != null ? count : 1);
+            } else {
+                Integer x = number(matcher, LogTemplate.Placeholder.X);
+                Integer y = number(matcher, LogTemplate.Placeholder.Y);
+                Integer z = number(matcher, LogTemplate.Placeholder.Z);
+                if ((x == null || z == null) && query.world != null) return false;
+                entry.spawn(time, world, x != null ? x : 0, y != null ? y : 0, z != null ? z : 0, type, reason, null);
+            }
+            return true;
+        }
+
+        /**
+         * 匹配的日志加入结果，超过上限时停止
+         */
+        private void collect() {
+            if (!query.matches(entry)) return;
+            if (result.entries.size() >= limit) {
+                result.truncated = true;
+                return;
+            }
+            result.entries.add(entry.copy());
+        }
+
+        private static String group(Matcher matcher, LogTemplate.Placeholder placeholder) {
+            try {
+                return matcher.group(LogTemplate.group(placeholder));
+            } catch (IllegalArgumentException e) {
+                // 格式中没有该占位符
+                return null;
+            }
+        }
+
+        private static Integer number(Matcher matcher, LogTemplate.Placeholder placeholder) {
+            String text = group(matcher, placeholder);
+            if (text == null || text.equals("~")) return null;
+            try {
+                return Integer.valueOf(text);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 打开日志文件，压缩文件自动解压
+     */
+    private static InputStream open(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        if (!file.getName().endsWith(LogArchiver.GZIP_EXTENSION)) return in;
+        try {
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 可以跳到指定位置的日志读取器
+     *
+     * <p>未压缩的文件直接跳过中间的字节；压缩文件只能顺序解压，向前跳时重新打开文件。
+     * 索引中的桶按位置排列，因此通常只需要向后跳。</p>
+     */
+    private static final class LogReader extends FilterInputStream {
+        private final File file;
+
+        /** 当前位置（解压后的字节） */
+        private long position;
+
+        LogReader(File file) throws IOException {
+            super(LogSearch.open(file));
+            this.file = file;
+        }
+
+        void skipTo(long offset) throws IOException {
+            if (offset < position) {
+                in.close();
+                in = LogSearch.open(file);
+                position = 0;
+            }
+            while (position < offset) {
+                long skipped = in.skip(offset - position);
+                if (skipped <= 0) {
+                    if (in.read() < 0) throw new EOFException("日志索引与日志文件不一致（位置超出文件）");
+                    skipped = 1;
+                }
+                position += skipped;
+            }
+        }
+
+        byte[] read(long length) throws IOException {
+            if (length < 0 || length > Integer.MAX_VALUE - 8) {
+                throw new IOException("日志索引已损坏（桶长度 " + length + "）");
+            }
+            byte[] bytes = new byte[(int) length];
+            int n = 0;
+            while (n < bytes.length) {
+                int read = in.read(bytes, n, bytes.length - n);
+                if (read < 0) break;
+                n += read;
+            }
+            position += n;
+            return n == bytes.length ? bytes : Arrays.copyOf(bytes, n);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) position++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) position += n;
+            return n;
+        }
+    }
+
+    /**
+     * 解析搜索的时间参数
+     *
+     * <p>支持：{@code now}；相对时间 {@code -45s}、{@code -30m}、{@code -2h}、{@code -1d}；
+     * 今天的 {@code HH:mm[:ss]}；{@code yyyy-MM-dd}（作为开始时间是当天零点，作为结束时间是当天结束）；
+     * {@code yyyy-MM-ddTHH:mm[:ss]}。</p>
+     *
+     * @param text 时间参数
+     * @param now 当前时间（毫秒）
+     * @param end 是否为结束时间
+     * @return 时间（毫秒），无法识别时返回-1
+     */
+    static long parseTime(String text, long now, boolean end) {
+        ZoneId zone = ZoneId.systemDefault();
+        if (text.equalsIgnoreCase("now")) return now;
+        try {
+            if (text.length() >= 3 && text.charAt(0) == '-') {
+                long amount = Long.parseLong(text.substring(1, text.length() - 1));
+                long unit;
+                switch (Character.toLowerCase(text.charAt(text.length() - 1))) {
+                    case 's':
+                        unit = 1000L;
+                        break;
+                    case 'm':
+                        unit = 60_000L;
+                        break;
+                    case 'h':
+                        unit = 3_600_000L;
+                        break;
+                    case 'd':
+                        unit = 86_400_000L;
+                        break;
+                    default:
+                        return -1;
+                }
+                if (amount < 0 || amount > Long.MAX_VALUE / unit) return -1;
+                return now - amount * unit;
+            }
+            if (text.indexOf('T') > 0) {
+                return LocalDateTime.parse(text).atZone(zone).toInstant().toEpochMilli();
+            }
+            if (text.indexOf(':') > 0) {
+                LocalDate today = LocalDate.ofInstant(Instant.ofEpochMilli(now), zone);
+                return LocalDateTime.of(today, LocalTime.parse(text)).atZone(zone).toInstant().toEpochMilli();
+            }
+            LocalDate date = LocalDate.parse(text);
+            return (end ? date.plusDays(1) : date).atStartOfDay(zone).toInstant().toEpochMilli() - (end ? 1 : 0);
+        } catch (NumberFormatException | DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package art.await591.nospawn;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 预编译的日志格式
+ *
+ * <p>在加载配置时把 {@code entry-format} 这类格式字符串拆成“文字 + 占位符”的片段，
+ * 输出时按片段顺序追加到 {@link StringBuilder}，不再对每条日志做一串 {@code String.replace}。
+ * 无法识别的 {@code {...}} 原样保留。</p>
+ *
+ * @author await591
+ */
+public final class LogTemplate {
+    /** 默认的单条日志格式 */
+    static final String DEFAULT_ENTRY_FORMAT =
+            "[{TIME}] {ENTITY} 在 {WORLD} ({X}, {Y}, {Z}) 的生成被阻止。原因: {REASON}{CONTEXT}";
+
+    /** 默认的聚合日志格式 */
+    static final String DEFAULT_AGGREGATE_FORMAT =
+            "[{TIME}] {ENTITY} x{COUNT} 在 {WORLD} 区块 ({CHUNK_X}, {CHUNK_Z}) 的生成被阻止。原因: {REASON}";
+
+    /**
+     * 支持的占位符
+     */
+    public enum Placeholder {
+        /** 时间 */
+        TIME,
+        /** 世界名称 */
+        WORLD,
+        /** X坐标 */
+        X,
+        /** Y坐标 */
+        Y,
+        /** Z坐标 */
+        Z,
+        /** 实体类型 */
+        ENTITY,
+        /** 生成原因 */
+        REASON,
+        /** 上下文信息（来源、最近玩家） */
+        CONTEXT,
+        /** 聚合次数 */
+        COUNT,
+        /** 区块X坐标 */
+        CHUNK_X,
+        /** 区块Z坐标 */
+        CHUNK_Z
+    }
+
+    /**
+     * 提供占位符取值的回调
+     */
+    @FunctionalInterface
+    interface Source {
+        /**
+         * 把占位符的值追加到输出
+         *
+         * @param out 输出
+         * @param placeholder 占位符
+         */
+        void append(StringBuilder out, Placeholder placeholder);
+    }
+
+    /** 文字片段：literals[i] 位于 placeholders[i] 之前，最后一个是结尾的文字 */
+    private final String[] literals;
+
+    /** 占位符片段 */
+    private final Placeholder[] placeholders;
+
+    private LogTemplate(String[] literals, Placeholder[] placeholders) {
+        this.literals = literals;
+        this.placeholders = placeholders;
+    }
+
+    /**
+     * 编译格式字符串
+     *
+     * @param format 格式字符串
+     * @return 编译后的格式
+     */
+    public static LogTemplate compile(String format) {
+        List<String> literals = new ArrayList<>();
+        List<Placeholder> placeholders = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < format.length()) {
+            char c = format.charAt(i);
+            int end = c == '{' ? format.indexOf('}', i + 1) : -1;
+            Placeholder placeholder = end > 0 ? parse(format.substring(i + 1, end)) : null;
+            if (placeholder == null) {
+                literal.append(c);
+                i++;
+                continue;
+            }
+            literals.add(literal.toString());
+            placeholders.add(placeholder);
+            literal.setLength(0);
+            i = end + 1;
+        }
+        literals.add(literal.toString());
+        return new LogTemplate(literals.toArray(new String[0]), placeholders.toArray(new Placeholder[0]));
+    }
+
+    /**
+     * 解析占位符名称
+     *
+     * @return 占位符，不认识时返回null
+     */
+    private static Placeholder parse(String name) {
+        for (Placeholder placeholder : Placeholder.values()) {
+            if (placeholder.name().equals(name)) return placeholder;
+        }
+        return null;
+    }
+
+    /**
+     * 检查格式中是否使用了某个占位符
+     *
+     * @param placeholder 占位符
+     * @return 如果使用了则返回true
+     */
+    public boolean uses(Placeholder placeholder) {
+        for (Placeholder used : placeholders) {
+            if (used == placeholder) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 生成匹配该格式输出的正则表达式，用于从文本日志中取回各占位符的值
+     *
+     * <p>每个占位符是一个命名分组（名称为占位符名去掉下划线），重复出现的占位符用反向引用。</p>
+     *
+     * @return 正则表达式
+     */
+    Pattern toPattern() {
+        StringBuilder regex = new StringBuilder("^");
+        EnumSet<Placeholder> seen = EnumSet.noneOf(Placeholder.class);
+        for (int i = 0; i < placeholders.length; i++) {
+            if (!literals[i].isEmpty()) regex.append(Pattern.quote(literals[i]));
+            Placeholder placeholder = placeholders[i];
+            if (seen.add(placeholder)) {
+                regex.append("(?<").append(group(placeholder)).append('>').append(valuePattern(placeholder)).append(')');
+            } else {
+                regex.append("\\k<").append(group(placeholder)).append('>');
+            }
+        }
+        String last = literals[placeholders.length];
+        if (!last.isEmpty()) regex.append(Pattern.quote(last));
+        return Pattern.compile(regex.append('$').toString());
+    }
+
+    /**
+     * 获取占位符在正则表达式中的分组名
+     *
+     * @param placeholder 占位符
+     * @return 分组名
+     */
+    static String group(Placeholder placeholder) {
+        return placeholder.name().replace("_", "");
+    }
+
+    /**
+     * 获取占位符的值的正则表达式
+     */
+    private static String valuePattern(Placeholder placeholder) {
+        switch (placeholder) {
+            case TIME:
+                return "\\d{2}:\\d{2}:\\d{2}";
+            case X:
+            case Y:
+            case Z:
+                return "-?\\d+|~";
+            case COUNT:
+                return "\\d+";
+            case CHUNK_X:
+            case CHUNK_Z:
+                return "-?\\d+";
+            case ENTITY:
+            case REASON:
+                return "[A-Z0-9_]+";
+            case CONTEXT:
+                return ".*?";
+            default:
+                return ".+?";
+        }
+    }
+
+    /**
+     * 按格式输出一行
+     *
+     * @param out 输出
+     * @param source 占位符的取值
+     */
+    void render(StringBuilder out, Source source) {
+        for (int i = 0; i < placeholders.length; i++) {
+            out.append(literals[i]);
+            source.append(out, placeholders[i]);
+        }
+        out.append(literals[placeholders.length]);
+    }
+}
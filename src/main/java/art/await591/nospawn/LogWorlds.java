@@ -0,0 +1,64 @@
+package art.await591.nospawn;
+
+import org.bukkit.World;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 日志的世界编号表
+ *
+ * <p>排队的日志只记录世界编号，由写入线程在输出时换回世界名称。
+ * 编号按世界第一次出现的顺序分配，插件运行期间不变；名称数组写时复制，读取无需加锁。</p>
+ *
+ * @author await591
+ */
+public final class LogWorlds {
+    /** 世界UID → 编号 */
+    private final Map<UUID, Integer> indexes = new ConcurrentHashMap<>();
+
+    /** 编号 → 世界名称 */
+    private volatile String[] names = new String[0];
+
+    /**
+     * 获取世界的编号，第一次出现时分配
+     *
+     * @param world 世界
+     * @return 编号
+     */
+    public int indexOf(World world) {
+        Integer index = indexes.get(world.getUID());
+        if (index != null) return index;
+        synchronized (this) {
+            index = indexes.get(world.getUID());
+            if (index != null) return index;
+            String[] grown = Arrays.copyOf(names, names.length + 1);
+            grown[names.length] = world.getName();
+            names = grown;
+            indexes.put(world.getUID(), names.length - 1);
+            return names.length - 1;
+        }
+    }
+
+    /**
+     * 获取编号对应的世界名称
+     *
+     * @param index 编号
+     * @return 世界名称
+     */
+    public String name(int index) {
+        String[] current = names;
+        return index >= 0 && index < current.length ? current[index] : "#" + index;
+    }
+
+    /**
+     * 获取所有已编号的世界名称
+     *
+     * @return 按编号排列的世界名称
+     */
+    public String[] names() {
+        return names;
+    }
+}
@@ -0,0 +1,660 @@
+package art.await591.nospawn;
+
+import org.bukkit.entity.EntityType;
+import org.bukkit.event.entity.CreatureSpawnEvent;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 日志文件写入线程
+ *
+ * <p>在独立线程中从 {@link LogQueue} 批量取出排队的日志，按预编译的 {@link LogTemplate}
+ * 生成文本后写入当天的日志文件；使用二进制格式时不生成文本，直接编码为 {@link BinaryLog} 记录。
+ * 当天的文件一直保持打开，
+ * 只有日期变化（或日志目录、文件名格式被重载）时才关闭并切换到新文件。
+ * 写入先进入缓冲区，累计达到 {@value #FLUSH_BYTES} 字节或距上次刷新超过
+ * {@value #FLUSH_INTERVAL_MILLIS} 毫秒时一次写入磁盘（组提交），
+ * 而不是每条日志都打开、写入、关闭一次文件。</p>
+ *
+ * <p>文件超过 {@code logging.rotation.max-file-size-mb} 时也会切换：当前文件改名为下一个编号
+ * （{@code name.1.log}、{@code name.2.log}...），再重新打开原文件名。按日期或大小切换下来的文件
+ * 交给 {@link LogArchiver} 在后台压缩和清理。</p>
+ *
+ * <p>写入时按 {@value LogIndex#BUCKET_MILLIS} 毫秒分桶建立 {@link LogIndex} 旁路索引，
+ * 每个桶结束时（新记录超出桶的时间范围，或写入线程空闲时桶已到期）先刷新文件，再把桶的字节范围、
+ * 时间范围、实体类型和区块追加到索引文件，供 {@link LogSearch} 直接定位。</p>
+ *
+ * <p>启用聚合模式时，写入线程还负责在每个窗口结束时输出 {@link LogAggregator} 累计的日志行。</p>
+ *
+ * <p>队列为空时写入线程休眠，入队者只在它休眠时唤醒它。队列满而丢弃日志时，
+ * 每分钟最多在控制台警告一次。</p>
+ *
+ * @author await591
+ */
+public final class LogWriter {
+    /** 每批最多取出的日志行数 */
+    private static final int MAX_BATCH = 512;
+
+    /** 缓冲区大小，也是触发刷新的累计字节数 */
+    private static final int FLUSH_BYTES = 64 * 1024;
+
+    /** 缓冲内容最长保留时间（毫秒） */
+    private static final long FLUSH_INTERVAL_MILLIS = 1000;
+
+    /** 丢弃日志警告的最短间隔（毫秒） */
+    private static final long DROP_WARNING_INTERVAL_MILLIS = 60_000;
+
+    /** 实体类型名称，按序号排列 */
+    private static final String[] TYPE_NAMES = names(EntityType.values());
+
+    /** 生成原因名称，按序号排列 */
+    private static final String[] REASON_NAMES = names(CreatureSpawnEvent.SpawnReason.values());
+
+    /** 插件主类实例 */
+    private final NoSpawnPlugin plugin;
+
+    /** 待写入的日志 */
+    private final LogQueue queue;
+
+    /** 出队回调（复用同一个实例） */
+    private final LogQueue.Reader slotWriter = this::write;
+
+    /** 日志聚合器 */
+    private final LogAggregator aggregator;
+
+    /** 聚合计数的回调（复用同一个实例） */
+    private final LogAggregator.RowSink rowWriter = this::writeRow;
+
+    /** 日志的世界编号表 */
+    private final LogWorlds worlds;
+
+    /** 日志归档器 */
+    private final LogArchiver archiver;
+
+    /** 单个文件的大小上限（字节），0表示不限 */
+    private volatile long maxFileBytes;
+
+    /** 单条日志格式 */
+    private volatile LogTemplate template = LogTemplate.compile("");
+
+    /** 聚合日志格式 */
+    private volatile LogTemplate aggregateTemplate = LogTemplate.compile("");
+
+    /** 是否同时输出到控制台 */
+    private volatile boolean consoleOutput;
+
+    /** 写入线程 */
+    private final Thread thread;
+
+    /** 是否继续接收日志 */
+    private volatile boolean running = true;
+
+    /** 写入线程是否正在（或即将）休眠 */
+    private volatile boolean sleeping;
+
+    /** 日志目录 */
+    private volatile File directory;
+
+    /** 日志文件名格式（只在写入线程中使用） */
+    private volatile SimpleDateFormat fileNameFormat;
+
+    /** 是否使用二进制格式 */
+    private volatile boolean binary;
+
+    /** 目录、文件名格式或文件格式已更改，写入下一条前重新打开文件 */
+    private volatile boolean reopen;
+
+    // 以下字段只由写入线程访问
+
+    /** 当前打开的日志文件，未打开时为null */
+    private File currentFile;
+
+    /** 当前日志文件的输出流 */
+    private CountingStream stream;
+
+    /** 当前文件达到多少字节时按大小切换 */
+    private long rotateAt = Long.MAX_VALUE;
+
+    /** 当前日志文件的文本写入器（二进制格式时为null） */
+    private Writer out;
+
+    /** 二进制记录的编码缓冲区 */
+    private final BinaryLog.Encoder encoder = new BinaryLog.Encoder(FLUSH_BYTES);
+
+    /** 下一次检查日期切换的时间（下一天零点，毫秒） */
+    private long nextRollover;
+
+    /** 上次刷新以来写入文本写入器的字节数（按UTF-8编码计算） */
+    private int unflushed;
+
+    /** 上次刷新后文件的大小；文本写入器在缓冲区满时会自行写出一部分，写出的部分不再算作未刷新 */
+    private long flushedCount;
+
+    /** 上次刷新的时间（毫秒） */
+    private long lastFlush;
+
+    /** 上次打开文件是否失败（避免每条日志都输出同样的警告） */
+    private boolean openFailed;
+
+    /** 上次警告时的丢弃总数 */
+    private long reportedDrops;
+
+    /** 上次警告丢弃的时间（毫秒） */
+    private long lastDropWarning;
+
+    /** 当前桶的索引 */
+    private final LogIndex.Builder index;
+
+    /** 当前日志文件的索引文件 */
+    private File indexFile;
+
+    /** 当前会话块在日志文件中的位置（二进制格式） */
+    private long sessionOffset;
+
+    /** 上次写入索引是否失败（避免重复警告） */
+    private boolean indexFailed;
+
+    /** 生成文本用的日志条目（复用同一个实例） */
+    private final LogEntry entry = new LogEntry();
+
+    /** 生成文本用的缓冲区 */
+    private final StringBuilder line = new StringBuilder(256);
+
+    /**
+     * 统计写入字节数的文件输出流
+     */
+    private static final class CountingStream extends FilterOutputStream {
+        /** 文件的当前大小（字节） */
+        long count;
+
+        CountingStream(OutputStream out, long count) {
+            super(out);
+            this.count = count;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /**
+     * 构造日志文件写入器并启动写入线程
+     *
+     * @param plugin 插件主类实例
+     * @param directory 日志目录
+     * @param fileNameFormat 日志文件名格式
+     * @param binary 是否使用二进制格式
+     * @param queue 待写入的日志队列
+     * @param aggregator 日志聚合器
+     * @param worlds 日志的世界编号表
+     * @param archiver 日志归档器
+     */
+    public LogWriter(NoSpawnPlugin plugin, File directory, SimpleDateFormat fileNameFormat, boolean binary,
+                     LogQueue queue, LogAggregator aggregator, LogWorlds worlds, LogArchiver archiver) {
+        this.plugin = plugin;
+        this.queue = queue;
+        this.aggregator = aggregator;
+        this.worlds = worlds;
+        this.archiver = archiver;
+        this.directory = directory;
+        this.fileNameFormat = fileNameFormat;
+        this.binary = binary;
+        this.index = new LogIndex.Builder(TYPE_NAMES, worlds);
+        this.thread = new Thread(this::run, "NoSpawn-LogWriter");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * 更改日志目录、文件名格式和文件格式，从下一条日志开始生效
+     *
+     * @param directory 日志目录
+     * @param fileNameFormat 日志文件名格式
+     * @param binary 是否使用二进制格式
+     */
+    public void configure(File directory, SimpleDateFormat fileNameFormat, boolean binary) {
+        this.directory = directory;
+        this.fileNameFormat = fileNameFormat;
+        this.binary = binary;
+        this.reopen = true;
+    }
+
+    /**
+     * 更改单个文件的大小上限，从下一条日志开始对当前文件生效
+     *
+     * @param maxFileBytes 大小上限（字节），0表示只按日期切换
+     */
+    public void setMaxFileSize(long maxFileBytes) {
+        this.maxFileBytes = Math.max(0, maxFileBytes);
+        this.reopen = true;
+    }
+
+    /**
+     * 更改日志格式和控制台输出，从下一条日志开始生效
+     *
+     * @param template 单条日志格式
+     * @param aggregateTemplate 聚合日志格式
+     * @param consoleOutput 是否同时输出到控制台
+     */
+    public void setFormat(LogTemplate template, LogTemplate aggregateTemplate, boolean consoleOutput) {
+        this.template = template;
+        this.aggregateTemplate = aggregateTemplate;
+        this.consoleOutput = consoleOutput;
+    }
+
+    /**
+     * 提交一条日志（任意线程，只复制原始字段）
+     *
+     * @param time 记录时间（毫秒）
+     * @param world 世界编号
+     * @param x 方块X坐标
+     * @param y 方块Y坐标
+     * @param z 方块Z坐标
+     * @param type 实体类型序号
+     * @param reason 生成原因序号
+     * @param player 最近的玩家名称，没有则为null
+     */
+    public void submit(long time, int world, int x, int y, int z, int type, int reason, String player) {
+        if (!running) return;
+        if (queue.offer(time, world, x, y, z, type, reason, player) && sleeping) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * 获取待写入的日志队列
+     *
+     * @return 日志队列
+     */
+    public LogQueue getQueue() {
+        return queue;
+    }
+
+    /**
+     * 停止接收日志，等待写入线程写完队列中的日志并关闭文件
+     *
+     * @param timeoutMillis 最长等待时间（毫秒）
+     */
+    public void shutdown(long timeoutMillis) {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            plugin.getLogger().warning("日志写入线程未完全结束，部分日志可能未写入。");
+        }
+    }
+
+    /**
+     * 写入线程主循环：取出一批日志写入缓冲区，按大小或时间刷新，队列为空时休眠
+     */
+    private void run() {
+        while (true) {
+            int drained = queue.drain(slotWriter, MAX_BATCH);
+            long now = System.currentTimeMillis();
+            aggregator.flushIfDue(now, false, rowWriter);
+            if (index.isDue(now)) finishBucket();
+            int pending = pending();
+            if (pending >= FLUSH_BYTES || (pending > 0 && now - lastFlush >= FLUSH_INTERVAL_MILLIS)) {
+                flush();
+            }
+            warnDrops(now);
+            if (drained > 0) continue;
+            if (!running) break;
+
+            // 先声明休眠再检查队列，入队者发布后检查该标志，不会错过唤醒
+            sleeping = true;
+            if (queue.isEmpty() && running) {
+                long wait = pending() > 0
+                        ? Math.max(1, lastFlush + FLUSH_INTERVAL_MILLIS - now)
+                        : FLUSH_INTERVAL_MILLIS;
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(wait));
+            }
+            sleeping = false;
+        }
+        queue.drain(slotWriter, Integer.MAX_VALUE);
+        aggregator.flushIfDue(System.currentTimeMillis(), true, rowWriter);
+        close();
+    }
+
+    /**
+     * 距上次警告足够久且有新的丢弃时，在控制台警告一次
+     *
+     * @param now 当前时间（毫秒）
+     */
+    private void warnDrops(long now) {
+        if (now - lastDropWarning < DROP_WARNING_INTERVAL_MILLIS) return;
+        long dropped = queue.getDropped();
+        if (dropped == reportedDrops) return;
+        plugin.getLogger().warning("日志写入跟不上拦截速度，已丢弃 " + (dropped - reportedDrops) +
+                " 条日志（队列容量 " + queue.getCapacity() + "，处理方式 " + queue.getPolicy() + "）。");
+        reportedDrops = dropped;
+        lastDropWarning = now;
+    }
+
+    /**
+     * 将一条日志写入缓冲区，必要时先切换文件
+     *
+     * @param slot 队列槽位
+     */
+    private void write(LogQueue.Slot slot) {
+        if (prepare(slot.time)) {
+            indexRecord(slot.time, slot.world, slot.x >> 4, slot.z >> 4, slot.type);
+        }
+        if (stream != null && out == null) {
+            encoder.defineWorlds(slot.world, worlds);
+            encoder.spawn(slot.time, slot.world, slot.x, slot.y, slot.z, slot.type, slot.reason, slot.player);
+        }
+        if (out == null && !consoleOutput) return;
+        entry.spawn(slot.time, worlds.name(slot.world), slot.x, slot.y, slot.z,
+                name(TYPE_NAMES, slot.type), name(REASON_NAMES, slot.reason), slot.player);
+        writeText(template);
+    }
+
+    /**
+     * 将一行聚合计数写入缓冲区，必要时先切换文件
+     */
+    private void writeRow(long time, int world, int chunkX, int chunkZ, int type, int reason, int count) {
+        if (prepare(time)) {
+            indexRecord(time, world, chunkX, chunkZ, type);
+        }
+        if (stream != null && out == null) {
+            encoder.defineWorlds(world, worlds);
+            encoder.aggregate(time, world, chunkX, chunkZ, type, reason, count);
+        }
+        if (out == null && !consoleOutput) return;
+        entry.aggregate(time, worlds.name(world), chunkX, chunkZ,
+                name(TYPE_NAMES, type), name(REASON_NAMES, reason), count);
+        writeText(aggregateTemplate);
+    }
+
+    /**
+     * 把即将写入的一条记录加入当前桶的索引，超出桶的时间范围时先结束当前桶
+     */
+    private void indexRecord(long time, int world, int chunkX, int chunkZ, int type) {
+        if (index.isDue(time)) finishBucket();
+        if (!index.isOpen()) {
+            // 文本要先刷新才能知道写入位置；二进制的位置为文件大小加上缓冲区中的字节
+            if (out != null && unflushed > 0) flush();
+            if (stream == null) return;
+            index.begin(stream.count + encoder.size(), sessionOffset, time);
+            if (out == null) encoder.sync(time);
+        }
+        index.add(time, world, chunkX, chunkZ, type);
+    }
+
+    /**
+     * 刷新文件后结束当前桶，追加到索引文件
+     */
+    private void finishBucket() {
+        flush();
+        if (index.isOpen()) writeIndex();
+    }
+
+    /**
+     * 把当前桶写入索引文件（缓冲区已写入磁盘）
+     */
+    private void writeIndex() {
+        try {
+            index.finish(stream.count, indexFile);
+            indexFailed = false;
+        } catch (IOException e) {
+            if (!indexFailed) plugin.getLogger().warning("写入日志索引 " + indexFile.getName() + " 失败: " + e.getMessage());
+            indexFailed = true;
+        }
+    }
+
+    /**
+     * 按格式生成当前条目的文本，写入文本日志（已打开时）并输出到控制台（启用时）
+     *
+     * @param format 日志格式
+     */
+    private void writeText(LogTemplate format) {
+        line.setLength(0);
+        format.render(line, entry);
+        if (out != null) {
+            try {
+                out.append(line);
+                out.write(System.lineSeparator());
+                unflushed += utf8Length(line) + System.lineSeparator().length();
+            } catch (IOException e) {
+                plugin.getLogger().severe("写入日志文件时发生IO异常: " + e.getMessage());
+                close();
+            }
+        }
+        if (consoleOutput) {
+            plugin.getLogger().info("[拦截] " + line);
+        }
+    }
+
+    /**
+     * 确保该时间对应的日志文件已打开
+     *
+     * @param time 日志时间（毫秒）
+     * @return 文件已打开时返回true
+     */
+    private boolean prepare(long time) {
+        if (reopen || stream == null || time >= nextRollover) {
+            roll(time);
+        }
+        // 重载降低上限或重新打开的文件已超过上限时，立即切换
+        if (stream != null && stream.count + pending() >= rotateAt) {
+            rotate(time);
+        }
+        return stream != null;
+    }
+
+    /**
+     * 当前文件超过大小上限：改名为下一个编号并交给归档器，再重新打开原文件名
+     *
+     * @param time 日志时间（毫秒）
+     */
+    private void rotate(long time) {
+        File full = currentFile;
+        close();
+        File segment = LogArchiver.segmentFile(full);
+        boolean renamed = full.renameTo(segment);
+        if (renamed) {
+            LogIndex.sidecar(full).renameTo(LogIndex.sidecar(segment));
+            archiver.rotated(segment);
+        } else {
+            plugin.getLogger().warning("无法切换日志文件 " + full.getName() + "，继续写入当前文件。");
+        }
+        roll(time);
+        if (!renamed) rotateAt = Long.MAX_VALUE;
+    }
+
+    /**
+     * 获取缓冲区中尚未写入磁盘的字节数
+     */
+    private int pending() {
+        if (out == null) return encoder.size();
+        return (int) Math.max(0, unflushed - (stream.count - flushedCount));
+    }
+
+    /**
+     * 计算文本按UTF-8编码后的字节数
+     */
+    static int utf8Length(CharSequence text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * 获取序号对应的名称
+     */
+    private static String name(String[] names, int ordinal) {
+        return ordinal >= 0 && ordinal < names.length ? names[ordinal] : String.valueOf(ordinal);
+    }
+
+    /**
+     * 获取枚举常量的名称，按序号排列
+     */
+    private static String[] names(Enum<?>[] values) {
+        String[] names = new String[values.length];
+        for (Enum<?> value : values) {
+            names[value.ordinal()] = value.name();
+        }
+        return names;
+    }
+
+    /**
+     * 打开该时间所在日期对应的日志文件，文件名未变化时继续使用当前文件
+     *
+     * @param time 日志时间（毫秒）
+     */
+    private void roll(long time) {
+        boolean configChanged = reopen;
+        reopen = false;
+        ZoneId zone = ZoneId.systemDefault();
+        nextRollover = LocalDate.ofInstant(Instant.ofEpochMilli(time), zone).plusDays(1)
+                .atStartOfDay(zone).toInstant().toEpochMilli();
+
+        File dir = directory;
+        boolean binaryFile = binary;
+        String name = fileNameFormat.format(new Date(time));
+        File file = new File(dir, binaryFile ? BinaryLog.fileName(name) : name);
+        // 大小上限可能被重载修改，继续使用当前文件时也要更新
+        long limit = maxFileBytes;
+        rotateAt = limit > 0 ? limit : Long.MAX_VALUE;
+        if (stream != null && file.equals(currentFile)) return;
+        File previous = currentFile;
+        close();
+        // 按日期切换下来的文件交给归档器（配置修改导致的切换不算，同一天可能还会再写入）
+        if (previous != null && !configChanged) {
+            archiver.rotated(previous);
+        }
+
+        // 创建日志目录（如果不存在）
+        if (!dir.exists() && !dir.mkdirs()) {
+            if (!openFailed) plugin.getLogger().warning("无法创建日志目录: " + dir.getPath());
+            openFailed = true;
+            return;
+        }
+        try {
+            long length = file.length();
+            indexFile = LogIndex.sidecar(file);
+            // 日志文件是新建的，同名的索引只可能属于已删除的旧文件
+            if (length == 0) indexFile.delete();
+            stream = new CountingStream(new FileOutputStream(file, true), length);
+            flushedCount = length;
+            if (binaryFile) {
+                encoder.clear();
+                if (length == 0) encoder.header();
+                sessionOffset = length + encoder.size();
+                encoder.session(time, TYPE_NAMES, REASON_NAMES);
+                appendSession();
+            } else {
+                out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), FLUSH_BYTES);
+            }
+            currentFile = file;
+            archiver.setActive(file);
+            lastFlush = System.currentTimeMillis();
+            openFailed = false;
+        } catch (IOException e) {
+            if (!openFailed) plugin.getLogger().severe("无法打开日志文件 " + file.getPath() + ": " + e.getMessage());
+            openFailed = true;
+        }
+    }
+
+    /**
+     * 在索引文件中记录刚写入的会话块的位置
+     */
+    private void appendSession() {
+        try {
+            LogIndex.appendSession(indexFile, sessionOffset);
+            indexFailed = false;
+        } catch (IOException e) {
+            if (!indexFailed) plugin.getLogger().warning("写入日志索引 " + indexFile.getName() + " 失败: " + e.getMessage());
+            indexFailed = true;
+        }
+    }
+
+    /**
+     * 将缓冲区写入磁盘
+     */
+    private void flush() {
+        lastFlush = System.currentTimeMillis();
+        unflushed = 0;
+        if (stream == null) return;
+        try {
+            if (out != null) {
+                out.flush();
+                flushedCount = stream.count;
+            } else {
+                encoder.writeTo(stream);
+            }
+        } catch (IOException e) {
+            plugin.getLogger().severe("写入日志文件时发生IO异常: " + e.getMessage());
+            close();
+        }
+    }
+
+    /**
+     * 刷新并关闭当前文件，结束当前桶
+     */
+    private void close() {
+        if (stream == null) return;
+        try {
+            if (out != null) {
+                out.flush();
+            } else {
+                encoder.writeTo(stream);
+            }
+            if (index.isOpen()) writeIndex();
+            stream.close();
+        } catch (IOException e) {
+            plugin.getLogger().severe("关闭日志文件时发生IO异常: " + e.getMessage());
+            index.discard();
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+            }
+        }
+        encoder.clear();
+        stream = null;
+        out = null;
+        currentFile = null;
+        unflushed = 0;
+    }
+}
@@ -1,26 +1,26 @@
 package art.await591.nospawn;
 
-import org.bukkit.Bukkit;
 import org.bukkit.Location;
+import org.bukkit.entity.EntityType;
 import org.bukkit.entity.Player;
 import org.bukkit.event.entity.CreatureSpawnEvent;
 
 import javax.annotation.Nullable;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 /**
  * 日志管理器
  *
  * <p>负责记录被阻止的生物生成事件到控制台和文件系统。
- * 支持异步日志写入以避免阻塞主线程。</p>
+ * 文件写入交给 {@link LogWriter} 的写入线程批量完成，不阻塞主线程；
+ * 启用聚合模式时，只由 {@link LogAggregator} 累计次数，按窗口合并输出。
+ * 日志文件按日期和大小切换，切换下来的文件由 {@link LogArchiver} 在后台压缩并按保留策略清理。
+ * {@code logging.format: binary} 时日志写成 {@link BinaryLog} 格式，可用 {@code /ns log export} 导出为文本或CSV。
+ * 写入时为每个日志文件建立 {@link LogIndex}，{@code /ns log search} 通过索引按时间、类型和区域搜索。</p>
  *
  * @author await591
  */
@@ -28,8 +28,14 @@ public class LoggerManager {
     /** 插件主类实例 */
     private final NoSpawnPlugin plugin;
 
-    /** 异步执行器，用于在单独的线程中写入日志 */
-    private final ExecutorService asyncExecutor;
+    /** 日志文件写入器 */
+    private LogWriter logWriter;
+
+    /** 日志聚合器 */
+    private final LogAggregator aggregator;
+
+    /** 日志归档器 */
+    private final LogArchiver archiver;
 
     /** 日志功能是否启用 */
     private boolean enabled;
@@ -43,14 +49,20 @@ public class LoggerManager {
     /** 日志文件名格式（使用SimpleDateFormat模式） */
     private String fileNameFormat;
 
-    /** 单条日志条目的格式字符串 */
-    private String entryFormat;
+    /** 预编译的单条日志格式 */
+    private volatile LogTemplate template;
+
+    /** 预编译的聚合日志格式 */
+    private volatile LogTemplate aggregateTemplate;
+
+    /** 日志目录 */
+    private volatile File logDirectory;
 
-    /** 时间格式化器，用于日志条目中的时间戳 */
-    private final SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss");
+    /** 文本日志的扩展名（如 .log），没有扩展名时为null */
+    private volatile String textExtension;
 
-    /** 日期格式化器，用于生成日志文件名 */
-    private SimpleDateFormat dateFormat;
+    /** 日志的世界编号表 */
+    private final LogWorlds worlds = new LogWorlds();
 
     /**
      * 构造一个新的日志管理器
@@ -59,8 +71,8 @@ public class LoggerManager {
      */
     public LoggerManager(NoSpawnPlugin plugin) {
         this.plugin = plugin;
-        // 创建单线程执行器，确保日志按顺序写入
-        this.asyncExecutor = Executors.newSingleThreadExecutor();
+        this.aggregator = new LogAggregator();
+        this.archiver = new LogArchiver(plugin);
         reload();
     }
 
@@ -72,16 +84,64 @@ public class LoggerManager {
         this.consoleOutput = plugin.getConfig().getBoolean("logging.console-output", true);
         this.logDirectoryName = plugin.getConfig().getString("logging.directory", "logs");
         this.fileNameFormat = plugin.getConfig().getString("logging.filename-format", "yyyy-MM-dd'.log'");
-        this.entryFormat = plugin.getConfig().getString("logging.entry-format",
-                "[{TIME}] {ENTITY} 在 {WORLD} ({X}, {Y}, {Z}) 的生成被阻止。原因: {REASON}{CONTEXT}");
+        this.template = LogTemplate.compile(plugin.getConfig().getString("logging.entry-format",
+                LogTemplate.DEFAULT_ENTRY_FORMAT));
+        this.aggregateTemplate = LogTemplate.compile(plugin.getConfig().getString("logging.aggregate.entry-format",
+                LogTemplate.DEFAULT_AGGREGATE_FORMAT));
 
+        // 文件格式
+        String format = plugin.getConfig().getString("logging.format", "text");
+        boolean binary = format.equalsIgnoreCase("binary");
+        if (!binary && !format.equalsIgnoreCase("text")) {
+            plugin.getLogger().warning("未知的日志文件格式 '" + format + "'，使用 text。");
+        }
+
+        SimpleDateFormat dateFormat;
         try {
             // 初始化日期格式化器
-            this.dateFormat = new SimpleDateFormat(fileNameFormat);
+            dateFormat = new SimpleDateFormat(fileNameFormat);
         } catch (Exception e) {
             plugin.getLogger().warning("日志文件名格式配置错误，使用默认格式。");
-            this.dateFormat = new SimpleDateFormat("yyyy-MM-dd'.log'");
+            dateFormat = new SimpleDateFormat("yyyy-MM-dd'.log'");
         }
+
+        // 队列满时的处理方式
+        String policyName = plugin.getConfig().getString("logging.queue.overflow-policy", "DROP_NEWEST");
+        LogQueue.OverflowPolicy policy = LogQueue.OverflowPolicy.fromString(policyName);
+        if (policy == null) {
+            plugin.getLogger().warning("未知的日志队列处理方式 '" + policyName + "'，使用 DROP_NEWEST。");
+            policy = LogQueue.OverflowPolicy.DROP_NEWEST;
+        }
+        int sampleRate = plugin.getConfig().getInt("logging.queue.sample-rate", 10);
+
+        // 聚合模式
+        aggregator.configure(plugin.getConfig().getBoolean("logging.aggregate.enabled", false),
+                plugin.getConfig().getLong("logging.aggregate.window-seconds", 60) * 1000L);
+
+        // 写入线程和队列在首次加载时创建（队列容量修改后需重启），之后只更新目录、文件名格式和处理方式
+        File logDir = new File(plugin.getDataFolder(), logDirectoryName);
+        this.logDirectory = logDir;
+        if (logWriter == null) {
+            LogQueue queue = new LogQueue(plugin.getConfig().getInt("logging.queue.capacity", 8192), policy, sampleRate);
+            logWriter = new LogWriter(plugin, logDir, dateFormat, binary, queue, aggregator, worlds, archiver);
+        } else {
+            logWriter.configure(logDir, dateFormat, binary);
+            logWriter.getQueue().configure(policy, sampleRate);
+        }
+        logWriter.setFormat(template, aggregateTemplate, consoleOutput);
+
+        // 按大小切换、压缩和保留策略
+        logWriter.setMaxFileSize(plugin.getConfig().getLong("logging.rotation.max-file-size-mb", 0) << 20);
+        // SimpleDateFormat 不是线程安全的，交给写入线程的实例只在写入线程中使用，这里另建一个取样
+        String sampleName = new SimpleDateFormat(dateFormat.toPattern()).format(new Date());
+        int dot = sampleName.lastIndexOf('.');
+        this.textExtension = dot > 0 ? sampleName.substring(dot) : null;
+        archiver.configure(logDir, textExtension,
+                plugin.getConfig().getBoolean("logging.rotation.compress", true),
+                plugin.getConfig().getInt("logging.retention.max-files", 0),
+                plugin.getConfig().getLong("logging.retention.max-age-days", 0) * 86_400_000L,
+                plugin.getConfig().getLong("logging.retention.max-total-size-mb", 0) << 20);
+        archiver.sweep();
     }
 
     /**
@@ -90,110 +150,44 @@ public class LoggerManager {
      * @param event 生物生成事件
      */
     public void logBlockedSpawn(CreatureSpawnEvent event) {
-        if (!enabled) return;
-
-        // 提取事件信息
-        String entityName = event.getEntityType().name();        // 生物类型名称
-        Location loc = event.getLocation();                      // 生成位置
-        String worldName = loc.getWorld().getName();             // 世界名称
-        int x = loc.getBlockX();                                 // X坐标
-        int y = loc.getBlockY();                                 // Y坐标
-        int z = loc.getBlockZ();                                 // Z坐标
-        String reason = event.getSpawnReason().name();           // 生成原因
-        String context = parseContext(event);                    // 上下文信息
-        String nowTime = timeFormat.format(new Date());          // 当前时间
-
-        // 格式化日志消息
-        String logMessage = entryFormat
-                .replace("{TIME}", nowTime)
-                .replace("{WORLD}", worldName)
-                .replace("{X}", String.valueOf(x))
-                .replace("{Y}", String.valueOf(y))
-                .replace("{Z}", String.valueOf(z))
-                .replace("{ENTITY}", entityName)
-                .replace("{REASON}", reason)
-                .replace("{CONTEXT}", context);
-
-        // 输出到控制台
-        if (consoleOutput) {
-            plugin.getLogger().info("[拦截] " + logMessage);
-        }
-
-        // 异步写入文件
-        asyncExecutor.submit(() -> {
-            writeToFile(logMessage, new Date());
-        });
+        logBlockedSpawn(event.getEntityType(), event.getLocation(), event.getSpawnReason());
     }
 
     /**
-     * 将日志消息写入文件
+     * 记录一个被阻止的生物生成（用于实体尚未构造的预生成事件）
      *
-     * @param message 日志消息
-     * @param logDate 日志日期（用于确定文件名）
+     * @param type 生物类型
+     * @param loc 生成位置
+     * @param spawnReason 生成原因
      */
-    private void writeToFile(String message, Date logDate) {
-        try {
-            // 获取插件数据文件夹
-            File dataFolder = plugin.getDataFolder();
-            File logDir = new File(dataFolder, logDirectoryName);
-
-            // 创建日志目录（如果不存在）
-            if (!logDir.exists() && !logDir.mkdirs()) {
-                plugin.getLogger().warning("无法创建日志目录: " + logDir.getPath());
-                return;
-            }
-
-            // 根据日期生成文件名
-            String fileName = dateFormat.format(logDate);
-            File logFile = new File(logDir, fileName);
+    public void logBlockedSpawn(EntityType type, Location loc, CreatureSpawnEvent.SpawnReason spawnReason) {
+        if (!enabled) return;
 
-            // 追加写入日志文件
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(logFile, true))) {
-                writer.write(message);
-                writer.newLine();
-            }
-        } catch (IOException e) {
-            plugin.getLogger().severe("写入日志文件时发生IO异常: " + e.getMessage());
-        } catch (Exception e) {
-            plugin.getLogger().severe("记录日志时发生未知异常: " + e.getMessage());
+        // 聚合模式：只累计次数，由写入线程在窗口结束时输出
+        if (aggregator.isEnabled()) {
+            aggregator.record(worlds.indexOf(loc.getWorld()), loc.getBlockX() >> 4, loc.getBlockZ() >> 4,
+                    type.ordinal(), spawnReason.ordinal());
+            return;
         }
-    }
 
-    /**
-     * 解析生成事件的上下文信息
-     *
-     * @param event 生物生成事件
-     * @return 上下文字符串
-     */
-    private String parseContext(CreatureSpawnEvent event) {
-        String base = "";
-        switch (event.getSpawnReason()) {
-            case SPAWNER:
-                base = " [来源: 刷怪笼]";
-                break;
-            case SPAWNER_EGG:
-                base = " [来源: 刷怪蛋]";
-                // 查找最近的使用玩家
-                Player nearest = findNearestPlayer(event.getLocation(), 30);
-                if (nearest != null) {
-                    base += " (最近玩家: " + nearest.getName() + ")";
-                }
-                break;
-            case BREEDING:
-                base = " [来源: 繁殖]";
-                break;
-            case CUSTOM:
-                base = " [来源: 自定义/插件]";
-                break;
-            default:
-                base = "";
+        // 刷怪蛋生成时查找最近的玩家（只读取生成位置附近、由当前区域线程拥有的实体；格式中没有 {CONTEXT} 时跳过）
+        String player = null;
+        if (spawnReason == CreatureSpawnEvent.SpawnReason.SPAWNER_EGG && template.uses(LogTemplate.Placeholder.CONTEXT)) {
+            Player nearest = findNearestPlayer(loc, 30);
+            if (nearest != null) player = nearest.getName();
         }
-        return base;
+
+        // 只把原始字段放入队列，时间格式化和文本拼接由写入线程完成
+        logWriter.submit(System.currentTimeMillis(), worlds.indexOf(loc.getWorld()),
+                loc.getBlockX(), loc.getBlockY(), loc.getBlockZ(), type.ordinal(), spawnReason.ordinal(), player);
     }
 
     /**
      * 查找距离指定位置最近的在线玩家
      *
+     * <p>只查询生成位置附近的玩家，而不是遍历所有在线玩家：Folia 下其他区域线程中的玩家位置
+     * 不能在当前线程读取。</p>
+     *
      * @param location 中心位置
      * @param maxDistance 最大搜索距离
      * @return 最近的玩家，如果没有找到则返回null
@@ -202,33 +196,24 @@ public class LoggerManager {
         Player nearest = null;
         double nearestDistSq = maxDistance * maxDistance;  // 使用平方距离避免开方运算
 
-        // 遍历所有在线玩家
-        for (Player player : Bukkit.getOnlinePlayers()) {
-            if (player.getWorld().equals(location.getWorld())) {
-                // 计算距离平方
-                double distSq = player.getLocation().distanceSquared(location);
-                if (distSq < nearestDistSq) {
-                    nearestDistSq = distSq;
-                    nearest = player;
-                }
+        // 附近的玩家按立方体范围返回，再按距离平方筛选
+        for (Player player : location.getWorld().getNearbyPlayers(location, maxDistance)) {
+            double distSq = player.getLocation().distanceSquared(location);
+            if (distSq < nearestDistSq) {
+                nearestDistSq = distSq;
+                nearest = player;
             }
         }
         return nearest;
     }
 
     /**
-     * 关闭日志管理器，停止异步执行器
+     * 关闭日志管理器，写完队列中的日志并关闭日志文件
      */
     public void shutdown() {
-        asyncExecutor.shutdown();
-        try {
-            // 等待最多3秒让日志写入完成
-            if (!asyncExecutor.awaitTermination(3, TimeUnit.SECONDS)) {
-                plugin.getLogger().warning("日志写入线程未完全结束，强制关闭。");
-            }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
+        // 等待最多3秒让日志写入完成
+        logWriter.shutdown(3000);
+        archiver.shutdown();
     }
 
     /**
@@ -238,8 +223,50 @@ public class LoggerManager {
      */
     public void setEnabled(boolean enabled) {
         this.enabled = enabled;
-        plugin.getConfig().set("logging.enabled", enabled);
-        plugin.saveConfig();
+        plugin.getConfigSaver().set("logging.enabled", enabled);
+    }
+
+    /**
+     * 将二进制日志导出为文本（按当前的日志格式）或CSV
+     *
+     * @param input 二进制日志文件
+     * @param out 输出
+     * @param csv 是否导出为CSV
+     * @return 导出的记录数
+     * @throws IOException 读取或写入失败、文件损坏时
+     */
+    public long export(File input, Writer out, boolean csv) throws IOException {
+        return LogExporter.export(input, out, csv, template, aggregateTemplate);
+    }
+
+    /**
+     * 按时间范围、实体类型和区域搜索日志（文本日志按当前的日志格式识别）
+     *
+     * @param query 搜索条件
+     * @param limit 最多返回的结果数
+     * @return 搜索结果
+     * @throws IOException 读取失败、索引或日志文件损坏时
+     */
+    LogSearch.Result search(LogSearch.Query query, int limit) throws IOException {
+        return LogSearch.search(logDirectory, textExtension, template, aggregateTemplate, query, limit);
+    }
+
+    /**
+     * 获取日志目录
+     *
+     * @return 日志目录
+     */
+    public File getLogDirectory() {
+        return logDirectory;
+    }
+
+    /**
+     * 获取待写入的日志队列
+     *
+     * @return 日志队列
+     */
+    public LogQueue getQueue() {
+        return logWriter.getQueue();
     }
 
     /**
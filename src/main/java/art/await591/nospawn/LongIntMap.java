@@ -0,0 +1,146 @@
+package art.await591.nospawn;
+
+/**
+ * 以原始long为键、原始int为值的开放寻址计数表
+ *
+ * <p>用于按区块坐标累计计数，避免 {@code HashMap<Long, Integer>} 的装箱和节点分配。
+ * 采用线性探测，容量始终为2的幂，散列与 {@link LongObjectMap} 相同。
+ * 计数为0的槽位视为空槽，因此只支持累加正数。</p>
+ *
+ * <p>本类不是线程安全的：由调用方加锁，或由单一线程独占修改。</p>
+ *
+ * @author await591
+ */
+public final class LongIntMap {
+    /** 最大装载因子（百分比） */
+    private static final int MAX_LOAD_PERCENT = 60;
+
+    /** 键数组 */
+    private long[] keys;
+
+    /** 计数数组，0表示该槽为空 */
+    private int[] values;
+
+    /** 容量掩码（容量-1） */
+    private int mask;
+
+    /** 当前元素数量 */
+    private int size;
+
+    /**
+     * 遍历键值对的回调（不装箱）
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        /**
+         * 处理一个键值对
+         *
+         * @param key 键
+         * @param value 计数
+         */
+        void accept(long key, int value);
+    }
+
+    /**
+     * 构造一个空的计数表
+     */
+    public LongIntMap() {
+        allocate(16);
+    }
+
+    /**
+     * 获取键对应的计数
+     *
+     * @param key 键
+     * @return 计数，不存在则返回0
+     */
+    public int get(long key) {
+        int i = LongObjectMap.slot(key, mask);
+        while (values[i] != 0) {
+            if (keys[i] == key) return values[i];
+            i = (i + 1) & mask;
+        }
+        return 0;
+    }
+
+    /**
+     * 累加键对应的计数
+     *
+     * @param key 键
+     * @param delta 增量（正数）
+     * @return 累加后的计数
+     */
+    public int add(long key, int delta) {
+        int i = LongObjectMap.slot(key, mask);
+        while (values[i] != 0) {
+            if (keys[i] == key) {
+                // 饱和累加，避免溢出后变为负数或0
+                long sum = (long) values[i] + delta;
+                values[i] = (int) Math.min(Integer.MAX_VALUE, sum);
+                return values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = delta;
+        if (++size * 100L > (long) values.length * MAX_LOAD_PERCENT) {
+            resize(values.length << 1);
+        }
+        return delta;
+    }
+
+    /**
+     * 遍历所有键值对
+     *
+     * @param visitor 对每个键值对执行的操作
+     */
+    public void forEach(Visitor visitor) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != 0) visitor.accept(keys[i], values[i]);
+        }
+    }
+
+    /**
+     * 清空所有元素并收缩到初始容量
+     */
+    public void clear() {
+        allocate(16);
+    }
+
+    /**
+     * 获取元素数量
+     *
+     * @return 元素数量
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 扩容并重新散列
+     */
+    private void resize(int newCapacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[newCapacity];
+        values = new int[newCapacity];
+        mask = newCapacity - 1;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] == 0) continue;
+            int j = LongObjectMap.slot(oldKeys[i], mask);
+            while (values[j] != 0) j = (j + 1) & mask;
+            keys[j] = oldKeys[i];
+            values[j] = oldValues[i];
+        }
+    }
+
+    /**
+     * 分配空表
+     */
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+}
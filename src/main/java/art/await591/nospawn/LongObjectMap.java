@@ -0,0 +1,213 @@
+package art.await591.nospawn;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * 以原始long为键的开放寻址哈希表
+ *
+ * <p>用于按区块坐标索引数据，避免 {@code HashMap<Long, V>} 的装箱和节点分配。
+ * 采用线性探测，容量始终为2的幂。值不允许为null（null表示空槽）。</p>
+ *
+ * <p>本类不是线程安全的：构建完成后只读共享，或由单一线程独占修改。</p>
+ *
+ * @param <V> 值类型
+ * @author await591
+ */
+public final class LongObjectMap<V> {
+    /** 最大装载因子（百分比） */
+    private static final int MAX_LOAD_PERCENT = 60;
+
+    /** 键数组 */
+    private long[] keys;
+
+    /** 值数组，null表示该槽为空 */
+    private Object[] values;
+
+    /** 容量掩码（容量-1） */
+    private int mask;
+
+    /** 当前元素数量 */
+    private int size;
+
+    /**
+     * 构造一个空的哈希表
+     */
+    public LongObjectMap() {
+        this(16);
+    }
+
+    /**
+     * 构造一个具有预期容量的哈希表
+     *
+     * @param expectedSize 预期元素数量
+     */
+    public LongObjectMap(int expectedSize) {
+        int capacity = tableSizeFor(Math.max(4, (int) (expectedSize * 100L / MAX_LOAD_PERCENT) + 1));
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * 获取键对应的值
+     *
+     * @param key 键
+     * @return 对应的值，不存在则返回null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int i = slot(key);
+        Object v;
+        while ((v = values[i]) != null) {
+            if (keys[i] == key) return (V) v;
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * 放入键值对
+     *
+     * @param key 键
+     * @param value 值（不可为null）
+     * @return 之前的值，不存在则返回null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) throw new IllegalArgumentException("value 不能为 null");
+        int i = slot(key);
+        Object v;
+        while ((v = values[i]) != null) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return (V) v;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size * 100L > (long) values.length * MAX_LOAD_PERCENT) {
+            resize(values.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * 移除键
+     *
+     * @param key 键
+     * @return 被移除的值，不存在则返回null
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int i = slot(key);
+        Object v;
+        while ((v = values[i]) != null) {
+            if (keys[i] == key) {
+                values[i] = null;
+                size--;
+                // 回填后续探测链，保持线性探测的不变式
+                int j = (i + 1) & mask;
+                while (values[j] != null) {
+                    long k = keys[j];
+                    Object moved = values[j];
+                    values[j] = null;
+                    int target = slot(k);
+                    while (values[target] != null) target = (target + 1) & mask;
+                    keys[target] = k;
+                    values[target] = moved;
+                    j = (j + 1) & mask;
+                }
+                return (V) v;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * 遍历所有键值对
+     *
+     * @param action 对每个键值对执行的操作
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<Long, V> action) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) action.accept(keys[i], (V) values[i]);
+        }
+    }
+
+    /**
+     * 清空所有元素
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * 获取元素数量
+     *
+     * @return 元素数量
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 计算键的初始槽位
+     */
+    private int slot(long key) {
+        return slot(key, mask);
+    }
+
+    /**
+     * 计算键在指定容量掩码下的初始槽位（供其他原始键表共用同一散列）
+     *
+     * @param key 键
+     * @param mask 容量掩码（容量-1）
+     * @return 槽位下标
+     */
+    static int slot(long key, int mask) {
+        return (int) (mix(key) & mask);
+    }
+
+    /**
+     * 扩容并重新散列
+     */
+    private void resize(int newCapacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[newCapacity];
+        values = new Object[newCapacity];
+        mask = newCapacity - 1;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] == null) continue;
+            int j = slot(oldKeys[i]);
+            while (values[j] != null) j = (j + 1) & mask;
+            keys[j] = oldKeys[i];
+            values[j] = oldValues[i];
+        }
+    }
+
+    /**
+     * 64位混合函数（SplitMix64 终结步），打散相邻区块坐标
+     *
+     * @param key 原始键
+     * @return 混合后的值
+     */
+    static long mix(long key) {
+        key = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+        key = (key ^ (key >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return key ^ (key >>> 33);
+    }
+
+    /**
+     * 计算不小于给定值的2的幂
+     */
+    static int tableSizeFor(int n) {
+        int cap = Integer.highestOneBit(Math.max(1, n - 1)) << 1;
+        return Math.max(4, Math.min(cap, 1 << 30));
+    }
+}
@@ -1,23 +1,40 @@
 package art.await591.nospawn;
 
+import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
+import org.bukkit.World;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
+import org.bukkit.entity.EntityType;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * NoSpawn插件命令处理器
  *
  * <p>处理 /nospawn 和 /ns 命令的所有子命令，包括：
- * help, reload, toggle, log, visualize, mode, status</p>
+ * help, reload, toggle, log, visualize, mode, status, regions, stats, heatmap, vm</p>
  *
  * @author await591
  */
@@ -28,17 +45,45 @@ public class NoSpawnCommand implements CommandExecutor, TabCompleter {
 
     /** 所有可用的子命令列表 */
     private static final List<String> SUB_COMMANDS = Arrays.asList(
-            "help", "reload", "toggle", "log", "visualize", "mode", "status", "vm"
+            "help", "reload", "toggle", "log", "visualize", "mode", "status", "regions", "stats", "heatmap", "vm"
     );
 
+    /** 热力图命令的选项 */
+    private static final List<String> HEATMAP_OPTIONS = Arrays.asList("export", "reset");
+
+    /** 热力图导出格式 */
+    private static final List<String> HEATMAP_FORMATS = Arrays.asList("csv", "grid");
+
+    /** 日志命令的选项 */
+    private static final List<String> LOG_OPTIONS = Arrays.asList("on", "off", "export", "search", "page");
+
+    /** 日志导出格式 */
+    private static final List<String> LOG_EXPORT_FORMATS = Arrays.asList("text", "csv");
+
+    /** 日志搜索时间参数的补全示例 */
+    private static final List<String> LOG_SEARCH_TIMES = Arrays.asList("-10m", "-1h", "-1d", "now");
+
+    /** 日志搜索最多保留的结果数 */
+    private static final int LOG_SEARCH_LIMIT = 1000;
+
+    /** 日志搜索结果每页的行数 */
+    private static final int LOG_SEARCH_PAGE_SIZE = 10;
+
+    /** 搜索结果中的时间格式 */
+    private static final DateTimeFormatter LOG_SEARCH_TIME_FORMAT =
+            DateTimeFormatter.ofPattern("MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
     /** 模式命令的选项 */
-    private static final List<String> MODE_OPTIONS = Arrays.asList("circle", "square");
+    private static final List<String> MODE_OPTIONS = Arrays.asList("circle", "square", "polygon");
 
     /** 可视化命令的选项 */
     private static final List<String> VISUALIZE_OPTIONS = Arrays.asList("on", "off");
     private static final List<String> VIRTUALWALL_SUBCOMMANDS = Arrays.asList("toggle", "feedback", "sound", "status", "reset");
     private static final List<String> FEEDBACK_OPTIONS = Arrays.asList("MESSAGE", "PUSH", "BOTH");
 
+    /** 每个命令发送者最近一次的日志搜索结果（按名称，玩家退出时移除） */
+    private final Map<String, List<LogEntry>> searchResults = new ConcurrentHashMap<>();
+
     /**
      * 构造命令处理器
      *
@@ -48,6 +93,15 @@ public class NoSpawnCommand implements CommandExecutor, TabCompleter {
         this.plugin = plugin;
     }
 
+    /**
+     * 玩家退出时丢弃其日志搜索结果
+     *
+     * @param player 退出的玩家
+     */
+    public void handlePlayerQuit(Player player) {
+        searchResults.remove(player.getName());
+    }
+
     /**
      * 处理命令执行
      *
@@ -95,6 +149,15 @@ public class NoSpawnCommand implements CommandExecutor, TabCompleter {
             case "status":
                 sendStatus(sender);
                 break;
+            case "regions":
+                sendRegions(sender);
+                break;
+            case "stats":
+                handleStats(sender, args);
+                break;
+            case "heatmap":
+                handleHeatmap(sender, args);
+                break;
             case "vm":
                 handleVirtualWall(sender, args);
 
@@ -116,8 +179,8 @@ public class NoSpawnCommand implements CommandExecutor, TabCompleter {
             sender.sendMessage(ChatColor.RED + "你没有重载配置的权限。");
             return;
         }
-        plugin.loadSettings();
-        sender.sendMessage(ChatColor.GREEN + "[NoSpawn] 配置已重载");
+        // 在异步线程中读取和比较，只重新应用变化的部分，结果稍后发送
+        plugin.getConfigReloader().reload(sender);
     }
 
     /**
@@ -149,7 +212,37 @@ public class NoSpawnCommand implements CommandExecutor, TabCompleter {
             return;
         }
         if (args.length < 2) {
-            sender.sendMessage(ChatColor.RED + "用法: /ns log <on|off>");
+            sender.sendMessage(ChatColor.RED + "用法: /ns log <on|off|export|search|page>");
+            return;
+        }
+        if (args[1].equalsIgnoreCase("search")) {
+            searchLog(sender, args);
+            return;
+        }
+        if (args[1].equalsIgnoreCase("page")) {
+            int page = 1;
+            if (args.length >= 3) {
+                try {
+                    page = Integer.parseInt(args[2]);
+                } catch (NumberFormatException e) {
+                    sender.sendMessage(ChatColor.RED + "用法: /ns log page <页码>");
+                    return;
+                }
+            }
+            List<LogEntry> results = searchResults.get(sender.getName());
+            if (results == null) {
+                sender.sendMessage(ChatColor.RED + "没有搜索结果，请先使用 /ns log search。");
+                return;
+            }
+            showSearchPage(sender, results, page);
+            return;
+        }
+        if (args[1].equalsIgnoreCase("export")) {
+            if (args.length < 3) {
+                sender.sendMessage(ChatColor.RED + "用法: /ns log export <文件> [text|csv]");
+                return;
+            }
+            exportLog(sender, args[2], args.length >= 4 ? args[3].toLowerCase() : "text");
             return;
         }
         // 解析日志状态
@@ -159,6 +252,188 @@ public class NoSpawnCommand implements CommandExecutor, TabCompleter {
                 (logState ? ChatColor.GREEN + "开启" : ChatColor.RED + "关闭"));
     }
 
+    /**
+     * 将日志目录中的二进制日志导出为文本或CSV
+     *
+     * <p>读取和写文件都在异步线程中进行，导出结果保存到 {@code plugins/NoSpawnPlugin/export/}。</p>
+     *
+     * @param sender 命令发送者
+     * @param name 日志文件名（可省略 .nsl 扩展名，也可以是压缩后的 .nsl.gz）
+     * @param format 导出格式（text 或 csv）
+     */
+    private void exportLog(CommandSender sender, String name, String format) {
+        if (!LOG_EXPORT_FORMATS.contains(format)) {
+            sender.sendMessage(ChatColor.RED + "未知格式。可用选项: text, csv");
+            return;
+        }
+        boolean csv = format.equals("csv");
+        LoggerManager loggerManager = plugin.getLoggerManager();
+        File logDir = loggerManager.getLogDirectory();
+        boolean hasExtension = name.endsWith(BinaryLog.EXTENSION)
+                || name.endsWith(BinaryLog.EXTENSION + LogArchiver.GZIP_EXTENSION);
+        File input = new File(logDir, hasExtension ? name : name + BinaryLog.EXTENSION);
+        if (name.contains("/") || name.contains("\\") || !input.isFile()) {
+            sender.sendMessage(ChatColor.RED + "日志目录中没有二进制日志 " + input.getName() +
+                    ChatColor.GRAY + "（需要 logging.format: binary）");
+            return;
+        }
+        File file = LogExporter.outputFile(input, new File(plugin.getDataFolder(), "export"), csv);
+
+        plugin.getServer().getAsyncScheduler().runNow(plugin, task -> {
+            file.getParentFile().mkdirs();
+            long count;
+            try (Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                count = loggerManager.export(input, out, csv);
+            } catch (IOException e) {
+                plugin.getLogger().warning("导出日志失败: " + e.getMessage());
+                sender.sendMessage(ChatColor.RED + "[NoSpawn] 导出日志失败: " + e.getMessage());
+                return;
+            }
+            sender.sendMessage(ChatColor.GREEN + "[NoSpawn] 日志已导出到 " + file.getPath() +
+                    ChatColor.GRAY + "（" + count + " 条记录）");
+        });
+    }
+
+    /**
+     * 按时间范围、实体类型和区域搜索日志
+     *
+     * <p>{@code /ns log search <开始> <结束> [类型|*] [半径]}：给出半径时只搜索发送者所在世界、
+     * 以发送者为中心的区域（仅限玩家）。搜索在异步线程中通过日志索引进行，
+     * 结果保存下来，用 {@code /ns log page <页码>} 翻页。</p>
+     *
+     * @param sender 命令发送者
+     * @param args 命令参数
+     */
+    private void searchLog(CommandSender sender, String[] args) {
+        String usage = "用法: /ns log search <开始> <结束> [类型|*] [半径]" +
+                ChatColor.GRAY + "（时间: now、-30m、-2h、-1d、HH:mm、yyyy-MM-dd、yyyy-MM-ddTHH:mm）";
+        if (args.length < 4) {
+            sender.sendMessage(ChatColor.RED + usage);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long from = LogSearch.parseTime(args[2], now, false);
+        long to = LogSearch.parseTime(args[3], now, true);
+        if (from < 0 || to < 0) {
+            sender.sendMessage(ChatColor.RED + "无法识别的时间。" + usage);
+            return;
+        }
+        if (from > to) {
+            sender.sendMessage(ChatColor.RED + "开始时间晚于结束时间。");
+            return;
+        }
+
+        // 第三个参数是数字时视为半径（不限类型）
+        String type = null;
+        String radiusArg = args.length >= 6 ? args[5] : null;
+        if (args.length >= 5) {
+            if (args.length == 5 && args[4].matches("\\d+")) {
+                radiusArg = args[4];
+            } else if (!args[4].equals("*")) {
+                try {
+                    type = EntityType.valueOf(args[4].toUpperCase()).name();
+                } catch (IllegalArgumentException e) {
+                    sender.sendMessage(ChatColor.RED + "未知的实体类型: " + args[4]);
+                    return;
+                }
+            }
+        }
+
+        String world = null;
+        int centerX = 0;
+        int centerZ = 0;
+        int radius = 0;
+        if (radiusArg != null) {
+            if (!(sender instanceof Player)) {
+                sender.sendMessage(ChatColor.RED + "只有玩家可以按半径搜索。");
+                return;
+            }
+            try {
+                radius = Integer.parseInt(radiusArg);
+            } catch (NumberFormatException e) {
+                radius = -1;
+            }
+            if (radius < 0) {
+                sender.sendMessage(ChatColor.RED + "半径必须是非负整数。");
+                return;
+            }
+            Player player = (Player) sender;
+            world = player.getWorld().getName();
+            centerX = player.getLocation().getBlockX();
+            centerZ = player.getLocation().getBlockZ();
+        }
+
+        LogSearch.Query query = new LogSearch.Query(from, to, type, world, centerX, centerZ, radius);
+        LoggerManager loggerManager = plugin.getLoggerManager();
+        sender.sendMessage(ChatColor.GRAY + "[NoSpawn] 正在搜索日志...");
+        plugin.getServer().getAsyncScheduler().runNow(plugin, task -> {
+            LogSearch.Result result;
+            long started = System.nanoTime();
+            try {
+                result = loggerManager.search(query, LOG_SEARCH_LIMIT);
+            } catch (IOException e) {
+                plugin.getLogger().warning("搜索日志失败: " + e.getMessage());
+                sender.sendMessage(ChatColor.RED + "[NoSpawn] 搜索日志失败: " + e.getMessage());
+                return;
+            }
+            long millis = (System.nanoTime() - started) / 1_000_000;
+            // 搜索期间退出的玩家不再保留结果
+            if (!(sender instanceof Player) || ((Player) sender).isOnline()) {
+                searchResults.put(sender.getName(), result.entries);
+            }
+
+            sender.sendMessage(ChatColor.GOLD + "=== 日志搜索: " + result.entries.size() +
+                    (result.truncated ? "+" : "") + " 条结果 ===");
+            sender.sendMessage(ChatColor.GRAY + "搜索了 " + result.files + " 个文件，读取 " + result.bucketsRead +
+                    "/" + result.bucketsTotal + " 个索引桶，用时 " + millis + " ms");
+            if (result.unindexed > 0) {
+                sender.sendMessage(ChatColor.GRAY + "有 " + result.unindexed + " 个文件没有索引，已整个扫描（文本日志以文件的最后修改日期为日期）。");
+            }
+            if (result.unparsed > 0) {
+                sender.sendMessage(ChatColor.GRAY + "有 " + result.unparsed + " 行文本无法按当前的日志格式识别。");
+            }
+            if (result.truncated) {
+                sender.sendMessage(ChatColor.GRAY + "只保留了前 " + LOG_SEARCH_LIMIT + " 条结果，请缩小搜索范围。");
+            }
+            showSearchPage(sender, result.entries, 1);
+        });
+    }
+
+    /**
+     * 显示一页日志搜索结果
+     *
+     * @param sender 命令发送者
+     * @param results 搜索结果
+     * @param page 页码（从1开始）
+     */
+    private void showSearchPage(CommandSender sender, List<LogEntry> results, int page) {
+        if (results.isEmpty()) {
+            sender.sendMessage(ChatColor.GRAY + "暂无记录");
+            return;
+        }
+        int pages = (results.size() + LOG_SEARCH_PAGE_SIZE - 1) / LOG_SEARCH_PAGE_SIZE;
+        page = Math.max(1, Math.min(pages, page));
+        int start = (page - 1) * LOG_SEARCH_PAGE_SIZE;
+        int end = Math.min(results.size(), start + LOG_SEARCH_PAGE_SIZE);
+        for (int i = start; i < end; i++) {
+            LogEntry entry = results.get(i);
+            StringBuilder line = new StringBuilder();
+            line.append(ChatColor.GRAY).append(LOG_SEARCH_TIME_FORMAT.format(Instant.ofEpochMilli(entry.time)))
+                    .append(' ').append(ChatColor.WHITE).append(entry.type);
+            if (entry.aggregate) line.append(" x").append(entry.count);
+            line.append(ChatColor.GRAY).append(' ').append(entry.world);
+            if (entry.aggregate) {
+                line.append(" 区块(").append(entry.x >> 4).append(", ").append(entry.z >> 4).append(')');
+            } else {
+                line.append(" (").append(entry.x).append(", ").append(entry.y).append(", ").append(entry.z).append(')');
+            }
+            line.append(' ').append(entry.reason);
+            sender.sendMessage(line.toString());
+        }
+        sender.sendMessage(ChatColor.YELLOW + "第 " + page + "/" + pages + " 页" +
+                (page < pages ? ChatColor.GRAY + "，下一页: /ns log page " + (page + 1) : ""));
+    }
+
     /**
      * 处理 visualize 子命令
      *
@@ -207,7 +482,7 @@ public class NoSpawnCommand implements CommandExecutor, TabCompleter {
         }
 
         if (args.length < 2) {
-            sender.sendMessage(ChatColor.RED + "用法: /ns mode <circle|square>");
+            sender.sendMessage(ChatColor.RED + "用法: /ns mode <circle|square|polygon>");
             sender.sendMessage(ChatColor.GRAY + "当前模式: " +
                     plugin.getRegionMode().getDisplayName());
             return;
@@ -221,14 +496,20 @@ public class NoSpawnCommand implements CommandExecutor, TabCompleter {
             newMode = NoSpawnPlugin.RegionMode.CIRCLE;
         } else if (modeStr.equals("square")) {
             newMode = NoSpawnPlugin.RegionMode.SQUARE;
+        } else if (modeStr.equals("polygon")) {
+            newMode = NoSpawnPlugin.RegionMode.POLYGON;
+            if (plugin.getConfig().getStringList("region.vertices").size() < 3) {
+                sender.sendMessage(ChatColor.RED + "默认区域未配置多边形顶点（region.vertices），无法切换为多边形模式。");
+                return;
+            }
         } else {
-            sender.sendMessage(ChatColor.RED + "未知模式。可用选项: circle, square");
+            sender.sendMessage(ChatColor.RED + "未知模式。可用选项: circle, square, polygon");
             return;
         }
 
         // 应用新模式
         plugin.setRegionMode(newMode);
-        plugin.loadSettings();
+        plugin.rebuildRegions();
 
         sender.sendMessage(ChatColor.GREEN + "[NoSpawn] 区域模式已切换为: " +
                 newMode.getDisplayName());
@@ -248,119 +529,278 @@ public class NoSpawnCommand implements CommandExecutor, TabCompleter {
                 ChatColor.WHITE + plugin.getRegionMode().getDisplayName());
         sender.sendMessage(ChatColor.YELLOW + "区域参数: " +
                 ChatColor.WHITE + plugin.getRegionDescription());
+        sender.sendMessage(ChatColor.YELLOW + "保护区域数: " +
+                ChatColor.WHITE + plugin.getRegionIndex().getRegions().size());
         sender.sendMessage(ChatColor.YELLOW + "工作模式: " + ChatColor.WHITE +
-                (plugin.getConfig().getBoolean("block-all-monsters", true) ?
+                (plugin.getSnapshot().isBlockAll() ?
                         "阻止所有怪物" : "自定义阻止列表"));
+        PaperSpawnListener paperListener = plugin.getPaperSpawnListener();
+        sender.sendMessage(ChatColor.YELLOW + "预生成拦截: " + (paperListener != null ?
+                ChatColor.GREEN + "开启" + ChatColor.GRAY + "（已中止自然生成尝试 " + paperListener.getAbortedAttempts() + " 次）" :
+                ChatColor.RED + "不可用"));
+        SpawnerNeutralizer neutralizer = plugin.getSpawnerNeutralizer();
+        if (neutralizer.isEnabled()) {
+            sender.sendMessage(ChatColor.YELLOW + "刷怪笼停用: " + ChatColor.GREEN + "开启" +
+                    ChatColor.GRAY + "（已暂停 " + neutralizer.getPausedCount() + " 个）");
+        }
+        RegionSnapshot shadow = plugin.getSnapshot().getShadow();
+        if (shadow != null) {
+            sender.sendMessage(ChatColor.YELLOW + "影子模式: " + ChatColor.GREEN + "开启" +
+                    ChatColor.GRAY + "（候选区域 " + shadow.getIndex().getRegions().size() + " 个，只记录不取消）");
+        }
+        if (plugin.getSnapshot().isDensityLimited()) {
+            sender.sendMessage(ChatColor.YELLOW + "密度上限: " + ChatColor.WHITE + "正在计数的区块 " +
+                    plugin.getDensityLimiter().getTrackedChunks() + " 个");
+        }
         sender.sendMessage(ChatColor.YELLOW + "日志记录: " +
                 (plugin.getLoggerManager().isEnabled() ?
                         ChatColor.GREEN + "开启" : ChatColor.RED + "关闭"));
+        LogQueue queue = plugin.getLoggerManager().getQueue();
+        sender.sendMessage(ChatColor.YELLOW + "日志队列: " + ChatColor.WHITE + "待写入 " + queue.size() + "/" +
+                queue.getCapacity() + ChatColor.GRAY + "（" + queue.getPolicy() + "），已丢弃 " + queue.getDropped() +
+                "（新日志 " + queue.getDroppedNewest() + "，旧日志 " + queue.getDroppedOldest() +
+                "，采样跳过 " + queue.getSampledOut() + "）");
         sender.sendMessage(ChatColor.YELLOW + "虚拟墙壁: " +
                 (plugin.getVisualizer().isVirtualWallEnabled() ?
                         ChatColor.GREEN + "开启" : ChatColor.RED + "关闭"));
     }
 
+    /**
+     * 列出所有已加载的保护区域
+     *
+     * @param sender 命令发送者
+     */
+    private void sendRegions(CommandSender sender) {
+        List<ProtectedRegion> regions = plugin.getRegionIndex().getRegions();
+        sender.sendMessage(ChatColor.GOLD + "=== 保护区域列表 (" + regions.size() + ") ===");
+        for (ProtectedRegion region : regions) {
+            String world = region.getWorldName() + (Bukkit.getWorld(region.getWorldName()) == null ? "，未加载" : "");
+            sender.sendMessage(ChatColor.YELLOW + region.getName() + ChatColor.GRAY + " [" +
+                    world + "] " + ChatColor.WHITE + region.describe() +
+                    ChatColor.GRAY + "，" + region.getTypeFilter().describe() +
+                    "，" + region.describeDensityLimit());
+        }
+    }
 
-    private void handleVirtualWall(CommandSender sender, String[] args) {
-        if (!sender.hasPermission("nospawn.virtualwall") && !sender.hasPermission("nospawn.admin")) {
-            sender.sendMessage(ChatColor.RED + "你没有使用虚拟墙壁功能的权限。");
+    /**
+     * 处理 stats 子命令：显示生成判定统计，或用 reset 清空
+     *
+     * @param sender 命令发送者
+     * @param args 命令参数
+     */
+    private void handleStats(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("nospawn.stats") && !sender.hasPermission("nospawn.admin")) {
+            sender.sendMessage(ChatColor.RED + "你没有查看统计的权限。");
             return;
         }
 
-        if (!(sender instanceof Player)) {
-            sender.sendMessage(ChatColor.RED + "只有玩家可以使用虚拟墙壁命令。");
+        SpawnStats stats = plugin.getStats();
+        if (args.length >= 2 && args[1].equalsIgnoreCase("reset")) {
+            stats.reset();
+            sender.sendMessage(ChatColor.GREEN + "[NoSpawn] 统计已清空");
             return;
         }
 
-        Player player = (Player) sender;
-        RegionVisualizer visualizer = plugin.getVisualizer();
-        RegionVisualizer.PlayerVirtualWallPrefs prefs = visualizer.getPlayerPrefs(player.getUniqueId());
+        long elapsedMillis = Math.max(1, System.currentTimeMillis() - stats.getStartedAt());
+        double elapsedTicks = Math.max(1, elapsedMillis / 50.0);
+        sender.sendMessage(ChatColor.GOLD + "=== NoSpawn 生成统计（" + formatDuration(elapsedMillis) + "）===");
+        sender.sendMessage(ChatColor.YELLOW + "判定次数: " + ChatColor.WHITE + stats.getEvaluated() +
+                ChatColor.GRAY + "（预生成 " + stats.getPreEvaluated() + "）" +
+                ChatColor.YELLOW + "  已取消: " + ChatColor.WHITE + stats.getCancelled());
+        sender.sendMessage(ChatColor.YELLOW + "豁免原因: " + ChatColor.WHITE + formatCounts(stats.getExemptedByReason(), 5));
+        sender.sendMessage(ChatColor.YELLOW + "按类型: " + ChatColor.WHITE + formatCounts(stats.getCancelledByType(), 5));
 
-        if (args.length < 2) {
-            sendVirtualWallHelp(player, prefs);
+        Map<String, Long> byWorld = new HashMap<>();
+        stats.getCancelledByWorld().forEach((worldId, count) -> {
+            World world = Bukkit.getWorld(worldId);
+            byWorld.put(world != null ? world.getName() : worldId.toString(), count);
+        });
+        sender.sendMessage(ChatColor.YELLOW + "按世界: " + ChatColor.WHITE + formatCounts(byWorld, 5));
+        sender.sendMessage(ChatColor.YELLOW + "按区域: " + ChatColor.WHITE + formatCounts(stats.getCancelledByRegion(), 5));
+
+        boolean shadowActive = plugin.getSnapshot().getShadow() != null;
+        if (shadowActive || stats.getShadowEvaluated() > 0) {
+            sender.sendMessage(ChatColor.YELLOW + "影子模式: " + ChatColor.WHITE + "判定 " + stats.getShadowEvaluated() +
+                    " 次，会阻止 " + stats.getShadowWouldBlock() + " 次" +
+                    ChatColor.GRAY + "（新增阻止 " + stats.getShadowOnlyBlocked() +
+                    "，不再阻止 " + stats.getLiveOnlyBlocked() + "）" +
+                    (shadowActive ? "" : ChatColor.RED + " 已关闭"));
+            sender.sendMessage(ChatColor.YELLOW + "候选区域: " + ChatColor.WHITE +
+                    formatCounts(stats.getShadowWouldBlockByRegion(), 5));
+        }
+
+        sendLatency(sender, "生成判定", stats.getSpawnLatency(), elapsedTicks);
+        sendLatency(sender, "移动检查", stats.getMoveLatency(), elapsedTicks);
+        if (shadowActive || stats.getShadowLatency().getCalls() > 0) {
+            sendLatency(sender, "影子判定", stats.getShadowLatency(), elapsedTicks);
+        }
+    }
+
+    /**
+     * 发送一行延迟统计
+     */
+    /**
+     * 处理 heatmap 子命令
+     *
+     * <p>{@code /ns heatmap [数量]} 列出被阻止生成最多的区块，{@code /ns heatmap export <csv|grid>}
+     * 将热力图写入插件目录下的 heatmap 文件夹，{@code /ns heatmap reset} 清空计数。
+     * 复制计数和写文件都在异步线程中进行。</p>
+     *
+     * @param sender 命令发送者
+     * @param args 命令参数
+     */
+    private void handleHeatmap(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("nospawn.stats") && !sender.hasPermission("nospawn.admin")) {
+            sender.sendMessage(ChatColor.RED + "你没有查看统计的权限。");
             return;
         }
 
-        String subCmd = args[1].toLowerCase();
-        switch (subCmd) {
-            case "toggle":
-                boolean newState = !prefs.isEnabled();
-                prefs.setEnabled(newState);
-                visualizer.updatePlayerPrefs(player.getUniqueId(), prefs);
-                player.sendMessage(ChatColor.GREEN + "[NoSpawn] 虚拟墙壁已" + 
-                        (newState ? ChatColor.GREEN + "开启" : ChatColor.RED + "关闭"));
-                break;
+        SpawnHeatmap heatmap = plugin.getHeatmap();
+        if (args.length >= 2 && args[1].equalsIgnoreCase("reset")) {
+            heatmap.clear();
+            sender.sendMessage(ChatColor.GREEN + "[NoSpawn] 热力图已清空");
+            return;
+        }
+        if (args.length >= 2 && args[1].equalsIgnoreCase("export")) {
+            exportHeatmap(sender, heatmap, args.length >= 3 ? args[2].toLowerCase() : "csv");
+            return;
+        }
 
-            case "feedback":
-                if (args.length < 3) {
-                    player.sendMessage(ChatColor.RED + "用法: /ns vm feedback <MESSAGE|PUSH|BOTH>");
-                    return;
-                }
-                try {
-                    String feedbackStr = args[2].toUpperCase();
-                    // 将 PUSH 映射为 PUSH_BACK
-                    if ("PUSH".equals(feedbackStr)) {
-                        feedbackStr = "PUSH_BACK";
-                    }
-                    RegionVisualizer.FeedbackType feedbackType = RegionVisualizer.FeedbackType.valueOf(feedbackStr);
-                    prefs.setFeedbackType(feedbackType);
-                    visualizer.updatePlayerPrefs(player.getUniqueId(), prefs);
-                    player.sendMessage(ChatColor.GREEN + "[NoSpawn] 反馈类型已设置为: " + feedbackType.name());
-                } catch (IllegalArgumentException e) {
-                    player.sendMessage(ChatColor.RED + "无效的反馈类型。可用选项: MESSAGE, PUSH, BOTH");
+        int limit = 10;
+        if (args.length >= 2) {
+            try {
+                limit = Math.max(1, Math.min(50, Integer.parseInt(args[1])));
+            } catch (NumberFormatException e) {
+                sender.sendMessage(ChatColor.RED + "用法: /ns heatmap [数量|export <csv|grid>|reset]");
+                return;
+            }
+        }
+
+        int topCount = limit;
+        plugin.getServer().getAsyncScheduler().runNow(plugin, task -> {
+            List<SpawnHeatmap.HotChunk> top = SpawnHeatmap.top(heatmap.snapshot(), topCount);
+            sender.sendMessage(ChatColor.GOLD + "=== 被阻止生成最多的区块（共记录 " + heatmap.getChunkCount() + " 个区块）===");
+            if (!heatmap.isEnabled()) {
+                sender.sendMessage(ChatColor.GRAY + "热力图记录已关闭（heatmap.enabled）。");
+            }
+            if (heatmap.getDropped() > 0) {
+                sender.sendMessage(ChatColor.GRAY + "已达到区块数量上限 " + heatmap.getMaxChunks() +
+                        "，丢弃了 " + heatmap.getDropped() + " 次新区块的记录。");
+            }
+            if (top.isEmpty()) {
+                sender.sendMessage(ChatColor.GRAY + "暂无记录");
+                return;
+            }
+            for (int i = 0; i < top.size(); i++) {
+                SpawnHeatmap.HotChunk chunk = top.get(i);
+                StringBuilder types = new StringBuilder();
+                for (Map.Entry<EntityType, Integer> entry : chunk.getTopTypes(3)) {
+                    if (types.length() > 0) types.append(", ");
+                    types.append(entry.getKey()).append('=').append(entry.getValue());
                 }
-                break;
+                sender.sendMessage(ChatColor.YELLOW + String.valueOf(i + 1) + ". " + ChatColor.WHITE +
+                        worldName(chunk.getWorldId()) + " 区块(" + chunk.getChunkX() + ", " + chunk.getChunkZ() + ")" +
+                        ChatColor.GRAY + " 方块(" + (chunk.getChunkX() << 4) + ", " + (chunk.getChunkZ() << 4) + ")" +
+                        ChatColor.WHITE + " " + chunk.getTotal() + " 次 " + ChatColor.GRAY + types);
+            }
+        });
+    }
 
-            case "sound":
-                if (args.length < 3) {
-                    player.sendMessage(ChatColor.RED + "用法: /ns vm sound <on|off>");
-                    return;
+    /**
+     * 将热力图导出为文件
+     *
+     * @param sender 命令发送者
+     * @param heatmap 热力图
+     * @param format 导出格式（csv 或 grid）
+     */
+    private void exportHeatmap(CommandSender sender, SpawnHeatmap heatmap, String format) {
+        if (!HEATMAP_FORMATS.contains(format)) {
+            sender.sendMessage(ChatColor.RED + "未知格式。可用选项: csv, grid");
+            return;
+        }
+        boolean csv = format.equals("csv");
+        File dir = new File(plugin.getDataFolder(), "heatmap");
+        File file = new File(dir, "heatmap-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) +
+                (csv ? ".csv" : ".txt"));
+
+        plugin.getServer().getAsyncScheduler().runNow(plugin, task -> {
+            List<SpawnHeatmap.WorldSnapshot> snapshots = heatmap.snapshot();
+            int chunks = 0;
+            for (SpawnHeatmap.WorldSnapshot snapshot : snapshots) {
+                chunks += snapshot.getChunkCount();
+            }
+            dir.mkdirs();
+            try (Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                if (csv) {
+                    SpawnHeatmap.writeCsv(snapshots, NoSpawnCommand::worldName, out);
+                } else {
+                    SpawnHeatmap.writeGrid(snapshots, NoSpawnCommand::worldName, out);
                 }
-                boolean soundState = args[2].equalsIgnoreCase("on");
-                prefs.setPlaySound(soundState);
-                visualizer.updatePlayerPrefs(player.getUniqueId(), prefs);
-                player.sendMessage(ChatColor.GREEN + "[NoSpawn] 音效已" + 
-                        (soundState ? ChatColor.GREEN + "开启" : ChatColor.RED + "关闭"));
-                break;
+            } catch (IOException e) {
+                plugin.getLogger().warning("导出热力图失败: " + e.getMessage());
+                sender.sendMessage(ChatColor.RED + "[NoSpawn] 导出热力图失败: " + e.getMessage());
+                return;
+            }
+            sender.sendMessage(ChatColor.GREEN + "[NoSpawn] 热力图已导出到 " + file.getPath() +
+                    ChatColor.GRAY + "（" + chunks + " 个区块）");
+        });
+    }
 
-            case "status":
-                sendVirtualWallStatus(player, prefs);
-                break;
+    /**
+     * 获取世界名称，世界未加载时返回UID
+     */
+    private static String worldName(UUID worldId) {
+        World world = Bukkit.getWorld(worldId);
+        return world != null ? world.getName() : worldId.toString();
+    }
 
-            case "reset":
-                visualizer.resetPlayerPrefs(player.getUniqueId());
-                player.sendMessage(ChatColor.GREEN + "[NoSpawn] 虚拟墙壁设置已重置为服务器默认值");
-                break;
+    private void sendLatency(CommandSender sender, String label, LatencyHistogram histogram, double elapsedTicks) {
+        if (histogram.getSamples() == 0) {
+            sender.sendMessage(ChatColor.YELLOW + label + ": " + ChatColor.GRAY + "暂无样本");
+            return;
+        }
+        sender.sendMessage(ChatColor.YELLOW + label + ": " + ChatColor.WHITE + String.format(
+                "p50 %s  p99 %s  p99.9 %s  最大 %s",
+                formatNanos(histogram.getPercentile(50)), formatNanos(histogram.getPercentile(99)),
+                formatNanos(histogram.getPercentile(99.9)), formatNanos(histogram.getMax())));
+        sender.sendMessage(ChatColor.GRAY + String.format("  调用 %d 次，采样 %d 次，平均 %s，约 %.3f ms/tick",
+                histogram.getCalls(), histogram.getSamples(), formatNanos((long) histogram.getMeanNanos()),
+                histogram.getEstimatedTotalNanos() / elapsedTicks / 1_000_000.0));
+    }
 
-            default:
-                player.sendMessage(ChatColor.RED + "未知子命令。可用选项: toggle, feedback, sound, status, reset");
-                break;
+    /**
+     * 按次数降序格式化前若干项
+     */
+    private static <K> String formatCounts(Map<K, Long> counts, int limit) {
+        if (counts.isEmpty()) return "无";
+        List<Map.Entry<K, Long>> entries = new ArrayList<>(counts.entrySet());
+        entries.sort(Map.Entry.<K, Long>comparingByValue().reversed());
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < Math.min(limit, entries.size()); i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(entries.get(i).getKey()).append('=').append(entries.get(i).getValue());
         }
+        if (entries.size() > limit) sb.append(" …");
+        return sb.toString();
     }
 
-    private void sendVirtualWallHelp(Player player, RegionVisualizer.PlayerVirtualWallPrefs prefs) {
-        player.sendMessage(ChatColor.AQUA + "=== 虚拟墙壁设置 (" + 
-                ChatColor.YELLOW + "/ns vm" + ChatColor.AQUA + ") ===");
-        player.sendMessage(ChatColor.GOLD + "/ns vm toggle" + 
-                ChatColor.GRAY + " - 开关虚拟墙壁");
-        player.sendMessage(ChatColor.GOLD + "/ns vm feedback <MESSAGE|PUSH_BACK|BOTH>" + 
-                ChatColor.GRAY + " - 设置反馈类型");
-        player.sendMessage(ChatColor.GOLD + "/ns vm sound <on|off>" + 
-                ChatColor.GRAY + " - 开关音效");
-        player.sendMessage(ChatColor.GOLD + "/ns vm status" + 
-                ChatColor.GRAY + " - 查看当前设置");
-        player.sendMessage(ChatColor.GOLD + "/ns vm reset" + 
-                ChatColor.GRAY + " - 重置为服务器默认");
-        sendVirtualWallStatus(player, prefs);
+    /**
+     * 格式化纳秒耗时
+     */
+    private static String formatNanos(long nanos) {
+        if (nanos < 1_000) return nanos + "ns";
+        if (nanos < 1_000_000) return String.format("%.1fµs", nanos / 1_000.0);
+        return String.format("%.2fms", nanos / 1_000_000.0);
     }
 
-    private void sendVirtualWallStatus(Player player, RegionVisualizer.PlayerVirtualWallPrefs prefs) {
-        player.sendMessage(ChatColor.GOLD + "=== 当前虚拟墙壁设置 ===");
-        player.sendMessage(ChatColor.YELLOW + "状态: " + 
-                (prefs.isEnabled() ? ChatColor.GREEN + "开启" : ChatColor.RED + "关闭"));
-        player.sendMessage(ChatColor.YELLOW + "反馈类型: " + ChatColor.WHITE + prefs.getFeedbackType().name());
-        player.sendMessage(ChatColor.YELLOW + "音效: " + 
-                (prefs.isPlaySound() ? ChatColor.GREEN + "开启" : ChatColor.RED + "关闭"));
-        player.sendMessage(ChatColor.GRAY + "提示: 击退强度使用服务器固定配置");
+    /**
+     * 格式化统计时长
+     */
+    private static String formatDuration(long millis) {
+        long seconds = millis / 1000;
+        if (seconds < 60) return seconds + "秒";
+        if (seconds < 3600) return seconds / 60 + "分" + seconds % 60 + "秒";
+        return seconds / 3600 + "小时" + seconds / 60 % 60 + "分";
     }
 
     private void handleVirtualWall(CommandSender sender, String[] args) {
@@ -480,14 +920,22 @@ public class NoSpawnCommand implements CommandExecutor, TabCompleter {
                 ChatColor.GRAY + " - 开关插件");
         sender.sendMessage(ChatColor.GOLD + "/ns reload" +
                 ChatColor.GRAY + " - 重载配置");
-        sender.sendMessage(ChatColor.GOLD + "/ns mode <circle|square>" +
-                ChatColor.GRAY + " - 切换区域模式 (圆形/方形)");
+        sender.sendMessage(ChatColor.GOLD + "/ns mode <circle|square|polygon>" +
+                ChatColor.GRAY + " - 切换区域模式 (圆形/方形/多边形)");
         sender.sendMessage(ChatColor.GOLD + "/ns visualize <on|off>" +
                 ChatColor.GRAY + " - 显示/隐藏边界投影");
-        sender.sendMessage(ChatColor.GOLD + "/ns log <on|off>" +
-                ChatColor.GRAY + " - 开关日志记录");
+        sender.sendMessage(ChatColor.GOLD + "/ns log <on|off|export <文件> [text|csv]>" +
+                ChatColor.GRAY + " - 开关日志记录/导出二进制日志");
+        sender.sendMessage(ChatColor.GOLD + "/ns log search <开始> <结束> [类型|*] [半径]" +
+                ChatColor.GRAY + " - 按时间、实体类型和区域搜索日志（/ns log page <页码> 翻页）");
         sender.sendMessage(ChatColor.GOLD + "/ns status" +
                 ChatColor.GRAY + " - 查看插件状态");
+        sender.sendMessage(ChatColor.GOLD + "/ns regions" +
+                ChatColor.GRAY + " - 列出所有保护区域");
+        sender.sendMessage(ChatColor.GOLD + "/ns stats [reset]" +
+                ChatColor.GRAY + " - 查看/清空生成判定统计");
+        sender.sendMessage(ChatColor.GOLD + "/ns heatmap [数量|export <csv|grid>|reset]" +
+                ChatColor.GRAY + " - 查看/导出/清空被阻止生成的区块热力图");
         sender.sendMessage(ChatColor.GOLD + "/ns vm <toggle|feedback|sound|status|reset>" +
                 ChatColor.GRAY + " - 管理个人虚拟墙壁设置");
     }
@@ -520,9 +968,12 @@ public class NoSpawnCommand implements CommandExecutor, TabCompleter {
         else if (args.length == 2) {
             switch (args[0].toLowerCase()) {
                 case "log":
-                    // 补全 on/off
-                    if ("on".startsWith(args[1].toLowerCase())) completions.add("on");
-                    if ("off".startsWith(args[1].toLowerCase())) completions.add("off");
+                    // 补全 on/off/export/search/page
+                    for (String opt : LOG_OPTIONS) {
+                        if (opt.startsWith(args[1].toLowerCase())) {
+                            completions.add(opt);
+                        }
+                    }
                     break;
                 case "visualize":
                     // 补全 on/off
@@ -533,13 +984,70 @@ public class NoSpawnCommand implements CommandExecutor, TabCompleter {
                     }
                     break;
                 case "mode":
-                    // 补全 circle/square
+                    // 补全 circle/square/polygon
                     for (String mode : MODE_OPTIONS) {
                         if (mode.startsWith(args[1].toLowerCase())) {
                             completions.add(mode);
                         }
                     }
                     break;
+                case "stats":
+                    if ("reset".startsWith(args[1].toLowerCase())) completions.add("reset");
+                    break;
+                case "heatmap":
+                    for (String opt : HEATMAP_OPTIONS) {
+                        if (opt.startsWith(args[1].toLowerCase())) {
+                            completions.add(opt);
+                        }
+                    }
+                    break;
+            }
+        }
+        // 第三个参数：热力图导出格式
+        else if (args.length == 3 && args[0].equalsIgnoreCase("heatmap") && args[1].equalsIgnoreCase("export")) {
+            for (String format : HEATMAP_FORMATS) {
+                if (format.startsWith(args[2].toLowerCase())) {
+                    completions.add(format);
+                }
+            }
+        }
+        // 第三个参数：日志目录中的二进制日志
+        else if (args.length == 3 && args[0].equalsIgnoreCase("log") && args[1].equalsIgnoreCase("export")) {
+            String[] files = plugin.getLoggerManager().getLogDirectory().list();
+            if (files != null) {
+                for (String file : files) {
+                    boolean binaryLog = file.endsWith(BinaryLog.EXTENSION)
+                            || file.endsWith(BinaryLog.EXTENSION + LogArchiver.GZIP_EXTENSION);
+                    if (binaryLog && file.startsWith(args[2])) {
+                        completions.add(file);
+                    }
+                }
+            }
+        }
+        // 第四个参数：日志导出格式
+        else if (args.length == 4 && args[0].equalsIgnoreCase("log") && args[1].equalsIgnoreCase("export")) {
+            for (String format : LOG_EXPORT_FORMATS) {
+                if (format.startsWith(args[3].toLowerCase())) {
+                    completions.add(format);
+                }
+            }
+        }
+        // 日志搜索：开始、结束时间和实体类型
+        else if (args.length >= 3 && args.length <= 5 && args[0].equalsIgnoreCase("log") && args[1].equalsIgnoreCase("search")) {
+            String prefix = args[args.length - 1].toUpperCase();
+            if (args.length < 5) {
+                for (String time : LOG_SEARCH_TIMES) {
+                    if (time.toUpperCase().startsWith(prefix)) {
+                        completions.add(time);
+                    }
+                }
+            } else {
+                if ("*".startsWith(prefix)) completions.add("*");
+                for (EntityType type : EntityType.values()) {
+                    if (type.isAlive() && type.name().startsWith(prefix)) {
+                        completions.add(type.name().toLowerCase());
+                    }
+                }
             }
         }
 
@@ -4,89 +4,91 @@ import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
 import org.bukkit.World;
-import org.bukkit.entity.Monster;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Entity;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.CreatureSpawnEvent;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
 import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
 import org.bukkit.plugin.java.JavaPlugin;
 
-import java.util.HashSet;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Set;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
 
 /**
  * NoSpawn插件主类
  *
  * <p>在指定区域内阻止怪物生成的Minecraft服务器插件。
- * 支持圆形和方形两种区域模式，以及虚拟墙壁和边界可视化功能。</p>
+ * 支持圆形、方形和多边形区域模式，以及虚拟墙壁和边界可视化功能。</p>
  *
  * @author await591
  */
 public final class NoSpawnPlugin extends JavaPlugin implements Listener {
 
     // ========== 插件状态字段 ==========
-    /** 插件是否启用 */
-    private boolean isEnabled;
+    /** 默认区域（即配置中 region 节定义的区域）的名称 */
+    public static final String DEFAULT_REGION_NAME = "default";
 
-    /** 是否阻止所有怪物（true）或仅阻止自定义列表中的怪物（false） */
-    private boolean blockAll;
-
-    /** 保护区所在世界的名称 */
-    private String worldName;
-
-    /** 被豁免的生成原因集合（这些原因生成的生物不会被阻止） */
-    private final Set<CreatureSpawnEvent.SpawnReason> allowedReasons = new HashSet<>();
-
-    // ========== 区域模式字段 ==========
-    /** 当前区域模式（圆形或方形） */
-    private RegionMode regionMode;
-
-    /** 区域中心位置 */
-    private Location center;
+    /**
+     * 当前的区域快照
+     *
+     * <p>包含总开关、所有区域及其预编译的区块索引。所有修改都构建新快照后整体替换，
+     * 热路径只读取这一个引用。</p>
+     */
+    private volatile RegionSnapshot snapshot = RegionSnapshot.EMPTY;
 
-    // ========== 圆形模式字段 ==========
-    /** 半径的平方（用于距离比较，避免开方运算） */
-    private double radiusSquared;
+    /** 当前应用的配置（由 {@link ConfigReloader} 在异步线程中解析后整体替换） */
+    private volatile FileConfiguration config;
 
-    /** 圆形模式的Y轴延伸范围（向上和向下的距离） */
-    private int circleExtendY;
+    // ========== 管理器字段 ==========
+    /** 日志管理器 */
+    private LoggerManager loggerManager;
 
-    // ========== 方形模式字段 ==========
-    /** X轴方向的延伸距离 */
-    private int extendX;
+    /** 区域可视化管理器 */
+    private RegionVisualizer visualizer;
 
-    /** Y轴方向的延伸距离 */
-    private int extendY;
+    /** Paper预生成事件监听器，非Paper服务端为null */
+    private PaperSpawnListener paperSpawnListener;
 
-    /** Z轴方向的延伸距离 */
-    private int extendZ;
+    /** 区块生成密度限制器 */
+    private final SpawnDensityLimiter densityLimiter = new SpawnDensityLimiter();
 
-    /** 方形区域的最小X坐标 */
-    private int squareMinX;
+    /** 影子模式候选区域的区块生成密度限制器 */
+    private final SpawnDensityLimiter shadowDensityLimiter = new SpawnDensityLimiter();
 
-    /** 方形区域的最小Y坐标 */
-    private int squareMinY;
+    /** 刷怪笼停用管理器 */
+    private SpawnerNeutralizer spawnerNeutralizer;
 
-    /** 方形区域的最小Z坐标 */
-    private int squareMinZ;
+    /** 配置重载器 */
+    private ConfigReloader configReloader;
 
-    /** 方形区域的最大X坐标 */
-    private int squareMaxX;
+    /** 配置保存器 */
+    private ConfigSaver configSaver;
 
-    /** 方形区域的最大Y坐标 */
-    private int squareMaxY;
+    /** 命令处理器，命令未在 plugin.yml 中注册时为null */
+    private NoSpawnCommand command;
 
-    /** 方形区域的最大Z坐标 */
-    private int squareMaxZ;
+    /** 生成判定统计 */
+    private final SpawnStats stats = new SpawnStats();
 
-    // ========== 管理器字段 ==========
-    /** 日志管理器 */
-    private LoggerManager loggerManager;
+    /** 被阻止生成的区块热力图 */
+    private final SpawnHeatmap heatmap = new SpawnHeatmap();
 
-    /** 区域可视化管理器 */
-    private RegionVisualizer visualizer;
+    /** 生成判定读取坐标用的复用位置（每个线程一个，不离开生成事件的处理方法） */
+    private static final ThreadLocal<Location> SPAWN_SCRATCH = ThreadLocal.withInitial(() -> new Location(null, 0, 0, 0));
 
     /**
      * 区域模式枚举
@@ -95,7 +97,9 @@ public final class NoSpawnPlugin extends JavaPlugin implements Listener {
         /** 圆形区域 */
         CIRCLE("圆形"),
         /** 方形区域 */
-        SQUARE("方形");
+        SQUARE("方形"),
+        /** 多边形区域 */
+        POLYGON("多边形");
 
         /** 显示名称 */
         private final String displayName;
@@ -144,19 +148,30 @@ public final class NoSpawnPlugin extends JavaPlugin implements Listener {
         // 初始化管理器
         this.loggerManager = new LoggerManager(this);
         this.visualizer = new RegionVisualizer(this);
+        this.spawnerNeutralizer = new SpawnerNeutralizer(this);
+        this.configReloader = new ConfigReloader(this);
+        this.configSaver = new ConfigSaver(this);
 
         // 加载配置
         loadSettings();
 
         // 注册命令和事件
         if (getCommand("nospawn") != null) {
-            getCommand("nospawn").setExecutor(new NoSpawnCommand(this));
+            this.command = new NoSpawnCommand(this);
+            getCommand("nospawn").setExecutor(command);
         } else {
             getLogger().warning("在 plugin.yml 中未找到 'nospawn' 命令，命令将不可用。");
         }
 
         // 注册事件监听器
         getServer().getPluginManager().registerEvents(this, this);
+        getServer().getPluginManager().registerEvents(spawnerNeutralizer, this);
+        if (PaperSpawnListener.isSupported()) {
+            this.paperSpawnListener = new PaperSpawnListener(this);
+            getServer().getPluginManager().registerEvents(paperSpawnListener, this);
+        } else {
+            getLogger().info("当前服务端不支持 PreCreatureSpawnEvent，仅使用 CreatureSpawnEvent 判定。");
+        }
 
         getLogger().info(ChatColor.GREEN + "NoSpawnPlugin 已启用！");
         getLogger().info("当前区域模式: " + getRegionMode().getDisplayName());
@@ -167,6 +182,18 @@ public final class NoSpawnPlugin extends JavaPlugin implements Listener {
      */
     @Override
     public void onDisable() {
+        // 停止监视配置文件
+        if (configReloader != null) {
+            configReloader.stopWatching();
+        }
+        // 写出尚未保存的配置修改
+        if (configSaver != null) {
+            configSaver.flush();
+        }
+        // 恢复被暂停的刷怪笼
+        if (spawnerNeutralizer != null) {
+            spawnerNeutralizer.restoreAll();
+        }
         // 关闭日志管理器
         if (loggerManager != null) {
             loggerManager.shutdown();
@@ -179,149 +206,308 @@ public final class NoSpawnPlugin extends JavaPlugin implements Listener {
     }
 
     /**
-     * 加载或重载所有配置
+     * 同步加载所有配置（插件启用时使用）
+     *
+     * <p>运行中的重载请使用 {@link ConfigReloader#reload}，它在异步线程中读取和比较配置，
+     * 只重新编译和应用发生变化的部分。</p>
      */
     public void loadSettings() {
         reloadConfig();
+        FileConfiguration loaded = getConfig();
+        applySettings(loaded, EnumSet.allOf(ConfigReloader.Subsystem.class),
+                compileRegions(loaded), compileShadowRegions(loaded));
+        configReloader.markApplied(loaded);
+    }
 
-        // 基本配置
-        this.isEnabled = getConfig().getBoolean("enabled", true);
-        this.blockAll = getConfig().getBoolean("block-all-monsters", true);
-        this.worldName = getConfig().getString("region.world", "world");
-
-        // 区域模式
-        String modeStr = getConfig().getString("region.mode", "circle").toUpperCase();
-        this.regionMode = RegionMode.fromString(modeStr);
-
-        // 加载中心点
-        World worldObj = Bukkit.getWorld(worldName);
-        if (worldObj != null) {
-            // 检查是否使用自定义中心点
-            if (getConfig().getBoolean("region.use-custom-center", false)) {
-                // 使用配置的自定义中心点
-                this.center = new Location(worldObj,
-                        getConfig().getDouble("region.center-x", 0),
-                        getConfig().getDouble("region.center-y", 64),
-                        getConfig().getDouble("region.center-z", 0));
-            } else {
-                // 使用世界出生点作为中心
-                this.center = worldObj.getSpawnLocation();
-            }
-
-            // 根据模式加载具体参数
-            if (regionMode == RegionMode.CIRCLE) {
-                // 加载圆形模式参数
-                int radius = getConfig().getInt("region.radius", 100);
-                this.radiusSquared = Math.pow(radius, 2);
-
-                // 加载圆形模式的Y轴范围
-                // 优先使用 circle-extends-y，如果没有则使用 extends.y，如果都没有则使用10
-                if (getConfig().contains("region.circle-extends-y")) {
-                    this.circleExtendY = getConfig().getInt("region.circle-extends-y", 10);
-                } else if (getConfig().contains("region.extends.y")) {
-                    // 向后兼容：如果没有圆形Y轴配置，则使用方形的Y轴配置
-                    this.circleExtendY = getConfig().getInt("region.extends.y", 10);
-                } else {
-                    this.circleExtendY = 10;
-                }
-            } else {
-                // 加载方形模式参数
-                this.extendX = Math.max(0, getConfig().getInt("region.extends.x", 50));
-                this.extendY = Math.max(0, getConfig().getInt("region.extends.y", 10));
-                this.extendZ = Math.max(0, getConfig().getInt("region.extends.z", 50));
-
-                // 计算中心坐标
-                int centerX = center.getBlockX();
-                int centerY = center.getBlockY();
-                int centerZ = center.getBlockZ();
-
-                // 计算边界坐标
-                this.squareMinX = centerX - extendX;
-                this.squareMaxX = centerX + extendX;
-                this.squareMinY = centerY - extendY;
-                this.squareMaxY = centerY + extendY;
-                this.squareMinZ = centerZ - extendZ;
-                this.squareMaxZ = centerZ + extendZ;
-            }
-        } else {
-            getLogger().severe("配置中指定的世界 '" + worldName + "' 不存在！");
-            this.center = null;
+    /**
+     * 应用配置中发生变化的部分（在全局区域线程中调用）
+     *
+     * @param loaded 新配置
+     * @param changed 发生变化的子系统
+     * @param regions 编译好的区域快照，区域未变化时为null
+     * @param shadowRegions 编译好的候选区域，影子模式未启用时为null
+     */
+    void applySettings(FileConfiguration loaded, Set<ConfigReloader.Subsystem> changed,
+                       RegionSnapshot regions, List<ProtectedRegion> shadowRegions) {
+        // 与游戏内命令的修改和异步保存共用同一把锁，尚未保存的修改会带到新配置上
+        configSaver.replace(loaded, () -> this.config = loaded);
+
+        if (changed.contains(ConfigReloader.Subsystem.HEATMAP)) {
+            heatmap.configure(loaded.getBoolean("heatmap.enabled", true),
+                    loaded.getInt("heatmap.max-chunks", 100_000));
+        }
+        if (changed.contains(ConfigReloader.Subsystem.SPAWNER) && spawnerNeutralizer != null) {
+            spawnerNeutralizer.reload();
         }
 
-        // 豁免原因
-        allowedReasons.clear();
-        for (String reason : getConfig().getStringList("excluded-spawn-reasons")) {
-            try {
-                allowedReasons.add(CreatureSpawnEvent.SpawnReason.valueOf(reason.toUpperCase()));
-            } catch (IllegalArgumentException ignored) {
-                getLogger().warning("未知的生成原因: " + reason);
-            }
+        // 整体发布新的区域快照
+        boolean shadowChanged = regions != null || changed.contains(ConfigReloader.Subsystem.SHADOW);
+        if (shadowChanged && shadowRegions != null) {
+            getLogger().info("影子模式已启用，候选区域 " + shadowRegions.size() + " 个（只记录，不取消生成）。");
+        }
+        if (regions != null) {
+            publish(regions.withShadow(shadowRegions));
+        } else if (shadowChanged) {
+            publish(snapshot.withShadow(shadowRegions));
+        } else if (changed.contains(ConfigReloader.Subsystem.SPAWNER) && spawnerNeutralizer != null) {
+            spawnerNeutralizer.refresh();
         }
 
         // 重载管理器配置
-        if (loggerManager != null) {
+        if (changed.contains(ConfigReloader.Subsystem.LOGGING) && loggerManager != null) {
             loggerManager.reload();
         }
-        if (visualizer != null) {
+        if (changed.contains(ConfigReloader.Subsystem.VISUALIZER) && visualizer != null) {
             visualizer.reload();
         }
+        if (changed.contains(ConfigReloader.Subsystem.WATCH)) {
+            configReloader.setWatching(loaded.getBoolean("config-reload.watch", true));
+        }
     }
 
     /**
-     * 核心：监听怪物生成事件
-     * 检查生物是否在保护区内生成，如果是则取消生成
+     * 从配置编译区域快照（不含候选区域），需要查询世界与出生点，须在全局区域线程上调用
      *
-     * @param event 生物生成事件
+     * @param source 配置
+     * @return 区域快照
      */
-    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
-    public void onMobSpawn(CreatureSpawnEvent event) {
-        // 插件未启用时不处理
-        if (!isEnabled) return;
+    RegionSnapshot compileRegions(ConfigurationSection source) {
+        // 基本配置
+        boolean enabled = source.getBoolean("enabled", true);
+        boolean blockAll = source.getBoolean("block-all-monsters", true);
+
+        // 默认区域
+        ProtectedRegion defaultRegion = null;
+        ConfigurationSection regionSection = source.getConfigurationSection("region");
+        if (regionSection != null) {
+            defaultRegion = ProtectedRegion.load(DEFAULT_REGION_NAME, regionSection, source, getLogger());
+        } else {
+            getLogger().severe("配置中缺少 region 节，默认区域未定义！");
+        }
 
-        // 检查是否在豁免原因列表中
-        if (allowedReasons.contains(event.getSpawnReason())) return;
+        // 命名区域
+        List<ProtectedRegion> namedRegions = loadNamedRegions(source, "regions");
+        return RegionSnapshot.build(enabled, blockAll, defaultRegion, namedRegions);
+    }
 
-        // 检查是否只阻止怪物
-        if (blockAll && !(event.getEntity() instanceof Monster)) return;
+    /**
+     * 从配置编译影子模式的候选区域，需要查询世界与出生点，须在全局区域线程上调用
+     *
+     * @param source 配置
+     * @return 候选区域列表，影子模式未启用时返回null
+     */
+    List<ProtectedRegion> compileShadowRegions(ConfigurationSection source) {
+        if (!source.getBoolean("shadow.enabled", false)) return null;
+        return loadNamedRegions(source, "shadow.regions");
+    }
 
-        Location loc = event.getLocation();
-        World w = loc.getWorld();
+    /**
+     * 加载配置中指定节定义的所有命名区域
+     *
+     * @param source 配置
+     * @param path 配置节路径（regions 或 shadow.regions）
+     * @return 命名区域列表
+     */
+    private List<ProtectedRegion> loadNamedRegions(ConfigurationSection source, String path) {
+        List<ProtectedRegion> namedRegions = new ArrayList<>();
+        ConfigurationSection section = source.getConfigurationSection(path);
+        if (section == null) return namedRegions;
+
+        for (String name : section.getKeys(false)) {
+            ConfigurationSection regionSection = section.getConfigurationSection(name);
+            if (regionSection == null) continue;
+            if (name.equalsIgnoreCase(DEFAULT_REGION_NAME)) {
+                getLogger().warning("区域名称 '" + name + "' 为默认区域保留，已跳过。");
+                continue;
+            }
+            ProtectedRegion region = ProtectedRegion.load(name, regionSection, source, getLogger());
+            if (region != null) {
+                namedRegions.add(region);
+            }
+        }
+        return namedRegions;
+    }
 
-        // 世界检查
-        if (w == null || !w.getName().equalsIgnoreCase(worldName)) return;
+    /**
+     * 按内存中的当前配置重新编译并发布区域（不读取磁盘）
+     */
+    public void rebuildRegions() {
+        FileConfiguration current = getConfig();
+        publish(compileRegions(current).withShadow(compileShadowRegions(current)));
+    }
 
-        // 中心点检查
-        if (center == null || !center.getWorld().equals(w)) return;
+    /**
+     * 获取当前应用的配置
+     *
+     * @return 配置
+     */
+    @Override
+    public FileConfiguration getConfig() {
+        FileConfiguration current = config;
+        if (current == null) {
+            reloadConfig();
+            current = config;
+        }
+        return current;
+    }
 
-        // 根据区域模式判断
-        boolean isInProtectedRegion = false;
+    /**
+     * 从磁盘同步读取配置，无法解析时使用内置默认值
+     */
+    @Override
+    public void reloadConfig() {
+        YamlConfiguration loaded = new YamlConfiguration();
+        try {
+            loaded = ConfigReloader.createConfig(this);
+            loaded.load(ConfigReloader.configFile(this));
+        } catch (IOException | InvalidConfigurationException e) {
+            getLogger().severe("无法读取 config.yml，使用默认配置: " + e.getMessage());
+        }
+        this.config = loaded;
+    }
 
-        if (regionMode == RegionMode.CIRCLE) {
-            // 圆形判断：检查XZ平面距离和Y轴范围
-            double xzDistanceSquared = Math.pow(loc.getX() - center.getX(), 2) +
-                    Math.pow(loc.getZ() - center.getZ(), 2);
+    /**
+     * 用修改后的默认区域发布新快照
+     *
+     * <p>会重新编译区块索引，使旧的区块判定整体失效。默认区域未定义时不做任何操作。</p>
+     *
+     * @param modifier 对默认区域的修改
+     */
+    private void updateDefaultRegion(UnaryOperator<ProtectedRegion> modifier) {
+        RegionSnapshot current = snapshot;
+        ProtectedRegion region = current.getDefaultRegion();
+        if (region == null) return;
+        publish(current.withDefaultRegion(modifier.apply(region)));
+    }
 
-            // 检查是否在半径范围内且在Y轴范围内
-            isInProtectedRegion = (xzDistanceSquared <= radiusSquared) &&
-                    (Math.abs(loc.getY() - center.getY()) <= circleExtendY);
-        } else {
-            // 方形判断：检查三个坐标范围
-            int x = loc.getBlockX();
-            int y = loc.getBlockY();
-            int z = loc.getBlockZ();
+    /**
+     * 发布新的区域快照，并让依赖区域范围的缓存随之更新
+     *
+     * @param newSnapshot 新快照
+     */
+    private void publish(RegionSnapshot newSnapshot) {
+        this.snapshot = newSnapshot;
+        if (spawnerNeutralizer != null) {
+            spawnerNeutralizer.refresh();
+        }
+    }
 
-            isInProtectedRegion = x >= squareMinX && x <= squareMaxX &&
-                    y >= squareMinY && y <= squareMaxY &&
-                    z >= squareMinZ && z <= squareMaxZ;
+    /**
+     * 核心：监听怪物生成事件
+     * 检查生物是否在保护区内生成，如果是则取消生成
+     *
+     * <p>作为 {@link PaperSpawnListener} 的兜底，处理不经过预生成事件的生成途径。</p>
+     *
+     * @param event 生物生成事件
+     */
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onMobSpawn(CreatureSpawnEvent event) {
+        // 读取一次快照，整个判定过程使用同一份一致的状态
+        RegionSnapshot current = snapshot;
+
+        // 插件未启用时不处理
+        if (!current.isEnabled()) return;
+
+        // 读入复用的位置对象，避免 event.getLocation() 每次生成都克隆一个新的 Location
+        Entity entity = event.getEntity();
+        UUID worldId = entity.getWorld().getUID();
+        Location loc = entity.getLocation(SPAWN_SCRATCH.get());
+        CreatureSpawnEvent.SpawnReason reason = event.getSpawnReason();
+        int typeOrdinal = event.getEntityType().ordinal();
+
+        long start = stats.getSpawnLatency().start();
+        int slot;
+        try {
+            stats.recordEvaluated();
+
+            // 通过区块网格索引取出该区块的预计算判定，完全在外的区块直接放行
+            RegionIndex.ChunkEntry chunk = current.getIndex().query(worldId, loc.getBlockX(), loc.getBlockZ());
+            slot = chunk == null ? SpawnDecisionKernel.ALLOWED : SpawnDecisionKernel.decide(chunk,
+                    loc.getX(), loc.getY(), loc.getZ(), typeOrdinal, reason.ordinal(), densityLimiter);
+            if (slot == SpawnDecisionKernel.EXEMPTED) {
+                stats.recordExempted(reason);
+            } else if (slot >= 0) {
+                event.setCancelled(true);
+                stats.recordCancelled(worldId, chunk.region(slot), typeOrdinal);
+                heatmap.record(worldId, loc.getBlockX() >> 4, loc.getBlockZ() >> 4, typeOrdinal);
+                loggerManager.logBlockedSpawn(event);
+            }
+        } finally {
+            stats.getSpawnLatency().stop(start);
         }
 
-        // 在保护区内，取消生成
-        if (isInProtectedRegion) {
-            event.setCancelled(true);
-            loggerManager.logBlockedSpawn(event);
+        // 影子模式：用候选区域再判定一次，只记录结果和耗时
+        RegionSnapshot shadow = current.getShadow();
+        if (shadow != null) {
+            evaluateShadow(shadow, worldId, loc.getX(), loc.getY(), loc.getZ(), typeOrdinal, reason.ordinal(), slot >= 0);
         }
     }
 
+    /**
+     * 用影子模式的候选区域判定一次生成
+     *
+     * <p>只记录候选区域是否会阻止以及判定耗时，从不取消生成。</p>
+     *
+     * @param shadow 候选区域快照
+     * @param worldId 世界UID
+     * @param x X坐标
+     * @param y Y坐标
+     * @param z Z坐标
+     * @param typeOrdinal 实体类型序号
+     * @param reasonOrdinal 生成原因序号
+     * @param liveBlocked 当前区域是否阻止了该生成
+     */
+    void evaluateShadow(RegionSnapshot shadow, UUID worldId, double x, double y, double z,
+                        int typeOrdinal, int reasonOrdinal, boolean liveBlocked) {
+        long start = stats.getShadowLatency().start();
+        try {
+            RegionIndex.ChunkEntry chunk = shadow.getIndex().query(worldId, (int) Math.floor(x), (int) Math.floor(z));
+            int slot = chunk == null ? SpawnDecisionKernel.ALLOWED : SpawnDecisionKernel.decide(chunk,
+                    x, y, z, typeOrdinal, reasonOrdinal, shadowDensityLimiter);
+            stats.recordShadow(slot >= 0 ? chunk.region(slot) : null, liveBlocked);
+        } finally {
+            stats.getShadowLatency().stop(start);
+        }
+    }
+
+    /**
+     * 记录实际发生的生成，用于区块密度上限
+     *
+     * <p>在MONITOR优先级处理，只统计最终没有被取消的生成。没有区域设置密度上限时直接返回。</p>
+     *
+     * @param event 生物生成事件
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onMobSpawned(CreatureSpawnEvent event) {
+        RegionSnapshot current = snapshot;
+        if (!current.isEnabled()) return;
+        RegionSnapshot shadow = current.getShadow();
+        boolean shadowLimited = shadow != null && shadow.isDensityLimited();
+        if (!current.isDensityLimited() && !shadowLimited) return;
+
+        Entity entity = event.getEntity();
+        UUID worldId = entity.getWorld().getUID();
+        Location loc = entity.getLocation(SPAWN_SCRATCH.get());
+
+        if (current.isDensityLimited()) {
+            recordDensity(current, densityLimiter, worldId, loc, event);
+        }
+        if (shadowLimited) {
+            recordDensity(shadow, shadowDensityLimiter, worldId, loc, event);
+        }
+    }
+
+    /**
+     * 在快照的区块判定中记录一次实际发生的生成
+     */
+    private static void recordDensity(RegionSnapshot target, SpawnDensityLimiter limiter, UUID worldId,
+                                      Location loc, CreatureSpawnEvent event) {
+        RegionIndex.ChunkEntry chunk = target.getIndex().query(worldId, loc.getBlockX(), loc.getBlockZ());
+        if (chunk == null) return;
+        limiter.record(target.getIndex(), chunk, loc.getX(), loc.getY(), loc.getZ(),
+                event.getSpawnReason(), event.getEntityType().ordinal());
+    }
+
     /**
      * 虚拟墙壁：监听玩家移动事件
      * 检测玩家是否进入/离开保护区并给予反馈
@@ -330,7 +516,7 @@ public final class NoSpawnPlugin extends JavaPlugin implements Listener {
      */
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onPlayerMove(PlayerMoveEvent event) {
-        if (!isEnabled || visualizer == null) return;
+        if (!snapshot.isEnabled() || visualizer == null) return;
 
         // 快速检查：位置是否变化了完整方块
         Location from = event.getFrom();
@@ -346,6 +532,71 @@ public final class NoSpawnPlugin extends JavaPlugin implements Listener {
         visualizer.checkAndHandleEntityEntry(event.getPlayer());
     }
 
+    /**
+     * 世界加载后将该世界中的区域登记到区块判定表
+     *
+     * <p>如果配置引用了该世界但区域因世界缺失未能加载（例如需要世界出生点作为中心），则重新加载配置。</p>
+     *
+     * @param event 世界加载事件
+     */
+    @EventHandler
+    public void onWorldLoad(WorldLoadEvent event) {
+        String worldName = event.getWorld().getName();
+        RegionSnapshot current = snapshot;
+        if (current.hasRegionIn(worldName)) {
+            publish(current.rebind(NoSpawnPlugin::resolveWorld));
+            getLogger().info("世界 '" + worldName + "' 已加载，相关区域已生效。");
+        } else if (isWorldReferenced(worldName)) {
+            getLogger().info("世界 '" + worldName + "' 已加载，重新编译区域。");
+            rebuildRegions();
+        }
+    }
+
+    /**
+     * 世界卸载时将该世界中的区域移出区块判定表
+     *
+     * @param event 世界卸载事件
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        RegionSnapshot current = snapshot;
+        UUID unloading = event.getWorld().getUID();
+        if (!current.getIndex().hasWorld(unloading)) return;
+
+        // 事件触发时世界仍可通过名称找到，需要显式排除
+        publish(current.rebind(worldName -> {
+            UUID worldId = resolveWorld(worldName);
+            return unloading.equals(worldId) ? null : worldId;
+        }));
+    }
+
+    /**
+     * 将世界名称解析为UID
+     *
+     * @param worldName 世界名称
+     * @return 世界UID，世界未加载时返回null
+     */
+    private static UUID resolveWorld(String worldName) {
+        World world = Bukkit.getWorld(worldName);
+        return world != null ? world.getUID() : null;
+    }
+
+    /**
+     * 检查配置中是否有区域引用了该世界
+     *
+     * @param worldName 世界名称
+     * @return 如果有区域引用该世界则返回true
+     */
+    private boolean isWorldReferenced(String worldName) {
+        if (worldName.equalsIgnoreCase(getConfig().getString("region.world", "world"))) return true;
+        ConfigurationSection section = getConfig().getConfigurationSection("regions");
+        if (section == null) return false;
+        for (String name : section.getKeys(false)) {
+            if (worldName.equalsIgnoreCase(section.getString(name + ".world", "world"))) return true;
+        }
+        return false;
+    }
+
     /**
      * 玩家退出游戏时清理状态
      *
@@ -356,17 +607,41 @@ public final class NoSpawnPlugin extends JavaPlugin implements Listener {
         if (visualizer != null) {
             visualizer.handlePlayerQuit(event.getPlayer());
         }
+        if (command != null) {
+            command.handlePlayerQuit(event.getPlayer());
+        }
+    }
+
+    /**
+     * 玩家换了世界时清除虚拟墙壁的进出状态
+     *
+     * @param event 玩家换世界事件
+     */
+    @EventHandler
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        if (visualizer != null) {
+            visualizer.handleWorldChange(event.getPlayer());
+        }
     }
 
     // ========== Getter/Setter 方法 ==========
 
+    /**
+     * 获取当前的区域快照
+     *
+     * @return 区域快照
+     */
+    public RegionSnapshot getSnapshot() {
+        return snapshot;
+    }
+
     /**
      * 检查插件是否启用
      *
      * @return 如果插件启用则返回true
      */
     public boolean isPluginEnabled() {
-        return isEnabled;
+        return snapshot.isEnabled();
     }
 
     /**
@@ -375,9 +650,8 @@ public final class NoSpawnPlugin extends JavaPlugin implements Listener {
      * @param enabled 是否启用
      */
     public void setPluginEnabled(boolean enabled) {
-        this.isEnabled = enabled;
-        getConfig().set("enabled", enabled);
-        saveConfig();
+        publish(snapshot.withEnabled(enabled));
+        configSaver.set("enabled", enabled);
     }
 
     /**
@@ -386,7 +660,8 @@ public final class NoSpawnPlugin extends JavaPlugin implements Listener {
      * @return 半径值
      */
     public int getRadius() {
-        return (int) Math.sqrt(radiusSquared);
+        ProtectedRegion region = snapshot.getDefaultRegion();
+        return region != null ? region.getRadius() : getConfig().getInt("region.radius", 100);
     }
 
     /**
@@ -395,9 +670,8 @@ public final class NoSpawnPlugin extends JavaPlugin implements Listener {
      * @param radius 半径值
      */
     public void setRadius(int radius) {
-        this.radiusSquared = Math.pow(radius, 2);
-        getConfig().set("region.radius", radius);
-        saveConfig();
+        updateDefaultRegion(region -> region.withRadius(radius));
+        configSaver.set("region.radius", radius);
     }
 
     /**
@@ -406,7 +680,8 @@ public final class NoSpawnPlugin extends JavaPlugin implements Listener {
      * @return Y轴延伸范围
      */
     public int getCircleExtendY() {
-        return circleExtendY;
+        ProtectedRegion region = snapshot.getDefaultRegion();
+        return region != null ? region.getCircleExtendY() : getConfig().getInt("region.circle-extends-y", 10);
     }
 
     /**
@@ -415,9 +690,9 @@ public final class NoSpawnPlugin extends JavaPlugin implements Listener {
      * @param extendY Y轴延伸范围
      */
     public void setCircleExtendY(int extendY) {
-        this.circleExtendY = Math.max(0, extendY);
-        getConfig().set("region.circle-extends-y", this.circleExtendY);
-        saveConfig();
+        int value = Math.max(0, extendY);
+        updateDefaultRegion(region -> region.withCircleExtendY(value));
+        configSaver.set("region.circle-extends-y", value);
     }
 
     /**
@@ -426,7 +701,8 @@ public final class NoSpawnPlugin extends JavaPlugin implements Listener {
      * @return 区域模式
      */
     public RegionMode getRegionMode() {
-        return regionMode;
+        ProtectedRegion region = snapshot.getDefaultRegion();
+        return region != null ? region.getMode() : RegionMode.fromString(getConfig().getString("region.mode", "circle"));
     }
 
     /**
@@ -435,9 +711,8 @@ public final class NoSpawnPlugin extends JavaPlugin implements Listener {
      * @param mode 新的区域模式
      */
     public void setRegionMode(RegionMode mode) {
-        this.regionMode = mode;
-        getConfig().set("region.mode", mode.name().toLowerCase());
-        saveConfig();
+        updateDefaultRegion(region -> region.withMode(mode));
+        configSaver.set("region.mode", mode.name().toLowerCase());
     }
 
     /**
@@ -446,17 +721,8 @@ public final class NoSpawnPlugin extends JavaPlugin implements Listener {
      * @return 区域描述
      */
     public String getRegionDescription() {
-        if (center == null) return "区域未定义";
-
-        if (regionMode == RegionMode.CIRCLE) {
-            int radius = getRadius();
-            return String.format("圆形，半径: %d格，Y轴范围: ±%d格，中心: (%d, %d, %d)",
-                    radius, circleExtendY, center.getBlockX(), center.getBlockY(), center.getBlockZ());
-        } else {
-            return String.format("方形，延伸范围: X±%d Y±%d Z±%d，中心: (%d, %d, %d)",
-                    extendX, extendY, extendZ,
-                    center.getBlockX(), center.getBlockY(), center.getBlockZ());
-        }
+        ProtectedRegion region = snapshot.getDefaultRegion();
+        return region != null ? region.describe() : "区域未定义";
     }
 
     /**
@@ -465,7 +731,9 @@ public final class NoSpawnPlugin extends JavaPlugin implements Listener {
      * @return 包含[X, Y, Z]延伸距离的数组
      */
     public int[] getSquareExtends() {
-        return new int[]{extendX, extendY, extendZ};
+        ProtectedRegion region = snapshot.getDefaultRegion();
+        if (region == null) return new int[]{0, 0, 0};
+        return new int[]{region.getExtendX(), region.getExtendY(), region.getExtendZ()};
     }
 
     /**
@@ -476,30 +744,17 @@ public final class NoSpawnPlugin extends JavaPlugin implements Listener {
      * @param z Z轴延伸距离
      */
     public void setSquareExtends(int x, int y, int z) {
-        this.extendX = Math.max(0, x);
-        this.extendY = Math.max(0, y);
-        this.extendZ = Math.max(0, z);
+        int extendX = Math.max(0, x);
+        int extendY = Math.max(0, y);
+        int extendZ = Math.max(0, z);
 
-        // 保存配置
-        getConfig().set("region.extends.x", extendX);
-        getConfig().set("region.extends.y", extendY);
-        getConfig().set("region.extends.z", extendZ);
+        // 构建新边界并整体发布
+        updateDefaultRegion(region -> region.withSquareExtends(extendX, extendY, extendZ));
 
-        // 重新计算边界
-        if (center != null) {
-            int centerX = center.getBlockX();
-            int centerY = center.getBlockY();
-            int centerZ = center.getBlockZ();
-
-            this.squareMinX = centerX - extendX;
-            this.squareMaxX = centerX + extendX;
-            this.squareMinY = centerY - extendY;
-            this.squareMaxY = centerY + extendY;
-            this.squareMinZ = centerZ - extendZ;
-            this.squareMaxZ = centerZ + extendZ;
-        }
-
-        saveConfig();
+        // 保存配置
+        configSaver.set("region.extends.x", extendX);
+        configSaver.set("region.extends.y", extendY);
+        configSaver.set("region.extends.z", extendZ);
     }
 
     /**
@@ -508,7 +763,19 @@ public final class NoSpawnPlugin extends JavaPlugin implements Listener {
      * @return 中心位置的副本
      */
     public Location getCenterLocation() {
-        return center != null ? center.clone() : null;
+        ProtectedRegion region = snapshot.getDefaultRegion();
+        if (region == null) return null;
+        World world = Bukkit.getWorld(region.getWorldName());
+        return world != null ? new Location(world, region.getCenterX(), region.getCenterY(), region.getCenterZ()) : null;
+    }
+
+    /**
+     * 获取当前的区域索引
+     *
+     * @return 区域索引
+     */
+    public RegionIndex getRegionIndex() {
+        return snapshot.getIndex();
     }
 
     /**
@@ -520,6 +787,69 @@ public final class NoSpawnPlugin extends JavaPlugin implements Listener {
         return loggerManager;
     }
 
+    /**
+     * 获取区块生成密度限制器
+     *
+     * @return 密度限制器实例
+     */
+    public SpawnDensityLimiter getDensityLimiter() {
+        return densityLimiter;
+    }
+
+    /**
+     * 获取生成判定统计
+     *
+     * @return 统计实例
+     */
+    public SpawnStats getStats() {
+        return stats;
+    }
+
+    /**
+     * 获取被阻止生成的区块热力图
+     *
+     * @return 热力图实例
+     */
+    public SpawnHeatmap getHeatmap() {
+        return heatmap;
+    }
+
+    /**
+     * 获取刷怪笼停用管理器
+     *
+     * @return 刷怪笼停用管理器实例
+     */
+    public SpawnerNeutralizer getSpawnerNeutralizer() {
+        return spawnerNeutralizer;
+    }
+
+    /**
+     * 获取配置重载器
+     *
+     * @return 配置重载器实例
+     */
+    public ConfigReloader getConfigReloader() {
+        return configReloader;
+    }
+
+    /**
+     * 获取配置保存器
+     *
+     * @return 配置保存器实例
+     */
+    public ConfigSaver getConfigSaver() {
+        return configSaver;
+    }
+
+    /**
+     * 获取Paper预生成事件监听器
+     *
+     * @return 监听器实例，非Paper服务端返回null
+     */
+    public PaperSpawnListener getPaperSpawnListener() {
+        return paperSpawnListener;
+    }
+
     /**
      * 获取区域可视化管理器
      *
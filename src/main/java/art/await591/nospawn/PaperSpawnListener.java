@@ -0,0 +1,137 @@
+package art.await591.nospawn;
+
+import com.destroystokyo.paper.event.entity.PreCreatureSpawnEvent;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.EntityType;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.CreatureSpawnEvent;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Paper预生成事件监听器
+ *
+ * <p>在实体构造之前判定生成：PreCreatureSpawnEvent 只携带位置、实体类型和生成原因，
+ * 在此取消可以省去实体构造、AI初始化和装备生成的开销。
+ * 不经过预生成事件的生成途径仍由 {@link NoSpawnPlugin#onMobSpawn} 兜底。</p>
+ *
+ * <p>对于深度处于保护区内、且所有重叠区域都无条件阻止自然生成的区块（见
+ * {@link RegionIndex.ChunkEntry#abortsNaturalSpawns()}），还会调用 {@code setShouldAbortSpawn}
+ * 中止整轮生成尝试，避免服务端在同一区块反复重试生成群组。其他区块只按类型逐个取消，
+ * 区域放行的类型和密度上限内的生成不受影响。</p>
+ *
+ * <p>影子模式下，预生成阶段放行的生成会在 {@link NoSpawnPlugin#onMobSpawn} 中由候选区域判定，
+ * 这里只补上被当前区域提前取消的那部分，保证每次生成尝试只被候选区域判定一次。</p>
+ *
+ * <p>此类引用了Paper专有的事件类，只在 {@link #isSupported()} 为true时注册。</p>
+ *
+ * @author await591
+ */
+public class PaperSpawnListener implements Listener {
+    /** 插件主类实例 */
+    private final NoSpawnPlugin plugin;
+
+    /** 被中止的自然生成尝试次数 */
+    private final LongAdder abortedAttempts = new LongAdder();
+
+    /**
+     * 构造Paper预生成事件监听器
+     *
+     * @param plugin 插件主类实例
+     */
+    public PaperSpawnListener(NoSpawnPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * 检查当前服务端是否提供 PreCreatureSpawnEvent
+     *
+     * @return 如果是Paper或其分支则返回true
+     */
+    public static boolean isSupported() {
+        try {
+            Class.forName("com.destroystokyo.paper.event.entity.PreCreatureSpawnEvent");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 获取被中止的自然生成尝试次数
+     *
+     * @return 中止次数
+     */
+    public long getAbortedAttempts() {
+        return abortedAttempts.sum();
+    }
+
+    /**
+     * 快速路径：在实体构造之前判定生成
+     *
+     * @param event 生物预生成事件
+     */
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onPreMobSpawn(PreCreatureSpawnEvent event) {
+        RegionSnapshot current = plugin.getSnapshot();
+        if (!current.isEnabled()) return;
+
+        SpawnStats stats = plugin.getStats();
+        long start = stats.getSpawnLatency().start();
+        boolean cancelled;
+        try {
+            cancelled = handle(current, stats, event);
+        } finally {
+            stats.getSpawnLatency().stop(start);
+        }
+
+        // 影子模式：当前区域提前取消的生成不会再触发 CreatureSpawnEvent，在这里由候选区域判定
+        RegionSnapshot shadow = current.getShadow();
+        if (cancelled && shadow != null) {
+            Location loc = event.getSpawnLocation();
+            plugin.evaluateShadow(shadow, loc.getWorld().getUID(), loc.getX(), loc.getY(), loc.getZ(),
+                    event.getType().ordinal(), event.getReason().ordinal(), true);
+        }
+    }
+
+    /**
+     * 判定预生成事件
+     *
+     * @return 是否取消了该生成
+     */
+    private boolean handle(RegionSnapshot current, SpawnStats stats, PreCreatureSpawnEvent event) {
+        Location loc = event.getSpawnLocation();
+        World w = loc.getWorld();
+        if (w == null) return false;
+        stats.recordPreEvaluated();
+
+        // 通过区块网格索引取出该区块的预计算判定，完全在外的区块直接放行
+        RegionIndex.ChunkEntry chunk = current.getIndex().query(w.getUID(), loc.getBlockX(), loc.getBlockZ());
+        if (chunk == null) return false;
+
+        EntityType type = event.getType();
+        CreatureSpawnEvent.SpawnReason reason = event.getReason();
+        int slot = SpawnDecisionKernel.decide(chunk, loc.getX(), loc.getY(), loc.getZ(),
+                type.ordinal(), reason.ordinal(), plugin.getDensityLimiter());
+        // 豁免的生成会继续触发 CreatureSpawnEvent，在那里统计
+        if (slot < 0) return false;
+
+        event.setCancelled(true);
+        stats.recordCancelled(w.getUID(), chunk.region(slot), type.ordinal());
+        plugin.getHeatmap().record(w.getUID(), loc.getBlockX() >> 4, loc.getBlockZ() >> 4, type.ordinal());
+
+        // 一轮自然生成的所有尝试共享起点的Y坐标，XZ随机游走不会超出深度在内区块的外扩范围；
+        // 只有所有重叠区域对任何类型都无条件阻止时，整轮尝试才一定都会被拦截，可以直接中止
+        if (reason == CreatureSpawnEvent.SpawnReason.NATURAL && chunk.abortsNaturalSpawns()
+                && chunk.isDeepInside(slot)) {
+            event.setShouldAbortSpawn(true);
+            abortedAttempts.increment();
+        }
+
+        plugin.getLoggerManager().logBlockedSpawn(type, loc, reason);
+        return true;
+    }
+}
@@ -0,0 +1,246 @@
+package art.await591.nospawn;
+
+import java.util.Arrays;
+
+/**
+ * 多边形区域形状
+ *
+ * <p>由XZ平面上任意顶点组成的多边形加上一个Y轴范围。构造时按方块行（Z）预先计算
+ * 每一行落在多边形内的X区间表，查询时只需定位到行并在极少量区间中查找，
+ * 开销接近常数，与顶点数无关。</p>
+ *
+ * <p>顶点使用方块坐标；方块中心 (x+0.5, z+0.5) 落在多边形内的方块列视为在区域内。
+ * 实例不可变。</p>
+ *
+ * @author await591
+ */
+public final class PolygonShape {
+    /** 空的区间行 */
+    private static final int[] NO_SPANS = new int[0];
+
+    /** 顶点X坐标 */
+    private final double[] xs;
+
+    /** 顶点Z坐标 */
+    private final double[] zs;
+
+    /** 包围盒（方块坐标，闭区间） */
+    private final int minX, maxX, minZ, maxZ;
+
+    /** Y轴范围（方块坐标，闭区间） */
+    private final int minY, maxY;
+
+    /** 每一行（下标为 z - minZ）的方块列区间，依次为 [起点, 终点, 起点, 终点, ...]，均为闭区间且升序 */
+    private final int[][] rowSpans;
+
+    /**
+     * 构造多边形区域形状
+     *
+     * @param xs 顶点X坐标
+     * @param zs 顶点Z坐标
+     * @param minY 最小Y坐标
+     * @param maxY 最大Y坐标
+     */
+    public PolygonShape(double[] xs, double[] zs, int minY, int maxY) {
+        if (xs.length != zs.length || xs.length < 3) {
+            throw new IllegalArgumentException("多边形至少需要3个顶点");
+        }
+        this.xs = xs.clone();
+        this.zs = zs.clone();
+        this.minY = Math.min(minY, maxY);
+        this.maxY = Math.max(minY, maxY);
+
+        double lowX = Double.MAX_VALUE, highX = -Double.MAX_VALUE;
+        double lowZ = Double.MAX_VALUE, highZ = -Double.MAX_VALUE;
+        for (int i = 0; i < xs.length; i++) {
+            lowX = Math.min(lowX, xs[i]);
+            highX = Math.max(highX, xs[i]);
+            lowZ = Math.min(lowZ, zs[i]);
+            highZ = Math.max(highZ, zs[i]);
+        }
+        this.minX = (int) Math.floor(lowX);
+        this.maxX = (int) Math.floor(highX);
+        this.minZ = (int) Math.floor(lowZ);
+        this.maxZ = (int) Math.floor(highZ);
+        this.rowSpans = buildRowSpans();
+    }
+
+    /**
+     * 扫描线：计算每一行方块中心线与多边形边的交点，配对为区间
+     */
+    private int[][] buildRowSpans() {
+        int rows = maxZ - minZ + 1;
+        int[][] spans = new int[rows][];
+        double[] crossings = new double[xs.length];
+        for (int row = 0; row < rows; row++) {
+            double zc = minZ + row + 0.5;
+            int count = 0;
+            for (int i = 0, j = xs.length - 1; i < xs.length; j = i++) {
+                if ((zs[i] > zc) != (zs[j] > zc)) {
+                    crossings[count++] = xs[i] + (zc - zs[i]) * (xs[j] - xs[i]) / (zs[j] - zs[i]);
+                }
+            }
+            Arrays.sort(crossings, 0, count);
+
+            // 奇偶规则：第 2k 与 2k+1 个交点之间为多边形内部
+            int[] buffer = new int[count];
+            int n = 0;
+            for (int k = 0; k + 1 < count; k += 2) {
+                int start = (int) Math.ceil(crossings[k] - 0.5);
+                int end = (int) Math.ceil(crossings[k + 1] - 0.5) - 1;
+                if (start <= end) {
+                    buffer[n++] = start;
+                    buffer[n++] = end;
+                }
+            }
+            spans[row] = n == 0 ? NO_SPANS : Arrays.copyOf(buffer, n);
+        }
+        return spans;
+    }
+
+    /**
+     * 判断方块列是否在多边形内（不检查Y轴）
+     *
+     * @param blockX 方块X坐标
+     * @param blockZ 方块Z坐标
+     * @return 如果在多边形内则返回true
+     */
+    public boolean containsColumn(int blockX, int blockZ) {
+        if (blockZ < minZ || blockZ > maxZ || blockX < minX || blockX > maxX) return false;
+        int[] spans = rowSpans[blockZ - minZ];
+        // 绝大多数行只有一两个区间，线性查找即可
+        for (int k = 0; k < spans.length; k += 2) {
+            if (blockX < spans[k]) return false;
+            if (blockX <= spans[k + 1]) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 判断Y坐标是否在范围内
+     *
+     * @param blockY 方块Y坐标
+     * @return 如果在范围内则返回true
+     */
+    public boolean containsY(int blockY) {
+        return blockY >= minY && blockY <= maxY;
+    }
+
+    /**
+     * 判定方块列矩形 [x0, x1) × [z0, z1) 与多边形的关系
+     *
+     * @param x0 最小X（含）
+     * @param z0 最小Z（含）
+     * @param x1 最大X（不含）
+     * @param z1 最大Z（不含）
+     * @return {@link ProtectedRegion#CHUNK_INSIDE}、{@link ProtectedRegion#CHUNK_OUTSIDE} 或 {@link ProtectedRegion#CHUNK_PARTIAL}
+     */
+    public byte classifyArea(int x0, int z0, int x1, int z1) {
+        int lastX = x1 - 1;
+        int lastZ = z1 - 1;
+        if (lastX < minX || x0 > maxX || lastZ < minZ || z0 > maxZ) return ProtectedRegion.CHUNK_OUTSIDE;
+
+        boolean any = false;
+        boolean all = true;
+        for (int z = z0; z <= lastZ; z++) {
+            if (z < minZ || z > maxZ) {
+                all = false;
+                continue;
+            }
+            int[] spans = rowSpans[z - minZ];
+            boolean covered = false;
+            for (int k = 0; k < spans.length; k += 2) {
+                if (spans[k + 1] < x0 || spans[k] > lastX) continue;
+                any = true;
+                if (spans[k] <= x0 && spans[k + 1] >= lastX) covered = true;
+            }
+            if (!covered) all = false;
+            if (any && !all) return ProtectedRegion.CHUNK_PARTIAL;
+        }
+        if (all) return ProtectedRegion.CHUNK_INSIDE;
+        return any ? ProtectedRegion.CHUNK_PARTIAL : ProtectedRegion.CHUNK_OUTSIDE;
+    }
+
+    /**
+     * 获取顶点数量
+     *
+     * @return 顶点数量
+     */
+    public int getVertexCount() {
+        return xs.length;
+    }
+
+    /**
+     * 获取第i个顶点的X坐标
+     *
+     * @param i 下标
+     * @return X坐标
+     */
+    public double getVertexX(int i) {
+        return xs[i];
+    }
+
+    /**
+     * 获取第i个顶点的Z坐标
+     *
+     * @param i 下标
+     * @return Z坐标
+     */
+    public double getVertexZ(int i) {
+        return zs[i];
+    }
+
+    /**
+     * 获取包围盒的最小X坐标
+     *
+     * @return 最小X坐标（方块，含）
+     */
+    public int getMinX() {
+        return minX;
+    }
+
+    /**
+     * 获取包围盒的最大X坐标
+     *
+     * @return 最大X坐标（方块，含）
+     */
+    public int getMaxX() {
+        return maxX;
+    }
+
+    /**
+     * 获取包围盒的最小Z坐标
+     *
+     * @return 最小Z坐标（方块，含）
+     */
+    public int getMinZ() {
+        return minZ;
+    }
+
+    /**
+     * 获取包围盒的最大Z坐标
+     *
+     * @return 最大Z坐标（方块，含）
+     */
+    public int getMaxZ() {
+        return maxZ;
+    }
+
+    /**
+     * 获取Y轴范围的下限
+     *
+     * @return 最小Y坐标（方块，含）
+     */
+    public int getMinY() {
+        return minY;
+    }
+
+    /**
+     * 获取Y轴范围的上限
+     *
+     * @return 最大Y坐标（方块，含）
+     */
+    public int getMaxY() {
+        return maxY;
+    }
+}
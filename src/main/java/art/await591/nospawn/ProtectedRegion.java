@@ -0,0 +1,738 @@
+package art.await591.nospawn;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.event.entity.CreatureSpawnEvent;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * 保护区域
+ *
+ * <p>描述一个命名的保护区域：所在世界、形状（圆形/方形/多边形）以及该区域自己的拦截设置。
+ * 实例在构造时预先计算好边界，之后不可变，可在多个线程间安全共享。</p>
+ *
+ * @author await591
+ */
+public final class ProtectedRegion {
+    /** 区块判定：区块完全在区域XZ范围之外 */
+    public static final byte CHUNK_OUTSIDE = 0;
+
+    /** 区块判定：区块完全在区域XZ范围之内（只需检查Y轴） */
+    public static final byte CHUNK_INSIDE = 1;
+
+    /** 区块判定：区块跨越区域边界（需要逐坐标检查） */
+    public static final byte CHUNK_PARTIAL = 2;
+
+    /** 区域名称 */
+    private final String name;
+
+    /** 区域所在世界的名称 */
+    private final String worldName;
+
+    /** 区域模式 */
+    private final NoSpawnPlugin.RegionMode mode;
+
+    /** 中心X坐标 */
+    private final double centerX;
+
+    /** 中心Y坐标 */
+    private final double centerY;
+
+    /** 中心Z坐标 */
+    private final double centerZ;
+
+    /** 圆形模式半径 */
+    private final int radius;
+
+    /** 半径的平方（用于距离比较，避免开方运算） */
+    private final double radiusSquared;
+
+    /** 圆形模式的Y轴延伸范围 */
+    private final int circleExtendY;
+
+    /** 方形模式三轴延伸距离 */
+    private final int extendX, extendY, extendZ;
+
+    /** 多边形模式的形状（其他模式为null） */
+    private final PolygonShape polygon;
+
+    /** 包围盒（方块坐标，闭区间），圆形模式为外接正方形 */
+    private final int minX, minY, minZ, maxX, maxY, maxZ;
+
+    /** 本区域阻止的实体类型 */
+    private final EntityTypeFilter typeFilter;
+
+    /** 本区域豁免的生成原因 */
+    private final Set<CreatureSpawnEvent.SpawnReason> allowedReasons;
+
+    /** 本区域豁免的生成原因，按 SpawnReason 序号（判定热路径使用） */
+    private final boolean[] exemptReasons;
+
+    /** 每个区块在一个时间窗口内允许的生成数，0表示完全阻止 */
+    private final int densityLimit;
+
+    /** 密度上限的时间窗口（毫秒） */
+    private final long densityWindowMillis;
+
+    /**
+     * 构造保护区域
+     *
+     * @param name 区域名称
+     * @param worldName 世界名称
+     * @param mode 区域模式
+     * @param centerX 中心X坐标
+     * @param centerY 中心Y坐标
+     * @param centerZ 中心Z坐标
+     * @param radius 圆形半径
+     * @param circleExtendY 圆形Y轴范围
+     * @param extendX 方形X轴延伸
+     * @param extendY 方形Y轴延伸
+     * @param extendZ 方形Z轴延伸
+     * @param polygon 多边形形状（仅多边形模式需要，其他模式可为null）
+     * @param typeFilter 阻止的实体类型
+     * @param allowedReasons 豁免的生成原因
+     * @param densityLimit 每个区块在一个时间窗口内允许的生成数，0表示完全阻止
+     * @param densityWindowMillis 密度上限的时间窗口（毫秒）
+     */
+    public ProtectedRegion(String name, String worldName, NoSpawnPlugin.RegionMode mode,
+                           double centerX, double centerY, double centerZ,
+                           int radius, int circleExtendY, int extendX, int extendY, int extendZ,
+                           PolygonShape polygon, EntityTypeFilter typeFilter, Set<CreatureSpawnEvent.SpawnReason> allowedReasons,
+                           int densityLimit, long densityWindowMillis) {
+        this.name = name;
+        this.worldName = worldName;
+        this.mode = mode;
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.centerZ = centerZ;
+        this.radius = Math.max(0, radius);
+        this.radiusSquared = Math.pow(this.radius, 2);
+        this.circleExtendY = Math.max(0, circleExtendY);
+        this.extendX = Math.max(0, extendX);
+        this.extendY = Math.max(0, extendY);
+        this.extendZ = Math.max(0, extendZ);
+        this.polygon = polygon;
+        this.typeFilter = typeFilter;
+        this.allowedReasons = allowedReasons.isEmpty()
+                ? EnumSet.noneOf(CreatureSpawnEvent.SpawnReason.class)
+                : EnumSet.copyOf(allowedReasons);
+        this.exemptReasons = new boolean[CreatureSpawnEvent.SpawnReason.values().length];
+        for (CreatureSpawnEvent.SpawnReason reason : this.allowedReasons) {
+            this.exemptReasons[reason.ordinal()] = true;
+        }
+        this.densityLimit = Math.max(0, densityLimit);
+        this.densityWindowMillis = Math.max(1000L, densityWindowMillis);
+
+        if (mode == NoSpawnPlugin.RegionMode.CIRCLE) {
+            this.minX = (int) Math.floor(centerX - this.radius);
+            this.maxX = (int) Math.floor(centerX + this.radius);
+            this.minZ = (int) Math.floor(centerZ - this.radius);
+            this.maxZ = (int) Math.floor(centerZ + this.radius);
+            this.minY = (int) Math.floor(centerY - this.circleExtendY);
+            this.maxY = (int) Math.floor(centerY + this.circleExtendY);
+        } else if (mode == NoSpawnPlugin.RegionMode.POLYGON) {
+            if (polygon == null) throw new IllegalArgumentException("多边形模式需要提供顶点");
+            this.minX = polygon.getMinX();
+            this.maxX = polygon.getMaxX();
+            this.minY = polygon.getMinY();
+            this.maxY = polygon.getMaxY();
+            this.minZ = polygon.getMinZ();
+            this.maxZ = polygon.getMaxZ();
+        } else {
+            int cx = getCenterBlockX();
+            int cy = getCenterBlockY();
+            int cz = getCenterBlockZ();
+            this.minX = cx - this.extendX;
+            this.maxX = cx + this.extendX;
+            this.minY = cy - this.extendY;
+            this.maxY = cy + this.extendY;
+            this.minZ = cz - this.extendZ;
+            this.maxZ = cz + this.extendZ;
+        }
+    }
+
+    /**
+     * 从配置节加载保护区域
+     *
+     * <p>未在配置节中出现的 {@code block-all-monsters}、{@code blocked-mobs} 与
+     * {@code excluded-spawn-reasons} 使用 defaults 中的全局值；只写了 {@code blocked-mobs}
+     * 的区域视为使用自定义阻止列表。{@code allowed-mobs} 中的类型在本区域总是放行。</p>
+     *
+     * <p>世界尚未加载时，只要区域不依赖世界出生点作为中心仍会加载，
+     * 待世界加载后才进入区块判定表。</p>
+     *
+     * @param name 区域名称
+     * @param section 区域配置节
+     * @param defaults 全局配置（提供默认的过滤设置）
+     * @param logger 用于输出警告的日志器
+     * @return 保护区域，如果配置无效或需要出生点但世界不存在则返回null
+     */
+    public static ProtectedRegion load(String name, ConfigurationSection section, ConfigurationSection defaults,
+                                       Logger logger) {
+        String worldName = section.getString("world", "world");
+        World world = Bukkit.getWorld(worldName);
+
+        NoSpawnPlugin.RegionMode mode = NoSpawnPlugin.RegionMode.fromString(section.getString("mode", "circle"));
+
+        // 多边形顶点（任何模式下都会解析，便于运行时切换到多边形模式）
+        PolygonShape polygon = parsePolygon(name, section, logger);
+        if (mode == NoSpawnPlugin.RegionMode.POLYGON && polygon == null) {
+            logger.severe("区域 '" + name + "' 为多边形模式，但 vertices 无效（至少需要3个 \"x,z\" 顶点）！");
+            return null;
+        }
+
+        // 检查是否使用自定义中心点，否则使用世界出生点
+        Location center;
+        if (mode == NoSpawnPlugin.RegionMode.POLYGON) {
+            // 多边形以包围盒中心作为中心（用于击退方向与描述）
+            center = new Location(world,
+                    (polygon.getMinX() + polygon.getMaxX() + 1) / 2.0,
+                    (polygon.getMinY() + polygon.getMaxY()) / 2.0,
+                    (polygon.getMinZ() + polygon.getMaxZ() + 1) / 2.0);
+        } else if (section.getBoolean("use-custom-center", false)) {
+            center = new Location(world,
+                    section.getDouble("center-x", 0),
+                    section.getDouble("center-y", 64),
+                    section.getDouble("center-z", 0));
+        } else if (world != null) {
+            center = world.getSpawnLocation();
+        } else {
+            logger.severe("区域 '" + name + "' 指定的世界 '" + worldName + "' 不存在，且未设置自定义中心点！");
+            return null;
+        }
+        if (world == null) {
+            logger.warning("区域 '" + name + "' 指定的世界 '" + worldName + "' 尚未加载，将在该世界加载后生效。");
+        }
+
+        // 圆形Y轴范围：优先使用 circle-extends-y，向后兼容 extends.y
+        int circleExtendY;
+        if (section.contains("circle-extends-y")) {
+            circleExtendY = section.getInt("circle-extends-y", 10);
+        } else {
+            circleExtendY = section.getInt("extends.y", 10);
+        }
+
+        // 实体类型过滤表与豁免原因，区域未配置时使用全局值
+        boolean blockAll;
+        if (section.contains("block-all-monsters")) {
+            blockAll = section.getBoolean("block-all-monsters");
+        } else {
+            blockAll = !section.contains("blocked-mobs") && defaults.getBoolean("block-all-monsters", true);
+        }
+        List<String> blockedMobs = (section.contains("blocked-mobs") ? section : defaults).getStringList("blocked-mobs");
+        EntityTypeFilter typeFilter = EntityTypeFilter.compile(blockAll, blockedMobs,
+                section.getStringList("allowed-mobs"), logger);
+        Set<CreatureSpawnEvent.SpawnReason> reasons = parseReasons(
+                (section.contains("excluded-spawn-reasons") ? section : defaults).getStringList("excluded-spawn-reasons"),
+                logger);
+
+        // 密度上限：区域未配置时使用全局值
+        ConfigurationSection density = section.contains("density-limit") ? section : defaults;
+        int densityLimit = density.getInt("density-limit.max-per-chunk", 0);
+        long densityWindowMillis = density.getLong("density-limit.window-seconds", 60) * 1000L;
+
+        return new ProtectedRegion(name, world != null ? world.getName() : worldName, mode, center.getX(), center.getY(), center.getZ(),
+                section.getInt("radius", 100), circleExtendY,
+                section.getInt("extends.x", 50), section.getInt("extends.y", 10), section.getInt("extends.z", 50),
+                polygon, typeFilter, reasons, densityLimit, densityWindowMillis);
+    }
+
+    /**
+     * 解析多边形顶点
+     *
+     * <p>顶点格式为 {@code "x,z"} 字符串列表，Y轴范围由 {@code min-y} 与 {@code max-y} 指定。</p>
+     *
+     * @param name 区域名称
+     * @param section 区域配置节
+     * @param logger 用于输出警告的日志器
+     * @return 多边形形状，如果未配置或顶点不足则返回null
+     */
+    private static PolygonShape parsePolygon(String name, ConfigurationSection section, Logger logger) {
+        List<String> vertices = section.getStringList("vertices");
+        if (vertices.size() < 3) return null;
+
+        double[] xs = new double[vertices.size()];
+        double[] zs = new double[vertices.size()];
+        for (int i = 0; i < vertices.size(); i++) {
+            String[] parts = vertices.get(i).split(",");
+            try {
+                xs[i] = Double.parseDouble(parts[0].trim());
+                zs[i] = Double.parseDouble(parts[1].trim());
+            } catch (RuntimeException e) {
+                logger.warning("区域 '" + name + "' 的顶点格式错误: " + vertices.get(i));
+                return null;
+            }
+        }
+        return new PolygonShape(xs, zs, section.getInt("min-y", -64), section.getInt("max-y", 320));
+    }
+
+    /**
+     * 返回修改了区域模式的副本
+     *
+     * <p>没有配置多边形顶点的区域无法切换为多边形模式，此时返回自身。</p>
+     *
+     * @param newMode 新的区域模式
+     * @return 新的区域
+     */
+    public ProtectedRegion withMode(NoSpawnPlugin.RegionMode newMode) {
+        if (newMode == NoSpawnPlugin.RegionMode.POLYGON && polygon == null) return this;
+        return new ProtectedRegion(name, worldName, newMode, centerX, centerY, centerZ,
+                radius, circleExtendY, extendX, extendY, extendZ, polygon, typeFilter, allowedReasons,
+                densityLimit, densityWindowMillis);
+    }
+
+    /**
+     * 返回修改了圆形半径的副本
+     *
+     * @param newRadius 新的半径
+     * @return 新的区域
+     */
+    public ProtectedRegion withRadius(int newRadius) {
+        return new ProtectedRegion(name, worldName, mode, centerX, centerY, centerZ,
+                newRadius, circleExtendY, extendX, extendY, extendZ, polygon, typeFilter, allowedReasons,
+                densityLimit, densityWindowMillis);
+    }
+
+    /**
+     * 返回修改了圆形Y轴范围的副本
+     *
+     * @param newExtendY 新的Y轴范围
+     * @return 新的区域
+     */
+    public ProtectedRegion withCircleExtendY(int newExtendY) {
+        return new ProtectedRegion(name, worldName, mode, centerX, centerY, centerZ,
+                radius, newExtendY, extendX, extendY, extendZ, polygon, typeFilter, allowedReasons,
+                densityLimit, densityWindowMillis);
+    }
+
+    /**
+     * 返回修改了方形延伸范围的副本
+     *
+     * @param x X轴延伸距离
+     * @param y Y轴延伸距离
+     * @param z Z轴延伸距离
+     * @return 新的区域
+     */
+    public ProtectedRegion withSquareExtends(int x, int y, int z) {
+        return new ProtectedRegion(name, worldName, mode, centerX, centerY, centerZ,
+                radius, circleExtendY, x, y, z, polygon, typeFilter, allowedReasons,
+                densityLimit, densityWindowMillis);
+    }
+
+    /**
+     * 解析生成原因列表
+     *
+     * @param names 生成原因名称列表
+     * @param logger 用于输出警告的日志器
+     * @return 生成原因集合
+     */
+    public static Set<CreatureSpawnEvent.SpawnReason> parseReasons(Iterable<String> names, Logger logger) {
+        Set<CreatureSpawnEvent.SpawnReason> reasons = EnumSet.noneOf(CreatureSpawnEvent.SpawnReason.class);
+        for (String reason : names) {
+            try {
+                reasons.add(CreatureSpawnEvent.SpawnReason.valueOf(reason.toUpperCase()));
+            } catch (IllegalArgumentException ignored) {
+                logger.warning("未知的生成原因: " + reason);
+            }
+        }
+        return reasons;
+    }
+
+    /**
+     * 判断坐标是否在区域内
+     *
+     * @param x X坐标
+     * @param y Y坐标
+     * @param z Z坐标
+     * @return 如果在区域内则返回true
+     */
+    public boolean contains(double x, double y, double z) {
+        if (mode == NoSpawnPlugin.RegionMode.CIRCLE) {
+            // 圆形判断：检查XZ平面距离和Y轴范围
+            double dx = x - centerX;
+            double dz = z - centerZ;
+            return dx * dx + dz * dz <= radiusSquared && Math.abs(y - centerY) <= circleExtendY;
+        }
+        if (mode == NoSpawnPlugin.RegionMode.POLYGON) {
+            // 多边形判断：预计算的行区间表，开销与顶点数无关
+            return polygon.containsY((int) Math.floor(y))
+                    && polygon.containsColumn((int) Math.floor(x), (int) Math.floor(z));
+        }
+        // 方形判断：按方块坐标检查三个轴
+        int bx = (int) Math.floor(x);
+        int by = (int) Math.floor(y);
+        int bz = (int) Math.floor(z);
+        return bx >= minX && bx <= maxX && by >= minY && by <= maxY && bz >= minZ && bz <= maxZ;
+    }
+
+    /**
+     * 只判断Y坐标是否在区域的Y轴范围内
+     *
+     * <p>用于已知区块完全处于区域XZ范围内的情况。</p>
+     *
+     * @param y Y坐标
+     * @return 如果在Y轴范围内则返回true
+     */
+    public boolean containsY(double y) {
+        if (mode == NoSpawnPlugin.RegionMode.CIRCLE) {
+            return Math.abs(y - centerY) <= circleExtendY;
+        }
+        // 方形与多边形的Y范围都已写入包围盒
+        int by = (int) Math.floor(y);
+        return by >= minY && by <= maxY;
+    }
+
+    /**
+     * 判定区块与本区域在XZ平面上的关系
+     *
+     * @param chunkX 区块X坐标
+     * @param chunkZ 区块Z坐标
+     * @return {@link #CHUNK_INSIDE}、{@link #CHUNK_OUTSIDE} 或 {@link #CHUNK_PARTIAL}
+     */
+    public byte classifyChunk(int chunkX, int chunkZ) {
+        return classifyArea(chunkX << 4, chunkZ << 4, (chunkX << 4) + 16, (chunkZ << 4) + 16);
+    }
+
+    /**
+     * 判定XZ平面上的矩形范围与本区域的关系
+     *
+     * @param x0 最小X（含）
+     * @param z0 最小Z（含）
+     * @param x1 最大X（不含）
+     * @param z1 最大Z（不含）
+     * @return {@link #CHUNK_INSIDE}、{@link #CHUNK_OUTSIDE} 或 {@link #CHUNK_PARTIAL}
+     */
+    public byte classifyArea(int x0, int z0, int x1, int z1) {
+        if (mode == NoSpawnPlugin.RegionMode.CIRCLE) {
+            // 矩形覆盖的坐标范围为 [x0, x1) × [z0, z1)，圆是凸的，四个角都在圆内即整体在圆内
+            double nearX = Math.max(x0, Math.min(centerX, x1));
+            double nearZ = Math.max(z0, Math.min(centerZ, z1));
+            if (distanceSquared(nearX, nearZ) > radiusSquared) return CHUNK_OUTSIDE;
+            double farX = Math.abs(x0 - centerX) > Math.abs(x1 - centerX) ? x0 : x1;
+            double farZ = Math.abs(z0 - centerZ) > Math.abs(z1 - centerZ) ? z0 : z1;
+            return distanceSquared(farX, farZ) <= radiusSquared ? CHUNK_INSIDE : CHUNK_PARTIAL;
+        }
+        if (mode == NoSpawnPlugin.RegionMode.POLYGON) {
+            return polygon.classifyArea(x0, z0, x1, z1);
+        }
+        // 方形按方块坐标判断，矩形包含方块 x0..x1-1
+        int lastX = x1 - 1;
+        int lastZ = z1 - 1;
+        if (lastX < minX || x0 > maxX || lastZ < minZ || z0 > maxZ) return CHUNK_OUTSIDE;
+        if (x0 >= minX && lastX <= maxX && z0 >= minZ && lastZ <= maxZ) return CHUNK_INSIDE;
+        return CHUNK_PARTIAL;
+    }
+
+    /**
+     * 计算XZ平面上到中心的距离平方
+     */
+    private double distanceSquared(double x, double z) {
+        double dx = x - centerX;
+        double dz = z - centerZ;
+        return dx * dx + dz * dz;
+    }
+
+    /**
+     * 判断该生成原因在本区域是否被豁免
+     *
+     * @param reason 生成原因
+     * @return 如果豁免则返回true
+     */
+    public boolean isExempt(CreatureSpawnEvent.SpawnReason reason) {
+        return isExempt(reason.ordinal());
+    }
+
+    /**
+     * 判断该生成原因在本区域是否被豁免（按序号查表）
+     *
+     * @param reasonOrdinal 生成原因序号
+     * @return 如果豁免则返回true
+     */
+    public boolean isExempt(int reasonOrdinal) {
+        return exemptReasons[reasonOrdinal];
+    }
+
+    /**
+     * 判断实体类型在本区域是否被阻止
+     *
+     * @param typeOrdinal 实体类型序号
+     * @return 如果被阻止则返回true
+     */
+    public boolean blocksType(int typeOrdinal) {
+        return typeFilter.isBlocked(typeOrdinal);
+    }
+
+    /**
+     * 判断本区域是否无条件阻止区域内的一轮自然生成：
+     * 阻止所有生物类型、不豁免自然生成、也没有密度上限
+     *
+     * @return 如果自然生成的任何类型都会被阻止则返回true
+     */
+    public boolean blocksAllNatural() {
+        return typeFilter.blocksAll()
+                && !isExempt(CreatureSpawnEvent.SpawnReason.NATURAL)
+                && !hasDensityLimit();
+    }
+
+    /**
+     * 判断本区域是否使用密度上限（而不是完全阻止）
+     *
+     * @return 如果设置了密度上限则返回true
+     */
+    public boolean hasDensityLimit() {
+        return densityLimit > 0;
+    }
+
+    /**
+     * 获取密度上限的描述
+     *
+     * @return 描述字符串
+     */
+    public String describeDensityLimit() {
+        return densityLimit > 0
+                ? "每区块每 " + densityWindowMillis / 1000 + " 秒最多 " + densityLimit + " 只"
+                : "完全阻止";
+    }
+
+    /**
+     * 获取区域描述字符串
+     *
+     * @return 区域描述
+     */
+    public String describe() {
+        if (mode == NoSpawnPlugin.RegionMode.CIRCLE) {
+            return String.format("圆形，半径: %d格，Y轴范围: ±%d格，中心: (%d, %d, %d)",
+                    radius, circleExtendY, getCenterBlockX(), getCenterBlockY(), getCenterBlockZ());
+        }
+        if (mode == NoSpawnPlugin.RegionMode.POLYGON) {
+            return String.format("多边形，顶点: %d个，Y轴范围: [%d, %d]，包围盒: (%d, %d) ~ (%d, %d)",
+                    polygon.getVertexCount(), minY, maxY, minX, minZ, maxX, maxZ);
+        }
+        return String.format("方形，延伸范围: X±%d Y±%d Z±%d，中心: (%d, %d, %d)",
+                extendX, extendY, extendZ, getCenterBlockX(), getCenterBlockY(), getCenterBlockZ());
+    }
+
+    // ========== Getter 方法 ==========
+
+    /**
+     * 获取区域名称
+     *
+     * @return 区域名称
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 获取区域所在的世界名称
+     *
+     * @return 世界名称
+     */
+    public String getWorldName() {
+        return worldName;
+    }
+
+    /**
+     * 获取区域模式
+     *
+     * @return 区域模式
+     */
+    public NoSpawnPlugin.RegionMode getMode() {
+        return mode;
+    }
+
+    /**
+     * 获取中心点X坐标
+     *
+     * @return 中心点X坐标
+     */
+    public double getCenterX() {
+        return centerX;
+    }
+
+    /**
+     * 获取中心点Y坐标
+     *
+     * @return 中心点Y坐标
+     */
+    public double getCenterY() {
+        return centerY;
+    }
+
+    /**
+     * 获取中心点Z坐标
+     *
+     * @return 中心点Z坐标
+     */
+    public double getCenterZ() {
+        return centerZ;
+    }
+
+    /**
+     * 获取中心点所在方块的X坐标
+     *
+     * @return 方块X坐标
+     */
+    public int getCenterBlockX() {
+        return (int) Math.floor(centerX);
+    }
+
+    /**
+     * 获取中心点所在方块的Y坐标
+     *
+     * @return 方块Y坐标
+     */
+    public int getCenterBlockY() {
+        return (int) Math.floor(centerY);
+    }
+
+    /**
+     * 获取中心点所在方块的Z坐标
+     *
+     * @return 方块Z坐标
+     */
+    public int getCenterBlockZ() {
+        return (int) Math.floor(centerZ);
+    }
+
+    /**
+     * 获取圆形区域的半径
+     *
+     * @return 半径值
+     */
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * 获取圆形模式的Y轴延伸范围
+     *
+     * @return Y轴延伸范围
+     */
+    public int getCircleExtendY() {
+        return circleExtendY;
+    }
+
+    /**
+     * 获取方形模式的X轴延伸范围
+     *
+     * @return X轴延伸范围
+     */
+    public int getExtendX() {
+        return extendX;
+    }
+
+    /**
+     * 获取方形模式的Y轴延伸范围
+     *
+     * @return Y轴延伸范围
+     */
+    public int getExtendY() {
+        return extendY;
+    }
+
+    /**
+     * 获取方形模式的Z轴延伸范围
+     *
+     * @return Z轴延伸范围
+     */
+    public int getExtendZ() {
+        return extendZ;
+    }
+
+    /**
+     * 获取每个区块在一个时间窗口内允许的生成数
+     *
+     * @return 生成数上限，0表示完全阻止
+     */
+    public int getDensityLimit() {
+        return densityLimit;
+    }
+
+    /**
+     * 获取密度上限的时间窗口长度
+     *
+     * @return 窗口长度（毫秒）
+     */
+    public long getDensityWindowMillis() {
+        return densityWindowMillis;
+    }
+
+    /**
+     * 获取包围盒的最小X坐标
+     *
+     * @return 最小X坐标（方块，含）
+     */
+    public int getMinX() {
+        return minX;
+    }
+
+    /**
+     * 获取包围盒的最小Y坐标
+     *
+     * @return 最小Y坐标（方块，含）
+     */
+    public int getMinY() {
+        return minY;
+    }
+
+    /**
+     * 获取包围盒的最小Z坐标
+     *
+     * @return 最小Z坐标（方块，含）
+     */
+    public int getMinZ() {
+        return minZ;
+    }
+
+    /**
+     * 获取包围盒的最大X坐标
+     *
+     * @return 最大X坐标（方块，含）
+     */
+    public int getMaxX() {
+        return maxX;
+    }
+
+    /**
+     * 获取包围盒的最大Y坐标
+     *
+     * @return 最大Y坐标（方块，含）
+     */
+    public int getMaxY() {
+        return maxY;
+    }
+
+    /**
+     * 获取包围盒的最大Z坐标
+     *
+     * @return 最大Z坐标（方块，含）
+     */
+    public int getMaxZ() {
+        return maxZ;
+    }
+
+    /**
+     * 获取多边形形状
+     *
+     * @return 多边形形状，未配置顶点时返回null
+     */
+    public PolygonShape getPolygon() {
+        return polygon;
+    }
+
+    /**
+     * 获取实体类型过滤表
+     *
+     * @return 实体类型过滤表
+     */
+    public EntityTypeFilter getTypeFilter() {
+        return typeFilter;
+    }
+}
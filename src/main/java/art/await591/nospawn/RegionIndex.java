@@ -0,0 +1,365 @@
+package art.await591.nospawn;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+
+/**
+ * 区块网格空间索引
+ *
+ * <p>将每个保护区域登记到其覆盖的所有区块上，并在构建时为每个区块预先判定
+ * “完全在内 / 完全在外 / 跨越边界”。查询时只需一次哈希查找即可拿到该区块的判定结果，
+ * 查询开销与区域总数无关；完全在内的区块只需检查Y轴，跨越边界的区块才需要逐坐标检查，
+ * 完全在外的区块不会被登记。</p>
+ *
+ * <p>此外还会标记“深度在内”的区块：该区块及其周围 {@link #DEEP_MARGIN_CHUNKS} 圈区块都完全在区域内。
+ * 原版自然生成的一轮尝试会从起点随机游走最多约20格，只有深度在内的区块才能保证整轮尝试都落在区域内。</p>
+ *
+ * <p>区块判定表按世界的 {@link UUID} 划分：世界名称只在构建时解析一次，
+ * 热路径上直接用 {@link World#getUID()} 查表，不再比较字符串。构建时尚未加载的世界中的区域
+ * 不会进入判定表，世界加载或卸载后需重建索引。</p>
+ *
+ * <p>构建时直接写入原始long键的表，重叠区域和判定都相同的区块共用同一个不可变的判定实例。
+ * 索引构建完成后不可变，区域变化时整体重建并替换（即区域版本号递增）。</p>
+ *
+ * @author await591
+ */
+public final class RegionIndex {
+    /** 空结果，避免查询时分配 */
+    static final ProtectedRegion[] NO_REGIONS = new ProtectedRegion[0];
+
+    /** 构建期的起点：没有重叠区域的区块判定 */
+    private static final ChunkEntry EMPTY_ENTRY = new ChunkEntry(NO_REGIONS, new boolean[0], new boolean[0], 0L);
+
+    /** 构建期内部判定：深度在内 */
+    private static final byte VERDICT_DEEP = 3;
+
+    /** 判定“深度在内”时向外扩展的区块圈数 */
+    public static final int DEEP_MARGIN_CHUNKS = 2;
+
+    /** 区域版本号生成器，每次构建索引递增 */
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    /** 空索引 */
+    public static final RegionIndex EMPTY = new RegionIndex(Collections.emptyMap(), Collections.emptyList(),
+            VERSIONS.incrementAndGet());
+
+    /** 按世界UID划分的区块判定表 */
+    private final Map<UUID, LongObjectMap<ChunkEntry>> byWorld;
+
+    /** 所有已登记的区域（按加载顺序） */
+    private final List<ProtectedRegion> regions;
+
+    /** 本索引对应的区域版本号 */
+    private final long version;
+
+    private RegionIndex(Map<UUID, LongObjectMap<ChunkEntry>> byWorld, List<ProtectedRegion> regions, long version) {
+        this.byWorld = byWorld;
+        this.regions = regions;
+        this.version = version;
+    }
+
+    /**
+     * 单个区块的预计算判定结果
+     *
+     * <p>{@code regions[i]} 与该区块重叠；{@code fullyInside[i]} 为true表示区块在其XZ范围内；
+     * {@code deepInside[i]} 为true表示区块连同周围区块都在其XZ范围内。</p>
+     *
+     * <p>{@code abortsNatural} 在构建时算好：区块深度处于某个区域内，并且所有重叠区域都无条件阻止
+     * 自然生成（见 {@link ProtectedRegion#blocksAllNatural()}）时才为true，
+     * 只有这时中止整轮自然生成才不会误伤区域放行或限流的类型。</p>
+     */
+    public static final class ChunkEntry {
+        /** 与该区块重叠的区域 */
+        final ProtectedRegion[] regions;
+
+        /** 区块是否完全处于对应区域的XZ范围内 */
+        final boolean[] fullyInside;
+
+        /** 区块及其周围区块是否都完全处于对应区域的XZ范围内 */
+        final boolean[] deepInside;
+
+        /** 区块中的一轮自然生成是否可以整轮中止 */
+        final boolean abortsNatural;
+
+        /** 所属索引的区域版本号 */
+        final long version;
+
+        ChunkEntry(ProtectedRegion[] regions, boolean[] fullyInside, boolean[] deepInside, long version) {
+            this.regions = regions;
+            this.fullyInside = fullyInside;
+            this.deepInside = deepInside;
+            this.version = version;
+            boolean deep = false;
+            boolean blocksAll = regions.length > 0;
+            for (int i = 0; i < regions.length; i++) {
+                deep |= deepInside[i];
+                blocksAll &= regions[i].blocksAllNatural();
+            }
+            this.abortsNatural = deep && blocksAll;
+        }
+
+        /**
+         * 构建期：在末尾追加一个区域，得到新的判定（本实例不变）
+         *
+         * @param region 区域
+         * @param verdict 区块相对该区域的判定
+         * @param version 正在构建的索引的区域版本号
+         * @return 新的区块判定
+         */
+        ChunkEntry with(ProtectedRegion region, byte verdict, long version) {
+            int n = regions.length;
+            ProtectedRegion[] newRegions = Arrays.copyOf(regions, n + 1);
+            boolean[] newFullyInside = Arrays.copyOf(fullyInside, n + 1);
+            boolean[] newDeepInside = Arrays.copyOf(deepInside, n + 1);
+            newRegions[n] = region;
+            newFullyInside[n] = verdict != ProtectedRegion.CHUNK_PARTIAL;
+            newDeepInside[n] = verdict == VERDICT_DEEP;
+            return new ChunkEntry(newRegions, newFullyInside, newDeepInside, version);
+        }
+
+        /**
+         * 获取与该区块重叠的区域数量
+         *
+         * @return 区域数量
+         */
+        public int size() {
+            return regions.length;
+        }
+
+        /**
+         * 获取第i个重叠区域
+         *
+         * @param i 下标
+         * @return 区域
+         */
+        public ProtectedRegion region(int i) {
+            return regions[i];
+        }
+
+        /**
+         * 判断坐标是否在第i个区域内，利用区块判定跳过XZ计算
+         *
+         * @param i 下标
+         * @param x X坐标
+         * @param y Y坐标
+         * @param z Z坐标
+         * @return 如果在区域内则返回true
+         */
+        public boolean contains(int i, double x, double y, double z) {
+            return fullyInside[i] ? regions[i].containsY(y) : regions[i].contains(x, y, z);
+        }
+
+        /**
+         * 判断该区块及其周围区块是否都完全处于第i个区域的XZ范围内
+         *
+         * @param i 下标
+         * @return 如果深度在内则返回true
+         */
+        public boolean isDeepInside(int i) {
+            return deepInside[i];
+        }
+
+        /**
+         * 判断该区块中的一轮自然生成是否可以整轮中止
+         *
+         * @return 区块深度在内且所有重叠区域都无条件阻止自然生成时返回true
+         */
+        public boolean abortsNaturalSpawns() {
+            return abortsNatural;
+        }
+
+        /**
+         * 获取该判定所属索引的区域版本号
+         *
+         * @return 版本号
+         */
+        public long getVersion() {
+            return version;
+        }
+    }
+
+    /**
+     * 构建区域索引，按当前已加载的世界解析世界名称
+     *
+     * @param regions 要登记的区域
+     * @return 新的索引
+     */
+    public static RegionIndex build(Collection<ProtectedRegion> regions) {
+        return build(regions, worldName -> {
+            World world = Bukkit.getWorld(worldName);
+            return world != null ? world.getUID() : null;
+        });
+    }
+
+    /**
+     * 构建区域索引
+     *
+     * @param regions 要登记的区域
+     * @param worldResolver 将世界名称解析为UID，世界未加载时返回null
+     * @return 新的索引
+     */
+    public static RegionIndex build(Collection<ProtectedRegion> regions, Function<String, UUID> worldResolver) {
+        long version = VERSIONS.incrementAndGet();
+        Map<String, UUID> worldIds = new HashMap<>();
+        Map<UUID, LongObjectMap<ChunkEntry>> byWorld = new HashMap<>();
+        for (ProtectedRegion region : regions) {
+            // 每个世界名称只解析一次；未加载的世界暂不登记
+            UUID worldId = worldIds.computeIfAbsent(region.getWorldName(), worldResolver);
+            if (worldId == null) continue;
+            LongObjectMap<ChunkEntry> chunks = byWorld.computeIfAbsent(worldId, k -> new LongObjectMap<>());
+
+            // 区块判定不可变，由“原有判定 + 本区域的判定”得到的新判定按组合共用一个实例，
+            // 例如一个区域所有完全在内的区块共用同一个判定，重建时不会为每个区块各创建一组数组
+            Map<ChunkEntry, ChunkEntry[]> derived = new IdentityHashMap<>();
+            int minChunkX = region.getMinX() >> 4;
+            int maxChunkX = region.getMaxX() >> 4;
+            int minChunkZ = region.getMinZ() >> 4;
+            int maxChunkZ = region.getMaxZ() >> 4;
+            for (int cx = minChunkX; cx <= maxChunkX; cx++) {
+                for (int cz = minChunkZ; cz <= maxChunkZ; cz++) {
+                    byte verdict = region.classifyChunk(cx, cz);
+                    if (verdict == ProtectedRegion.CHUNK_OUTSIDE) continue;
+                    if (verdict == ProtectedRegion.CHUNK_INSIDE && isDeepInside(region, cx, cz)) {
+                        verdict = VERDICT_DEEP;
+                    }
+                    long key = chunkKey(cx, cz);
+                    ChunkEntry previous = chunks.get(key);
+                    if (previous == null) previous = EMPTY_ENTRY;
+                    ChunkEntry[] variants = derived.computeIfAbsent(previous, k -> new ChunkEntry[VERDICT_DEEP + 1]);
+                    ChunkEntry entry = variants[verdict];
+                    if (entry == null) {
+                        entry = previous.with(region, verdict, version);
+                        variants[verdict] = entry;
+                    }
+                    chunks.put(key, entry);
+                }
+            }
+        }
+        return new RegionIndex(byWorld, Collections.unmodifiableList(new ArrayList<>(regions)), version);
+    }
+
+    /**
+     * 判断区块及其周围 {@link #DEEP_MARGIN_CHUNKS} 圈区块是否都完全在区域XZ范围内
+     */
+    private static boolean isDeepInside(ProtectedRegion region, int chunkX, int chunkZ) {
+        int margin = DEEP_MARGIN_CHUNKS << 4;
+        return region.classifyArea((chunkX << 4) - margin, (chunkZ << 4) - margin,
+                (chunkX << 4) + 16 + margin, (chunkZ << 4) + 16 + margin) == ProtectedRegion.CHUNK_INSIDE;
+    }
+
+    /**
+     * 查询指定方块所在区块的判定结果
+     *
+     * @param worldId 世界UID
+     * @param blockX 方块X坐标
+     * @param blockZ 方块Z坐标
+     * @return 区块判定，如果区块完全在所有区域之外则返回null
+     */
+    public ChunkEntry query(UUID worldId, int blockX, int blockZ) {
+        LongObjectMap<ChunkEntry> chunks = byWorld.get(worldId);
+        if (chunks == null) return null;
+        return chunks.get(chunkKey(blockX >> 4, blockZ >> 4));
+    }
+
+    /**
+     * 查找包含指定坐标的第一个区域
+     *
+     * @param worldId 世界UID
+     * @param x X坐标
+     * @param y Y坐标
+     * @param z Z坐标
+     * @return 包含该坐标的区域，没有则返回null
+     */
+    public ProtectedRegion findRegion(UUID worldId, double x, double y, double z) {
+        ChunkEntry entry = query(worldId, (int) Math.floor(x), (int) Math.floor(z));
+        if (entry == null) return null;
+        for (int i = 0; i < entry.regions.length; i++) {
+            if (entry.contains(i, x, y, z)) return entry.regions[i];
+        }
+        return null;
+    }
+
+    /**
+     * 判断索引中是否有该世界的区块判定
+     *
+     * @param worldId 世界UID
+     * @return 如果该世界中有已登记的区域则返回true
+     */
+    public boolean hasWorld(UUID worldId) {
+        return byWorld.containsKey(worldId);
+    }
+
+    /**
+     * 获取所有区域（包括所在世界尚未加载、未进入判定表的区域）
+     *
+     * @return 只读区域列表
+     */
+    public List<ProtectedRegion> getRegions() {
+        return regions;
+    }
+
+    /**
+     * 遍历世界中与至少一个区域重叠的所有区块
+     *
+     * @param worldId 世界UID
+     * @param action 对每个区块键执行的操作
+     */
+    public void forEachChunk(UUID worldId, LongConsumer action) {
+        LongObjectMap<ChunkEntry> chunks = byWorld.get(worldId);
+        if (chunks == null) return;
+        chunks.forEach((key, entry) -> action.accept(key));
+    }
+
+    /**
+     * 获取本索引对应的区域版本号
+     *
+     * @return 版本号
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 将区块坐标打包为long键
+     *
+     * @param chunkX 区块X坐标
+     * @param chunkZ 区块Z坐标
+     * @return 打包后的键
+     */
+    public static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * 从区块键中取出区块X坐标
+     *
+     * @param key 区块键
+     * @return 区块X坐标
+     */
+    public static int chunkX(long key) {
+        return (int) (key >> 32);
+    }
+
+    /**
+     * 从区块键中取出区块Z坐标
+     *
+     * @param key 区块键
+     * @return 区块Z坐标
+     */
+    public static int chunkZ(long key) {
+        return (int) key;
+    }
+}
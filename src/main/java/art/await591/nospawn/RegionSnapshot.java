@@ -0,0 +1,203 @@
+package art.await591.nospawn;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * 区域快照
+ *
+ * <p>插件判定生成所需的全部状态（总开关、默认区域、命名区域及其区块索引）的不可变视图。
+ * 快照通过单个volatile引用整体发布：热路径读取一次引用即可得到一致的状态，
+ * 修改时构建新快照并替换，永远不会观察到只更新了一半的区域。</p>
+ *
+ * <p>影子模式的候选区域同样以一个嵌套的快照保存在当前快照中，与当前区域一起发布。</p>
+ *
+ * @author await591
+ */
+public final class RegionSnapshot {
+    /** 空快照（插件未加载配置前使用） */
+    public static final RegionSnapshot EMPTY = new RegionSnapshot(false, true, null,
+            Collections.emptyList(), RegionIndex.EMPTY, null);
+
+    /** 插件是否启用 */
+    private final boolean enabled;
+
+    /** 全局的 block-all-monsters 设置 */
+    private final boolean blockAll;
+
+    /** 默认区域（配置中 region 节），世界不存在时为null */
+    private final ProtectedRegion defaultRegion;
+
+    /** 配置中 regions 节定义的命名区域 */
+    private final List<ProtectedRegion> namedRegions;
+
+    /** 所有区域的区块网格索引 */
+    private final RegionIndex index;
+
+    /** 是否有区域设置了密度上限（没有时跳过生成计数） */
+    private final boolean densityLimited;
+
+    /** 影子模式的候选区域快照，未启用影子模式时为null */
+    private final RegionSnapshot shadow;
+
+    private RegionSnapshot(boolean enabled, boolean blockAll, ProtectedRegion defaultRegion,
+                           List<ProtectedRegion> namedRegions, RegionIndex index, RegionSnapshot shadow) {
+        this.enabled = enabled;
+        this.blockAll = blockAll;
+        this.defaultRegion = defaultRegion;
+        this.namedRegions = namedRegions;
+        this.index = index;
+        this.shadow = shadow;
+
+        boolean limited = false;
+        for (ProtectedRegion region : index.getRegions()) {
+            limited |= region.hasDensityLimit();
+        }
+        this.densityLimited = limited;
+    }
+
+    /**
+     * 构建快照并预编译区块索引
+     *
+     * @param enabled 插件是否启用
+     * @param blockAll 全局的 block-all-monsters 设置
+     * @param defaultRegion 默认区域，可为null
+     * @param namedRegions 命名区域
+     * @return 新快照
+     */
+    public static RegionSnapshot build(boolean enabled, boolean blockAll, ProtectedRegion defaultRegion,
+                                       List<ProtectedRegion> namedRegions) {
+        List<ProtectedRegion> named = Collections.unmodifiableList(new ArrayList<>(namedRegions));
+        List<ProtectedRegion> all = new ArrayList<>(named.size() + 1);
+        if (defaultRegion != null) {
+            all.add(defaultRegion);
+        }
+        all.addAll(named);
+        return new RegionSnapshot(enabled, blockAll, defaultRegion, named, RegionIndex.build(all), null);
+    }
+
+    /**
+     * 返回设置了影子模式候选区域的副本（复用当前区域已编译的索引）
+     *
+     * @param shadowRegions 候选区域，null表示关闭影子模式
+     * @return 新快照
+     */
+    public RegionSnapshot withShadow(List<ProtectedRegion> shadowRegions) {
+        RegionSnapshot newShadow = shadowRegions == null ? null : build(true, blockAll, null, shadowRegions);
+        return new RegionSnapshot(enabled, blockAll, defaultRegion, namedRegions, index, newShadow);
+    }
+
+    /**
+     * 返回修改了启用状态的副本（复用已编译的索引）
+     *
+     * @param newEnabled 是否启用
+     * @return 新快照
+     */
+    public RegionSnapshot withEnabled(boolean newEnabled) {
+        return new RegionSnapshot(newEnabled, blockAll, defaultRegion, namedRegions, index, shadow);
+    }
+
+    /**
+     * 返回替换了默认区域的副本（重新编译索引）
+     *
+     * @param region 新的默认区域
+     * @return 新快照
+     */
+    public RegionSnapshot withDefaultRegion(ProtectedRegion region) {
+        RegionSnapshot rebuilt = build(enabled, blockAll, region, namedRegions);
+        return new RegionSnapshot(enabled, blockAll, region, namedRegions, rebuilt.index, shadow);
+    }
+
+    /**
+     * 返回重新解析世界后的副本（重新编译索引）
+     *
+     * <p>在世界加载或卸载后调用，使区域按世界的当前状态进入或退出区块判定表。</p>
+     *
+     * @param worldResolver 将世界名称解析为UID，世界未加载时返回null
+     * @return 新快照
+     */
+    public RegionSnapshot rebind(Function<String, UUID> worldResolver) {
+        return new RegionSnapshot(enabled, blockAll, defaultRegion, namedRegions,
+                RegionIndex.build(index.getRegions(), worldResolver),
+                shadow == null ? null : shadow.rebind(worldResolver));
+    }
+
+    /**
+     * 判断是否有区域位于指定名称的世界中
+     *
+     * @param worldName 世界名称
+     * @return 如果有区域位于该世界则返回true
+     */
+    public boolean hasRegionIn(String worldName) {
+        for (ProtectedRegion region : index.getRegions()) {
+            if (region.getWorldName().equalsIgnoreCase(worldName)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 判断插件是否启用
+     *
+     * @return 如果启用则返回true
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 获取全局的 block-all-monsters 设置
+     *
+     * @return 如果默认阻止所有怪物则返回true
+     */
+    public boolean isBlockAll() {
+        return blockAll;
+    }
+
+    /**
+     * 获取默认区域（配置中 region 节）
+     *
+     * @return 默认区域，世界不存在时返回null
+     */
+    public ProtectedRegion getDefaultRegion() {
+        return defaultRegion;
+    }
+
+    /**
+     * 获取配置中 regions 节定义的命名区域
+     *
+     * @return 只读的命名区域列表
+     */
+    public List<ProtectedRegion> getNamedRegions() {
+        return namedRegions;
+    }
+
+    /**
+     * 获取所有区域的区块网格索引
+     *
+     * @return 区域索引
+     */
+    public RegionIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * 判断是否有区域设置了密度上限
+     *
+     * @return 如果至少一个区域设置了密度上限则返回true
+     */
+    public boolean isDensityLimited() {
+        return densityLimited;
+    }
+
+    /**
+     * 获取影子模式的候选区域快照
+     *
+     * @return 候选区域快照，未启用影子模式时返回null
+     */
+    public RegionSnapshot getShadow() {
+        return shadow;
+    }
+}
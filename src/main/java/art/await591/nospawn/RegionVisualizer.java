@@ -1,5 +1,6 @@
 package art.await591.nospawn;
 
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
 import org.bukkit.*;
 import org.bukkit.entity.ArmorStand;
 import org.bukkit.entity.Entity;
@@ -9,11 +10,11 @@ import org.bukkit.event.Listener;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.potion.PotionEffect;
 import org.bukkit.potion.PotionEffectType;
-import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.util.Vector;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.io.*;
 import org.bukkit.configuration.file.YamlConfiguration;
 /**
@@ -23,6 +24,10 @@ import org.bukkit.configuration.file.YamlConfiguration;
  * 1. 虚拟墙壁：检测玩家进入/离开保护区并给予反馈（消息、击退、音效）
  * 2. 边界可视化：使用盔甲架在3D空间中显示保护区域的边界</p>
  *
+ * <p>所有任务都通过Paper的区域/实体调度器执行：盔甲架按区块分组，在拥有该区块的线程中生成，
+ * 移除时交给盔甲架自己的调度器，对玩家的提示交给玩家的调度器。
+ * 在Folia下这些线程各不相同，在Paper下都是主线程。</p>
+ *
  * @author await591
  */
 public class RegionVisualizer implements Listener {
@@ -88,6 +93,12 @@ public class RegionVisualizer implements Listener {
 
     /** 记录玩家状态：是否在保护区内（按玩家UUID索引） */
     private final Map<UUID, Boolean> playerRegionStatus;
+
+    /** 玩家最近所在的保护区域（离开时按它的中心拉回，按玩家UUID索引） */
+    private final Map<UUID, ProtectedRegion> playerRegions = new ConcurrentHashMap<>();
+
+    /** 移动检查读取玩家位置用的复用对象（每个线程一个，不离开 {@link #checkAndHandleEntityEntry}） */
+    private static final ThreadLocal<Location> MOVE_SCRATCH = ThreadLocal.withInitial(() -> new Location(null, 0, 0, 0));
     
     // 玩家虚拟墙壁偏好设置
     private final Map<UUID, PlayerVirtualWallPrefs> playerPrefs;
@@ -96,7 +107,7 @@ public class RegionVisualizer implements Listener {
     /**
      * 虚拟墙壁反馈类型枚举
      */
-    private enum FeedbackType {
+    public enum FeedbackType {
         /** 无反馈 */
         NONE,
         /** 仅消息 */
@@ -112,11 +123,17 @@ public class RegionVisualizer implements Listener {
      * 保存单个玩家的可视化状态和相关数据
      */
     private static class VisualizationSession {
-        /** 此会话中生成的所有盔甲架 */
-        List<ArmorStand> armorStands;
+        /** 此会话中生成的所有盔甲架（由多个区域线程写入） */
+        final Queue<ArmorStand> armorStands = new ConcurrentLinkedQueue<>();
+
+        /** 尚未完成的区块生成任务数 */
+        final AtomicInteger pendingChunks = new AtomicInteger();
+
+        /** 会话是否已被取消（之后生成的盔甲架会被立即移除） */
+        volatile boolean cancelled;
 
         /** 自动清理任务 */
-        BukkitRunnable cleanupTask;
+        volatile ScheduledTask cleanupTask;
 
         /** 拥有此会话的玩家 */
         Player player;
@@ -131,7 +148,6 @@ public class RegionVisualizer implements Listener {
          */
         VisualizationSession(Player player) {
             this.player = player;
-            this.armorStands = new ArrayList<>();
             this.createTime = System.currentTimeMillis();
         }
     }
@@ -158,28 +174,6 @@ public class RegionVisualizer implements Listener {
         public void setPlaySound(boolean playSound) { this.playSound = playSound; }
     }
 
-    // 玩家虚拟墙壁偏好设置类
-    public static class PlayerVirtualWallPrefs {
-        private boolean enabled;
-        private FeedbackType feedbackType;
-        private boolean playSound;
-
-        public PlayerVirtualWallPrefs(boolean enabled, FeedbackType feedbackType, boolean playSound) {
-            this.enabled = enabled;
-            this.feedbackType = feedbackType;
-            this.playSound = playSound;
-        }
-
-        public boolean isEnabled() { return enabled; }
-        public void setEnabled(boolean enabled) { this.enabled = enabled; }
-
-        public FeedbackType getFeedbackType() { return feedbackType; }
-        public void setFeedbackType(FeedbackType feedbackType) { this.feedbackType = feedbackType; }
-
-        public boolean isPlaySound() { return playSound; }
-        public void setPlaySound(boolean playSound) { this.playSound = playSound; }
-    }
-
     /**
      * 构造区域可视化管理器
      *
@@ -303,30 +297,37 @@ public class RegionVisualizer implements Listener {
      * 保存玩家虚拟墙壁偏好设置（异步）
      */
     private void savePlayerPreferences() {
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                try {
-                    YamlConfiguration config = new YamlConfiguration();
-                    
-                    for (Map.Entry<UUID, PlayerVirtualWallPrefs> entry : playerPrefs.entrySet()) {
-                        String uuidStr = entry.getKey().toString();
-                        String path = "player-preferences." + uuidStr;
-                        PlayerVirtualWallPrefs prefs = entry.getValue();
-                        
-                        config.set(path + ".enabled", prefs.isEnabled());
-                        config.set(path + ".feedback-type", prefs.getFeedbackType().name());
-                        config.set(path + ".play-sound", prefs.isPlaySound());
-                    }
-                    
-                    // 确保目录存在
-                    prefsFile.getParentFile().mkdirs();
-                    config.save(prefsFile);
-                } catch (Exception e) {
-                    plugin.getLogger().severe("保存虚拟墙壁偏好设置时发生错误: " + e.getMessage());
-                }
+        // 插件卸载时调度器不再接受任务，直接在当前线程保存
+        if (!plugin.isEnabled()) {
+            writePlayerPreferences();
+            return;
+        }
+        plugin.getServer().getAsyncScheduler().runNow(plugin, task -> writePlayerPreferences());
+    }
+
+    /**
+     * 将玩家虚拟墙壁偏好设置写入文件
+     */
+    private void writePlayerPreferences() {
+        try {
+            YamlConfiguration config = new YamlConfiguration();
+            
+            for (Map.Entry<UUID, PlayerVirtualWallPrefs> entry : playerPrefs.entrySet()) {
+                String uuidStr = entry.getKey().toString();
+                String path = "player-preferences." + uuidStr;
+                PlayerVirtualWallPrefs prefs = entry.getValue();
+                
+                config.set(path + ".enabled", prefs.isEnabled());
+                config.set(path + ".feedback-type", prefs.getFeedbackType().name());
+                config.set(path + ".play-sound", prefs.isPlaySound());
             }
-        }.runTaskAsynchronously(plugin);
+            
+            // 确保目录存在
+            prefsFile.getParentFile().mkdirs();
+            config.save(prefsFile);
+        } catch (Exception e) {
+            plugin.getLogger().severe("保存虚拟墙壁偏好设置时发生错误: " + e.getMessage());
+        }
     }
 
     /**
@@ -340,6 +341,9 @@ public class RegionVisualizer implements Listener {
      * 获取玩家的虚拟墙壁偏好设置，如果不存在则创建默认设置
      */
     public PlayerVirtualWallPrefs getPlayerPrefs(UUID playerId) {
+        // 先直接查表，已有设置时不创建 computeIfAbsent 的捕获lambda
+        PlayerVirtualWallPrefs prefs = playerPrefs.get(playerId);
+        if (prefs != null) return prefs;
         return playerPrefs.computeIfAbsent(playerId, k -> getDefaultPrefs());
     }
 
@@ -384,73 +388,51 @@ public class RegionVisualizer implements Listener {
         Player player = (Player) entity;
         PlayerVirtualWallPrefs prefs = getPlayerPrefs(player.getUniqueId());
         if (!prefs.isEnabled()) return;
-        Location loc = player.getLocation();
 
-        // 快速预筛选：检查世界
-        if (!loc.getWorld().getName().equals(plugin.getConfig().getString("region.world", "world"))) {
-            return;
-        }
-
-        // 精确判断是否在保护区内
-        boolean isInRegion = isInProtectedRegion(loc);
-        Boolean lastStatus = playerRegionStatus.get(player.getUniqueId());
-
-        // 如果状态发生变化
-        if (lastStatus == null || lastStatus != isInRegion) {
-            if (isInRegion) {
-                // 进入保护区
-                applyVirtualWallFeedback(player, prefs, true);
-            } else {
-                // 离开保护区
-                applyVirtualWallFeedback(player, prefs, false);
+        LatencyHistogram latency = plugin.getStats().getMoveLatency();
+        long start = latency.start();
+        try {
+            // 读入复用的位置对象，不为每次移动克隆玩家位置
+            Location loc = player.getLocation(MOVE_SCRATCH.get());
+            World world = loc.getWorld();
+            RegionIndex index = plugin.getSnapshot().getIndex();
+
+            // 没有区域的世界一次查表即返回，并清除在其他世界记录的状态
+            if (world == null || !index.hasWorld(world.getUID())) {
+                playerRegionStatus.remove(player.getUniqueId());
+                playerRegions.remove(player.getUniqueId());
+                return;
             }
 
-            // 更新状态
-            playerRegionStatus.put(player.getUniqueId(), isInRegion);
-        }
-    }
-
-    /**
-     * 判断位置是否在保护区内（精确）
-     *
-     * @param location 要检查的位置
-     * @return 如果在保护区内则返回true
-     */
-    private boolean isInProtectedRegion(Location location) {
-        Location center = plugin.getCenterLocation();
-        if (center == null || !center.getWorld().equals(location.getWorld())) return false;
-
-        NoSpawnPlugin.RegionMode mode = plugin.getRegionMode();
-
-        if (mode == NoSpawnPlugin.RegionMode.CIRCLE) {
-            // 圆形判断
-            double radius = plugin.getRadius();
-            // 获取圆形模式的Y轴范围
-            int circleExtendY = plugin.getCircleExtendY();
+            // 精确判断是否在保护区内，记下所在的区域（在相邻区域之间移动时也要更新）
+            ProtectedRegion region = index.findRegion(world.getUID(), loc.getX(), loc.getY(), loc.getZ());
+            boolean isInRegion = region != null;
+            if (isInRegion && playerRegions.get(player.getUniqueId()) != region) {
+                playerRegions.put(player.getUniqueId(), region);
+            }
+            Boolean lastStatus = playerRegionStatus.get(player.getUniqueId());
 
-            // 检查XZ平面距离
-            double xzDistanceSquared = Math.pow(location.getX() - center.getX(), 2) +
-                    Math.pow(location.getZ() - center.getZ(), 2);
+            // 状态未知（刚加入或刚换了世界）且在区域外时只记录状态，不算“离开”
+            if (lastStatus == null && !isInRegion) {
+                playerRegionStatus.put(player.getUniqueId(), false);
+                return;
+            }
 
-            // 检查Y轴范围
-            double yDistance = Math.abs(location.getY() - center.getY());
+            // 如果状态发生变化
+            if (lastStatus == null || lastStatus != isInRegion) {
+                if (isInRegion) {
+                    // 进入保护区
+                    applyVirtualWallFeedback(player, prefs, region, true);
+                } else {
+                    // 离开保护区：按刚离开的区域拉回
+                    applyVirtualWallFeedback(player, prefs, playerRegions.remove(player.getUniqueId()), false);
+                }
 
-            // 同时满足XZ平面距离和Y轴范围
-            return xzDistanceSquared <= (radius * radius) && yDistance <= circleExtendY;
-        } else {
-            // 方形判断
-            int[] ext = plugin.getSquareExtends();
-            int centerX = center.getBlockX();
-            int centerY = center.getBlockY();
-            int centerZ = center.getBlockZ();
-
-            int x = location.getBlockX();
-            int y = location.getBlockY();
-            int z = location.getBlockZ();
-
-            return x >= (centerX - ext[0]) && x <= (centerX + ext[0]) &&
-                    y >= (centerY - ext[1]) && y <= (centerY + ext[1]) &&
-                    z >= (centerZ - ext[2]) && z <= (centerZ + ext[2]);
+                // 更新状态
+                playerRegionStatus.put(player.getUniqueId(), isInRegion);
+            }
+        } finally {
+            latency.stop(start);
         }
     }
 
@@ -458,9 +440,11 @@ public class RegionVisualizer implements Listener {
      * 应用虚拟墙壁反馈
      *
      * @param player 要应用反馈的玩家
+     * @param region 进入或离开的区域（击退方向按它的中心计算），未知时为null
      * @param isEntering true表示进入，false表示离开
      */
-    private void applyVirtualWallFeedback(Player player, PlayerVirtualWallPrefs prefs, boolean isEntering) {
+    private void applyVirtualWallFeedback(Player player, PlayerVirtualWallPrefs prefs,
+                                          ProtectedRegion region, boolean isEntering) {
         // 发送消息反馈
         if (prefs.getFeedbackType() == FeedbackType.MESSAGE || prefs.getFeedbackType() == FeedbackType.BOTH) {
             player.sendMessage(isEntering ? enterMessage : leaveMessage);
@@ -468,17 +452,15 @@ public class RegionVisualizer implements Listener {
 
         // 击退反馈（进出都有击退，方向相反）
         if (prefs.getFeedbackType() == FeedbackType.PUSH_BACK || prefs.getFeedbackType() == FeedbackType.BOTH) {
-            Location center = plugin.getCenterLocation();
-            if (center != null) {
-                Vector direction;
-                if (isEntering) {
-                    // 进入：从中心指向玩家的方向（将玩家推出）
-                    direction = player.getLocation().toVector().subtract(center.toVector()).normalize();
-                } else {
-                    // 离开：从玩家指向中心的方向（将玩家拉回）
-                    direction = center.toVector().subtract(player.getLocation().toVector()).normalize();
+            Location loc = player.getLocation();
+            if (region != null && loc.getWorld() != null && region.getWorldName().equals(loc.getWorld().getName())) {
+                // 进入：从区域中心指向玩家的方向（将玩家推出）；离开：反方向（将玩家拉回）
+                Vector direction = new Vector(loc.getX() - region.getCenterX(), loc.getY() - region.getCenterY(),
+                        loc.getZ() - region.getCenterZ());
+                if (!isEntering) direction.multiply(-1);
+                if (direction.lengthSquared() > 0) {
+                    player.setVelocity(direction.normalize().multiply(pushBackStrength));
                 }
-                player.setVelocity(direction.multiply(pushBackStrength));
             }
         }
 
@@ -500,8 +482,9 @@ public class RegionVisualizer implements Listener {
             return;
         }
 
-        Location center = plugin.getCenterLocation();
-        if (center == null || !center.getWorld().equals(player.getWorld())) {
+        ProtectedRegion region = plugin.getSnapshot().getDefaultRegion();
+        World world = player.getWorld();
+        if (region == null || !region.getWorldName().equals(world.getName())) {
             player.sendMessage(ChatColor.RED + "无法确定区域中心点，或你不在正确的世界。");
             return;
         }
@@ -511,59 +494,92 @@ public class RegionVisualizer implements Listener {
 
         player.sendMessage(ChatColor.GREEN + "正在生成3D边界投影...");
 
-        // 在主线程中计算边界点（避免异步问题）
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                List<Location> boundaryPoints = calculateBoundaryPoints3D(center);
-                VisualizationSession session = spawnArmorStands(player, boundaryPoints);
+        // 边界点只是坐标计算，在当前线程完成；盔甲架按区块分组，在拥有各区块的线程中生成
+        List<Location> boundaryPoints = calculateBoundaryPoints3D(world, region);
+        LongObjectMap<List<Location>> byChunk = new LongObjectMap<>();
+        for (Location point : boundaryPoints) {
+            long key = RegionIndex.chunkKey(point.getBlockX() >> 4, point.getBlockZ() >> 4);
+            List<Location> group = byChunk.get(key);
+            if (group == null) {
+                group = new ArrayList<>();
+                byChunk.put(key, group);
+            }
+            group.add(point);
+        }
 
-                if (session == null || session.armorStands.isEmpty()) {
-                    player.sendMessage(ChatColor.YELLOW + "边界投影生成失败。");
-                    return;
-                }
+        VisualizationSession session = new VisualizationSession(player);
+        activeSessions.put(player.getUniqueId(), session);
+        if (byChunk.size() == 0) {
+            finishVisualization(session);
+            return;
+        }
+        session.pendingChunks.set(byChunk.size());
+        byChunk.forEach((key, points) -> plugin.getServer().getRegionScheduler().execute(plugin, world,
+                RegionIndex.chunkX(key), RegionIndex.chunkZ(key), () -> {
+                    spawnArmorStands(session, world, points);
+                    if (session.pendingChunks.decrementAndGet() == 0) {
+                        finishVisualization(session);
+                    }
+                }));
+    }
 
-                activeSessions.put(player.getUniqueId(), session);
-                player.sendMessage(ChatColor.GREEN + "✓ 3D边界投影已生成，持续 " + durationSeconds + " 秒。");
-                player.sendMessage(ChatColor.GRAY + "显示了 " + session.armorStands.size() + " 个边界点。");
-
-                // 设置自动清理任务
-                if (durationSeconds > 0) {
-                    session.cleanupTask = new BukkitRunnable() {
-                        @Override
-                        public void run() {
-                            cancelPlayerVisualization(player);
-                            if (player.isOnline()) {
-                                player.sendMessage(ChatColor.YELLOW + "边界投影已自动消失。");
-                            }
-                        }
-                    };
-                    // 单独调度任务
-                    session.cleanupTask.runTaskLater(plugin, durationSeconds * 20L);
-                }
+    /**
+     * 所有区块的盔甲架生成完毕后，在玩家所属线程中提示玩家并设置自动清理
+     *
+     * @param session 可视化会话
+     */
+    private void finishVisualization(VisualizationSession session) {
+        Player player = session.player;
+        player.getScheduler().run(plugin, task -> {
+            if (session.cancelled) return;
+            if (session.armorStands.isEmpty()) {
+                activeSessions.remove(player.getUniqueId(), session);
+                player.sendMessage(ChatColor.YELLOW + "边界投影生成失败。");
+                return;
+            }
+
+            player.sendMessage(ChatColor.GREEN + "✓ 3D边界投影已生成，持续 " + durationSeconds + " 秒。");
+            player.sendMessage(ChatColor.GRAY + "显示了 " + session.armorStands.size() + " 个边界点。");
+
+            // 播放生成音效
+            if (playSummonSound && summonSound != null) {
+                player.playSound(player.getLocation(), summonSound, 1.0f, 1.0f);
+            }
+
+            // 设置自动清理任务（玩家离线时由 handlePlayerQuit 清理）
+            if (durationSeconds > 0) {
+                session.cleanupTask = player.getScheduler().runDelayed(plugin, cleanup -> {
+                    if (activeSessions.get(player.getUniqueId()) != session) return;
+                    cancelPlayerVisualization(player);
+                    player.sendMessage(ChatColor.YELLOW + "边界投影已自动消失。");
+                }, null, durationSeconds * 20L);
             }
-        }.runTask(plugin);
+        }, null);
     }
 
     /**
-     * 计算3D边界点的位置（方形和圆形都显示完整3D）
+     * 计算3D边界点的位置（圆形、方形和多边形都显示完整3D）
      *
-     * @param center 区域中心
+     * <p>包级可见，供基准测试直接调用。</p>
+     *
+     * @param world 区域所在世界
+     * @param region 要显示的区域
      * @return 边界点位置列表
      */
-    private List<Location> calculateBoundaryPoints3D(Location center) {
+    List<Location> calculateBoundaryPoints3D(World world, ProtectedRegion region) {
         List<Location> points = new ArrayList<>();
-        World world = center.getWorld();
-        NoSpawnPlugin.RegionMode mode = plugin.getRegionMode();
+        NoSpawnPlugin.RegionMode mode = region.getMode();
+        double centerX = region.getCenterX();
+        double centerZ = region.getCenterZ();
 
         if (mode == NoSpawnPlugin.RegionMode.CIRCLE) {
             // ====== 圆形3D边界点计算 ======
-            double radius = plugin.getRadius();
-            int circleExtendY = plugin.getCircleExtendY();
+            double radius = region.getRadius();
+            int circleExtendY = region.getCircleExtendY();
 
             // 以区域中心Y轴为准，显示上下各circleExtendY的范围
-            double minY = center.getY() - circleExtendY;
-            double maxY = center.getY() + circleExtendY;
+            double minY = region.getCenterY() - circleExtendY;
+            double maxY = region.getCenterY() + circleExtendY;
 
             // 确保Y值在世界范围内
             minY = Math.max(minY, world.getMinHeight() + 1);
@@ -586,8 +602,8 @@ public class RegionVisualizer implements Listener {
 
                 for (int i = 0; i < pointsPerLayer; i++) {
                     double angle = 2 * Math.PI * i / pointsPerLayer;
-                    double x = center.getX() + radius * Math.cos(angle);
-                    double z = center.getZ() + radius * Math.sin(angle);
+                    double x = centerX + radius * Math.cos(angle);
+                    double z = centerZ + radius * Math.sin(angle);
 
                     points.add(new Location(world, x, y, z));
                 }
@@ -597,8 +613,8 @@ public class RegionVisualizer implements Listener {
             int verticalLines = 8; // 8条垂直线
             for (int i = 0; i < verticalLines; i++) {
                 double angle = 2 * Math.PI * i / verticalLines;
-                double x = center.getX() + radius * Math.cos(angle);
-                double z = center.getZ() + radius * Math.sin(angle);
+                double x = centerX + radius * Math.cos(angle);
+                double z = centerZ + radius * Math.sin(angle);
 
                 for (int layer = 0; layer <= yLayers; layer++) {
                     double y = minY + (height * layer / yLayers);
@@ -606,12 +622,50 @@ public class RegionVisualizer implements Listener {
                 }
             }
 
+        } else if (mode == NoSpawnPlugin.RegionMode.POLYGON) {
+            // ====== 多边形3D边界点计算 ======
+            PolygonShape polygon = region.getPolygon();
+
+            // 确保Y值在世界范围内
+            double minY = Math.max(polygon.getMinY(), world.getMinHeight() + 1);
+            double maxY = Math.min(polygon.getMaxY(), world.getMaxHeight() - 1);
+            int yPoints = Math.max(2, (int)((maxY - minY) / markerSpacing));
+            int vertexCount = polygon.getVertexCount();
+
+            plugin.getLogger().info(String.format("多边形边界: 顶点=%d, Y范围=[%.1f, %.1f]",
+                    vertexCount, minY, maxY));
+
+            for (int i = 0; i < vertexCount; i++) {
+                int next = (i + 1) % vertexCount;
+                double x1 = polygon.getVertexX(i);
+                double z1 = polygon.getVertexZ(i);
+                double x2 = polygon.getVertexX(next);
+                double z2 = polygon.getVertexZ(next);
+
+                // 计算该边需要放置的点数
+                double length = Math.sqrt((x2 - x1) * (x2 - x1) + (z2 - z1) * (z2 - z1));
+                int edgePoints = Math.max(1, (int)(length / markerSpacing));
+
+                // 底部和顶部的边
+                generateLine(points, world, x1, minY, z1, x2, minY, z2, edgePoints);
+                generateLine(points, world, x1, maxY, z1, x2, maxY, z2, edgePoints);
+
+                // 中间层（便于查看范围）
+                if ((maxY - minY) > 10) {
+                    double midY = (minY + maxY) / 2;
+                    generateLine(points, world, x1, midY, z1, x2, midY, z2, edgePoints);
+                }
+
+                // 每个顶点处的垂直边
+                generateLine(points, world, x1, minY, z1, x1, maxY, z1, yPoints);
+            }
+
         } else {
             // ====== 方形3D边界点计算 ======
-            int[] ext = plugin.getSquareExtends();
-            int cx = center.getBlockX();
-            int cy = center.getBlockY();
-            int cz = center.getBlockZ();
+            int[] ext = {region.getExtendX(), region.getExtendY(), region.getExtendZ()};
+            int cx = region.getCenterBlockX();
+            int cy = region.getCenterBlockY();
+            int cz = region.getCenterBlockZ();
 
             // 以区域中心Y轴为准，显示上下各ext[1]的范围
             double minY = cy - ext[1];
@@ -699,95 +753,122 @@ public class RegionVisualizer implements Listener {
     }
 
     /**
-     * 生成盔甲架实体
+     * 生成盔甲架实体（在拥有这些位置所在区块的线程中调用）
      *
-     * @param player 玩家
-     * @param points 要放置盔甲架的位置列表
-     * @return 可视化会话
+     * @param session 可视化会话
+     * @param world 世界
+     * @param points 要放置盔甲架的位置列表（同一区块）
      */
-    private VisualizationSession spawnArmorStands(Player player, List<Location> points) {
-        VisualizationSession session = new VisualizationSession(player);
-        World world = player.getWorld();
-
+    private void spawnArmorStands(VisualizationSession session, World world, List<Location> points) {
         for (Location point : points) {
+            if (session.cancelled) return;
+
             // 确保在世界范围内
             if (point.getY() < world.getMinHeight() + 1 || point.getY() > world.getMaxHeight() - 1) {
                 continue;
             }
 
             try {
-                // 在指定位置生成盔甲架
-                ArmorStand armorStand = world.spawn(point, ArmorStand.class);
-
-                // 配置盔甲架属性
-                armorStand.setVisible(!armorstandInvisible);  // 设置可见性
-                armorStand.setGravity(false);                 // 禁止重力，防止下落
-                armorStand.setInvulnerable(true);             // 无敌
-                armorStand.setCollidable(false);              // 无碰撞
-                armorStand.setMarker(true);                   // 设为标记，使其不可见且无碰撞
-                armorStand.setSmall(true);                    // 小型盔甲架
-                armorStand.setBasePlate(false);               // 移除底座
-                armorStand.setArms(false);                    // 移除手臂
-
-                if (armorstandEquipBlock) {
-                    if(armorstandHelmetBlock != null) {
-                        armorStand.getEquipment().setHelmet(armorstandHelmetBlock);   //设置头盔方块
-                    }
-                }
-
-                // 设置名称
-                if (showName) {
-                    // 在名称中显示Y坐标，便于理解高度
-                    String formattedName = nameFormat;
-                    if (nameFormat.contains("{y}")) {
-                        formattedName = nameFormat.replace("{y}", String.format("%.0f", point.getY()));
-                    }
-                    armorStand.setCustomName(formattedName);
-                    armorStand.setCustomNameVisible(true);
-                } else {
-                    armorStand.setCustomNameVisible(false);
-                }
-
-                // 应用发光效果
-                if (glowLevel > 0) {
-                    armorStand.addPotionEffect(new PotionEffect(
-                            PotionEffectType.GLOWING,
-                            durationSeconds * 20, // 转换为ticks
-                            Math.max(1, glowLevel / 10), // 强度等级
-                            false, false
-                    ));
-                }
-
-                // 给盔甲架一个微小的向上偏移，确保可见
-                armorStand.teleport(point.clone().add(0, 0.1, 0));
+                // 给盔甲架一个微小的向上偏移，确保可见；直接在偏移位置生成，
+                // Folia 不允许同步传送实体。属性在加入世界前配置，配置失败则不会生成
+                ArmorStand armorStand = world.spawn(point.clone().add(0, 0.1, 0), ArmorStand.class,
+                        stand -> configureArmorStand(stand, point));
 
                 session.armorStands.add(armorStand);
+                // 生成期间会话被取消时，取消方可能已经遍历过列表
+                if (session.cancelled) {
+                    removeArmorStand(armorStand);
+                }
             } catch (Exception e) {
                 plugin.getLogger().warning("生成盔甲架时出错: " + e.getMessage());
             }
         }
+    }
+
+    /**
+     * 配置新生成的盔甲架属性（在其加入世界之前调用）
+     *
+     * @param armorStand 盔甲架
+     * @param point 可视化点位置
+     */
+    private void configureArmorStand(ArmorStand armorStand, Location point) {
+        // 配置盔甲架属性
+        armorStand.setVisible(!armorstandInvisible);  // 设置可见性
+        armorStand.setGravity(false);                 // 禁止重力，防止下落
+        armorStand.setInvulnerable(true);             // 无敌
+        armorStand.setCollidable(false);              // 无碰撞
+        armorStand.setMarker(true);                   // 设为标记，使其不可见且无碰撞
+        armorStand.setSmall(true);                    // 小型盔甲架
+        armorStand.setBasePlate(false);               // 移除底座
+        armorStand.setArms(false);                    // 移除手臂
+        armorStand.setPersistent(false);              // 不随区块保存，关闭时未能移除的也不会残留
+
+        if (armorstandEquipBlock) {
+            if(armorstandHelmetBlock != null) {
+                armorStand.getEquipment().setHelmet(armorstandHelmetBlock);   //设置头盔方块
+            }
+        }
 
-        // 播放生成音效
-        if (playSummonSound && summonSound != null && !session.armorStands.isEmpty()) {
-            player.playSound(player.getLocation(), summonSound, 1.0f, 1.0f);
+        // 设置名称
+        if (showName) {
+            // 在名称中显示Y坐标，便于理解高度
+            String formattedName = nameFormat;
+            if (nameFormat.contains("{y}")) {
+                formattedName = nameFormat.replace("{y}", String.format("%.0f", point.getY()));
+            }
+            armorStand.setCustomName(formattedName);
+            armorStand.setCustomNameVisible(true);
+        } else {
+            armorStand.setCustomNameVisible(false);
         }
 
-        return session;
+        // 应用发光效果
+        if (glowLevel > 0) {
+            armorStand.addPotionEffect(new PotionEffect(
+                    PotionEffectType.GLOWING,
+                    durationSeconds * 20, // 转换为ticks
+                    Math.max(1, glowLevel / 10), // 强度等级
+                    false, false
+            ));
+        }
     }
 
     /**
-     * 取消玩家的可视化效果
+     * 移除盔甲架：当前线程拥有该实体时直接移除，否则交给实体自己的调度器
      *
-     * @param player 玩家
+     * @param armorStand 盔甲架
+     * @return 是否已移除或已调度移除
      */
-    public void cancelPlayerVisualization(Player player) {
-        VisualizationSession session = activeSessions.remove(player.getUniqueId());
-        if (session == null) return;
+    private boolean removeArmorStand(ArmorStand armorStand) {
+        try {
+            if (armorStand == null || armorStand.isDead()) return false;
+            if (Bukkit.isOwnedByCurrentRegion(armorStand)) {
+                armorStand.remove();
+                return true;
+            }
+            // 插件卸载时调度器不再接受任务，盔甲架未设为持久化，随区块卸载消失
+            if (!plugin.isEnabled()) return false;
+            return armorStand.getScheduler().execute(plugin, armorStand::remove, null, 1L);
+        } catch (Exception e) {
+            plugin.getLogger().warning("移除盔甲架时出错: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 取消会话的清理任务并移除其所有盔甲架
+     *
+     * @param session 可视化会话
+     * @return 移除的盔甲架数量
+     */
+    private int clearSession(VisualizationSession session) {
+        session.cancelled = true;
 
         // 取消清理任务
-        if (session.cleanupTask != null) {
+        ScheduledTask cleanupTask = session.cleanupTask;
+        if (cleanupTask != null) {
             try {
-                session.cleanupTask.cancel();
+                cleanupTask.cancel();
             } catch (Exception e) {
                 // 忽略取消任务时的异常
             }
@@ -796,16 +877,21 @@ public class RegionVisualizer implements Listener {
         // 移除所有盔甲架
         int removedCount = 0;
         for (ArmorStand armorStand : session.armorStands) {
-            try {
-                if (armorStand != null && !armorStand.isDead()) {
-                    armorStand.remove();
-                    removedCount++;
-                }
-            } catch (Exception e) {
-                plugin.getLogger().warning("移除盔甲架时出错: " + e.getMessage());
-            }
+            if (removeArmorStand(armorStand)) removedCount++;
         }
+        return removedCount;
+    }
 
+    /**
+     * 取消玩家的可视化效果
+     *
+     * @param player 玩家
+     */
+    public void cancelPlayerVisualization(Player player) {
+        VisualizationSession session = activeSessions.remove(player.getUniqueId());
+        if (session == null) return;
+
+        int removedCount = clearSession(session);
         plugin.getLogger().info("为玩家 " + player.getName() + " 移除了 " + removedCount + " 个盔甲架");
 
         if (player.isOnline()) {
@@ -823,6 +909,17 @@ public class RegionVisualizer implements Listener {
         cancelPlayerVisualization(player);
         // 清理状态记录
         playerRegionStatus.remove(player.getUniqueId());
+        playerRegions.remove(player.getUniqueId());
+    }
+
+    /**
+     * 玩家换了世界时清除状态记录（之前的状态属于另一个世界，不能用来判断进出）
+     *
+     * @param player 换了世界的玩家
+     */
+    public void handleWorldChange(Player player) {
+        playerRegionStatus.remove(player.getUniqueId());
+        playerRegions.remove(player.getUniqueId());
     }
 
     /**
@@ -830,26 +927,11 @@ public class RegionVisualizer implements Listener {
      */
     public void cancelAllVisualizations() {
         for (VisualizationSession session : activeSessions.values()) {
-            if (session.cleanupTask != null) {
-                try {
-                    session.cleanupTask.cancel();
-                } catch (Exception e) {
-                    // 忽略取消任务时的异常
-                }
-            }
-
-            for (ArmorStand armorStand : session.armorStands) {
-                try {
-                    if (armorStand != null && !armorStand.isDead()) {
-                        armorStand.remove();
-                    }
-                } catch (Exception e) {
-                    plugin.getLogger().warning("移除盔甲架时出错: " + e.getMessage());
-                }
-            }
+            clearSession(session);
         }
         activeSessions.clear();
         playerRegionStatus.clear();
+        playerRegions.clear();
     }
 
     /**
@@ -876,8 +958,7 @@ public class RegionVisualizer implements Listener {
      */
     public void setVirtualWallEnabled(boolean enabled) {
         this.virtualWallEnabled = enabled;
-        plugin.getConfig().set("virtual-wall.enabled", enabled);
-        plugin.saveConfig();
+        plugin.getConfigSaver().set("virtual-wall.enabled", enabled);
     }
 
     /**
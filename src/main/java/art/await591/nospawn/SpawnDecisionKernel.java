@@ -0,0 +1,87 @@
+package art.await591.nospawn;
+
+import java.util.UUID;
+
+/**
+ * 生成判定内核
+ *
+ * <p>只接收原始值（世界UID、坐标、实体类型序号、生成原因序号），返回判定结果。
+ * 判定过程只读取区域索引中预先构建好的数组，不创建 {@link org.bukkit.Location}、
+ * 不装箱、不查找枚举，也不拼接字符串，因此每次判定都不分配内存。
+ * {@link NoSpawnPlugin#onMobSpawn} 和 {@link PaperSpawnListener} 共用同一个内核。</p>
+ *
+ * @author await591
+ */
+public final class SpawnDecisionKernel {
+    /** 判定结果：允许生成 */
+    public static final int ALLOWED = -1;
+
+    /** 判定结果：本应阻止，但生成原因被区域豁免 */
+    public static final int EXEMPTED = -2;
+
+    private SpawnDecisionKernel() {
+    }
+
+    /**
+     * 判定一次生成
+     *
+     * @param index 区域索引
+     * @param worldId 世界UID
+     * @param x X坐标
+     * @param y Y坐标
+     * @param z Z坐标
+     * @param typeOrdinal 实体类型序号
+     * @param reasonOrdinal 生成原因序号
+     * @param densityLimiter 区块生成密度限制器
+     * @return 阻止该生成的区域在区块判定中的下标；允许生成时返回 {@link #ALLOWED}，
+     *         因生成原因豁免而允许时返回 {@link #EXEMPTED}
+     */
+    public static int decide(RegionIndex index, UUID worldId, double x, double y, double z,
+                             int typeOrdinal, int reasonOrdinal, SpawnDensityLimiter densityLimiter) {
+        // 通过区块网格索引取出该区块的预计算判定，完全在外的区块直接放行
+        RegionIndex.ChunkEntry chunk = index.query(worldId, (int) Math.floor(x), (int) Math.floor(z));
+        if (chunk == null) return ALLOWED;
+        return decide(chunk, x, y, z, typeOrdinal, reasonOrdinal, densityLimiter);
+    }
+
+    /**
+     * 在已经查询到的区块判定中判定一次生成
+     *
+     * <p>设置了密度上限的区域只在该区块当前窗口的计数已满时阻止。</p>
+     *
+     * @param chunk 区块判定
+     * @param x X坐标
+     * @param y Y坐标
+     * @param z Z坐标
+     * @param typeOrdinal 实体类型序号
+     * @param reasonOrdinal 生成原因序号
+     * @param densityLimiter 区块生成密度限制器
+     * @return 阻止该生成的区域在区块判定中的下标；允许生成时返回 {@link #ALLOWED}，
+     *         因生成原因豁免而允许时返回 {@link #EXEMPTED}
+     */
+    public static int decide(RegionIndex.ChunkEntry chunk, double x, double y, double z,
+                             int typeOrdinal, int reasonOrdinal, SpawnDensityLimiter densityLimiter) {
+        boolean exempted = false;
+        for (int i = 0; i < chunk.size(); i++) {
+            ProtectedRegion region = chunk.region(i);
+
+            // 检查该区域是否阻止此实体类型（预编译的类型表，一次数组读取）
+            if (!region.blocksType(typeOrdinal)) continue;
+
+            // 检查是否在该区域的豁免原因表中（只为统计判断豁免是否真正生效）
+            if (region.isExempt(reasonOrdinal)) {
+                exempted = exempted || chunk.contains(i, x, y, z);
+                continue;
+            }
+
+            // 在保护区内（完全在内的区块只需检查Y轴）
+            if (!chunk.contains(i, x, y, z)) continue;
+
+            // 密度上限模式：本窗口的名额未用完时放行
+            if (region.hasDensityLimit()
+                    && !densityLimiter.isFull(chunk, i, (int) Math.floor(x), (int) Math.floor(z))) continue;
+            return i;
+        }
+        return exempted ? EXEMPTED : ALLOWED;
+    }
+}
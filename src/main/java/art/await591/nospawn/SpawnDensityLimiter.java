@@ -0,0 +1,309 @@
+package art.await591.nospawn;
+
+import org.bukkit.event.entity.CreatureSpawnEvent;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 区块生成密度限制器
+ *
+ * <p>为设置了密度上限的区域按区块统计时间窗口内的实际生成数。判定时只读取计数（已满则阻止），
+ * 生成真正发生后再记录，因此被其他插件取消的生成不会占用名额。</p>
+ *
+ * <p>计数保存在以区块坐标为键的原始数组哈希表中，每个槽位记录所属的时间窗口编号：
+ * 窗口过期的计数在读取时视为0，并在表需要扩容时被整体清除，无需定时扫描，
+ * 也不需要遍历 {@code Chunk#getEntities()}。</p>
+ *
+ * <p>计数按区域实例划分；区域被修改或重新加载后（区域版本号变化）计数重新开始：
+ * 判定和记录都会检查版本号，发现更新的版本时整体换上一张新的计数表，而不是清空正在使用的表，
+ * 与旧表上并发的计数不会落到新版本中。</p>
+ *
+ * <p>每个区域的计数再按区块所在的 {@value #STRIPE_SECTION_CHUNKS}×{@value #STRIPE_SECTION_CHUNKS}
+ * 区块分片加锁：Folia下相距较远的区域线程落在不同分片上，不会在同一把锁上排队。</p>
+ *
+ * @author await591
+ */
+public final class SpawnDensityLimiter {
+    /** 分片数量（2的幂） */
+    static final int STRIPES = 16;
+
+    /** 同一分片连续覆盖的区块边长 */
+    private static final int STRIPE_SECTION_CHUNKS = 16;
+
+    /** 当前版本的计数表，版本变化时整体替换 */
+    private volatile Generation generation = new Generation(0L);
+
+    /**
+     * 判断区块判定中第i个区域在指定区块的当前窗口内是否已达到上限
+     *
+     * @param chunk 区块判定
+     * @param i 设置了密度上限的区域在区块判定中的下标
+     * @param blockX 方块X坐标
+     * @param blockZ 方块Z坐标
+     * @return 如果已达到上限则返回true
+     */
+    public boolean isFull(RegionIndex.ChunkEntry chunk, int i, int blockX, int blockZ) {
+        ProtectedRegion region = chunk.region(i);
+        ChunkCounters[] tables = counters(chunk.getVersion()).get(region);
+        if (tables == null) return false;
+        int chunkX = blockX >> 4;
+        int chunkZ = blockZ >> 4;
+        return tables[stripe(chunkX, chunkZ)].get(RegionIndex.chunkKey(chunkX, chunkZ), currentWindow(region))
+                >= region.getDensityLimit();
+    }
+
+    /**
+     * 记录一次已经发生的生成
+     *
+     * <p>对区块判定中所有设置了密度上限、且本应阻止该生成的区域各计数一次。</p>
+     *
+     * @param index 当前的区域索引
+     * @param chunk 生成位置所在区块的判定
+     * @param x X坐标
+     * @param y Y坐标
+     * @param z Z坐标
+     * @param reason 生成原因
+     * @param typeOrdinal 实体类型序号
+     */
+    public void record(RegionIndex index, RegionIndex.ChunkEntry chunk, double x, double y, double z,
+                       CreatureSpawnEvent.SpawnReason reason, int typeOrdinal) {
+        Map<ProtectedRegion, ChunkCounters[]> counters = counters(index.getVersion());
+        int chunkX = (int) Math.floor(x) >> 4;
+        int chunkZ = (int) Math.floor(z) >> 4;
+        long key = RegionIndex.chunkKey(chunkX, chunkZ);
+        for (int i = 0; i < chunk.size(); i++) {
+            ProtectedRegion region = chunk.region(i);
+            if (!region.hasDensityLimit() || region.isExempt(reason) || !region.blocksType(typeOrdinal)) continue;
+            if (!chunk.contains(i, x, y, z)) continue;
+            counters.computeIfAbsent(region, r -> newStripes())[stripe(chunkX, chunkZ)]
+                    .increment(key, currentWindow(region));
+        }
+    }
+
+    /**
+     * 获取当前正在计数的区块数量（包括尚未被清除的过期计数）
+     *
+     * @return 区块数量
+     */
+    public int getTrackedChunks() {
+        int total = 0;
+        for (ChunkCounters[] tables : generation.counters.values()) {
+            for (ChunkCounters table : tables) {
+                total += table.size();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 清空所有计数
+     */
+    public synchronized void clear() {
+        generation = new Generation(generation.version);
+    }
+
+    /**
+     * 获取指定区域版本的计数表，版本号更新时换上新的空表
+     *
+     * <p>来自旧版本索引的调用使用当前的表：旧区域实例在新表中没有计数，不会被判定为已满。</p>
+     *
+     * @param version 调用方所用索引的区域版本号
+     * @return 区域到分片计数表的映射
+     */
+    private Map<ProtectedRegion, ChunkCounters[]> counters(long version) {
+        Generation current = generation;
+        if (current.version >= version) return current.counters;
+        synchronized (this) {
+            current = generation;
+            if (current.version < version) {
+                current = new Generation(version);
+                generation = current;
+            }
+            return current.counters;
+        }
+    }
+
+    /**
+     * 计算区块所在的分片：相邻的区块段落在同一分片，相距较远的区块段分散到不同分片
+     *
+     * <p>包级可见，供其他按区块加锁分片的计数表共用。</p>
+     *
+     * @param chunkX 区块X坐标
+     * @param chunkZ 区块Z坐标
+     * @return 分片下标（0到 {@value #STRIPES}-1）
+     */
+    static int stripe(int chunkX, int chunkZ) {
+        int sectionX = Math.floorDiv(chunkX, STRIPE_SECTION_CHUNKS);
+        int sectionZ = Math.floorDiv(chunkZ, STRIPE_SECTION_CHUNKS);
+        return (sectionX * 31 + sectionZ) & (STRIPES - 1);
+    }
+
+    /**
+     * 创建一个区域的分片计数表
+     */
+    private static ChunkCounters[] newStripes() {
+        ChunkCounters[] tables = new ChunkCounters[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            tables[i] = new ChunkCounters();
+        }
+        return tables;
+    }
+
+    /**
+     * 计算区域当前的时间窗口编号
+     */
+    private static long currentWindow(ProtectedRegion region) {
+        return System.nanoTime() / 1_000_000L / region.getDensityWindowMillis();
+    }
+
+    /**
+     * 某个区域版本的全部计数
+     */
+    private static final class Generation {
+        /** 区域版本号 */
+        final long version;
+
+        /** 每个区域按分片划分的区块计数表（区域未重写equals，按实例区分） */
+        final Map<ProtectedRegion, ChunkCounters[]> counters = new ConcurrentHashMap<>();
+
+        Generation(long version) {
+            this.version = version;
+        }
+    }
+
+    /**
+     * 单个区域的区块计数表
+     *
+     * <p>线性探测的开放寻址表：键为区块坐标，值为计数及其所属窗口。
+     * 插入导致超过装载因子时先清除过期槽位，仍然不够才扩容。</p>
+     */
+    static final class ChunkCounters {
+        /** 最大装载因子（百分比） */
+        private static final int MAX_LOAD_PERCENT = 60;
+
+        /** 空槽标记（窗口编号） */
+        private static final long EMPTY = Long.MIN_VALUE;
+
+        /** 区块坐标键 */
+        private long[] keys;
+
+        /** 计数所属的时间窗口编号，EMPTY表示空槽 */
+        private long[] windows;
+
+        /** 窗口内的生成数 */
+        private int[] counts;
+
+        /** 容量掩码（容量-1） */
+        private int mask;
+
+        /** 已占用的槽位数量 */
+        private int size;
+
+        ChunkCounters() {
+            allocate(16);
+        }
+
+        /**
+         * 获取区块在指定窗口内的计数
+         *
+         * @param key 区块坐标键
+         * @param window 窗口编号
+         * @return 计数，窗口已过期或没有记录时返回0
+         */
+        synchronized int get(long key, long window) {
+            int i = find(key);
+            return i >= 0 && windows[i] == window ? counts[i] : 0;
+        }
+
+        /**
+         * 区块在指定窗口内的计数加一
+         *
+         * @param key 区块坐标键
+         * @param window 窗口编号
+         */
+        synchronized void increment(long key, long window) {
+            int i = find(key);
+            if (i >= 0) {
+                if (windows[i] == window) {
+                    counts[i]++;
+                } else {
+                    windows[i] = window;
+                    counts[i] = 1;
+                }
+                return;
+            }
+            if ((size + 1) * 100L > (long) keys.length * MAX_LOAD_PERCENT) {
+                rehash(window);
+            }
+            i = LongObjectMap.slot(key, mask);
+            while (windows[i] != EMPTY) i = (i + 1) & mask;
+            keys[i] = key;
+            windows[i] = window;
+            counts[i] = 1;
+            size++;
+        }
+
+        /**
+         * 获取已占用的槽位数量
+         *
+         * @return 槽位数量
+         */
+        synchronized int size() {
+            return size;
+        }
+
+        /**
+         * 查找键所在的槽位
+         */
+        private int find(long key) {
+            int i = LongObjectMap.slot(key, mask);
+            while (windows[i] != EMPTY) {
+                if (keys[i] == key) return i;
+                i = (i + 1) & mask;
+            }
+            return -1;
+        }
+
+        /**
+         * 清除过期窗口的槽位并重新散列，存活的槽位仍然过多时扩容
+         */
+        private void rehash(long window) {
+            long[] oldKeys = keys;
+            long[] oldWindows = windows;
+            int[] oldCounts = counts;
+
+            int live = 0;
+            for (long w : oldWindows) {
+                if (w == window) live++;
+            }
+            int capacity = oldKeys.length;
+            if ((live + 1) * 100L > (long) capacity * MAX_LOAD_PERCENT / 2) {
+                capacity <<= 1;
+            }
+            allocate(capacity);
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldWindows[j] != window) continue;
+                int i = LongObjectMap.slot(oldKeys[j], mask);
+                while (windows[i] != EMPTY) i = (i + 1) & mask;
+                keys[i] = oldKeys[j];
+                windows[i] = window;
+                counts[i] = oldCounts[j];
+                size++;
+            }
+        }
+
+        /**
+         * 分配空表
+         */
+        private void allocate(int capacity) {
+            keys = new long[capacity];
+            windows = new long[capacity];
+            counts = new int[capacity];
+            Arrays.fill(windows, EMPTY);
+            mask = capacity - 1;
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package art.await591.nospawn;
+
+import org.bukkit.entity.EntityType;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 被阻止生成的区块热力图
+ *
+ * <p>按世界、区块和实体类型累计被取消的生成次数，用于找出生成压力集中的位置并据此调整区域大小。
+ * 计数保存在以区块坐标为键的 {@link LongIntMap} 中：每个区块一个总数，
+ * 以及以“区块坐标 + 实体类型序号”打包成的键计数的分类型次数，不装箱也不为每个区块分配对象。</p>
+ *
+ * <p>每个世界的计数与 {@link SpawnDensityLimiter} 一样按区块段分片加锁，
+ * 不同区域线程上的记录互不阻塞。记录的区块总数有上限，超出后新区块的记录被丢弃并计数。</p>
+ *
+ * @author await591
+ */
+public final class SpawnHeatmap {
+    /** 所有实体类型（缓存 values() 的结果） */
+    private static final EntityType[] TYPES = EntityType.values();
+
+    /** 网格导出的最大边长（区块） */
+    private static final int GRID_MAX_SIZE = 256;
+
+    /** 网格导出的密度刻度，从0到最大值 */
+    private static final char[] GRID_SCALE = {' ', '.', ':', '-', '=', '+', '*', '#', '%', '@'};
+
+    /** 世界UID → 分片计数表 */
+    private final Map<UUID, Stripe[]> worlds = new ConcurrentHashMap<>();
+
+    /** 已记录的区块数量 */
+    private final AtomicInteger chunkCount = new AtomicInteger();
+
+    /** 因区块数量达到上限而丢弃的记录数 */
+    private final LongAdder dropped = new LongAdder();
+
+    /** 是否记录 */
+    private volatile boolean enabled = true;
+
+    /** 最多记录的区块数量 */
+    private volatile int maxChunks = 100_000;
+
+    /**
+     * 单个分片：区块总数表和分类型计数表
+     */
+    private static final class Stripe {
+        /** 区块键 → 总次数 */
+        final LongIntMap totals = new LongIntMap();
+
+        /** 区块与实体类型打包的键 → 次数 */
+        final LongIntMap byType = new LongIntMap();
+    }
+
+    /**
+     * 一个世界的计数副本（合并了所有分片）
+     */
+    public static final class WorldSnapshot {
+        /** 世界UID */
+        private final UUID worldId;
+
+        /** 区块键 → 总次数 */
+        private final LongIntMap totals;
+
+        /** 区块与实体类型打包的键 → 次数 */
+        private final LongIntMap byType;
+
+        WorldSnapshot(UUID worldId, LongIntMap totals, LongIntMap byType) {
+            this.worldId = worldId;
+            this.totals = totals;
+            this.byType = byType;
+        }
+
+        public UUID getWorldId() { return worldId; }
+
+        /**
+         * 获取区块的总次数
+         *
+         * @param chunkX 区块X坐标
+         * @param chunkZ 区块Z坐标
+         * @return 次数
+         */
+        public int getTotal(int chunkX, int chunkZ) {
+            return totals.get(RegionIndex.chunkKey(chunkX, chunkZ));
+        }
+
+        /**
+         * 获取区块中指定实体类型的次数
+         *
+         * @param chunkX 区块X坐标
+         * @param chunkZ 区块Z坐标
+         * @param typeOrdinal 实体类型序号
+         * @return 次数
+         */
+        public int getCount(int chunkX, int chunkZ, int typeOrdinal) {
+            return byType.get(typeKey(chunkX, chunkZ, typeOrdinal));
+        }
+
+        /**
+         * 获取记录的区块数量
+         *
+         * @return 区块数量
+         */
+        public int getChunkCount() {
+            return totals.size();
+        }
+    }
+
+    /**
+     * 热点区块
+     */
+    public static final class HotChunk {
+        /** 所在世界的计数副本 */
+        private final WorldSnapshot world;
+
+        /** 区块X坐标 */
+        private final int chunkX;
+
+        /** 区块Z坐标 */
+        private final int chunkZ;
+
+        /** 总次数 */
+        private final int total;
+
+        HotChunk(WorldSnapshot world, int chunkX, int chunkZ, int total) {
+            this.world = world;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.total = total;
+        }
+
+        public UUID getWorldId() { return world.getWorldId(); }
+
+        public int getChunkX() { return chunkX; }
+
+        public int getChunkZ() { return chunkZ; }
+
+        public int getTotal() { return total; }
+
+        /**
+         * 获取该区块中次数最多的实体类型
+         *
+         * @param limit 最多返回的类型数
+         * @return 实体类型 → 次数，按次数降序
+         */
+        public List<Map.Entry<EntityType, Integer>> getTopTypes(int limit) {
+            List<Map.Entry<EntityType, Integer>> types = new ArrayList<>();
+            for (EntityType type : TYPES) {
+                int count = world.getCount(chunkX, chunkZ, type.ordinal());
+                if (count > 0) types.add(Map.entry(type, count));
+            }
+            types.sort(Map.Entry.<EntityType, Integer>comparingByValue().reversed());
+            return types.size() > limit ? types.subList(0, limit) : types;
+        }
+    }
+
+    /**
+     * 更新配置
+     *
+     * @param enabled 是否记录
+     * @param maxChunks 最多记录的区块数量
+     */
+    public void configure(boolean enabled, int maxChunks) {
+        this.enabled = enabled;
+        this.maxChunks = Math.max(0, maxChunks);
+    }
+
+    /**
+     * 记录一次被阻止的生成
+     *
+     * @param worldId 世界UID
+     * @param chunkX 区块X坐标
+     * @param chunkZ 区块Z坐标
+     * @param typeOrdinal 实体类型序号
+     */
+    public void record(UUID worldId, int chunkX, int chunkZ, int typeOrdinal) {
+        if (!enabled) return;
+        Stripe[] stripes = worlds.computeIfAbsent(worldId, k -> newStripes());
+        Stripe stripe = stripes[SpawnDensityLimiter.stripe(chunkX, chunkZ)];
+        long chunkKey = RegionIndex.chunkKey(chunkX, chunkZ);
+        synchronized (stripe) {
+            if (stripe.totals.get(chunkKey) == 0) {
+                if (chunkCount.get() >= maxChunks) {
+                    dropped.increment();
+                    return;
+                }
+                chunkCount.incrementAndGet();
+            }
+            stripe.totals.add(chunkKey, 1);
+            stripe.byType.add(typeKey(chunkX, chunkZ, typeOrdinal), 1);
+        }
+    }
+
+    /**
+     * 复制当前的计数（逐个分片加锁复制，复制期间记录可以继续）
+     *
+     * @return 每个有记录的世界一份副本
+     */
+    public List<WorldSnapshot> snapshot() {
+        List<WorldSnapshot> result = new ArrayList<>();
+        for (Map.Entry<UUID, Stripe[]> entry : worlds.entrySet()) {
+            LongIntMap totals = new LongIntMap();
+            LongIntMap byType = new LongIntMap();
+            for (Stripe stripe : entry.getValue()) {
+                synchronized (stripe) {
+                    stripe.totals.forEach(totals::add);
+                    stripe.byType.forEach(byType::add);
+                }
+            }
+            if (totals.size() > 0) {
+                result.add(new WorldSnapshot(entry.getKey(), totals, byType));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 清空所有计数
+     */
+    public void clear() {
+        for (Stripe[] stripes : worlds.values()) {
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    chunkCount.addAndGet(-stripe.totals.size());
+                    stripe.totals.clear();
+                    stripe.byType.clear();
+                }
+            }
+        }
+        dropped.reset();
+    }
+
+    /**
+     * 判断是否记录被阻止的生成
+     *
+     * @return 如果记录则返回true
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 获取已记录的区块数量
+     *
+     * @return 区块数量
+     */
+    public int getChunkCount() {
+        return chunkCount.get();
+    }
+
+    /**
+     * 获取最多记录的区块数量
+     *
+     * @return 区块数量上限
+     */
+    public int getMaxChunks() {
+        return maxChunks;
+    }
+
+    /**
+     * 获取因区块数量达到上限而丢弃的记录数
+     *
+     * @return 丢弃的记录数
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * 找出次数最多的区块
+     *
+     * @param snapshots 计数副本
+     * @param limit 最多返回的区块数
+     * @return 热点区块，按次数降序
+     */
+    public static List<HotChunk> top(List<WorldSnapshot> snapshots, int limit) {
+        List<HotChunk> top = new ArrayList<>(limit + 1);
+        for (WorldSnapshot world : snapshots) {
+            world.totals.forEach((key, total) -> {
+                if (top.size() == limit && top.get(limit - 1).total >= total) return;
+                // 有序插入，列表长度不超过limit
+                int i = top.size();
+                while (i > 0 && top.get(i - 1).total < total) i--;
+                top.add(i, new HotChunk(world, RegionIndex.chunkX(key), RegionIndex.chunkZ(key), total));
+                if (top.size() > limit) top.remove(limit);
+            });
+        }
+        return top;
+    }
+
+    /**
+     * 以CSV格式导出（每个区块的每种实体类型一行，按区块总次数降序）
+     *
+     * @param snapshots 计数副本
+     * @param worldNames 世界UID到名称的解析
+     * @param out 输出
+     * @throws IOException 写入失败时抛出
+     */
+    public static void writeCsv(List<WorldSnapshot> snapshots, Function<UUID, String> worldNames, Writer out)
+            throws IOException {
+        out.write("world,chunk_x,chunk_z,block_x,block_z,chunk_total,entity_type,count\n");
+        for (WorldSnapshot world : snapshots) {
+            String worldName = worldNames.apply(world.worldId);
+            List<long[]> rows = new ArrayList<>(world.byType.size());
+            world.byType.forEach((key, count) -> {
+                int chunkX = typeKeyChunkX(key);
+                int chunkZ = typeKeyChunkZ(key);
+                rows.add(new long[]{world.getTotal(chunkX, chunkZ), count, chunkX, chunkZ, typeKeyOrdinal(key)});
+            });
+            rows.sort((a, b) -> a[0] != b[0] ? Long.compare(b[0], a[0])
+                    : a[2] != b[2] ? Long.compare(a[2], b[2])
+                    : a[3] != b[3] ? Long.compare(a[3], b[3])
+                    : Long.compare(b[1], a[1]));
+            for (long[] row : rows) {
+                int chunkX = (int) row[2];
+                int chunkZ = (int) row[3];
+                out.write(worldName + ',' + chunkX + ',' + chunkZ + ',' + (chunkX << 4) + ',' + (chunkZ << 4) + ','
+                        + row[0] + ',' + typeName((int) row[4]) + ',' + row[1] + '\n');
+            }
+        }
+    }
+
+    /**
+     * 以文本网格导出（每个字符一个区块，北方 -Z 在上；范围过大时以最热区块为中心截取）
+     *
+     * @param snapshots 计数副本
+     * @param worldNames 世界UID到名称的解析
+     * @param out 输出
+     * @throws IOException 写入失败时抛出
+     */
+    public static void writeGrid(List<WorldSnapshot> snapshots, Function<UUID, String> worldNames, Writer out)
+            throws IOException {
+        out.write("# 刻度: '" + GRID_SCALE[1] + "' 最少 … '" + GRID_SCALE[GRID_SCALE.length - 1]
+                + "' 最多（按对数缩放），空格为0\n");
+        for (WorldSnapshot world : snapshots) {
+            // 包围盒与最热区块
+            int[] bounds = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+            long[] hottest = {0, 0};
+            world.totals.forEach((key, total) -> {
+                int x = RegionIndex.chunkX(key);
+                int z = RegionIndex.chunkZ(key);
+                bounds[0] = Math.min(bounds[0], x);
+                bounds[1] = Math.min(bounds[1], z);
+                bounds[2] = Math.max(bounds[2], x);
+                bounds[3] = Math.max(bounds[3], z);
+                if (total > hottest[1]) {
+                    hottest[0] = key;
+                    hottest[1] = total;
+                }
+            });
+            int minX = clipMin(bounds[0], bounds[2], RegionIndex.chunkX(hottest[0]));
+            int minZ = clipMin(bounds[1], bounds[3], RegionIndex.chunkZ(hottest[0]));
+            int maxX = Math.min(bounds[2], minX + GRID_MAX_SIZE - 1);
+            int maxZ = Math.min(bounds[3], minZ + GRID_MAX_SIZE - 1);
+            double logMax = Math.log1p(hottest[1]);
+
+            out.write("\n# 世界 " + worldNames.apply(world.worldId) + "：区块 X " + minX + ".." + maxX
+                    + "，Z " + minZ + ".." + maxZ + "（方块 X " + (minX << 4) + "..." + ((maxX << 4) + 15)
+                    + "，Z " + (minZ << 4) + "..." + ((maxZ << 4) + 15) + "），最大 " + hottest[1] + "\n");
+            char[] line = new char[maxX - minX + 1];
+            for (int z = minZ; z <= maxZ; z++) {
+                Arrays.fill(line, GRID_SCALE[0]);
+                for (int x = minX; x <= maxX; x++) {
+                    int total = world.getTotal(x, z);
+                    if (total == 0) continue;
+                    int level = (int) Math.ceil(Math.log1p(total) / logMax * (GRID_SCALE.length - 1));
+                    line[x - minX] = GRID_SCALE[Math.max(1, Math.min(GRID_SCALE.length - 1, level))];
+                }
+                out.write(line);
+                out.write('\n');
+            }
+        }
+    }
+
+    /**
+     * 计算截取窗口的起点：范围不超过上限时取包围盒起点，否则以中心点为中心并限制在包围盒内
+     */
+    private static int clipMin(int min, int max, int center) {
+        if (max - min + 1 <= GRID_MAX_SIZE) return min;
+        int start = center - GRID_MAX_SIZE / 2;
+        return Math.max(min, Math.min(start, max - GRID_MAX_SIZE + 1));
+    }
+
+    /**
+     * 创建一个世界的分片计数表
+     */
+    private static Stripe[] newStripes() {
+        Stripe[] stripes = new Stripe[SpawnDensityLimiter.STRIPES];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+        return stripes;
+    }
+
+    /**
+     * 将区块坐标和实体类型序号打包为long（区块X、Z各22位，类型序号占低20位）
+     *
+     * <p>22位有符号整数可表示 ±2097151 个区块，覆盖原版世界边界（±1875000 区块）。</p>
+     */
+    static long typeKey(int chunkX, int chunkZ, int typeOrdinal) {
+        return ((long) (chunkX & 0x3FFFFF) << 42) | ((long) (chunkZ & 0x3FFFFF) << 20) | typeOrdinal;
+    }
+
+    static int typeKeyChunkX(long key) {
+        return (int) (key >> 42);
+    }
+
+    static int typeKeyChunkZ(long key) {
+        return (int) ((key << 22) >> 42);
+    }
+
+    static int typeKeyOrdinal(long key) {
+        return (int) (key & 0xFFFFF);
+    }
+
+    /**
+     * 获取实体类型名称
+     */
+    private static String typeName(int ordinal) {
+        return ordinal < TYPES.length ? TYPES[ordinal].name() : String.valueOf(ordinal);
+    }
+}
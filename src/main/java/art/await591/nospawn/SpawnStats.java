@@ -0,0 +1,332 @@
+package art.await591.nospawn;
+
+import org.bukkit.entity.EntityType;
+import org.bukkit.event.entity.CreatureSpawnEvent;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 生成判定统计
+ *
+ * <p>热路径上的计数全部使用 {@link LongAdder}（按线程分散的计数器），按生成原因和实体类型的计数
+ * 以枚举序号为下标预先分配，不需要查表；按世界和区域的计数只在生成被取消时更新。
+ * 判定与玩家移动检查的耗时由采样的 {@link LatencyHistogram} 记录。</p>
+ *
+ * <p>影子模式的判定单独计数和计时：候选区域“会阻止”的次数、与当前区域结论不同的次数，
+ * 以及候选区域的判定耗时，便于在切换布局之前比较两者。</p>
+ *
+ * @author await591
+ */
+public final class SpawnStats {
+    /** 延迟直方图的采样间隔 */
+    public static final int LATENCY_SAMPLE_INTERVAL = 16;
+
+    /** 所有生成原因（缓存 values() 的结果） */
+    private static final CreatureSpawnEvent.SpawnReason[] REASONS = CreatureSpawnEvent.SpawnReason.values();
+
+    /** 所有实体类型（缓存 values() 的结果） */
+    private static final EntityType[] TYPES = EntityType.values();
+
+    /** CreatureSpawnEvent 判定次数 */
+    private final LongAdder evaluated = new LongAdder();
+
+    /** PreCreatureSpawnEvent 判定次数 */
+    private final LongAdder preEvaluated = new LongAdder();
+
+    /** 被取消的生成次数 */
+    private final LongAdder cancelled = new LongAdder();
+
+    /** 因生成原因豁免而放行的次数，按 SpawnReason 序号 */
+    private final LongAdder[] exemptedByReason = newAdders(REASONS.length);
+
+    /** 被取消的生成次数，按 EntityType 序号 */
+    private final LongAdder[] cancelledByType = newAdders(TYPES.length);
+
+    /** 被取消的生成次数，按世界 */
+    private final Map<UUID, LongAdder> cancelledByWorld = new ConcurrentHashMap<>();
+
+    /** 被取消的生成次数，按区域名称 */
+    private final Map<String, LongAdder> cancelledByRegion = new ConcurrentHashMap<>();
+
+    /** 影子模式判定次数 */
+    private final LongAdder shadowEvaluated = new LongAdder();
+
+    /** 候选区域会阻止的生成次数 */
+    private final LongAdder shadowWouldBlock = new LongAdder();
+
+    /** 候选区域会阻止、当前区域放行的次数 */
+    private final LongAdder shadowOnlyBlocked = new LongAdder();
+
+    /** 当前区域阻止、候选区域会放行的次数 */
+    private final LongAdder liveOnlyBlocked = new LongAdder();
+
+    /** 候选区域会阻止的生成次数，按区域名称 */
+    private final Map<String, LongAdder> shadowWouldBlockByRegion = new ConcurrentHashMap<>();
+
+    /** 生成判定耗时 */
+    private final LatencyHistogram spawnLatency = new LatencyHistogram(LATENCY_SAMPLE_INTERVAL);
+
+    /** 玩家移动检查（虚拟墙壁）耗时 */
+    private final LatencyHistogram moveLatency = new LatencyHistogram(LATENCY_SAMPLE_INTERVAL);
+
+    /** 影子模式判定耗时 */
+    private final LatencyHistogram shadowLatency = new LatencyHistogram(LATENCY_SAMPLE_INTERVAL);
+
+    /** 统计开始时间 */
+    private volatile long startedAt = System.currentTimeMillis();
+
+    /**
+     * 记录一次 CreatureSpawnEvent 判定
+     */
+    public void recordEvaluated() {
+        evaluated.increment();
+    }
+
+    /**
+     * 记录一次 PreCreatureSpawnEvent 判定
+     */
+    public void recordPreEvaluated() {
+        preEvaluated.increment();
+    }
+
+    /**
+     * 记录一次因生成原因豁免而放行的生成
+     *
+     * @param reason 生成原因
+     */
+    public void recordExempted(CreatureSpawnEvent.SpawnReason reason) {
+        exemptedByReason[reason.ordinal()].increment();
+    }
+
+    /**
+     * 记录一次被取消的生成
+     *
+     * @param worldId 世界UID
+     * @param region 阻止该生成的区域
+     * @param typeOrdinal 实体类型序号
+     */
+    public void recordCancelled(UUID worldId, ProtectedRegion region, int typeOrdinal) {
+        cancelled.increment();
+        cancelledByType[typeOrdinal].increment();
+        cancelledByWorld.computeIfAbsent(worldId, k -> new LongAdder()).increment();
+        cancelledByRegion.computeIfAbsent(region.getName(), k -> new LongAdder()).increment();
+    }
+
+    /**
+     * 记录一次影子模式判定
+     *
+     * @param wouldBlock 候选区域中会阻止该生成的区域，放行时为null
+     * @param liveBlocked 当前区域是否阻止了该生成
+     */
+    public void recordShadow(ProtectedRegion wouldBlock, boolean liveBlocked) {
+        shadowEvaluated.increment();
+        if (wouldBlock != null) {
+            shadowWouldBlock.increment();
+            shadowWouldBlockByRegion.computeIfAbsent(wouldBlock.getName(), k -> new LongAdder()).increment();
+            if (!liveBlocked) shadowOnlyBlocked.increment();
+        } else if (liveBlocked) {
+            liveOnlyBlocked.increment();
+        }
+    }
+
+    /**
+     * 清空所有统计
+     */
+    public void reset() {
+        evaluated.reset();
+        preEvaluated.reset();
+        cancelled.reset();
+        for (LongAdder adder : exemptedByReason) adder.reset();
+        for (LongAdder adder : cancelledByType) adder.reset();
+        cancelledByWorld.clear();
+        cancelledByRegion.clear();
+        shadowEvaluated.reset();
+        shadowWouldBlock.reset();
+        shadowOnlyBlocked.reset();
+        liveOnlyBlocked.reset();
+        shadowWouldBlockByRegion.clear();
+        spawnLatency.reset();
+        moveLatency.reset();
+        shadowLatency.reset();
+        startedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * 获取 CreatureSpawnEvent 判定次数
+     *
+     * @return 判定次数
+     */
+    public long getEvaluated() {
+        return evaluated.sum();
+    }
+
+    /**
+     * 获取 PreCreatureSpawnEvent 判定次数
+     *
+     * @return 判定次数
+     */
+    public long getPreEvaluated() {
+        return preEvaluated.sum();
+    }
+
+    /**
+     * 获取被取消的生成次数
+     *
+     * @return 取消次数
+     */
+    public long getCancelled() {
+        return cancelled.sum();
+    }
+
+    /**
+     * 获取影子模式判定次数
+     *
+     * @return 判定次数
+     */
+    public long getShadowEvaluated() {
+        return shadowEvaluated.sum();
+    }
+
+    /**
+     * 获取候选区域会阻止的生成次数
+     *
+     * @return 会阻止的次数
+     */
+    public long getShadowWouldBlock() {
+        return shadowWouldBlock.sum();
+    }
+
+    /**
+     * 获取候选区域会阻止、当前区域放行的次数
+     *
+     * @return 次数
+     */
+    public long getShadowOnlyBlocked() {
+        return shadowOnlyBlocked.sum();
+    }
+
+    /**
+     * 获取当前区域阻止、候选区域会放行的次数
+     *
+     * @return 次数
+     */
+    public long getLiveOnlyBlocked() {
+        return liveOnlyBlocked.sum();
+    }
+
+    /**
+     * 获取按生成原因统计的豁免次数
+     *
+     * @return 生成原因 → 次数（只包含非零项）
+     */
+    public Map<CreatureSpawnEvent.SpawnReason, Long> getExemptedByReason() {
+        Map<CreatureSpawnEvent.SpawnReason, Long> result = new EnumMap<>(CreatureSpawnEvent.SpawnReason.class);
+        for (CreatureSpawnEvent.SpawnReason reason : REASONS) {
+            long count = exemptedByReason[reason.ordinal()].sum();
+            if (count > 0) result.put(reason, count);
+        }
+        return result;
+    }
+
+    /**
+     * 获取按实体类型统计的取消次数
+     *
+     * @return 实体类型 → 次数（只包含非零项）
+     */
+    public Map<EntityType, Long> getCancelledByType() {
+        Map<EntityType, Long> result = new EnumMap<>(EntityType.class);
+        for (EntityType type : TYPES) {
+            long count = cancelledByType[type.ordinal()].sum();
+            if (count > 0) result.put(type, count);
+        }
+        return result;
+    }
+
+    /**
+     * 获取按世界统计的取消次数
+     *
+     * @return 世界UID → 次数
+     */
+    public Map<UUID, Long> getCancelledByWorld() {
+        return sums(cancelledByWorld);
+    }
+
+    /**
+     * 获取按区域统计的取消次数
+     *
+     * @return 区域名称 → 次数
+     */
+    public Map<String, Long> getCancelledByRegion() {
+        return sums(cancelledByRegion);
+    }
+
+    /**
+     * 获取按区域统计的候选区域会阻止次数
+     *
+     * @return 区域名称 → 次数
+     */
+    public Map<String, Long> getShadowWouldBlockByRegion() {
+        return sums(shadowWouldBlockByRegion);
+    }
+
+    /**
+     * 获取生成判定耗时的直方图
+     *
+     * @return 延迟直方图
+     */
+    public LatencyHistogram getSpawnLatency() {
+        return spawnLatency;
+    }
+
+    /**
+     * 获取玩家移动检查（虚拟墙壁）耗时的直方图
+     *
+     * @return 延迟直方图
+     */
+    public LatencyHistogram getMoveLatency() {
+        return moveLatency;
+    }
+
+    /**
+     * 获取影子模式判定耗时的直方图
+     *
+     * @return 延迟直方图
+     */
+    public LatencyHistogram getShadowLatency() {
+        return shadowLatency;
+    }
+
+    /**
+     * 获取统计开始时间
+     *
+     * @return 开始时间（毫秒时间戳）
+     */
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    /**
+     * 预先分配计数器数组
+     */
+    private static LongAdder[] newAdders(int length) {
+        LongAdder[] adders = new LongAdder[length];
+        for (int i = 0; i < length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * 汇总计数器表
+     */
+    private static <K> Map<K, Long> sums(Map<K, LongAdder> adders) {
+        Map<K, Long> result = new HashMap<>();
+        adders.forEach((key, adder) -> result.put(key, adder.sum()));
+        return result;
+    }
+}
@@ -0,0 +1,363 @@
+package art.await591.nospawn;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.NamespacedKey;
+import org.bukkit.World;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.CreatureSpawner;
+import org.bukkit.entity.EntityType;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.CreatureSpawnEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 刷怪笼停用管理器
+ *
+ * <p>当区域没有豁免 {@code SPAWNER} 生成原因时，区域内的刷怪笼会不断尝试生成并被逐个取消。
+ * 启用本功能后，区块加载时会找出受保护区域内的刷怪笼并将其激活距离设为0使其暂停，
+ * 原始值保存在方块的持久化数据中；区域缩小、插件关闭或区块卸载时恢复原值。</p>
+ *
+ * <p>已暂停的刷怪笼按世界和区块缓存其坐标，恢复时无需重新扫描区块的方块实体。
+ * 区块卸载前会先恢复，但服务器崩溃、关闭时区块不属于当前线程等情况下，
+ * 被暂停的刷怪笼仍会连同其持久化数据一起写入磁盘。因此每次区块加载时，
+ * 无论功能是否启用，都会先恢复其中带有原始激活距离、但已不受保护的刷怪笼。</p>
+ *
+ * <p>读写方块只在拥有该区块的线程中进行：区块事件本身就在该线程触发，
+ * 重新检查和整体恢复则按区块分发到区域调度器（Folia下各区块可能属于不同的区域线程，
+ * Paper下都是主线程）。坐标缓存由多个线程共享，访问时对其加锁。</p>
+ *
+ * @author await591
+ */
+public class SpawnerNeutralizer implements Listener {
+    /** 插件主类实例 */
+    private final NoSpawnPlugin plugin;
+
+    /** 保存原始激活距离的持久化数据键 */
+    private final NamespacedKey originalRangeKey;
+
+    /** 世界UID → 区块坐标 → 已暂停刷怪笼的打包坐标（访问时对其加锁） */
+    private final Map<UUID, LongObjectMap<long[]>> paused = new HashMap<>();
+
+    /** 功能是否启用 */
+    private volatile boolean enabled;
+
+    /**
+     * 构造刷怪笼停用管理器
+     *
+     * @param plugin 插件主类实例
+     */
+    public SpawnerNeutralizer(NoSpawnPlugin plugin) {
+        this.plugin = plugin;
+        this.originalRangeKey = new NamespacedKey(plugin, "spawner_original_range");
+    }
+
+    /**
+     * 重新加载配置
+     */
+    public void reload() {
+        this.enabled = plugin.getConfig().getBoolean("spawner-neutralization.enabled", false);
+    }
+
+    /**
+     * 按当前区域快照重新检查所有已加载区块中的刷怪笼
+     *
+     * <p>在区域快照发布后调用：新进入保护区的刷怪笼被暂停，离开保护区（区域缩小或删除）的被恢复。
+     * 只检查与区域重叠或缓存中有暂停记录的区块，每个区块在其所属线程中扫描。</p>
+     */
+    public void refresh() {
+        RegionSnapshot current = plugin.getSnapshot();
+        if (!enabled || !current.isEnabled()) {
+            restoreAll();
+            return;
+        }
+
+        for (World world : Bukkit.getWorlds()) {
+            UUID worldId = world.getUID();
+            current.getIndex().forEachChunk(worldId, key -> scanLater(world, key));
+
+            // 缓存中有记录、但已不与任何区域重叠的区块（区域缩小或删除），扫描后恢复
+            long[] stale;
+            synchronized (paused) {
+                LongObjectMap<long[]> cached = paused.get(worldId);
+                if (cached == null) continue;
+                List<Long> keys = new ArrayList<>();
+                cached.forEach((key, positions) -> {
+                    if (current.getIndex().query(worldId, RegionIndex.chunkX(key) << 4,
+                            RegionIndex.chunkZ(key) << 4) == null) keys.add(key);
+                });
+                stale = toArray(keys);
+            }
+            for (long key : stale) {
+                scanLater(world, key);
+            }
+        }
+    }
+
+    /**
+     * 恢复所有已暂停的刷怪笼（功能关闭或插件卸载时调用）
+     *
+     * <p>每个区块的恢复在其所属线程中进行。插件卸载时调度器不再接受任务，
+     * 只能恢复当前线程拥有的区块；其余刷怪笼的原始激活距离仍保存在方块的持久化数据中。</p>
+     */
+    public void restoreAll() {
+        Map<UUID, LongObjectMap<long[]>> toRestore;
+        synchronized (paused) {
+            toRestore = new HashMap<>(paused);
+            paused.clear();
+        }
+
+        int[] skipped = {0};
+        for (Map.Entry<UUID, LongObjectMap<long[]>> entry : toRestore.entrySet()) {
+            World world = Bukkit.getWorld(entry.getKey());
+            if (world == null) continue;
+            entry.getValue().forEach((key, positions) -> {
+                if (!runInChunk(world, RegionIndex.chunkX(key), RegionIndex.chunkZ(key),
+                        () -> restore(world, positions))) {
+                    skipped[0]++;
+                }
+            });
+        }
+        if (skipped[0] > 0) {
+            plugin.getLogger().warning("有 " + skipped[0] + " 个区块不属于当前线程，其中暂停的刷怪笼未能在关闭前恢复，"
+                    + "原始激活距离仍保存在方块数据中。");
+        }
+    }
+
+    /**
+     * 获取当前已暂停的刷怪笼数量
+     *
+     * @return 刷怪笼数量
+     */
+    public int getPausedCount() {
+        int[] total = {0};
+        synchronized (paused) {
+            for (LongObjectMap<long[]> chunks : paused.values()) {
+                chunks.forEach((key, positions) -> total[0] += positions.length);
+            }
+        }
+        return total[0];
+    }
+
+    /**
+     * 功能是否启用
+     *
+     * @return 如果启用则返回true
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 区块加载时暂停其中受保护的刷怪笼，并恢复此前遗留在磁盘上、已不受保护的刷怪笼
+     *
+     * @param event 区块加载事件
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        RegionSnapshot current = plugin.getSnapshot();
+        Chunk chunk = event.getChunk();
+        if (enabled && current.isEnabled() && isProtectedChunk(current, chunk.getWorld().getUID(), chunk)) {
+            // 扫描时不受保护的刷怪笼同样会被恢复
+            scanChunk(current, chunk);
+            return;
+        }
+
+        // 功能关闭或区块不受保护：恢复所有带原始激活距离记录的刷怪笼
+        for (BlockState state : chunk.getTileEntities()) {
+            if (state instanceof CreatureSpawner) {
+                resume((CreatureSpawner) state);
+            }
+        }
+    }
+
+    /**
+     * 区块卸载前恢复其中已暂停的刷怪笼，保证写入磁盘的是原始状态
+     *
+     * @param event 区块卸载事件
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        Chunk chunk = event.getChunk();
+        long[] positions = updateCache(chunk.getWorld().getUID(),
+                RegionIndex.chunkKey(chunk.getX(), chunk.getZ()), null);
+        if (positions != null) {
+            restore(chunk.getWorld(), positions);
+        }
+    }
+
+    /**
+     * 在拥有该区块的线程中重新扫描区块（区块未加载时跳过）
+     */
+    private void scanLater(World world, long key) {
+        int chunkX = RegionIndex.chunkX(key);
+        int chunkZ = RegionIndex.chunkZ(key);
+        if (!world.isChunkLoaded(chunkX, chunkZ)) return;
+        runInChunk(world, chunkX, chunkZ, () -> {
+            if (world.isChunkLoaded(chunkX, chunkZ)) {
+                scanChunk(plugin.getSnapshot(), world.getChunkAt(chunkX, chunkZ));
+            }
+        });
+    }
+
+    /**
+     * 在拥有该区块的线程中执行任务：当前线程已拥有时直接执行，否则交给区域调度器
+     *
+     * @return 任务是否已执行或已调度（插件卸载后无法调度时返回false）
+     */
+    private boolean runInChunk(World world, int chunkX, int chunkZ, Runnable task) {
+        if (Bukkit.isOwnedByCurrentRegion(world, chunkX, chunkZ)) {
+            task.run();
+            return true;
+        }
+        if (!plugin.isEnabled()) return false;
+        plugin.getServer().getRegionScheduler().execute(plugin, world, chunkX, chunkZ, task);
+        return true;
+    }
+
+    /**
+     * 更新一个区块的缓存记录
+     *
+     * @param worldId 世界UID
+     * @param key 区块键
+     * @param positions 新的暂停坐标，null表示移除
+     * @return 原来的暂停坐标
+     */
+    private long[] updateCache(UUID worldId, long key, long[] positions) {
+        synchronized (paused) {
+            if (positions != null) {
+                return paused.computeIfAbsent(worldId, k -> new LongObjectMap<>()).put(key, positions);
+            }
+            LongObjectMap<long[]> chunks = paused.get(worldId);
+            if (chunks == null) return null;
+            long[] previous = chunks.remove(key);
+            if (chunks.size() == 0) paused.remove(worldId);
+            return previous;
+        }
+    }
+
+    /**
+     * 判断区块是否与至少一个区域重叠
+     */
+    private static boolean isProtectedChunk(RegionSnapshot current, UUID worldId, Chunk chunk) {
+        return current.getIndex().query(worldId, chunk.getX() << 4, chunk.getZ() << 4) != null;
+    }
+
+    /**
+     * 检查区块中的所有刷怪笼，按是否受保护暂停或恢复，并更新缓存
+     */
+    private void scanChunk(RegionSnapshot current, Chunk chunk) {
+        UUID worldId = chunk.getWorld().getUID();
+        RegionIndex.ChunkEntry entry = current.getIndex().query(worldId, chunk.getX() << 4, chunk.getZ() << 4);
+
+        List<Long> pausedHere = new ArrayList<>();
+        for (BlockState state : chunk.getTileEntities()) {
+            if (!(state instanceof CreatureSpawner)) continue;
+            CreatureSpawner spawner = (CreatureSpawner) state;
+            if (entry != null && isProtected(entry, spawner)) {
+                pause(spawner);
+                pausedHere.add(packBlock(spawner.getX(), spawner.getY(), spawner.getZ()));
+            } else {
+                resume(spawner);
+            }
+        }
+
+        long key = RegionIndex.chunkKey(chunk.getX(), chunk.getZ());
+        updateCache(worldId, key, pausedHere.isEmpty() ? null : toArray(pausedHere));
+    }
+
+    /**
+     * 将装箱的坐标列表转换为数组
+     */
+    private static long[] toArray(List<Long> values) {
+        long[] array = new long[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * 判断刷怪笼的生成是否总会被某个区域完全阻止
+     *
+     * <p>使用密度上限的区域仍允许部分生成，不会停用其中的刷怪笼。</p>
+     */
+    private static boolean isProtected(RegionIndex.ChunkEntry entry, CreatureSpawner spawner) {
+        EntityType type = spawner.getSpawnedType();
+        if (type == null) return false;
+        double x = spawner.getX() + 0.5;
+        double y = spawner.getY();
+        double z = spawner.getZ() + 0.5;
+        for (int i = 0; i < entry.size(); i++) {
+            ProtectedRegion region = entry.region(i);
+            if (region.hasDensityLimit() || region.isExempt(CreatureSpawnEvent.SpawnReason.SPAWNER)) continue;
+            if (region.blocksType(type.ordinal()) && entry.contains(i, x, y, z)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 暂停刷怪笼：保存原始激活距离后设为0
+     */
+    private void pause(CreatureSpawner spawner) {
+        PersistentDataContainer data = spawner.getPersistentDataContainer();
+        if (data.has(originalRangeKey, PersistentDataType.INTEGER)) return;
+        data.set(originalRangeKey, PersistentDataType.INTEGER, spawner.getRequiredPlayerRange());
+        spawner.setRequiredPlayerRange(0);
+        spawner.update();
+    }
+
+    /**
+     * 恢复刷怪笼的原始激活距离
+     */
+    private void resume(CreatureSpawner spawner) {
+        PersistentDataContainer data = spawner.getPersistentDataContainer();
+        Integer range = data.get(originalRangeKey, PersistentDataType.INTEGER);
+        if (range == null) return;
+        data.remove(originalRangeKey);
+        spawner.setRequiredPlayerRange(range);
+        spawner.update();
+    }
+
+    /**
+     * 按缓存的坐标恢复刷怪笼
+     */
+    private void restore(World world, long[] positions) {
+        for (long position : positions) {
+            BlockState state = world.getBlockAt(unpackX(position), unpackY(position), unpackZ(position)).getState();
+            if (state instanceof CreatureSpawner) {
+                resume((CreatureSpawner) state);
+            }
+        }
+    }
+
+    /**
+     * 将方块坐标打包为long（X、Z各27位，Y占高10位）
+     */
+    static long packBlock(int x, int y, int z) {
+        return ((long) x & 0x7FFFFFFL) | (((long) z & 0x7FFFFFFL) << 27) | ((long) y << 54);
+    }
+
+    static int unpackX(long packed) {
+        return (int) ((packed << 37) >> 37);
+    }
+
+    static int unpackY(long packed) {
+        return (int) (packed >> 54);
+    }
+
+    static int unpackZ(long packed) {
+        return (int) ((packed << 10) >> 37);
+    }
+}
@@ -0,0 +1,94 @@
+package art.await591.nospawn;
+
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 配置保存器测试
+ *
+ * <p>检查重载替换配置时不会丢失尚未写入文件的修改。插件未启用，
+ * 修改不会安排异步写入，只在调用 {@link ConfigSaver#flush()} 时写出。</p>
+ *
+ * @author await591
+ */
+class ConfigSaverTest {
+    /** 并发测试中每个线程的操作次数 */
+    private static final int ROUNDS = 10_000;
+
+    @TempDir
+    Path dataFolder;
+
+    /** 插件当前的配置 */
+    private final AtomicReference<FileConfiguration> current = new AtomicReference<>(new YamlConfiguration());
+
+    private ConfigSaver saver;
+
+    @BeforeEach
+    void setUp() {
+        NoSpawnPlugin plugin = mock(NoSpawnPlugin.class);
+        when(plugin.getConfig()).thenAnswer(invocation -> current.get());
+        when(plugin.getDataFolder()).thenReturn(dataFolder.toFile());
+        when(plugin.getConfigReloader()).thenReturn(mock(ConfigReloader.class));
+        saver = new ConfigSaver(plugin);
+    }
+
+    @Test
+    void setAfterReloadReadIsKept() {
+        // 重载已经读取了文件，随后命令修改了旧配置，最后重载替换配置
+        YamlConfiguration reloaded = new YamlConfiguration();
+        reloaded.set("virtual-wall.enabled", true);
+        reloaded.set("heatmap.enabled", true);
+        saver.set("virtual-wall.enabled", false);
+        saver.replace(reloaded, () -> current.set(reloaded));
+
+        assertSame(reloaded, current.get());
+        assertEquals(false, reloaded.get("virtual-wall.enabled"), "重载之后的修改被覆盖");
+        assertEquals(true, reloaded.get("heatmap.enabled"));
+    }
+
+    @Test
+    void savedChangesAreNotReapplied() {
+        saver.set("virtual-wall.enabled", false);
+        saver.flush();
+
+        // 写出之后文件又被手动修改，重载读到的值优先
+        YamlConfiguration reloaded = new YamlConfiguration();
+        reloaded.set("virtual-wall.enabled", true);
+        saver.replace(reloaded, () -> current.set(reloaded));
+
+        assertEquals(true, reloaded.get("virtual-wall.enabled"), "已写出的修改不应再覆盖重载的配置");
+    }
+
+    @Test
+    void concurrentSetAndReloadKeepsLastValue() throws InterruptedException {
+        Thread setter = new Thread(() -> {
+            for (int i = 0; i < ROUNDS; i++) {
+                saver.set("region.radius", i);
+            }
+        });
+        Thread reloader = new Thread(() -> {
+            for (int i = 0; i < ROUNDS; i++) {
+                YamlConfiguration reloaded = new YamlConfiguration();
+                reloaded.set("region.radius", -1);
+                saver.replace(reloaded, () -> current.set(reloaded));
+            }
+        });
+        setter.start();
+        reloader.start();
+        setter.join();
+        reloader.join();
+
+        assertEquals(ROUNDS - 1, current.get().get("region.radius"), "与重载并发的修改丢失");
+    }
+}
@@ -0,0 +1,159 @@
+package art.await591.nospawn;
+
+import org.bukkit.World;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 日志文件写入线程测试
+ *
+ * <p>检查按大小切换：重载修改的大小上限对已经打开的文件立即生效，
+ * 以及文件大小按UTF-8字节而不是字符计算。</p>
+ *
+ * @author await591
+ */
+class LogWriterTest {
+    /** 日志文件名格式 */
+    private static final String FILE_NAME_FORMAT = "yyyy-MM-dd'.log'";
+
+    /** 等待写入线程打开文件的最长时间（毫秒） */
+    private static final long OPEN_TIMEOUT_MILLIS = 5000;
+
+    @TempDir
+    Path directory;
+
+    private LogArchiver archiver;
+    private LogWorlds worlds;
+    private LogWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        NoSpawnPlugin plugin = mock(NoSpawnPlugin.class);
+        Logger logger = Logger.getLogger("NoSpawnTest");
+        logger.setUseParentHandlers(false);
+        when(plugin.getLogger()).thenReturn(logger);
+
+        File dir = directory.toFile();
+        archiver = new LogArchiver(plugin);
+        // 不压缩，切换下来的文件保留原扩展名
+        archiver.configure(dir, ".log", false, 0, 0, 0);
+        worlds = new LogWorlds();
+        LogAggregator aggregator = new LogAggregator();
+        aggregator.configure(false, 60_000L);
+        writer = new LogWriter(plugin, dir, new SimpleDateFormat(FILE_NAME_FORMAT), false,
+                new LogQueue(1 << 16, LogQueue.OverflowPolicy.DROP_NEWEST, 1), aggregator, worlds, archiver);
+        writer.setFormat(LogTemplate.compile(LogTemplate.DEFAULT_ENTRY_FORMAT),
+                LogTemplate.compile(LogTemplate.DEFAULT_AGGREGATE_FORMAT), false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.shutdown(OPEN_TIMEOUT_MILLIS);
+        archiver.shutdown();
+    }
+
+    @Test
+    void newLimitAppliesToOpenFile() throws InterruptedException {
+        int world = worlds.indexOf(world("world"));
+        writeLines(world, 1);
+        awaitOpen();
+
+        writer.setMaxFileSize(2000);
+        writeLines(world, 300);
+        writer.shutdown(OPEN_TIMEOUT_MILLIS);
+
+        assertTrue(logFiles().size() > 1, "修改上限后当前文件应当按大小切换");
+    }
+
+    @Test
+    void disabledLimitAppliesToOpenFile() throws InterruptedException {
+        writer.setMaxFileSize(1000);
+        int world = worlds.indexOf(world("world"));
+        writeLines(world, 1);
+        awaitOpen();
+
+        writer.setMaxFileSize(0);
+        writeLines(world, 500);
+        writer.shutdown(OPEN_TIMEOUT_MILLIS);
+
+        assertEquals(1, logFiles().size(), "取消上限后不应再按大小切换");
+    }
+
+    @Test
+    void sizeCountsUtf8Bytes() {
+        long limit = 4000;
+        writer.setMaxFileSize(limit);
+        // 多字节的世界名称：按字符计数时文件会明显超过上限
+        int world = worlds.indexOf(world("主世界的一个很长很长的测试区域名称"));
+        writeLines(world, 500);
+        writer.shutdown(OPEN_TIMEOUT_MILLIS);
+
+        List<File> files = logFiles();
+        assertTrue(files.size() > 1, "应当按大小切换");
+        for (File file : files) {
+            // 切换在写入下一行之前检查，文件最多超出一行
+            assertTrue(file.length() < limit + 200, file.getName() + " 超过上限: " + file.length() + " 字节");
+        }
+    }
+
+    /**
+     * 提交若干条日志
+     */
+    private void writeLines(int world, int count) {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            writer.submit(now, world, i, 64, -i, 0, 0, null);
+        }
+    }
+
+    /**
+     * 等待写入线程打开当天的日志文件
+     */
+    private void awaitOpen() throws InterruptedException {
+        File file = new File(directory.toFile(), new SimpleDateFormat(FILE_NAME_FORMAT).format(new Date()));
+        long deadline = System.currentTimeMillis() + OPEN_TIMEOUT_MILLIS;
+        while (!file.exists()) {
+            assertTrue(System.currentTimeMillis() < deadline, "日志文件没有打开");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * 获取日志目录中的日志文件（不含索引）
+     */
+    private List<File> logFiles() {
+        List<File> files = new ArrayList<>();
+        File[] all = directory.toFile().listFiles();
+        if (all == null) return files;
+        for (File file : all) {
+            if (file.getName().endsWith(".log")) files.add(file);
+        }
+        return files;
+    }
+
+    /**
+     * 构造只有名称和UID的世界
+     */
+    private static World world(String name) {
+        World world = mock(World.class);
+        when(world.getName()).thenReturn(name);
+        when(world.getUID()).thenReturn(UUID.nameUUIDFromBytes(name.getBytes()));
+        return world;
+    }
+}
@@ -0,0 +1,198 @@
+package art.await591.nospawn;
+
+import com.sun.management.ThreadMXBean;
+import org.bukkit.entity.EntityType;
+import org.bukkit.event.entity.CreatureSpawnEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.IntSupplier;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 生成判定内核测试
+ *
+ * <p>检查 {@link SpawnDecisionKernel} 的两个入口在预热后都不分配内存：
+ * 比较同一线程在若干次判定前后的累计分配字节数（{@code ThreadMXBean#getThreadAllocatedBytes}）。
+ * 样本覆盖完全阻止的区域、豁免的生成原因、区域外的位置和设置了密度上限的区域。</p>
+ *
+ * @author await591
+ */
+class SpawnDecisionKernelTest {
+    /** 测试使用的世界名称 */
+    private static final String WORLD_NAME = "world";
+
+    /** 测试使用的世界UID */
+    private static final UUID WORLD_ID = new UUID(0L, 1L);
+
+    /** 样本数量（2的幂） */
+    private static final int SAMPLES = 4096;
+
+    /** 每一轮的判定次数 */
+    private static final int CALLS = 100_000;
+
+    /** 测量前的预热轮数，等待即时编译稳定 */
+    private static final int WARMUP_ROUNDS = 10;
+
+    /** 参与判定的实体类型 */
+    private static final EntityType[] SAMPLE_TYPES = {
+            EntityType.ZOMBIE, EntityType.SKELETON, EntityType.CREEPER, EntityType.COW, EntityType.PIG
+    };
+
+    /** 参与判定的生成原因 */
+    private static final CreatureSpawnEvent.SpawnReason[] SAMPLE_REASONS = {
+            CreatureSpawnEvent.SpawnReason.NATURAL, CreatureSpawnEvent.SpawnReason.NATURAL,
+            CreatureSpawnEvent.SpawnReason.SPAWNER, CreatureSpawnEvent.SpawnReason.SPAWNER_EGG
+    };
+
+    /** 静默的日志器 */
+    private static final Logger SILENT = Logger.getLogger("NoSpawnTest");
+
+    static {
+        SILENT.setUseParentHandlers(false);
+    }
+
+    private RegionIndex index;
+    private final SpawnDensityLimiter densityLimiter = new SpawnDensityLimiter();
+    private final RegionIndex.ChunkEntry[] chunks = new RegionIndex.ChunkEntry[SAMPLES];
+    private final double[] xs = new double[SAMPLES];
+    private final double[] ys = new double[SAMPLES];
+    private final double[] zs = new double[SAMPLES];
+    private final int[] types = new int[SAMPLES];
+    private final int[] reasons = new int[SAMPLES];
+    private int cursor;
+
+    /** 测量期间被阻止的判定次数 */
+    private int blocked;
+
+    /** 测量期间被密度上限区域阻止的判定次数 */
+    private int blockedByDensity;
+
+    @BeforeEach
+    void setUp() {
+        EntityTypeFilter hostile = EntityTypeFilter.compile(false, Arrays.asList("ZOMBIE", "SKELETON", "CREEPER"),
+                Collections.emptyList(), SILENT);
+        EntityTypeFilter listed = EntityTypeFilter.compile(false, Arrays.asList("ZOMBIE", "COW"),
+                Collections.emptyList(), SILENT);
+        List<ProtectedRegion> regions = Arrays.asList(
+                // 完全阻止，豁免刷怪蛋
+                region("blocking", NoSpawnPlugin.RegionMode.CIRCLE, 0, hostile, 0),
+                // 每个区块每分钟最多2次
+                region("density", NoSpawnPlugin.RegionMode.SQUARE, 256, listed, 2),
+                // 与密度上限区域部分重叠
+                region("overlap", NoSpawnPlugin.RegionMode.CIRCLE, 352, hostile, 0));
+        index = RegionIndex.build(regions, name -> WORLD_NAME.equals(name) ? WORLD_ID : null);
+
+        Random random = new Random(7);
+        for (int i = 0; i < SAMPLES; i++) {
+            xs[i] = random.nextDouble() * 512 - 96;
+            ys[i] = 32 + random.nextDouble() * 64;
+            zs[i] = random.nextDouble() * 160 - 80;
+            types[i] = SAMPLE_TYPES[random.nextInt(SAMPLE_TYPES.length)].ordinal();
+            reasons[i] = SAMPLE_REASONS[random.nextInt(SAMPLE_REASONS.length)].ordinal();
+            chunks[i] = index.query(WORLD_ID, (int) Math.floor(xs[i]), (int) Math.floor(zs[i]));
+        }
+
+        // 让密度上限区域中一半的区块达到上限，判定时两种情况都会走到计数表
+        ProtectedRegion density = regions.get(1);
+        for (int chunkX = 12; chunkX < 20; chunkX += 2) {
+            for (int chunkZ = -4; chunkZ < 4; chunkZ++) {
+                double x = (chunkX << 4) + 8;
+                double z = (chunkZ << 4) + 8;
+                RegionIndex.ChunkEntry chunk = index.query(WORLD_ID, (int) x, (int) z);
+                assertNotNull(chunk);
+                for (int n = 0; n < density.getDensityLimit(); n++) {
+                    densityLimiter.record(index, chunk, x, 64, z, CreatureSpawnEvent.SpawnReason.NATURAL,
+                            EntityType.ZOMBIE.ordinal());
+                }
+            }
+        }
+    }
+
+    @Test
+    void indexOverloadDoesNotAllocate() {
+        long allocated = allocatedBytes(() -> {
+            int i = next();
+            return SpawnDecisionKernel.decide(index, WORLD_ID, xs[i], ys[i], zs[i],
+                    types[i], reasons[i], densityLimiter);
+        });
+        assertTrue(blocked > 0, "样本中应当有被阻止的生成");
+        assertEquals(0, allocated, "生成判定内核分配了内存");
+    }
+
+    @Test
+    void chunkEntryOverloadDoesNotAllocate() {
+        long allocated = allocatedBytes(() -> {
+            int i = next();
+            RegionIndex.ChunkEntry chunk = chunks[i];
+            if (chunk == null) return SpawnDecisionKernel.ALLOWED;
+            return SpawnDecisionKernel.decide(chunk, xs[i], ys[i], zs[i], types[i], reasons[i], densityLimiter);
+        });
+        assertTrue(blocked > 0, "样本中应当有被阻止的生成");
+        assertTrue(blockedByDensity > 0, "样本中应当有被密度上限阻止的生成");
+        assertEquals(0, allocated, "生成判定内核分配了内存");
+    }
+
+    /**
+     * 预热后测量一组判定在当前线程上分配的字节数
+     *
+     * @param decision 一次判定，返回判定结果
+     * @return 测量期间分配的字节数
+     */
+    private long allocatedBytes(IntSupplier decision) {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "JVM不支持按线程统计分配量");
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        long threadId = Thread.currentThread().threadId();
+        // 预热与测量走同一个循环，测量时运行的是同一份编译后的代码
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            run(decision);
+        }
+        blocked = 0;
+        blockedByDensity = 0;
+        // 读取一次基准值，排除首次调用本身的分配
+        threads.getThreadAllocatedBytes(threadId);
+        long before = threads.getThreadAllocatedBytes(threadId);
+        run(decision);
+        return threads.getThreadAllocatedBytes(threadId) - before;
+    }
+
+    /**
+     * 执行一组判定并统计被阻止的次数
+     */
+    private void run(IntSupplier decision) {
+        for (int n = 0; n < CALLS; n++) {
+            int result = decision.getAsInt();
+            if (result < 0) continue;
+            blocked++;
+            if (chunks[cursor].region(result).hasDensityLimit()) blockedByDensity++;
+        }
+    }
+
+    private int next() {
+        return cursor = (cursor + 1) & (SAMPLES - 1);
+    }
+
+    /**
+     * 构造中心在 (centerX, 64, 0) 的区域
+     */
+    private static ProtectedRegion region(String name, NoSpawnPlugin.RegionMode mode, double centerX,
+                                          EntityTypeFilter typeFilter, int densityLimit) {
+        return new ProtectedRegion(name, WORLD_NAME, mode, centerX, 64, 0,
+                64, 32, 64, 32, 64, null, typeFilter,
+                EnumSet.of(CreatureSpawnEvent.SpawnReason.SPAWNER_EGG), densityLimit, 60_000L);
+    }
+}
@@ -0,0 +1,102 @@
+package art.await591.nospawn;
+
+import org.bukkit.entity.EntityType;
+import org.bukkit.event.entity.CreatureSpawnEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 区块生成密度限制器测试
+ *
+ * <p>检查区域索引重建后，判定不再读取旧版本的计数，即使还没有记录过新的生成。</p>
+ *
+ * @author await591
+ */
+class SpawnDensityLimiterTest {
+    /** 测试使用的世界名称 */
+    private static final String WORLD_NAME = "world";
+
+    /** 测试使用的世界UID */
+    private static final UUID WORLD_ID = new UUID(0L, 1L);
+
+    /** 每个区块每个窗口的上限 */
+    private static final int LIMIT = 2;
+
+    private final SpawnDensityLimiter limiter = new SpawnDensityLimiter();
+
+    @Test
+    void fullAfterLimitReached() {
+        RegionIndex index = index(region());
+        RegionIndex.ChunkEntry chunk = chunk(index);
+        record(index, chunk, LIMIT);
+
+        assertTrue(limiter.isFull(chunk, 0, 8, 8));
+        assertEquals(1, limiter.getTrackedChunks());
+    }
+
+    @Test
+    void rebuiltIndexStartsWithoutCounts() {
+        ProtectedRegion region = region();
+        RegionIndex old = index(region);
+        record(old, chunk(old), LIMIT);
+
+        // 同一批区域重新构建索引（例如世界加载），尚未记录新的生成
+        RegionIndex rebuilt = index(region);
+        assertFalse(limiter.isFull(chunk(rebuilt), 0, 8, 8), "索引重建后仍读取了旧版本的计数");
+        assertEquals(0, limiter.getTrackedChunks());
+    }
+
+    @Test
+    void staleIndexDoesNotResetCounts() {
+        ProtectedRegion region = region();
+        RegionIndex old = index(region);
+        RegionIndex rebuilt = index(region);
+        record(rebuilt, chunk(rebuilt), LIMIT);
+
+        // 旧索引上仍在进行的判定不应换回旧版本的计数表
+        limiter.isFull(chunk(old), 0, 8, 8);
+        assertTrue(limiter.isFull(chunk(rebuilt), 0, 8, 8));
+    }
+
+    /**
+     * 在区块 (0, 0) 的中心记录若干次自然生成的僵尸
+     */
+    private void record(RegionIndex index, RegionIndex.ChunkEntry chunk, int count) {
+        for (int n = 0; n < count; n++) {
+            limiter.record(index, chunk, 8, 64, 8, CreatureSpawnEvent.SpawnReason.NATURAL,
+                    EntityType.ZOMBIE.ordinal());
+        }
+    }
+
+    private static RegionIndex index(ProtectedRegion region) {
+        return RegionIndex.build(List.of(region), name -> WORLD_NAME.equals(name) ? WORLD_ID : null);
+    }
+
+    private static RegionIndex.ChunkEntry chunk(RegionIndex index) {
+        RegionIndex.ChunkEntry chunk = index.query(WORLD_ID, 8, 8);
+        assertNotNull(chunk);
+        return chunk;
+    }
+
+    /**
+     * 构造中心在原点、阻止所有怪物并设置了密度上限的区域
+     */
+    private static ProtectedRegion region() {
+        Logger logger = Logger.getLogger("NoSpawnTest");
+        logger.setUseParentHandlers(false);
+        EntityTypeFilter filter = EntityTypeFilter.compile(false, List.of("ZOMBIE"), Collections.emptyList(), logger);
+        return new ProtectedRegion("density", WORLD_NAME, NoSpawnPlugin.RegionMode.CIRCLE, 0, 64, 0,
+                64, 32, 64, 32, 64, null, filter,
+                EnumSet.noneOf(CreatureSpawnEvent.SpawnReason.class), LIMIT, 60_000L);
+    }
+}